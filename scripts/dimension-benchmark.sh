@@ -0,0 +1,15 @@
+#!/usr/bin/env bash
+# 比較不同向量維度（Matryoshka 截斷）的 index 大小、搜尋延遲與 recall，決定 app.embedding.dimensions；
+# 同時列出兩階段 binary 搜尋（app.search.mode=binary）的量化碼大小、延遲與 recall
+#
+# 用法：
+#   scripts/dimension-benchmark.sh --index data/index --dims 256,512,1024 --queries 200 --k 10 --oversample 10 --min-candidates 100
+#
+# 讀取以原生維度建立的 index（唯讀，可在服務執行中使用），每個維度在暫存目錄另建 HNSW index 比較；
+# recall 以原生維度的精確搜尋為基準，查詢為抽樣的文件向量。benchmark 位於 src/test，執行前會先編譯
+set -euo pipefail
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+CP=$("$ROOT/scripts/test-classpath.sh")
+
+java --add-modules jdk.incubator.vector -cp "$CP" com.dylincode.mcp.index.DimensionBenchmark "$@"
@@ -0,0 +1,14 @@
+#!/usr/bin/env bash
+# 比較 metadata filter 在 HNSW 走訪中套用（pre-filter）與先多取候選再過濾（post-filter）在不同選擇性下的延遲與 recall@k
+#
+# 用法：
+#   scripts/filter-benchmark.sh --index data/index --queries 200 --k 10 --oversample 10
+#
+# 讀取現有 index（唯讀，可在服務執行中使用）；filter 依 index 內容產生：各 space（由大到小）與只留最近修改 50% / 10% / 1% 的 modified_after。
+# benchmark 位於 src/test，執行前會先編譯
+set -euo pipefail
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+CP=$("$ROOT/scripts/test-classpath.sh")
+
+java --add-modules jdk.incubator.vector -cp "$CP" com.dylincode.mcp.index.FilterBenchmark "$@"
@@ -0,0 +1,57 @@
+#!/usr/bin/env bash
+# 離線壓測：以 loadtest profile 啟動服務（Ollama、OpenAI、Confluence 由本機替身提供），
+# 先攝取測試空間，再依目標 RPS 送出請求，回報吞吐量與 p50/p95/p99 延遲
+#
+# 用法：
+#   mvn package -DskipTests
+#   scripts/load-test.sh                                              # 預設情境，量測 60 秒
+#   RPS='mcp-search=100,mcp-fetch=100,query=50' DURATION=120 scripts/load-test.sh
+#   RPS='ask=4' scripts/load-test.sh                                  # chat 替身延遲見 application-loadtest.yml
+#
+# 情境：mcp-search、mcp-fetch（/mcp tools/call）、query（/query）、ask（/ask）、ingest（/ingest/space）
+# 替身延遲、維度與頁面數可用 --app.loadtest.stub.* 覆寫，例如 APP_ARGS='--app.loadtest.stub.embed-latency-ms=100'
+# 壓測產生器位於 src/test，不在 jar 內，啟動服務前先編譯並取得 test classpath
+set -euo pipefail
+
+PORT=${PORT:-18080}
+RPS=${RPS:-mcp-search=50,mcp-fetch=50,query=20,ingest=0.02}
+DURATION=${DURATION:-60}
+WARMUP=${WARMUP:-10}
+SPACES=${SPACES:-LT1,LT2}
+APP_ARGS=${APP_ARGS:-}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+JAR=$(ls "$ROOT"/target/*.jar | grep -v original | head -1)
+CP=$("$ROOT/scripts/test-classpath.sh")
+WORK=$(mktemp -d)
+trap 'kill "$pid" 2>/dev/null || true; rm -rf "$WORK"' EXIT
+
+# 所有會寫入的路徑都放在 $WORK，不碰開發環境 data/ 下的 index、查詢樣本與攝取租約
+
+# shellcheck disable=SC2086
+java --add-modules jdk.incubator.vector -jar "$JAR" --spring.profiles.active=prod,loadtest --server.port="$PORT" \
+    --app.indexDir="$WORK/index" --app.ingest.jobs.dir="$WORK/jobs" --app.search.exact.dir="$WORK/flat" \
+    --app.ask.cache.dir="$WORK/answer-cache" --app.warmup.queries-file="$WORK/warmup-queries.json" \
+    --app.ingest.lease.dir="$WORK/leases" $APP_ARGS > "$WORK/app.log" 2>&1 &
+pid=$!
+until curl -sf -o /dev/null "http://127.0.0.1:$PORT/actuator/health"; do
+  if ! kill -0 "$pid" 2>/dev/null; then echo "application exited, see log:"; tail -50 "$WORK/app.log"; exit 1; fi
+  sleep 0.2
+done
+
+# 先攝取測試空間，讓搜尋有資料
+for key in ${SPACES//,/ }; do
+  job=$(curl -sf -H 'Content-Type: application/json' -d "{\"spaceKey\":\"$key\"}" "http://127.0.0.1:$PORT/ingest/space" \
+        | python3 -c 'import json,sys; print(json.load(sys.stdin)["id"])')
+  while :; do
+    status=$(curl -sf "http://127.0.0.1:$PORT/ingest/jobs/$job" | python3 -c 'import json,sys; print(json.load(sys.stdin)["status"])')
+    case "$status" in
+      SUCCEEDED) break ;;
+      FAILED|CANCELLED) echo "ingest of $key $status, see log:"; tail -50 "$WORK/app.log"; exit 1 ;;
+    esac
+    sleep 1
+  done
+  echo "ingested space $key (job $job)"
+done
+
+java -cp "$CP" com.dylincode.mcp.loadtest.LoadGenerator \
+    --url "http://127.0.0.1:$PORT" --rps "$RPS" --duration "$DURATION" --warmup "$WARMUP" --spaces "$SPACES"
@@ -0,0 +1,15 @@
+#!/usr/bin/env bash
+# 量測 MMR 重新排序（app.search.mmr.*）隨 k 增加的成本：kNN 取候選、讀回候選向量與 MmrReranker.select 各自的延遲
+#
+# 用法：
+#   scripts/mmr-benchmark.sh --index data/index --k 5,10,20,50 --candidate-factor 4
+#   scripts/mmr-benchmark.sh --docs 20000 --dims 1024 --k 5,10,20,50
+#
+# 指定 --index 時讀取現有 index（唯讀，可在服務執行中使用）；未指定時以合成的正規化向量只量測 select。
+# benchmark 位於 src/test，執行前會先編譯
+set -euo pipefail
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+CP=$("$ROOT/scripts/test-classpath.sh")
+
+java --add-modules jdk.incubator.vector -cp "$CP" com.dylincode.mcp.index.MmrBenchmark "$@"
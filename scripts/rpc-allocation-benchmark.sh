@@ -0,0 +1,14 @@
+#!/usr/bin/env bash
+# 在同一個 JVM 內比較 tools/call 改版前後的處理路徑，每次呼叫配置的記憶體與耗時（不經過 HTTP 與 index）
+#
+# 用法：
+#   scripts/rpc-allocation-benchmark.sh --chunks 5 --chars 800 --iterations 20000 --cjk false
+#
+# 執行中服務的實際配置量（含 Tomcat 與工具執行）用 scripts/rpc-benchmark.sh 量測。
+# benchmark 位於 src/test，執行前會先編譯
+set -euo pipefail
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+CP=$("$ROOT/scripts/test-classpath.sh")
+
+java -cp "$CP" com.dylincode.mcp.mcp.RpcAllocationBenchmark "$@"
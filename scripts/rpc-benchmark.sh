@@ -0,0 +1,41 @@
+#!/usr/bin/env bash
+# 對執行中的服務送出 N 次 MCP tools/call，回報每次請求配置的記憶體（mcp.rpc.allocated）與平均延遲
+#
+# 用法：
+#   scripts/rpc-benchmark.sh 2000                       # fetch，預設 id
+#   TOOL=search ARGS='{"query":"payment webhook","top_k":5}' scripts/rpc-benchmark.sh 500
+#
+# 需在本機執行（本機請求免 OAuth）；allocation 以 ThreadMXBean 量測，含請求解析、工具執行與回應序列化。
+# 服務需以 --app.mcp.allocation-metrics=true 啟動，預設不量測。
+# 與改版前路徑的比較（基準）見 scripts/rpc-allocation-benchmark.sh
+set -euo pipefail
+
+CALLS=${1:-1000}
+URL=${URL:-http://127.0.0.1:8080}
+TOOL=${TOOL:-fetch}
+ARGS=${ARGS:-'{"id":"rpc-benchmark"}'}
+BODY="{\"jsonrpc\":\"2.0\",\"id\":\"bench\",\"method\":\"tools/call\",\"params\":{\"name\":\"$TOOL\",\"arguments\":$ARGS}}"
+
+metric() {
+  curl -sf "$URL/actuator/metrics/mcp.rpc.allocated" \
+    | python3 -c 'import json,sys; m={x["statistic"]:x["value"] for x in json.load(sys.stdin)["measurements"]}; print(int(m["COUNT"]), int(m["TOTAL"]))'
+}
+
+if ! curl -sf -o /dev/null "$URL/actuator/metrics/mcp.rpc.allocated"; then
+  echo "mcp.rpc.allocated not found: start the service with --app.mcp.allocation-metrics=true" >&2
+  exit 1
+fi
+
+# 預熱，讓 JIT 與 Jackson 的 serializer 快取穩定
+for _ in $(seq 1 200); do curl -sf -o /dev/null -H 'Content-Type: application/json' -d "$BODY" "$URL/mcp"; done
+
+read -r count0 total0 < <(metric)
+start=$(date +%s%N)
+for _ in $(seq 1 "$CALLS"); do curl -sf -o /dev/null -H 'Content-Type: application/json' -d "$BODY" "$URL/mcp"; done
+end=$(date +%s%N)
+read -r count1 total1 < <(metric)
+
+n=$((count1 - count0))
+echo "tool=$TOOL calls=$n"
+echo "allocated per call: $(( (total1 - total0) / n )) bytes"
+echo "latency per call (curl round trip): $(( (end - start) / CALLS / 1000 )) us"
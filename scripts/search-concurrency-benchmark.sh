@@ -0,0 +1,15 @@
+#!/usr/bin/env bash
+# 比較查詢內跨 segment 平行搜尋（app.search.concurrency.*）對 kNN 與 BM25 延遲的改善，以及並發負載下的吞吐量
+#
+# 用法：
+#   scripts/search-concurrency-benchmark.sh --index data/index --split 16 --threads 2,4,8 --clients 8 --duration 10
+#
+# 讀取現有 index（唯讀，可在服務執行中使用）；--split N 先複製成 N 個 segment 的暫存 index，
+# 模擬尚未合併的 index。--max-docs-per-slice / --max-segments-per-slice 對應同名設定。
+# benchmark 位於 src/test，執行前會先編譯
+set -euo pipefail
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+CP=$("$ROOT/scripts/test-classpath.sh")
+
+java --add-modules jdk.incubator.vector -cp "$CP" com.dylincode.mcp.index.SearchConcurrencyBenchmark "$@"
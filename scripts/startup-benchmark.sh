@@ -0,0 +1,50 @@
+#!/usr/bin/env bash
+# 量測從啟動 JVM 到第一個成功的 MCP tools/call 的時間（毫秒）
+#
+# 用法：
+#   mvn -Pstartup package -DskipTests
+#   scripts/startup-benchmark.sh plain 5    # 一般 fat jar
+#   scripts/startup-benchmark.sh startup 5  # AOT + AppCDS（target/startup）
+#
+# 需在本機執行（本機請求免 OAuth），結果附加到 target/startup-benchmark.csv
+set -euo pipefail
+
+MODE=${1:-plain}
+RUNS=${2:-3}
+PORT=${PORT:-18080}
+PROFILE=${PROFILE:-prod}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+JAR=$(ls "$ROOT"/target/*.jar | grep -v original | head -1)
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+JAVA_OPTS=(--add-modules jdk.incubator.vector)
+case "$MODE" in
+  plain)
+    CMD=(java "${JAVA_OPTS[@]}" -jar "$JAR") ;;
+  startup)
+    DIR="$ROOT/target/startup"
+    CMD=(java "${JAVA_OPTS[@]}" -XX:SharedArchiveFile="$DIR/application.jsa" -Dspring.aot.enabled=true
+         -jar "$DIR/$(basename "$JAR")") ;;
+  *) echo "unknown mode $MODE (plain|startup)"; exit 1 ;;
+esac
+
+BODY='{"jsonrpc":"2.0","id":"1","method":"tools/call","params":{"name":"fetch","arguments":{"id":"startup-benchmark"}}}'
+
+for run in $(seq 1 "$RUNS"); do
+  start=$(date +%s%N)
+  "${CMD[@]}" --spring.profiles.active="$PROFILE" --server.port="$PORT" \
+      --app.indexDir="$WORK/index" --app.ingest.jobs.dir="$WORK/jobs" --app.search.exact.dir="$WORK/flat" \
+      --app.ask.cache.dir="$WORK/answer-cache" --app.warmup.queries-file="$WORK/warmup-queries.json" \
+      --app.ingest.lease.dir="$WORK/leases" > "$WORK/app-$run.log" 2>&1 &
+  pid=$!
+  until curl -sf -o /dev/null -H 'Content-Type: application/json' -d "$BODY" "http://127.0.0.1:$PORT/mcp"; do
+    if ! kill -0 "$pid" 2>/dev/null; then echo "application exited, see log:"; tail -50 "$WORK/app-$run.log"; exit 1; fi
+    sleep 0.02
+  done
+  end=$(date +%s%N)
+  kill "$pid"; wait "$pid" 2>/dev/null || true
+  ms=$(( (end - start) / 1000000 ))
+  echo "$MODE run $run: first tools/call after ${ms} ms"
+  echo "$(date -Iseconds),$MODE,$run,$ms" >> "$ROOT/target/startup-benchmark.csv"
+done
@@ -0,0 +1,11 @@
+#!/usr/bin/env bash
+# 編譯 src/test 並印出執行 benchmark 與壓測 main 所需的 classpath（test-classes、classes 與 test scope 的所有相依）
+#
+# benchmark 與壓測產生器放在 src/test，不會打包進正式 jar；各 benchmark script 以此取得 classpath：
+#   java -cp "$(scripts/test-classpath.sh)" com.dylincode.mcp.index.FilterBenchmark --index data/index
+set -euo pipefail
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+mvn -B -q -f "$ROOT/pom.xml" test-compile dependency:build-classpath \
+    -Dmdep.outputFile="$ROOT/target/test-classpath.txt" -Dmdep.includeScope=test >&2
+echo "$ROOT/target/test-classes:$ROOT/target/classes:$(cat "$ROOT/target/test-classpath.txt")"
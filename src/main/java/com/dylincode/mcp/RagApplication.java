@@ -2,8 +2,10 @@ package com.dylincode.mcp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RagApplication {
     public static void main(String[] args) {
         SpringApplication.run(RagApplication.class, args);
@@ -0,0 +1,165 @@
+package com.dylincode.mcp.admission;
+
+import com.dylincode.mcp.config.AdmissionConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 准入控制與降載。
+ *
+ * <ul>
+ *   <li>使用者以 JWT 的 email 識別（本機未驗證的請求以來源 IP 識別）</li>
+ *   <li>每個成本等級（{@link Cost}）各有每使用者與全域的並發上限，互不佔用：大量 fetch 不會擋住 /ask，反之亦然</li>
+ *   <li>先取使用者額度再取全域額度，兩者皆為公平（FIFO）號誌；單一使用者的迴圈只會在自己的佇列排隊，不會佔滿全域佇列</li>
+ *   <li>排隊時間與佇列長度皆有上限，超過立即以 {@link AdmissionRejectedException} 拒絕</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class AdmissionControl {
+
+    public enum Cost {
+        CHEAP, STANDARD, EXPENSIVE
+    }
+
+    /**
+     * 取得的額度，關閉時釋放
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Permit NOOP = () -> {
+    };
+
+    private final AdmissionConfig config;
+    private final Map<Cost, Pool> pools = new EnumMap<>(Cost.class);
+
+    public AdmissionControl(AdmissionConfig config, MeterRegistry registry) {
+        this.config = config;
+        pools.put(Cost.CHEAP, new Pool(Cost.CHEAP, config.getCheap(), registry));
+        pools.put(Cost.STANDARD, new Pool(Cost.STANDARD, config.getStandard(), registry));
+        pools.put(Cost.EXPENSIVE, new Pool(Cost.EXPENSIVE, config.getExpensive(), registry));
+    }
+
+    /**
+     * 以目前請求的使用者取得額度
+     *
+     * @throws AdmissionRejectedException 額度已滿且在等待上限內未取得
+     */
+    public Permit acquire(Cost cost) throws InterruptedException {
+        if (!config.isEnabled()) return NOOP;
+        return pools.get(cost).acquire(currentUser());
+    }
+
+    /**
+     * JWT 的 email（沒有時用 subject）；本機放行的請求沒有 JWT，以來源 IP 區分
+     */
+    static String currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth instanceof JwtAuthenticationToken jwt) {
+            String email = jwt.getToken().getClaimAsString("email");
+            return email != null ? email.toLowerCase() : "sub:" + jwt.getToken().getSubject();
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attrs) {
+            return "addr:" + attrs.getRequest().getRemoteAddr();
+        }
+        return "anonymous";
+    }
+
+    /**
+     * 移除閒置使用者的號誌，避免使用者數量無限增長
+     */
+    @Scheduled(fixedDelayString = "${app.admission.cleanup-ms:60000}")
+    public void cleanupIdleUsers() {
+        pools.values().forEach(Pool::cleanup);
+    }
+
+    private static final class Pool {
+        final Cost cost;
+        final AdmissionConfig.Budget budget;
+        final Semaphore global;
+        final Map<String, Semaphore> users = new ConcurrentHashMap<>();
+        final Timer wait;
+        final Counter rejectedUser;
+        final Counter rejectedGlobal;
+
+        Pool(Cost cost, AdmissionConfig.Budget budget, MeterRegistry registry) {
+            this.cost = cost;
+            this.budget = budget;
+            this.global = new Semaphore(Math.max(1, budget.getGlobal()), true);
+            String tag = cost.name().toLowerCase();
+            this.wait = Timer.builder("admission.wait").tag("cost", tag).register(registry);
+            this.rejectedUser = Counter.builder("admission.rejected").tag("cost", tag).tag("scope", "user").register(registry);
+            this.rejectedGlobal = Counter.builder("admission.rejected").tag("cost", tag).tag("scope", "global").register(registry);
+            registry.gauge("admission.in_flight", Tags.of("cost", tag), global,
+                    s -> Math.max(1, budget.getGlobal()) - s.availablePermits());
+        }
+
+        Permit acquire(String user) throws InterruptedException {
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(budget.getMaxWaitMs());
+            Semaphore mine = users.computeIfAbsent(user, u -> new Semaphore(Math.max(1, budget.getPerUser()), true));
+            if (!tryAcquire(mine, deadline)) {
+                rejectedUser.increment();
+                log.debug("admission rejected {} for {}: per-user limit {}", cost, user, budget.getPerUser());
+                throw new AdmissionRejectedException(cost, "user", retryAfterSeconds());
+            }
+            if (!tryAcquire(global, deadline)) {
+                mine.release();
+                rejectedGlobal.increment();
+                log.warn("admission rejected {} for {}: global limit {} reached", cost, user, budget.getGlobal());
+                throw new AdmissionRejectedException(cost, "global", retryAfterSeconds());
+            }
+            wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return new Permit() {
+                private boolean closed;
+
+                @Override
+                public synchronized void close() {
+                    if (closed) return;
+                    closed = true;
+                    global.release();
+                    mine.release();
+                }
+            };
+        }
+
+        private boolean tryAcquire(Semaphore s, long deadline) throws InterruptedException {
+            if (s.tryAcquire()) return true;
+            // 佇列已滿時不再排隊，快速失敗
+            if (s.getQueueLength() >= budget.getMaxQueue()) return false;
+            long remaining = deadline - System.nanoTime();
+            return remaining > 0 && s.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+        }
+
+        private long retryAfterSeconds() {
+            return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(budget.getMaxWaitMs()));
+        }
+
+        /**
+         * 與 acquire 同時發生時，可能短暫多出一份使用者額度；全域上限不受影響
+         */
+        void cleanup() {
+            int permits = Math.max(1, budget.getPerUser());
+            users.entrySet().removeIf(e -> e.getValue().availablePermits() == permits && !e.getValue().hasQueuedThreads());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.dylincode.mcp.admission;
+
+import com.dylincode.mcp.exception.ClientVisibleException;
+
+import java.util.Map;
+
+/**
+ * 超過並發額度，請求未執行；呼叫端應回 429（JSON-RPC 為 {@link #JSON_RPC_CODE}）
+ */
+public class AdmissionRejectedException extends ClientVisibleException {
+    public static final int JSON_RPC_CODE = -32029;
+
+    public final long retryAfterSeconds;
+
+    public AdmissionRejectedException(AdmissionControl.Cost cost, String scope, long retryAfterSeconds) {
+        super("Too many concurrent requests, retry later",
+                Map.of("cost", cost.name().toLowerCase(), "scope", scope, "retryAfterSeconds", retryAfterSeconds));
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
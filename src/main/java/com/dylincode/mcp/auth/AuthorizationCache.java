@@ -0,0 +1,134 @@
+package com.dylincode.mcp.auth;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已驗證 token 與授權結果的快取，key 為 token 的 SHA-256（不保存 token 原文）。
+ *
+ * <p>項目在 token 的 {@code exp} 到期（最長 {@code app.auth-cache.max-ttl-seconds}），
+ * 同一個 token 的後續請求（MCP batch、SSE 重連）不再重新驗簽與比對白名單。
+ * 數量超過 {@code max-entries} 時先清除過期項目，仍超過則淘汰最早到期的項目。</p>
+ */
+@Slf4j
+@Component
+public class AuthorizationCache {
+
+    static final class Entry {
+        final Jwt jwt;
+        final long expiresAt;
+        volatile Boolean allowed;
+
+        Entry(Jwt jwt, long expiresAt) {
+            this.jwt = jwt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxTtlMillis;
+
+    public AuthorizationCache(@Value("${app.auth-cache.enabled:true}") boolean enabled,
+                              @Value("${app.auth-cache.max-entries:10000}") int maxEntries,
+                              @Value("${app.auth-cache.max-ttl-seconds:3600}") long maxTtlSeconds,
+                              MeterRegistry registry) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxTtlMillis = maxTtlSeconds * 1000;
+        Gauge.builder("auth.cache.size", entries, Map::size)
+                .description("cached validated tokens")
+                .register(registry);
+    }
+
+    /**
+     * @return 快取中尚未到期的 Jwt，沒有則回傳 null
+     */
+    public Jwt jwt(String token) {
+        Entry e = entry(token);
+        return e == null ? null : e.jwt;
+    }
+
+    /**
+     * 驗證成功的 token 放入快取；沒有 exp 的 token 不快取
+     */
+    public void putJwt(String token, Jwt jwt) {
+        if (!enabled) return;
+        Instant exp = jwt.getExpiresAt();
+        if (exp == null) return;
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.min(exp.toEpochMilli(), now + maxTtlMillis);
+        if (expiresAt <= now) return;
+        entries.put(key(token), new Entry(jwt, expiresAt));
+        if (entries.size() > maxEntries) evict();
+    }
+
+    /**
+     * @return 此 token 先前的授權結果，沒有則回傳 null
+     */
+    public Boolean decision(String token) {
+        Entry e = entry(token);
+        return e == null ? null : e.allowed;
+    }
+
+    public void putDecision(String token, boolean allowed) {
+        Entry e = entry(token);
+        if (e != null) e.allowed = allowed;
+    }
+
+    private Entry entry(String token) {
+        if (!enabled || token == null) return null;
+        String k = key(token);
+        Entry e = entries.get(k);
+        if (e == null) return null;
+        if (System.currentTimeMillis() >= e.expiresAt) {
+            entries.remove(k, e);
+            return null;
+        }
+        return e;
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth-cache.purge-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(e -> now >= e.expiresAt);
+    }
+
+    private synchronized void evict() {
+        purgeExpired();
+        int excess = entries.size() - maxEntries;
+        if (excess <= 0) return;
+        // 淘汰最早到期的項目，多清 10% 避免每次新增都進來
+        int target = excess + maxEntries / 10;
+        entries.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(a.expiresAt, b.expiresAt)))
+                .limit(target)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+        log.debug("auth cache evicted {} entries, {} remain", target, entries.size());
+    }
+
+    private static String key(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.dylincode.mcp.auth;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 先查 {@link AuthorizationCache}，未命中才交給實際的 decoder 驗簽與驗證 claims，
+ * 並以 {@code auth.jwt.decode}（tag {@code cache=hit|miss}, {@code outcome}）記錄每次的耗時
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+    private final JwtDecoder delegate;
+    private final AuthorizationCache cache;
+    private final Timer hit;
+    private final Timer miss;
+    private final Timer failure;
+
+    public CachingJwtDecoder(JwtDecoder delegate, AuthorizationCache cache, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.hit = timer(registry, "hit", "success");
+        this.miss = timer(registry, "miss", "success");
+        this.failure = timer(registry, "miss", "failure");
+    }
+
+    private static Timer timer(MeterRegistry registry, String cache, String outcome) {
+        return Timer.builder("auth.jwt.decode")
+                .description("JWT decoding and validation time per request")
+                .tag("cache", cache)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long start = System.nanoTime();
+        Jwt cached = cache.jwt(token);
+        if (cached != null) {
+            hit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+        try {
+            Jwt jwt = delegate.decode(token);
+            cache.putJwt(token, jwt);
+            miss.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return jwt;
+        } catch (RuntimeException e) {
+            failure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+}
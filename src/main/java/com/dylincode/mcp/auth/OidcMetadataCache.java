@@ -0,0 +1,191 @@
+package com.dylincode.mcp.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 授權伺服器 OIDC discovery 文件的記憶體快取。
+ *
+ * <ul>
+ *   <li>有效期依上游 {@code Cache-Control: max-age} 決定，並限制在設定的上下限內</li>
+ *   <li>到期前（{@code refresh-ahead-ratio}）於背景以 {@code If-None-Match} 向上游重新驗證，請求路徑不等待上游</li>
+ *   <li>上游錯誤或逾時時繼續提供舊資料，並在 {@code retry-seconds} 後再試</li>
+ *   <li>每份內容有自己的強 ETag，下游可用條件式請求拿到 304</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class OidcMetadataCache {
+    private static final String DISCOVERY_PATH = "/.well-known/openid-configuration";
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|,)\\s*max-age\\s*=\\s*\"?(\\d+)");
+    private static final Pattern NO_CACHE = Pattern.compile("(?:^|,)\\s*(no-cache|no-store)\\b");
+
+    /**
+     * @param body         上游回應原文
+     * @param etag         依內容計算的強 ETag，回給下游
+     * @param upstreamEtag 上游的 ETag，重新驗證時帶入 If-None-Match
+     * @param document     解析後的 JSON
+     */
+    public record Metadata(byte[] body, String etag, String upstreamEtag, JsonNode document,
+                           long fetchedAt, long expiresAt, long refreshAt) {
+        public long maxAgeSeconds() {
+            return Math.max(0, (expiresAt - System.currentTimeMillis()) / 1000);
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+
+    private final RestClient http = RestClient.create();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String issuer;
+    private final long defaultTtlMillis;
+    private final long minTtlMillis;
+    private final long maxTtlMillis;
+    private final double refreshAheadRatio;
+    private final long retryMillis;
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private volatile Metadata current;
+    private volatile long nextAttemptAt;
+
+    public OidcMetadataCache(@Value("${app.oauth-uri}") String issuer,
+                             @Value("${app.oidc-cache.default-ttl-seconds:300}") long defaultTtlSeconds,
+                             @Value("${app.oidc-cache.min-ttl-seconds:60}") long minTtlSeconds,
+                             @Value("${app.oidc-cache.max-ttl-seconds:86400}") long maxTtlSeconds,
+                             @Value("${app.oidc-cache.refresh-ahead-ratio:0.8}") double refreshAheadRatio,
+                             @Value("${app.oidc-cache.retry-seconds:30}") long retrySeconds) {
+        this.issuer = issuer;
+        this.defaultTtlMillis = defaultTtlSeconds * 1000;
+        this.minTtlMillis = minTtlSeconds * 1000;
+        this.maxTtlMillis = Math.max(minTtlSeconds, maxTtlSeconds) * 1000;
+        this.refreshAheadRatio = Math.min(1.0, Math.max(0.1, refreshAheadRatio));
+        this.retryMillis = retrySeconds * 1000;
+    }
+
+    /**
+     * 取得目前的 metadata；已有快取時立即回傳（必要時觸發背景更新），第一次呼叫才同步向上游取得
+     *
+     * @throws RuntimeException 從未成功取得且上游無法連線
+     */
+    public Metadata get() {
+        Metadata m = current;
+        if (m == null) return refresh(true);
+        if (System.currentTimeMillis() >= m.refreshAt()) {
+            Thread.ofVirtual().name("oidc-metadata-refresh").start(() -> refresh(false));
+        }
+        return m;
+    }
+
+    /**
+     * 背景更新，閒置時也維持快取新鮮，請求不會遇到過期資料
+     */
+    @Scheduled(fixedDelayString = "${app.oidc-cache.check-ms:5000}")
+    public void refreshIfDue() {
+        Metadata m = current;
+        if (m != null && System.currentTimeMillis() >= m.refreshAt()) refresh(false);
+    }
+
+    private Metadata refresh(boolean wait) {
+        if (wait) {
+            fetchLock.lock();
+        } else if (!fetchLock.tryLock()) {
+            return current;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            Metadata m = current;
+            if (m != null && (now < m.refreshAt() || now < nextAttemptAt)) return m;
+            try {
+                Metadata next = fetch(m, now);
+                current = next;
+                return next;
+            } catch (RuntimeException | IOException e) {
+                nextAttemptAt = now + retryMillis;
+                if (m == null) {
+                    throw e instanceof RuntimeException re ? re : new IllegalStateException("OIDC metadata fetch failed", e);
+                }
+                log.warn("OIDC metadata refresh from {} failed, serving copy fetched at {}: {}",
+                        issuer, Instant.ofEpochMilli(m.fetchedAt()), e.toString());
+                return m;
+            }
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private Metadata fetch(Metadata previous, long now) throws IOException {
+        ResponseEntity<byte[]> resp = http.get()
+                .uri(issuer + DISCOVERY_PATH)
+                .headers(h -> {
+                    if (previous != null && previous.upstreamEtag() != null) h.setIfNoneMatch(previous.upstreamEtag());
+                })
+                .retrieve()
+                .toEntity(byte[].class);
+        long ttl = ttlMillis(resp.getHeaders().getCacheControl());
+        long refreshAt = now + (long) (ttl * refreshAheadRatio);
+        if (resp.getStatusCode().value() == 304 && previous != null) {
+            log.debug("OIDC metadata not modified, valid for {} s", ttl / 1000);
+            return new Metadata(previous.body(), previous.etag(), previous.upstreamEtag(), previous.document(),
+                    now, now + ttl, refreshAt);
+        }
+        byte[] body = resp.getBody();
+        if (body == null || body.length == 0) throw new IOException("Empty OIDC metadata from " + issuer);
+        JsonNode document = mapper.readTree(body);
+        log.info("OIDC metadata fetched from {}, valid for {} s", issuer, ttl / 1000);
+        return new Metadata(body, etagOf(body), resp.getHeaders().getETag(), document, now, now + ttl, refreshAt);
+    }
+
+    private long ttlMillis(String cacheControl) {
+        long ttl = defaultTtlMillis;
+        if (cacheControl != null) {
+            String cc = cacheControl.toLowerCase();
+            Matcher maxAge = MAX_AGE.matcher(cc);
+            if (NO_CACHE.matcher(cc).find()) {
+                // 仍保留最短時間，避免每個請求都打到授權伺服器；期間內以 If-None-Match 重新驗證
+                ttl = 0;
+            } else if (maxAge.find()) {
+                ttl = Long.parseLong(maxAge.group(1)) * 1000;
+            }
+        }
+        return Math.max(minTtlMillis, Math.min(maxTtlMillis, ttl));
+    }
+
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 27) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * {@code If-None-Match} 是否包含此 ETag（比對時忽略 weak 前綴）
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*")) return true;
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals(etag)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+package com.dylincode.mcp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * /mcp 與 /ask 的准入控制：依使用者與全域的並發上限，各成本等級有各自的額度
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.admission")
+public class AdmissionConfig {
+    boolean enabled = true;
+    /** fetch 等只讀 index 的工具 */
+    Budget cheap = new Budget(16, 256, 200, 64);
+    /** search 等需要 embedding 的工具 */
+    Budget standard = new Budget(4, 64, 2_000, 32);
+    /** /ask：embedding 加上 LLM 呼叫 */
+    Budget expensive = new Budget(1, 8, 5_000, 16);
+
+    @Getter
+    @Setter
+    public static class Budget {
+        /** 每位使用者同時執行的請求數 */
+        int perUser;
+        /** 全部使用者合計同時執行的請求數 */
+        int global;
+        /** 額度用完時最多排隊等待多久，超過即回 429 */
+        long maxWaitMs;
+        /** 已有這麼多請求在排隊時不再等待，直接回 429 */
+        int maxQueue;
+
+        public Budget() {
+        }
+
+        public Budget(int perUser, int global, long maxWaitMs, int maxQueue) {
+            this.perUser = perUser;
+            this.global = global;
+            this.maxWaitMs = maxWaitMs;
+            this.maxQueue = maxQueue;
+        }
+    }
+}
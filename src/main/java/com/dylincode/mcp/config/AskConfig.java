@@ -0,0 +1,51 @@
+package com.dylincode.mcp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * /ask 的設定
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.ask")
+public class AskConfig {
+    Context context = new Context();
+    Cache cache = new Cache();
+
+    /**
+     * 送給 LLM 的參考資料組裝
+     */
+    @Getter
+    @Setter
+    public static class Context {
+        /** 參考資料的 token 預算（估算值） */
+        int maxTokens = 3_000;
+        /** 預算不足時，剩餘 token 少於此值就不再放入被截斷的片段 */
+        int minSegmentTokens = 80;
+        /** 段落的 shingle 有此比例已出現在排名較高的段落中時視為重複而略過 */
+        double duplicateThreshold = 0.85;
+        /** 合併相鄰片段時，最多比對多少字元找出重疊 */
+        int maxOverlapChars = 400;
+    }
+
+    /**
+     * 語意答案快取
+     */
+    @Getter
+    @Setter
+    public static class Cache {
+        boolean enabled = true;
+        /** 快取 index 目錄，實際使用 {@code <dir>/<embedding model>[-<dimensions>d]} */
+        String dir = "data/answer-cache";
+        /** 問題向量的 cosine 相似度達此值才視為同一個問題 */
+        double similarityThreshold = 0.95;
+        /** 答案保存時間 */
+        long ttlSeconds = 86_400;
+        /** 最多保存幾筆，超過時淘汰最舊的 */
+        int maxEntries = 10_000;
+    }
+}
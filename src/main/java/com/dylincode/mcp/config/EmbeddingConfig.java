@@ -0,0 +1,106 @@
+package com.dylincode.mcp.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embedding 路由設定：固定使用的模型、各後端的並發上限、熔斷與 hedged request
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.embedding")
+public class EmbeddingConfig {
+    /** index 使用的 embedding 模型，只有提供此模型的後端會被路由；空白時使用 app.ollama.model */
+    String model;
+    /**
+     * 向量維度，0 為模型原生維度；支援的 API（OpenAI text-embedding-3）直接要求該維度，
+     * 其餘後端取前 N 維後重新正規化（Matryoshka 表示法的模型截斷後仍可使用）。改變後需全量重建 index
+     */
+    int dimensions = 0;
+    /** 額外的 Ollama 節點（同一模型），作為容錯備援 */
+    List<String> ollamaFallbackUrls = new ArrayList<>();
+    /** 單次呼叫逾時 */
+    long timeoutMs = 10_000;
+    /** 查詢用 embedding 超過此時間未回應時送出 hedged request；<= 0 時以該後端平均延遲的兩倍估算 */
+    long hedgeDelayMs = 0;
+    Limit limit = new Limit();
+    Breaker breaker = new Breaker();
+    Onnx onnx = new Onnx();
+
+    /**
+     * ONNX Runtime 與 tokenizer 只打包在以 {@code mvn -Ponnx package} 建置的 jar 內
+     */
+    @PostConstruct
+    void checkOnnxRuntime() {
+        if (onnx.enabled && !ClassUtils.isPresent("ai.onnxruntime.OrtEnvironment", getClass().getClassLoader())) {
+            throw new IllegalStateException("app.embedding.onnx.enabled is true but ONNX Runtime is not on the classpath;"
+                    + " build the jar with mvn -Ponnx package");
+        }
+    }
+
+    /**
+     * AIMD 自適應並發上限
+     */
+    @Getter
+    @Setter
+    public static class Limit {
+        int initial = 4;
+        int min = 1;
+        int max = 32;
+        /** 延遲超過此值視為過載訊號，並發上限減半 */
+        long latencyThresholdMs = 3_000;
+        /** 所有後端都滿載時最多等待多久 */
+        long acquireTimeoutMs = 5_000;
+    }
+
+    /**
+     * 熔斷
+     */
+    @Getter
+    @Setter
+    public static class Breaker {
+        /** 連續失敗幾次後熔斷 */
+        int failureThreshold = 5;
+        /** 熔斷後多久放行一次試探請求 */
+        long openMs = 30_000;
+    }
+
+    /**
+     * 本機 CPU 推論的 ONNX 模型，啟用後作為一個後端與 Ollama 一起路由
+     */
+    @Getter
+    @Setter
+    public static class Onnx {
+        boolean enabled = false;
+        /** ONNX 模型檔，例如 bge-m3 匯出的 model.onnx */
+        String modelPath;
+        /** HuggingFace tokenizer.json */
+        String tokenizerPath;
+        /** 模型名稱，需與 Ollama 提供的相同向量的模型一致；空白時使用 app.embedding.model */
+        String model;
+        /** 模型輸出名稱，空白時使用第一個輸出 */
+        String output;
+        /** 輸出為每個 token 的向量時的 pooling：cls（bge 系列）或 mean（e5、多數 sentence-transformers）；必須設定，與模型一致 */
+        String pooling;
+        /** 單筆最多 token 數，超過時截斷 */
+        int maxTokens = 8192;
+        /** 一次推論最多幾筆 */
+        int maxBatch = 16;
+        /** session 數量，<= 0 時依 CPU 核心數 / intraOpThreads；每個 session 各自載入一份模型權重 */
+        int sessions = 0;
+        /** 每個 session 的運算執行緒數 */
+        int intraOpThreads = 2;
+        /** 啟動時與 Ollama 比對向量的語料檔（一行一段文字），空白時使用內附的語料；比對未通過時不使用此後端 */
+        String verifyCorpus;
+        /** 比對時每筆 cosine 相似度的下限，任一筆低於此值時停用此後端 */
+        double verifyMinCosine = 0.999;
+    }
+}
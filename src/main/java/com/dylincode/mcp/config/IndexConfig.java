@@ -0,0 +1,67 @@
+package com.dylincode.mcp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lucene index 維運設定
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.index")
+public class IndexConfig {
+    Rebuild rebuild = new Rebuild();
+    Merge merge = new Merge();
+
+    /**
+     * 全量重建（blue/green）
+     */
+    @Getter
+    @Setter
+    public static class Rebuild {
+        /** 新 index 文件數低於目前 index 的此比例時拒絕切換，避免 Confluence 異常時清空 index */
+        double minDocRatio = 0.5;
+        /** 切換前是否 force merge 成單一 segment */
+        boolean forceMerge = true;
+    }
+
+    /**
+     * segment 合併。每次 addAll 都會 commit 出至少一個小 segment，各自有一份 HNSW 圖，
+     * kNN 查詢要逐一搜尋，segment 越多越慢
+     */
+    @Getter
+    @Setter
+    public static class Merge {
+        /** TieredMergePolicy：每一層允許的 segment 數，越小合併越積極 */
+        double segmentsPerTier = 10;
+        /** TieredMergePolicy：一次最多合併的 segment 數 */
+        int maxMergeAtOnce = 10;
+        /** TieredMergePolicy：自然合併產生的 segment 上限（MB），force merge 不受此限 */
+        double maxMergedSegmentMb = 5 * 1024;
+        /** TieredMergePolicy：小於此大小的 segment 視為同樣大小，讓大量小 segment 盡快合併 */
+        double floorSegmentMb = 16;
+        /** TieredMergePolicy：已刪除文件比例上限（%），超過時優先合併回收 */
+        double deletesPctAllowed = 20;
+        Maintenance maintenance = new Maintenance();
+    }
+
+    /**
+     * 背景 force merge：寫入停止一段時間後（例如攝取工作結束），在離峰時段把 segment 合併到目標數量以下
+     */
+    @Getter
+    @Setter
+    public static class Maintenance {
+        boolean enabled = true;
+        /** 合併後的目標 segment 數，超過時才執行 */
+        int maxSegments = 4;
+        /** 允許執行的時段（本地時間，可跨午夜，例如 22:00-06:00），空白表示不限 */
+        String quietHours = "01:00-06:00";
+        /** 距離最後一次寫入至少經過的時間，避免和攝取搶 IO */
+        long idleMs = 120_000;
+        /** 檢查間隔 */
+        long checkMs = 60_000;
+    }
+}
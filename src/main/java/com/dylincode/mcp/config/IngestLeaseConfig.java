@@ -0,0 +1,26 @@
+package com.dylincode.mcp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 跨節點的 space 同步租約：同一個 space 同時只有一個節點爬取與 embedding
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.ingest.lease")
+public class IngestLeaseConfig {
+    /** 租約後端，預設 file；其他後端實作 IngestLease 並以不同值啟用 */
+    String backend = "file";
+    /** file 後端：所有節點共用的目錄（共享 volume） */
+    String dir = "data/leases";
+    /** 節點識別，空白時為主機名稱:埠；重啟後維持相同值才能立即接回自己的租約 */
+    String nodeId;
+    /** 租約有效時間，持有者停止續約（例如當機）超過此時間後其他節點可接手；需大於節點間的時鐘誤差 */
+    long ttlMs = 60_000;
+    /** 續約與節點心跳的間隔，應遠小於 ttlMs */
+    long heartbeatMs = 15_000;
+}
@@ -0,0 +1,41 @@
+package com.dylincode.mcp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 壓測用的本機替身設定，僅在 {@code loadtest} profile 啟用
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.loadtest")
+public class LoadTestConfig {
+    Stub stub = new Stub();
+
+    /**
+     * 模擬 Ollama、OpenAI 與 Confluence 的 HTTP 服務
+     */
+    @Getter
+    @Setter
+    public static class Stub {
+        int port = 18090;
+        /** 產生的 embedding 維度 */
+        int dimensions = 1024;
+        /** embedding 回應延遲（毫秒），實際延遲為 latency + [0, jitter) */
+        long embedLatencyMs = 20;
+        long embedJitterMs = 10;
+        /** chat completions 回應延遲 */
+        long chatLatencyMs = 800;
+        long chatJitterMs = 400;
+        /** Confluence API 回應延遲 */
+        long confluenceLatencyMs = 50;
+        long confluenceJitterMs = 20;
+        /** 每個空間的頁面數 */
+        int pagesPerSpace = 200;
+        /** 每頁的段落數，每段約 60 個字 */
+        int paragraphsPerPage = 8;
+    }
+}
@@ -0,0 +1,45 @@
+package com.dylincode.mcp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * index 複寫設定：primary 負責攝取並提供已 commit 的 segment 檔，replica 定期拉取並只讀查詢
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.replication")
+public class ReplicationConfig {
+
+    public enum Role {
+        /** 單機，不提供也不拉取複寫 */
+        STANDALONE,
+        /** 攝取並提供 /replication/commit 與 /replication/file */
+        PRIMARY,
+        /** 從 primary 拉取 index，拒絕攝取 */
+        REPLICA
+    }
+
+    Role role = Role.STANDALONE;
+    /** replica 使用：primary 的 base URL，例如 http://primary:8080 */
+    String primaryUrl;
+    /** primary 與 replica 共用的密鑰，以 X-Replication-Token header 傳遞；空白時複寫端點一律拒絕 */
+    String token;
+    /** replica 拉取間隔 */
+    long pollMs = 5_000;
+    /** primary 為某個 commit 保留檔案多久，replica 必須在此時間內下載完 */
+    long leaseSeconds = 300;
+    /** 下載單一檔案的逾時 */
+    long timeoutMs = 300_000;
+
+    public boolean isReplica() {
+        return role == Role.REPLICA;
+    }
+
+    public boolean isPrimary() {
+        return role == Role.PRIMARY;
+    }
+}
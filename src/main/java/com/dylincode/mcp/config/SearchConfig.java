@@ -0,0 +1,125 @@
+package com.dylincode.mcp.config;
+
+import com.dylincode.mcp.index.FlatVectorMatrix;
+import com.dylincode.mcp.index.VectorIndexService.SearchFilter;
+import com.dylincode.mcp.index.VectorIndexService.SearchMode;
+import com.dylincode.mcp.index.VectorIndexService.SearchOptions;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 向量搜尋的預設參數，單次呼叫可覆寫
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.search")
+public class SearchConfig {
+    /** 未指定時的搜尋模式 */
+    SearchMode mode = SearchMode.AUTO;
+    /** 未指定時回傳的筆數 */
+    int defaultK = 5;
+    /** 單次搜尋最多回傳的筆數；MMR 的候選數為 k * candidateFactor，也受此限制 */
+    int maxK = 50;
+    Mmr mmr = new Mmr();
+    Exact exact = new Exact();
+    Binary binary = new Binary();
+    Concurrency concurrency = new Concurrency();
+    Suggest suggest = new Suggest();
+
+    /**
+     * 呼叫端要求的筆數，未指定時為 {@code defaultK}，截到 [1, maxK]
+     */
+    public int topK(Integer requested) {
+        int k = requested == null ? defaultK : requested;
+        return Math.max(1, Math.min(k, Math.max(1, maxK)));
+    }
+
+    /**
+     * 依預設值組出單次搜尋的 SearchOptions
+     * @param mmrLambda 呼叫端指定的 MMR lambda，null 或 NaN 時使用預設；超出 [0, 1] 時截到邊界
+     */
+    public SearchOptions options(SearchFilter filter, Float mmrLambda, int k) {
+        Float lambda = mmrLambda != null && !mmrLambda.isNaN() ? mmrLambda : (mmr.enabled ? Float.valueOf(mmr.lambda) : null);
+        // 大於 1 會讓冗餘變成加分、小於 0 會讓相關度變成扣分，排序反而比不做 MMR 更差
+        if (lambda != null) lambda = Math.max(0f, Math.min(1f, lambda));
+        return new SearchOptions(filter, lambda, k * Math.max(1, mmr.candidateFactor), null);
+    }
+
+    /**
+     * Maximal marginal relevance 重新排序
+     */
+    @Getter
+    @Setter
+    public static class Mmr {
+        /** 是否預設啟用；關閉時只有呼叫端指定 lambda（search tool 的 {@code mmr_lambda}、/ask 的 {@code mmrLambda}）才重新排序 */
+        boolean enabled = false;
+        /** relevance 權重，1 表示只看相似度（等同不做 MMR），越小結果越分散 */
+        float lambda = 0.7f;
+        /** 從 kNN 取 k * candidateFactor 個候選再重新排序 */
+        int candidateFactor = 4;
+    }
+
+    /**
+     * 精確（暴力）搜尋
+     */
+    @Getter
+    @Setter
+    public static class Exact {
+        /** AUTO 模式下，index 文件數不超過此值時改用精確搜尋 */
+        int maxDocs = 20_000;
+        /** 矩陣檔案的儲存格式 */
+        FlatVectorMatrix.Encoding encoding = FlatVectorMatrix.Encoding.FLOAT32;
+        /** 矩陣檔案目錄 */
+        String dir = "data/flat-vectors";
+        /** 掃描使用的 fork-join 平行度 */
+        int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 兩階段 binary 搜尋：1-bit 量化碼取候選，再以 float 向量重新計分。
+     * 量化碼檔案放在 {@code exact.dir}，掃描共用 {@code exact.parallelism} 的 fork-join pool
+     */
+    @Getter
+    @Setter
+    public static class Binary {
+        /** 第一階段取 k * oversample 個候選 */
+        int oversample = 10;
+        /** 第一階段至少取的候選數，k 很小時仍保有足夠的 recall */
+        int minCandidates = 100;
+    }
+
+    /**
+     * 單一查詢內跨 segment 平行搜尋。kNN 每個 segment 一個工作；BM25 等一般查詢依 slice 切分，
+     * 每個 slice 一個工作。佇列滿時由查詢執行緒自己執行，不會拒絕查詢
+     */
+    @Getter
+    @Setter
+    public static class Concurrency {
+        boolean enabled = true;
+        /** 專用 executor 的執行緒數 */
+        int threads = Runtime.getRuntime().availableProcessors();
+        /** 等待執行的工作上限 */
+        int queueSize = 1_000;
+        /** 一個 slice 最多的文件數（Lucene 預設 250000） */
+        int maxDocsPerSlice = 250_000;
+        /** 一個 slice 最多的 segment 數（Lucene 預設 5） */
+        int maxSegmentsPerSlice = 5;
+    }
+
+    /**
+     * 頁面標題自動完成（記憶體內 FST，不呼叫 embedding）
+     */
+    @Getter
+    @Setter
+    public static class Suggest {
+        /** 每個標題最多登記幾個 infix 起點（詞首、每個 CJK 字），越多越能從中間比對，FST 也越大 */
+        int maxInfixStarts = 16;
+        /** 單次最多回傳的建議數 */
+        int maxResults = 50;
+        /** 攝取後重建 FST 的檢查間隔；期間的多次寫入合併成一次重建 */
+        long refreshMs = 1_000;
+    }
+}
@@ -1,6 +1,22 @@
 package com.dylincode.mcp.config;
 
+import com.dylincode.mcp.auth.AuthorizationCache;
+import com.dylincode.mcp.auth.CachingJwtDecoder;
+import com.dylincode.mcp.auth.OidcMetadataCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -13,12 +29,24 @@ import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtDecoders;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.SupplierJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 /**
  * OAuth filter
  */
+@Slf4j
 @Configuration
 @EnableMethodSecurity
 public class SecurityConfig {
@@ -26,9 +54,11 @@ public class SecurityConfig {
     @Autowired
     private WhiteListConfig whiteListConfig;
 
-    // 從 yml 讀白名單
+    // 從 yml 讀白名單；同一個 token 的結果快取到 token 過期
     @Bean
-    AuthorizationManager<RequestAuthorizationContext> whitelistEmailAuthzManager() {
+    AuthorizationManager<RequestAuthorizationContext> whitelistEmailAuthzManager(AuthorizationCache cache, MeterRegistry registry) {
+        Timer hit = authorizeTimer(registry, "hit");
+        Timer miss = authorizeTimer(registry, "miss");
 
         return (authenticationSupplier, ctx) -> {
             // 檢查是否為本機請求
@@ -44,16 +74,31 @@ public class SecurityConfig {
                 return new AuthorizationDecision(false);
             }
 
+            long start = System.nanoTime();
             Jwt jwt = jwtAuth.getToken();
+            Boolean cached = cache.decision(jwt.getTokenValue());
+            if (cached != null) {
+                hit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return new AuthorizationDecision(cached);
+            }
             String email = jwt.getClaim("email");
 
             boolean allowed = email != null
                     && (whiteListConfig.getEmails().contains(email.toLowerCase()) || whiteListConfig.getDomains().contains(extractDomain(email)));
 
+            cache.putDecision(jwt.getTokenValue(), allowed);
+            miss.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             return new AuthorizationDecision(allowed);
         };
     }
 
+    private static Timer authorizeTimer(MeterRegistry registry, String cache) {
+        return Timer.builder("auth.authorize")
+                .description("whitelist authorization time per request")
+                .tag("cache", cache)
+                .register(registry);
+    }
+
     public static String extractDomain(String email) {
         if (email == null || !email.contains("@")) {
             return null;
@@ -61,6 +106,57 @@ public class SecurityConfig {
         return email.substring(email.indexOf("@") + 1);
     }
 
+    /**
+     * 第一次驗證 token 時才向 issuer 取得 OIDC metadata 與 JWKS，啟動時不需連線到 issuer。
+     * 驗證過的 token 由 {@link AuthorizationCache} 快取到過期為止。
+     */
+    @Bean
+    JwtDecoder jwtDecoder(@Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+                          @Value("${app.auth-cache.jwks-ttl-seconds:900}") long jwksTtlSeconds,
+                          @Value("${app.auth-cache.jwks-refresh-ahead-seconds:60}") long jwksRefreshAheadSeconds,
+                          OidcMetadataCache metadata, AuthorizationCache cache, MeterRegistry registry) {
+        JwtDecoder decoder = new SupplierJwtDecoder(() -> {
+            if (issuerUri.isBlank()) throw new IllegalStateException("spring.security.oauth2.resourceserver.jwt.issuer-uri is not set");
+            JsonNode doc = metadata.get().document();
+            if (!issuerUri.equals(doc.path("issuer").asText()) || !doc.hasNonNull("jwks_uri")) {
+                log.warn("OIDC metadata cache serves issuer {}, not {}; using default JWK set handling", doc.path("issuer").asText(), issuerUri);
+                return JwtDecoders.fromIssuerLocation(issuerUri);
+            }
+            return refreshingJwkDecoder(issuerUri, doc.get("jwks_uri").asText(),
+                    TimeUnit.SECONDS.toMillis(jwksTtlSeconds), TimeUnit.SECONDS.toMillis(jwksRefreshAheadSeconds));
+        });
+        return new CachingJwtDecoder(decoder, cache, registry);
+    }
+
+    /**
+     * JWK set 在到期前由背景排程重新取得，金鑰輪替時請求不需等待遠端 JWKS；
+     * issuer 暫時無法連線時繼續使用已快取的金鑰
+     */
+    private static JwtDecoder refreshingJwkDecoder(String issuerUri, String jwksUri, long ttlMillis, long refreshAheadMillis) {
+        JWKSource<SecurityContext> jwks;
+        try {
+            jwks = JWKSourceBuilder.<SecurityContext>create(URI.create(jwksUri).toURL())
+                    .cache(ttlMillis, JWKSourceBuilder.DEFAULT_CACHE_REFRESH_TIMEOUT)
+                    .refreshAheadCache(Math.min(refreshAheadMillis, ttlMillis / 2), true)
+                    .outageTolerant(ttlMillis * 10)
+                    .build();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("invalid jwks_uri " + jwksUri, e);
+        }
+        Set<JWSAlgorithm> algorithms = new HashSet<>(JWSAlgorithm.Family.RSA);
+        algorithms.addAll(JWSAlgorithm.Family.EC);
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(algorithms, jwks));
+        processor.setJWSTypeVerifier(new DefaultJOSEObjectTypeVerifier<>(JOSEObjectType.JWT, new JOSEObjectType("at+jwt"), null));
+        // claims 交給 Spring 的 validator 檢查
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        log.info("JWT decoder for {} using JWK set {} (ttl {} ms, refresh ahead)", issuerUri, jwksUri, ttlMillis);
+        return decoder;
+    }
+
     @Bean
     SecurityFilterChain api(HttpSecurity http,
                             AuthorizationManager<RequestAuthorizationContext> whitelistEmailAuthzManager) throws Exception {
@@ -73,6 +169,9 @@ public class SecurityConfig {
                         .requestMatchers("/.well-known/**").permitAll()
                         .requestMatchers("/api/public/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/health").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/actuator/health", "/actuator/health/**").permitAll()
+                        // 複寫端點以共用密鑰驗證，見 ReplicationController
+                        .requestMatchers(HttpMethod.GET, "/replication/commit", "/replication/file/**").permitAll()
                         .anyRequest().access(whitelistEmailAuthzManager)
                 )
                 .oauth2ResourceServer(oauth2 -> oauth2.jwt()); // 驗簽 Google ID Token
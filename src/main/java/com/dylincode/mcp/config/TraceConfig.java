@@ -0,0 +1,23 @@
+package com.dylincode.mcp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 請求各階段耗時（embedding、向量搜尋、讀取 stored fields、序列化等）與慢查詢日誌
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.trace")
+public class TraceConfig {
+    /** 關閉時不建立 trace，各階段只剩一次 ThreadLocal 讀取 */
+    boolean enabled = true;
+    /** 總耗時達到此值（毫秒）的請求寫入慢查詢日誌，0 表示全部記錄，負值關閉 */
+    long slowQueryMs = 1000;
+    /** 是否一律在 tools/call 結果的 {@code _meta} 與 REST 的 {@code Server-Timing} header 回傳耗時；
+     * 關閉時客戶端仍可在 tools/call 的 {@code params._meta.trace} 設為 true 要求回傳 */
+    boolean responseMeta = false;
+}
@@ -0,0 +1,30 @@
+package com.dylincode.mcp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * index 預熱設定：啟動、切換 index 以及開啟大型新 segment 時，先把向量與圖檔載入 page cache 並重播近期查詢
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.warmup")
+public class WarmupConfig {
+    boolean enabled = true;
+    /** 開檔時以 mmap preload 讀入記憶體的副檔名：vec 向量、vex HNSW 圖 */
+    List<String> preloadExtensions = new ArrayList<>(List.of("vec", "vex"));
+    /** 保留最近幾筆查詢供重播 */
+    int sampleSize = 100;
+    /** 查詢樣本持久化位置，重啟後仍可重播 */
+    String queriesFile = "data/warmup-queries.json";
+    /** 單次預熱最長時間 */
+    long maxMillis = 30_000;
+    /** refresh 後新 segment 的文件數達此值才預熱 */
+    int minNewDocs = 5_000;
+}
@@ -2,13 +2,19 @@ package com.dylincode.mcp.confluence;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.jsoup.Jsoup;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
@@ -16,12 +22,22 @@ import java.util.List;
 /**
  * Confluence資料源實作
  */
+@Slf4j
+@Lazy
 @Component
 public class ConfluenceClient {
     private final String baseUrl;
     private final String authHeader;
     private final OkHttpClient http = new OkHttpClient();
     private final ObjectMapper mapper = new ObjectMapper();
+    private static final String EXPAND = "body.storage,version,space,metadata.labels";
+    private static final int PAGE_LIMIT = 50;
+    /** ISO-8601，時區可為 {@code Z}、{@code +08:00} 或 {@code +0800} */
+    private static final DateTimeFormatter WHEN_FORMAT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            .optionalStart().appendOffset("+HH:MM", "Z").optionalEnd()
+            .optionalStart().appendOffset("+HHMM", "Z").optionalEnd()
+            .toFormatter();
 
     public ConfluenceClient(
             @Value("${app.confluence.baseUrl}") String baseUrl,
@@ -54,6 +70,25 @@ public class ConfluenceClient {
      * @throws IOException 當請求失敗時拋出
      */
     public List<Page> fetchAllPagesInSpace(String spaceKey) throws IOException {
+        List<Page> allPages = new ArrayList<>();
+        Integer nextStart = 0;   // 用 API 回傳的 next 連結來更新
+        while (nextStart != null) {
+            PageBatch batch = fetchPagesInSpace(spaceKey, nextStart, PAGE_LIMIT);
+            allPages.addAll(batch.pages());
+            nextStart = batch.nextStart();
+        }
+        return allPages;
+    }
+
+    /**
+     * 獲取指定空間中從 {@code start} 開始的一批頁面，供分批處理與斷點續傳
+     * @param spaceKey 空間的 key
+     * @param start 起始位置
+     * @param limit 每批數量
+     * @return 該批頁面，以及下一批的起始位置（沒有下一批時為 null）
+     * @throws IOException 當請求失敗時拋出
+     */
+    public PageBatch fetchPagesInSpace(String spaceKey, int start, int limit) throws IOException {
         if (baseUrl == null || baseUrl.isBlank()) {
             throw new IllegalStateException("CONFLUENCE_BASE_URL 未設定");
         }
@@ -61,77 +96,85 @@ public class ConfluenceClient {
             throw new IllegalArgumentException("spaceKey 不能為空");
         }
 
-        List<Page> allPages = new ArrayList<>();
-        Integer nextStart = 0;   // 用 API 回傳的 next 連結來更新
-        final int limit = 50;
+        String url = String.format(
+                "%s/rest/api/space/%s/content?type=page&start=%d&limit=%d&expand=%s",
+                baseUrl, spaceKey, start, limit, EXPAND
+        );
 
-        while (nextStart != null) {
-            String url = String.format(
-                    "%s/rest/api/space/%s/content?type=page&start=%d&limit=%d&expand=body.storage,version",
-                    baseUrl, spaceKey, nextStart, limit
-            );
-
-            Request.Builder b = new Request.Builder().url(url).get();
-            if (authHeader != null) {
-                b.header("Authorization", authHeader);
+        Request.Builder b = new Request.Builder().url(url).get();
+        if (authHeader != null) {
+            b.header("Authorization", authHeader);
+        }
+        b.header("Accept", "application/json");
+
+        try (Response resp = http.newCall(b.build()).execute()) {
+            if (!resp.isSuccessful()) {
+                throw new IOException("Confluence 回應非 2xx: " + resp.code() + " - " + resp.message());
             }
-            b.header("Accept", "application/json");
 
-            try (Response resp = http.newCall(b.build()).execute()) {
-                if (!resp.isSuccessful()) {
-                    throw new IOException("Confluence 回應非 2xx: " + resp.code() + " - " + resp.message());
-                }
+            JsonNode root = mapper.readTree(resp.body().byteStream());
+            JsonNode pageNode = root.path("page");          // << 分頁資訊在這層
+            JsonNode results = pageNode.path("results");
 
-                JsonNode root = mapper.readTree(resp.body().byteStream());
-                JsonNode pageNode = root.path("page");          // << 分頁資訊在這層
-                JsonNode results = pageNode.path("results");
-
-                if (results.isArray()) {
-                    for (JsonNode n : results) {
-                        String pageId = n.path("id").asText();
-                        String title = n.path("title").asText("");
-                        String storage = n.path("body").path("storage").path("value").asText("");
-                        String webui = n.path("_links").path("webui").asText("");
-                        String viewUrl = webui.startsWith("http") ? webui
-                                : (webui.startsWith("/") ? baseUrl + webui : baseUrl + "/" + webui);
-
-                        String text = htmlToText(storage);
-                        allPages.add(new Page(pageId, title, viewUrl, text));
-                    }
+            List<Page> pages = new ArrayList<>();
+            if (results.isArray()) {
+                for (JsonNode n : results) {
+                    pages.add(toPage(n, spaceKey));
                 }
+            }
 
-                // 依照 page._links.next 來判斷是否還有下一頁
-                JsonNode nextNode = pageNode.path("_links").path("next");
-                if (nextNode.isMissingNode() || nextNode.isNull()) {
-                    nextStart = null; // 沒有下一頁了
+            // 依照 page._links.next 來判斷是否還有下一頁
+            Integer nextStart;
+            JsonNode nextNode = pageNode.path("_links").path("next");
+            if (nextNode.isMissingNode() || nextNode.isNull()) {
+                nextStart = null; // 沒有下一頁了
+            } else {
+                // 解析 next 連結的 start 參數
+                String nextRel = nextNode.asText(); // 通常是相對路徑，例如 /rest/api/space/...&start=50&limit=50
+                String nextUrl = nextRel.startsWith("http") ? nextRel
+                        : (nextRel.startsWith("/") ? baseUrl + nextRel : baseUrl + "/" + nextRel);
+
+                HttpUrl parsed = HttpUrl.parse(nextUrl);
+                String startParam = parsed != null ? parsed.queryParameter("start") : null;
+                if (startParam != null) {
+                    nextStart = Integer.parseInt(startParam);
                 } else {
-                    // 解析 next 連結的 start 參數
-                    String nextRel = nextNode.asText(); // 通常是相對路徑，例如 /rest/api/space/...&start=50&limit=50
-                    String nextUrl = nextRel.startsWith("http") ? nextRel
-                            : (nextRel.startsWith("/") ? baseUrl + nextRel : baseUrl + "/" + nextRel);
-
-                    HttpUrl parsed = HttpUrl.parse(nextUrl);
-                    String startParam = parsed != null ? parsed.queryParameter("start") : null;
-                    if (startParam != null) {
-                        nextStart = Integer.parseInt(startParam);
-                    } else {
-                        // 保底：若沒有 start 參數，就用目前回傳的 start+limit 推估
-                        int curStart = pageNode.path("start").asInt(0);
-                        int curLimit = pageNode.path("limit").asInt(limit);
-                        nextStart = curStart + curLimit;
-                    }
+                    // 保底：若沒有 start 參數，就用目前回傳的 start+limit 推估
+                    int curStart = pageNode.path("start").asInt(0);
+                    int curLimit = pageNode.path("limit").asInt(limit);
+                    nextStart = curStart + curLimit;
                 }
             }
+            return new PageBatch(pages, nextStart);
         }
-
-        return allPages;
     }
 
-
+    /**
+     * 以 CQL 查詢空間中的頁面總數，用於估算進度與剩餘時間
+     * @return 頁面總數，查詢失敗時為 -1
+     */
+    public int countPagesInSpace(String spaceKey) {
+        if (baseUrl == null || baseUrl.isBlank()) return -1;
+        HttpUrl base = HttpUrl.parse(baseUrl + "/rest/api/search");
+        if (base == null) return -1;
+        HttpUrl url = base.newBuilder()
+                .addQueryParameter("cql", "space=\"" + spaceKey + "\" and type=page")
+                .addQueryParameter("limit", "1")
+                .build();
+        Request.Builder b = new Request.Builder().url(url).get();
+        if (authHeader != null) b.header("Authorization", authHeader);
+        b.header("Accept", "application/json");
+        try (Response resp = http.newCall(b.build()).execute()) {
+            if (!resp.isSuccessful()) return -1;
+            return mapper.readTree(resp.body().byteStream()).path("totalSize").asInt(-1);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
 
     public Page fetchPage(String pageId) throws IOException {
         if (baseUrl == null || baseUrl.isBlank()) throw new IllegalStateException("CONFLUENCE_BASE_URL 未設定");
-        String url = baseUrl + "/rest/api/content/" + pageId + "?expand=body.storage,version";
+        String url = baseUrl + "/rest/api/content/" + pageId + "?expand=" + EXPAND;
         Request.Builder b = new Request.Builder().url(url).get();
         if (authHeader != null) b.header("Authorization", authHeader);
         b.header("Accept", "application/json");
@@ -139,11 +182,52 @@ public class ConfluenceClient {
         try (Response resp = http.newCall(b.build()).execute()){
             if (!resp.isSuccessful()) throw new IOException("Confluence 回應非 2xx: " + resp.code());
             JsonNode root = mapper.readTree(resp.body().byteStream());
-            String title = root.path("title").asText("");
-            String storage = root.path("body").path("storage").path("value").asText("");
-            String viewUrl = baseUrl + root.path("_links").path("webui").asText();
-            String text = htmlToText(storage);
-            return new Page(pageId, title, viewUrl, text);
+            return toPage(root, null);
+        }
+    }
+
+    /**
+     * 將 content JSON 轉為 Page，並帶出 space / labels / 作者 / 最後修改時間等 metadata
+     * @param n content 節點
+     * @param defaultSpaceKey 回應中沒有 space 資訊時使用的 space key
+     */
+    private Page toPage(JsonNode n, String defaultSpaceKey){
+        String pageId = n.path("id").asText();
+        String title = n.path("title").asText("");
+        String storage = n.path("body").path("storage").path("value").asText("");
+        String webui = n.path("_links").path("webui").asText("");
+        String viewUrl = webui.startsWith("http") ? webui
+                : (webui.startsWith("/") ? baseUrl + webui : baseUrl + "/" + webui);
+        String spaceKey = n.path("space").path("key").asText(defaultSpaceKey);
+
+        List<String> labels = new ArrayList<>();
+        for (JsonNode l : n.path("metadata").path("labels").path("results")) {
+            String name = l.path("name").asText("");
+            if (!name.isBlank()) labels.add(name);
+        }
+
+        JsonNode by = n.path("version").path("by");
+        String author = by.path("publicName").asText(by.path("displayName").asText(null));
+        long lastModified = parseTime(pageId, n.path("version").path("when").asText(null));
+
+        String text = htmlToText(storage);
+        return new Page(pageId, title, viewUrl, text, spaceKey, labels, author, lastModified);
+    }
+
+    /**
+     * Confluence 的 {@code version.when}，例如 {@code 2024-03-12T08:15:30.000Z} 或 {@code 2024-03-12T16:15:30.000+0800}。
+     * 取不到或無法解析時回傳 0（未知），index 不寫入修改時間，修改時間的 filter 不會比對到這些頁面。
+     */
+    private static long parseTime(String pageId, String iso){
+        if (iso == null || iso.isBlank()) {
+            log.warn("page {} has no version.when; indexed without a modified time", pageId);
+            return 0L;
+        }
+        try {
+            return OffsetDateTime.parse(iso, WHEN_FORMAT).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            log.warn("page {} has unparseable version.when '{}'; indexed without a modified time", pageId, iso);
+            return 0L;
         }
     }
 
@@ -151,5 +235,11 @@ public class ConfluenceClient {
         return Jsoup.parse(html).text();
     }
 
-    public record Page(String id, String title, String url, String text){}
+    public record PageBatch(List<Page> pages, Integer nextStart){}
+
+    /**
+     * @param lastModified 最後修改時間（epoch millis），無法取得時為 0
+     */
+    public record Page(String id, String title, String url, String text,
+                       String spaceKey, List<String> labels, String author, long lastModified){}
 }
@@ -0,0 +1,68 @@
+package com.dylincode.mcp.embedding;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AIMD（additive increase / multiplicative decrease）並發上限。
+ *
+ * <p>請求成功且延遲低於門檻時上限加 {@code 1 / limit}（約每輪加一），
+ * 失敗或延遲過高時上限減半，藉此找出後端在目前負載下可承受的並發數。</p>
+ */
+class AdaptiveLimiter {
+    private final int min;
+    private final int max;
+    private final long latencyThresholdNanos;
+    private double limit;
+    private int inFlight;
+
+    AdaptiveLimiter(int initial, int min, int max, long latencyThresholdMs) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.limit = Math.max(this.min, Math.min(this.max, initial));
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) return false;
+        inFlight++;
+        return true;
+    }
+
+    synchronized boolean acquire(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        inFlight++;
+        return true;
+    }
+
+    synchronized void release(long latencyNanos, boolean success) {
+        inFlight--;
+        if (!success || latencyNanos > latencyThresholdNanos) {
+            limit = Math.max(min, limit / 2);
+        } else if (inFlight + 1 >= (int) limit) {
+            // 只有在上限真的被用滿時才增加，避免閒置時無限成長
+            limit = Math.min(max, limit + 1 / limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * 歸還額度但不調整上限：請求沒有真的送到後端（熔斷拒絕）或被取消，延遲與成敗都不代表後端的負載
+     */
+    synchronized void cancel() {
+        inFlight--;
+        notifyAll();
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
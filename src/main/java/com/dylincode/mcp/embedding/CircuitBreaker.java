@@ -0,0 +1,63 @@
+package com.dylincode.mcp.embedding;
+
+/**
+ * 連續失敗達門檻後熔斷一段時間，之後只放行一個試探請求（half-open），成功才恢復
+ */
+class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    synchronized boolean allowRequest() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> {
+                if (System.currentTimeMillis() - openedAt < openMillis) yield false;
+                state = State.HALF_OPEN;
+                yield true;
+            }
+            // 試探請求尚未回來前不再放行
+            case HALF_OPEN -> false;
+        };
+    }
+
+    /** 不改變狀態，只判斷目前是否可能放行，供路由排序使用 */
+    synchronized boolean isAvailable() {
+        return state == State.CLOSED
+                || (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis);
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /** 請求被呼叫端取消，結果未知；若是試探請求則允許立刻再試探一次 */
+    synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis() - openMillis;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
@@ -1,5 +1,9 @@
 package com.dylincode.mcp.embedding;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * 提供文本嵌入向量化功能的服務接口。
  *
@@ -25,4 +29,48 @@ package com.dylincode.mcp.embedding;
  */
 public interface EmbeddingService {
     float[] embed(String text) throws Exception;
+
+    /**
+     * 產生此向量的模型名稱；不同模型的向量不可放在同一個 index
+     */
+    String model();
+
+    /**
+     * 查詢用 embedding，位於使用者請求的關鍵路徑上，實作可用 hedged request 降低尾延遲
+     */
+    default float[] embedQuery(String text) throws Exception {
+        return embed(text);
+    }
+
+    /**
+     * 輸出向量的維度，0 表示模型原生維度
+     */
+    default int dimensions() {
+        return 0;
+    }
+
+    /**
+     * 取前 {@code dims} 維並重新正規化為單位向量；{@code dims <= 0} 或向量已是該長度時原樣回傳
+     */
+    static float[] truncate(float[] v, int dims) {
+        if (dims <= 0 || v.length == dims) return v;
+        if (v.length < dims) {
+            throw new IllegalStateException("embedding has " + v.length + " dims, fewer than the configured " + dims);
+        }
+        float[] out = Arrays.copyOf(v, dims);
+        double norm = 0;
+        for (float x : out) norm += x * x;
+        norm = Math.sqrt(norm);
+        if (norm > 0) for (int i = 0; i < out.length; i++) out[i] /= (float) norm;
+        return out;
+    }
+
+    /**
+     * 批次 embedding，結果順序與輸入相同；預設逐筆呼叫，能一次推論多筆的實作應覆寫
+     */
+    default List<float[]> embedAll(List<String> texts) throws Exception {
+        List<float[]> out = new ArrayList<>(texts.size());
+        for (String text : texts) out.add(embed(text));
+        return out;
+    }
 }
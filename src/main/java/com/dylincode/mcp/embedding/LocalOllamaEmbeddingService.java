@@ -4,22 +4,36 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.*;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
-@Primary
+import java.time.Duration;
+
 @Component
 public class LocalOllamaEmbeddingService implements EmbeddingService {
-    private final OkHttpClient http = new OkHttpClient();
+    private final OkHttpClient http;
     private final ObjectMapper mapper = new ObjectMapper();
     private final String baseUrl;
     private final String model;
 
     public LocalOllamaEmbeddingService(
             @Value("${app.ollama.baseUrl:http://localhost:11434}") String baseUrl,
-            @Value("${app.ollama.model:nomic-embed-text}") String model) {
+            @Value("${app.ollama.model:nomic-embed-text}") String model,
+            @Value("${app.embedding.timeout-ms:10000}") long timeoutMs) {
         this.baseUrl = baseUrl;
         this.model = model;
+        this.http = new OkHttpClient.Builder()
+                .connectTimeout(Duration.ofMillis(Math.min(timeoutMs, 2_000)))
+                .callTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    public String baseUrl() {
+        return baseUrl;
     }
 
     @Override
@@ -0,0 +1,346 @@
+package com.dylincode.mcp.embedding;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import com.dylincode.mcp.config.EmbeddingConfig;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在 JVM 內以 ONNX Runtime 於 CPU 上推論 embedding，省去呼叫 Ollama 的 JSON 編解碼與 HTTP 往返。
+ *
+ * <ul>
+ *   <li><strong>tokenizer</strong> - 載入模型附帶的 HuggingFace {@code tokenizer.json}，與訓練時的切詞一致</li>
+ *   <li><strong>批次推論</strong> - 呼叫者的請求進入佇列，worker 一次取出最多 {@code max-batch} 筆一起推論，
+ *       並行的查詢與攝取可共用同一次推論</li>
+ *   <li><strong>session pool</strong> - 每個 session 一個 worker，數量預設依 CPU 核心數與 {@code intra-op-threads} 計算</li>
+ *   <li><strong>相容輸出</strong> - 依 {@code pooling}（必須設定，需與模型訓練時相同）做 CLS 或 mean pooling 後正規化為單位向量，
+ *       與 Ollama 路徑一樣可用於 {@code DOT_PRODUCT}</li>
+ *   <li><strong>一致性檢查</strong> - 啟動時以 {@code verify-corpus}（未設定時為內附的 {@code onnx-verify-corpus.txt}）與 Ollama 逐筆比對
+ *       cosine 相似度；只有比對完成且全部達到下限才參與路由，無法比對（沒有 Ollama 或連線失敗）或低於下限時都不使用，
+ *       避免不同的向量混進同一個 index</li>
+ * </ul>
+ *
+ * <p>以 {@code app.embedding.onnx.enabled=true} 啟用，作為 {@link RoutingEmbeddingService} 的一個後端，
+ * 與提供相同模型的 Ollama 一起依延遲路由並互為備援。</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.embedding.onnx", name = "enabled", havingValue = "true")
+public class OnnxEmbeddingService implements EmbeddingService {
+    /** 未設定 verify-corpus 時使用的內附語料：中英文、短詞、長段落與程式碼 */
+    static final String DEFAULT_CORPUS = "onnx-verify-corpus.txt";
+
+    private final EmbeddingConfig.Onnx config;
+    private final OrtEnvironment env = OrtEnvironment.getEnvironment();
+    private final HuggingFaceTokenizer tokenizer;
+    private final List<OrtSession> sessions = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Set<String> inputNames;
+    private final String outputName;
+    private final boolean meanPooling;
+    private final String servedModel;
+    private final Timer inference;
+    private final DistributionSummary batchSize;
+    private volatile String model;
+
+    private record Request(List<String> texts, CompletableFuture<List<float[]>> result) {
+    }
+
+    public OnnxEmbeddingService(EmbeddingConfig embeddingConfig, MeterRegistry registry,
+                                ObjectProvider<LocalOllamaEmbeddingService> ollama,
+                                @Value("${app.ollama.model:nomic-embed-text}") String ollamaModel) throws Exception {
+        this.config = embeddingConfig.getOnnx();
+        this.servedModel = firstNonBlank(config.getModel(), embeddingConfig.getModel(), ollamaModel);
+        // 比對通過前以不同的名稱排除於路由之外
+        this.model = servedModel + " (onnx unverified)";
+        String pooling = config.getPooling() == null ? "" : config.getPooling().trim().toLowerCase(Locale.ROOT);
+        if (!pooling.equals("cls") && !pooling.equals("mean")) {
+            throw new IllegalStateException("app.embedding.onnx.pooling must be cls or mean for model " + servedModel
+                    + " (was '" + config.getPooling() + "'); use the pooling the model was trained with");
+        }
+        this.meanPooling = pooling.equals("mean");
+        // 未指定 modelMaxLength 時 DJL 會把長度上限壓到 512
+        this.tokenizer = HuggingFaceTokenizer.builder(Map.of("modelMaxLength", String.valueOf(config.getMaxTokens())))
+                .optTokenizerPath(Path.of(config.getTokenizerPath()))
+                .optMaxLength(config.getMaxTokens())
+                .optTruncation(true)
+                .optPadding(true)
+                .build();
+
+        int threads = Math.max(1, config.getIntraOpThreads());
+        int count = config.getSessions() > 0 ? config.getSessions()
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / threads);
+        for (int i = 0; i < count; i++) {
+            try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+                options.setIntraOpNumThreads(threads);
+                options.setInterOpNumThreads(1);
+                options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+                sessions.add(env.createSession(config.getModelPath(), options));
+            }
+        }
+        OrtSession first = sessions.get(0);
+        this.inputNames = first.getInputNames();
+        this.outputName = config.getOutput() == null || config.getOutput().isBlank()
+                ? first.getOutputNames().iterator().next() : config.getOutput();
+        if (!first.getOutputNames().contains(outputName)) {
+            throw new IllegalStateException("ONNX 模型沒有輸出 " + outputName + "，可用的輸出為 " + first.getOutputNames());
+        }
+
+        this.inference = Timer.builder("embedding.onnx.inference")
+                .description("ONNX embedding inference time per batch").register(registry);
+        this.batchSize = DistributionSummary.builder("embedding.onnx.batch.size")
+                .description("texts per ONNX inference").register(registry);
+        for (int i = 0; i < sessions.size(); i++) {
+            OrtSession session = sessions.get(i);
+            workers.add(Thread.ofPlatform().daemon().name("onnx-embedding-" + i).start(() -> work(session)));
+        }
+        log.info("ONNX embedding model {} loaded from {}: {} sessions x {} threads, inputs {}, output {} ({} pooling)",
+                servedModel, config.getModelPath(), sessions.size(), threads, inputNames, outputName, pooling);
+
+        verify(ollama.getIfAvailable());
+    }
+
+    private static String firstNonBlank(String... values) {
+        for (String v : values) if (v != null && !v.isBlank()) return v;
+        return null;
+    }
+
+    /**
+     * 一致性檢查未通過時回傳不同的名稱，讓路由排除此後端
+     */
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public float[] embed(String text) throws Exception {
+        return embedAll(List.of(text)).get(0);
+    }
+
+    @Override
+    public List<float[]> embedAll(List<String> texts) throws Exception {
+        if (texts.isEmpty()) return List.of();
+        CompletableFuture<List<float[]>> result = new CompletableFuture<>();
+        queue.add(new Request(texts, result));
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * 取出一個請求後再把佇列中已在等待的請求併進同一批，直到滿 {@code max-batch} 筆
+     */
+    private void work(OrtSession session) {
+        int maxBatch = Math.max(1, config.getMaxBatch());
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Request> batch = new ArrayList<>();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            int total = batch.get(0).texts().size();
+            Request next;
+            while (total < maxBatch && (next = queue.poll()) != null) {
+                batch.add(next);
+                total += next.texts().size();
+            }
+            List<String> texts = new ArrayList<>(total);
+            batch.forEach(r -> texts.addAll(r.texts()));
+            try {
+                List<float[]> vectors = new ArrayList<>(total);
+                for (int from = 0; from < texts.size(); from += maxBatch) {
+                    vectors.addAll(infer(session, texts.subList(from, Math.min(texts.size(), from + maxBatch))));
+                }
+                int offset = 0;
+                for (Request r : batch) {
+                    r.result().complete(vectors.subList(offset, offset + r.texts().size()));
+                    offset += r.texts().size();
+                }
+            } catch (Exception e) {
+                batch.forEach(r -> r.result().completeExceptionally(e));
+            }
+        }
+    }
+
+    private List<float[]> infer(OrtSession session, List<String> texts) throws OrtException {
+        long start = System.nanoTime();
+        Encoding[] encodings = tokenizer.batchEncode(texts);
+        int n = encodings.length;
+        long[][] ids = new long[n][];
+        long[][] mask = new long[n][];
+        long[][] types = new long[n][];
+        for (int i = 0; i < n; i++) {
+            ids[i] = encodings[i].getIds();
+            mask[i] = encodings[i].getAttentionMask();
+            types[i] = encodings[i].getTypeIds();
+        }
+
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(env, ids));
+            if (inputNames.contains("attention_mask")) inputs.put("attention_mask", OnnxTensor.createTensor(env, mask));
+            if (inputNames.contains("token_type_ids")) inputs.put("token_type_ids", OnnxTensor.createTensor(env, types));
+            try (OrtSession.Result result = session.run(inputs, Set.of(outputName))) {
+                OnnxTensor output = (OnnxTensor) result.get(outputName).orElseThrow();
+                List<float[]> vectors = pool(output, mask, meanPooling);
+                inference.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSize.record(n);
+                return vectors;
+            }
+        } finally {
+            inputs.values().forEach(OnnxValue::close);
+        }
+    }
+
+    /**
+     * 輸出為 [batch, dim] 時直接使用；為 [batch, seq, dim] 時依設定取 CLS（第一個 token）或依 attention mask 平均
+     */
+    static List<float[]> pool(OnnxTensor output, long[][] mask, boolean meanPooling) {
+        long[] shape = ((TensorInfo) output.getInfo()).getShape();
+        FloatBuffer data = output.getFloatBuffer();
+        int n = (int) shape[0];
+        int dim = (int) shape[shape.length - 1];
+        int seq = shape.length == 3 ? (int) shape[1] : 1;
+        List<float[]> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            float[] v = new float[dim];
+            int base = i * seq * dim;
+            if (shape.length == 3 && meanPooling) {
+                int tokens = 0;
+                for (int t = 0; t < seq; t++) {
+                    if (mask[i][t] == 0) continue;
+                    tokens++;
+                    for (int d = 0; d < dim; d++) v[d] += data.get(base + t * dim + d);
+                }
+                if (tokens > 0) for (int d = 0; d < dim; d++) v[d] /= tokens;
+            } else {
+                data.get(base, v);
+            }
+            out.add(normalize(v));
+        }
+        return out;
+    }
+
+    private static float[] normalize(float[] v) {
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        norm = Math.sqrt(norm);
+        if (norm > 0) for (int i = 0; i < v.length; i++) v[i] /= (float) norm;
+        return v;
+    }
+
+    /**
+     * 對語料逐筆與 Ollama 的向量比對，全部達到下限時才啟用此後端
+     */
+    private void verify(LocalOllamaEmbeddingService ollama) throws Exception {
+        if (ollama == null || !servedModel.equals(ollama.model())) {
+            disable("no Ollama backend serving " + servedModel + " to verify against");
+            return;
+        }
+        List<String> corpus = readCorpus().stream().filter(line -> !line.isBlank()).toList();
+        if (corpus.isEmpty()) {
+            disable("verify corpus " + corpusName() + " is empty");
+            return;
+        }
+        List<float[]> local = embedAll(corpus);
+        double minCosine = 1;
+        double maxAbsDiff = 0;
+        int worst = -1;
+        for (int i = 0; i < corpus.size(); i++) {
+            float[] reference;
+            try {
+                reference = ollama.embed(corpus.get(i));
+            } catch (Exception e) {
+                disable("Ollama at " + ollama.baseUrl() + " failed during verification: " + e);
+                return;
+            }
+            float[] v = local.get(i);
+            if (reference.length != v.length) {
+                disable("dimension mismatch: ONNX " + v.length + ", Ollama " + reference.length);
+                return;
+            }
+            double dot = 0;
+            for (int d = 0; d < v.length; d++) {
+                dot += v[d] * reference[d];
+                maxAbsDiff = Math.max(maxAbsDiff, Math.abs(v[d] - reference[d]));
+            }
+            if (dot < minCosine) {
+                minCosine = dot;
+                worst = i;
+            }
+        }
+        if (minCosine < config.getVerifyMinCosine()) {
+            disable(String.format("min cosine %.5f < %.5f on text %d of %s",
+                    minCosine, config.getVerifyMinCosine(), worst + 1, corpusName()));
+        } else {
+            model = servedModel;
+            log.info("ONNX embedding matches Ollama on {} texts (min cosine {}, max abs diff {}); backend enabled",
+                    corpus.size(), String.format("%.5f", minCosine), String.format("%.5f", maxAbsDiff));
+        }
+    }
+
+    private List<String> readCorpus() throws IOException {
+        if (config.getVerifyCorpus() != null && !config.getVerifyCorpus().isBlank()) {
+            return Files.readAllLines(Path.of(config.getVerifyCorpus()));
+        }
+        try (InputStream in = OnnxEmbeddingService.class.getResourceAsStream("/" + DEFAULT_CORPUS)) {
+            if (in == null) throw new IOException("bundled " + DEFAULT_CORPUS + " not found");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    private String corpusName() {
+        return config.getVerifyCorpus() != null && !config.getVerifyCorpus().isBlank() ? config.getVerifyCorpus() : DEFAULT_CORPUS;
+    }
+
+    private void disable(String reason) {
+        log.error("ONNX embedding for model {} not verified against Ollama ({}); backend disabled", servedModel, reason);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        workers.forEach(Thread::interrupt);
+        for (OrtSession s : sessions) {
+            try {
+                s.close();
+            } catch (OrtException e) {
+                log.warn("closing ONNX session failed: {}", e.toString());
+            }
+        }
+        tokenizer.close();
+    }
+}
@@ -7,22 +7,40 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
 @Component
 public class OpenAIEmbeddingService implements EmbeddingService {
-    private final OkHttpClient http = new OkHttpClient();
+    private final OkHttpClient http;
     private final ObjectMapper mapper = new ObjectMapper();
     private final String apiKey;
+    private final String baseUrl;
     private final String model;
+    /** 要求 API 回傳的維度，只有 text-embedding-3 系列支援 */
+    private final int dimensions;
 
     public OpenAIEmbeddingService(
             @Value("${app.openai.apiKey}") String apiKey,
-            @Value("${app.openai.embeddingsModel:text-embedding-3-small}") String model
+            @Value("${app.openai.baseUrl:https://api.openai.com}") String baseUrl,
+            @Value("${app.openai.embeddingsModel:text-embedding-3-small}") String model,
+            @Value("${app.embedding.timeout-ms:10000}") long timeoutMs,
+            @Value("${app.embedding.dimensions:0}") int dimensions
     ){
         this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
         this.model = model;
+        this.dimensions = model.startsWith("text-embedding-3") ? dimensions : 0;
+        this.http = new OkHttpClient.Builder()
+                .connectTimeout(Duration.ofMillis(Math.min(timeoutMs, 2_000)))
+                .callTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+    }
+
+    @Override
+    public String model() {
+        return model;
     }
 
     @Override
@@ -31,9 +49,11 @@ public class OpenAIEmbeddingService implements EmbeddingService {
             throw new IllegalStateException("OPENAI_API_KEY 未設定");
         }
         MediaType json = MediaType.parse("application/json");
-        String body = String.format("{\n  \"model\": \"%s\",\n  \"input\": %s\n}", model, mapper.writeValueAsString(text));
+        String body = dimensions > 0
+                ? String.format("{\n  \"model\": \"%s\",\n  \"input\": %s,\n  \"dimensions\": %d\n}", model, mapper.writeValueAsString(text), dimensions)
+                : String.format("{\n  \"model\": \"%s\",\n  \"input\": %s\n}", model, mapper.writeValueAsString(text));
         Request req = new Request.Builder()
-                .url("https://api.openai.com/v1/embeddings")
+                .url(baseUrl + "/v1/embeddings")
                 .header("Authorization", "Bearer " + apiKey)
                 .header("Content-Type", "application/json")
                 .post(RequestBody.create(body, json))
@@ -0,0 +1,304 @@
+package com.dylincode.mcp.embedding;
+
+import com.dylincode.mcp.config.EmbeddingConfig;
+import com.dylincode.mcp.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在多個 embedding 後端之間做容錯與負載控制，其他元件注入的 {@link EmbeddingService} 即為此類別。
+ *
+ * <ul>
+ *   <li><strong>模型固定</strong> - 只路由到提供 {@code app.embedding.model} 的後端，避免不同模型的向量混在同一個 index</li>
+ *   <li><strong>自適應並發</strong> - 每個後端一個 AIMD 上限，逾時或錯誤時減半，後端過載時不會被持續灌爆</li>
+ *   <li><strong>熔斷</strong> - 連續失敗的後端暫停使用，之後以單一請求試探是否恢復</li>
+ *   <li><strong>依延遲路由</strong> - 優先使用平均延遲最低且仍有並發額度的後端</li>
+ *   <li><strong>hedged request</strong> - 查詢 embedding 超過延遲門檻仍未回應時，再送一份給另一個後端，取先回來的結果</li>
+ *   <li><strong>請求合併</strong> - 相同文字的並行請求只送一次到後端，共用結果（{@link SingleFlight}）</li>
+ * </ul>
+ *
+ * <p>每個後端的呼叫結果記在 {@code embedding.calls}（tag {@code backend}, {@code outcome=success|failure|rejected|abandoned}）：
+ * {@code rejected} 為熔斷中被拒絕、沒有送出的請求，{@code abandoned} 為被 hedge 取消的請求，兩者都不影響 AIMD 上限。</p>
+ */
+@Slf4j
+@Primary
+@Component
+public class RoutingEmbeddingService implements EmbeddingService {
+    private final String model;
+    private final List<Backend> backends = new ArrayList<>();
+    private final EmbeddingConfig config;
+    private final MeterRegistry registry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SingleFlight<String, float[]> embedFlights;
+    private final SingleFlight<String, float[]> queryFlights;
+
+    /**
+     * @param candidates 所有 EmbeddingService bean（Spring 不會把自己注入進來）
+     */
+    public RoutingEmbeddingService(List<EmbeddingService> candidates, EmbeddingConfig config, MeterRegistry registry,
+                                   @Value("${app.ollama.model:nomic-embed-text}") String ollamaModel) {
+        this.config = config;
+        this.registry = registry;
+        this.embedFlights = new SingleFlight<>("embed", registry);
+        this.queryFlights = new SingleFlight<>("embed-query", registry);
+        this.model = config.getModel() == null || config.getModel().isBlank() ? ollamaModel : config.getModel();
+        for (EmbeddingService s : candidates) {
+            String name = s.getClass().getSimpleName();
+            if (s instanceof LocalOllamaEmbeddingService o) name += "(" + o.baseUrl() + ")";
+            if (!model.equals(s.model())) {
+                log.info("embedding backend {} serves model {}, not {}; excluded", name, s.model(), model);
+                continue;
+            }
+            backends.add(new Backend(name, s));
+        }
+        if (model.equals(ollamaModel)) {
+            for (String url : config.getOllamaFallbackUrls()) {
+                LocalOllamaEmbeddingService replica = new LocalOllamaEmbeddingService(url, model, config.getTimeoutMs());
+                backends.add(new Backend("LocalOllamaEmbeddingService(" + url + ")", replica));
+            }
+        }
+        if (backends.isEmpty()) {
+            throw new IllegalStateException("沒有任何 embedding 後端提供模型 " + model);
+        }
+        log.info("embedding model {} routed to {}", model, backends.stream().map(b -> b.name).toList());
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public int dimensions() {
+        return config.getDimensions();
+    }
+
+    /**
+     * 共用的結果每個呼叫者各拿一份複本，避免互相修改
+     */
+    @Override
+    public float[] embed(String text) throws Exception {
+        return embedFlights.execute(text, () -> route(text)).clone();
+    }
+
+    @Override
+    public float[] embedQuery(String text) throws Exception {
+        return queryFlights.execute(text, () -> hedged(text)).clone();
+    }
+
+    /**
+     * 整批送到同一個後端，不做請求合併；長度 1 時走單筆路徑
+     */
+    @Override
+    public List<float[]> embedAll(List<String> texts) throws Exception {
+        if (texts.size() == 1) return List.of(embed(texts.get(0)));
+        if (texts.isEmpty()) return List.of();
+        return route(b -> b.callAll(texts));
+    }
+
+    private float[] route(String text) throws Exception {
+        return route(b -> b.call(text));
+    }
+
+    private interface BackendCall<T> {
+        T apply(Backend b) throws Exception;
+    }
+
+    private <T> T route(BackendCall<T> call) throws Exception {
+        Exception last = null;
+        for (Backend b : ranked()) {
+            if (!b.limiter.tryAcquire()) continue;
+            try {
+                return call.apply(b);
+            } catch (Exception e) {
+                last = e;
+                log.warn("embedding backend {} failed, trying next: {}", b.name, e.toString());
+            }
+        }
+        // 所有後端都滿載：在最佳的後端上排隊等候額度
+        for (Backend b : ranked()) {
+            if (!b.breaker.isAvailable()) continue;
+            if (!b.limiter.acquire(config.getLimit().getAcquireTimeoutMs())) break;
+            try {
+                return call.apply(b);
+            } catch (Exception e) {
+                last = e;
+                log.warn("embedding backend {} failed: {}", b.name, e.toString());
+            }
+        }
+        if (last != null) throw last;
+        throw new IOException("沒有可用的 embedding 後端（全部熔斷或滿載）");
+    }
+
+    /**
+     * 第一個請求超過 hedge 延遲仍未回應時，再送一份到下一個後端（只有一個後端時送到同一個），
+     * 取先成功的結果並取消另一個
+     */
+    private float[] hedged(String text) throws Exception {
+        List<Backend> ranked = ranked();
+        Backend primary = ranked.stream().filter(b -> b.limiter.tryAcquire()).findFirst().orElse(null);
+        if (primary == null) return route(text);
+
+        CompletableFuture<float[]> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<Future<?>> calls = new ArrayList<>(2);
+        calls.add(submit(primary, text, result, pending));
+
+        long delay = hedgeDelayMillis(primary);
+        try {
+            try {
+                return result.get(delay, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                Backend hedge = ranked.stream().filter(b -> b != primary).filter(b -> b.limiter.tryAcquire()).findFirst()
+                        .orElseGet(() -> primary.limiter.tryAcquire() ? primary : null);
+                if (hedge != null) {
+                    pending.incrementAndGet();
+                    calls.add(submit(hedge, text, result, pending));
+                    log.debug("hedged embedding query {} -> {} after {}ms", primary.name, hedge.name, delay);
+                }
+                return result.get();
+            }
+        } catch (ExecutionException e) {
+            // 送出的請求都失敗了，改走一般的依序容錯
+            log.warn("hedged embedding query failed, falling back: {}", String.valueOf(e.getCause()));
+            return route(text);
+        } finally {
+            calls.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private Future<?> submit(Backend b, String text, CompletableFuture<float[]> result, AtomicInteger pending) {
+        return executor.submit(() -> {
+            try {
+                result.complete(b.call(text));
+            } catch (Exception e) {
+                if (pending.decrementAndGet() == 0) result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private long hedgeDelayMillis(Backend b) {
+        if (config.getHedgeDelayMs() > 0) return config.getHedgeDelayMs();
+        double ewma = b.latencyEwmaMillis;
+        return ewma <= 0 ? 500 : Math.max(50, Math.round(ewma * 2));
+    }
+
+    /** 可用的後端依平均延遲由低到高 */
+    private List<Backend> ranked() {
+        return backends.stream()
+                .filter(b -> b.breaker.isAvailable())
+                .sorted(Comparator.comparingDouble(b -> b.latencyEwmaMillis))
+                .toList();
+    }
+
+    /** 各後端目前狀態，供監控使用 */
+    public List<Map<String, Object>> status() {
+        return backends.stream().map(b -> Map.<String, Object>of(
+                "backend", b.name,
+                "state", b.breaker.state().name(),
+                "limit", b.limiter.limit(),
+                "inFlight", b.limiter.inFlight(),
+                "latencyEwmaMs", Math.round(b.latencyEwmaMillis))).toList();
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private final class Backend {
+        final String name;
+        final EmbeddingService delegate;
+        final AdaptiveLimiter limiter;
+        final CircuitBreaker breaker;
+        final Counter succeeded;
+        final Counter failed;
+        final Counter rejected;
+        final Counter abandoned;
+        volatile double latencyEwmaMillis;
+
+        Backend(String name, EmbeddingService delegate) {
+            this.name = name;
+            this.delegate = delegate;
+            EmbeddingConfig.Limit l = config.getLimit();
+            this.limiter = new AdaptiveLimiter(l.getInitial(), l.getMin(), l.getMax(), l.getLatencyThresholdMs());
+            this.breaker = new CircuitBreaker(config.getBreaker().getFailureThreshold(), config.getBreaker().getOpenMs());
+            this.succeeded = outcome("success");
+            this.failed = outcome("failure");
+            this.rejected = outcome("rejected");
+            this.abandoned = outcome("abandoned");
+        }
+
+        private Counter outcome(String outcome) {
+            return Counter.builder("embedding.calls").tag("backend", name).tag("outcome", outcome).register(registry);
+        }
+
+        /**
+         * 呼叫前必須已取得 limiter 額度，結束後一定釋放
+         */
+        float[] call(String text) throws Exception {
+            return invoke(() -> EmbeddingService.truncate(delegate.embed(text), config.getDimensions()), 1);
+        }
+
+        /**
+         * 批次呼叫以每筆的平均延遲計入 limiter 與延遲統計，避免批次被誤判為過載
+         */
+        List<float[]> callAll(List<String> texts) throws Exception {
+            return invoke(() -> delegate.embedAll(texts).stream()
+                    .map(v -> EmbeddingService.truncate(v, config.getDimensions())).toList(), texts.size());
+        }
+
+        private <T> T invoke(Callable<T> work, int items) throws Exception {
+            if (!breaker.allowRequest()) {
+                limiter.cancel();
+                rejected.increment();
+                throw new IOException("embedding backend " + name + " circuit open");
+            }
+            long start = System.nanoTime();
+            try {
+                T v = work.call();
+                record((System.nanoTime() - start) / items, true);
+                return v;
+            } catch (InterruptedException | InterruptedIOException e) {
+                // 被 hedge 取消的請求不算後端失敗
+                abandon();
+                throw e;
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    abandon();
+                } else {
+                    record((System.nanoTime() - start) / items, false);
+                }
+                throw e;
+            }
+        }
+
+        private void abandon() {
+            limiter.cancel();
+            breaker.onAbandoned();
+            abandoned.increment();
+        }
+
+        private void record(long elapsedNanos, boolean ok) {
+            limiter.release(elapsedNanos, ok);
+            if (ok) breaker.onSuccess(); else breaker.onFailure();
+            (ok ? succeeded : failed).increment();
+            double ms = elapsedNanos / 1_000_000.0;
+            latencyEwmaMillis = latencyEwmaMillis <= 0 ? ms : latencyEwmaMillis * 0.8 + ms * 0.2;
+        }
+    }
+}
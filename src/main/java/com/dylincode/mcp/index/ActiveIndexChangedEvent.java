@@ -0,0 +1,11 @@
+package com.dylincode.mcp.index;
+
+/**
+ * 使用中的 index 內容不是經由 {@link VectorIndexService#addAll} 改變時發布：
+ * 全量重建後切換、rollback、replica 安裝 primary 的 commit。
+ * 依 index 內容建立的衍生資料需要整份重新載入。
+ *
+ * @param indexId 目前使用中的 index 目錄名稱
+ */
+public record ActiveIndexChangedEvent(String indexId) {
+}
@@ -0,0 +1,285 @@
+package com.dylincode.mcp.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FloatVectorValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.Bits;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 某個 reader 版本所有向量的 1-bit 量化碼，存成 memory-mapped 檔案，供兩階段搜尋的第一階段取候選。
+ *
+ * <p>每一維只保留「是否大於該維平均值」一個 bit，1024 維只佔 128 bytes，是 float32 的 1/32。
+ * 先減去平均值再取正負號，避免各維偏移讓大多數 bit 都相同。查詢以同樣方式編碼後，
+ * 用 {@link Long#bitCount} 計算 Hamming 距離，以 fork-join 依列切分到各核心掃描，
+ * 取距離最小的候選交由呼叫端以原始 float 向量重新計分。</p>
+ *
+ * <p>doc id 只對建立快照的同一個 commit 有效，使用前以 {@link #version()} 比對 reader 版本。</p>
+ *
+ * @see FlatVectorMatrix 不量化的精確搜尋
+ */
+public final class BinaryCodeMatrix implements Closeable {
+
+    private static final int LEAF_ROWS = 16_384;
+
+    private final long version;
+    private final int dims;
+    private final int words;
+    private final float[] center;
+    private final int[] rowDoc;
+    private final int rowsPerSlab;
+    private final LongBuffer[] slabs;
+    private final Path file;
+
+    private BinaryCodeMatrix(long version, int dims, float[] center, int[] rowDoc, LongBuffer[] slabs,
+                             int rowsPerSlab, Path file) {
+        this.version = version;
+        this.dims = dims;
+        this.words = words(dims);
+        this.center = center;
+        this.rowDoc = rowDoc;
+        this.slabs = slabs;
+        this.rowsPerSlab = rowsPerSlab;
+        this.file = file;
+    }
+
+    private static int words(int dims) {
+        return (dims + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * 將 reader 中所有 live doc 的向量量化後寫入 {@code file} 並 mmap 回來。
+     * 需要讀兩次向量：第一次計算各維平均值，第二次編碼。
+     */
+    public static BinaryCodeMatrix build(DirectoryReader reader, String field, Path file) throws IOException {
+        int dims = 0;
+        double[] sum = null;
+        long count = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            FloatVectorValues values = leaf.reader().getFloatVectorValues(field);
+            if (values == null) continue;
+            Bits live = leaf.reader().getLiveDocs();
+            if (sum == null) {
+                dims = values.dimension();
+                sum = new double[dims];
+            }
+            for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                if (live != null && !live.get(doc)) continue;
+                float[] v = values.vectorValue();
+                for (int i = 0; i < dims; i++) sum[i] += v[i];
+                count++;
+            }
+        }
+        float[] center = new float[dims];
+        for (int i = 0; i < dims && count > 0; i++) center[i] = (float) (sum[i] / count);
+
+        int words = words(dims);
+        List<Integer> docs = new ArrayList<>();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(Math.max(1, words) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long[] code = new long[words];
+            for (LeafReaderContext leaf : reader.leaves()) {
+                FloatVectorValues values = leaf.reader().getFloatVectorValues(field);
+                if (values == null) continue;
+                Bits live = leaf.reader().getLiveDocs();
+                for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                    if (live != null && !live.get(doc)) continue;
+                    encode(values.vectorValue(), center, code);
+                    buf.clear();
+                    for (long w : code) buf.putLong(w);
+                    buf.flip();
+                    while (buf.hasRemaining()) ch.write(buf);
+                    docs.add(leaf.docBase + doc);
+                }
+            }
+        }
+
+        int rows = docs.size();
+        int bytes = Math.max(1, words * Long.BYTES);
+        int rowsPerSlab = Math.max(1, Integer.MAX_VALUE / bytes);
+        LongBuffer[] slabs = new LongBuffer[(rows + rowsPerSlab - 1) / rowsPerSlab];
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int s = 0; s < slabs.length; s++) {
+                long from = (long) s * rowsPerSlab * bytes;
+                long len = (long) Math.min(rowsPerSlab, rows - s * rowsPerSlab) * bytes;
+                slabs[s] = ch.map(FileChannel.MapMode.READ_ONLY, from, len).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+        }
+        int[] rowDoc = docs.stream().mapToInt(Integer::intValue).toArray();
+        return new BinaryCodeMatrix(reader.getVersion(), dims, center, rowDoc, slabs, rowsPerSlab, file);
+    }
+
+    private static void encode(float[] v, float[] center, long[] code) {
+        Arrays.fill(code, 0L);
+        for (int i = 0; i < v.length; i++) {
+            if (v[i] > center[i]) code[i >>> 6] |= 1L << (i & 63);
+        }
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int dims() {
+        return dims;
+    }
+
+    public int size() {
+        return rowDoc.length;
+    }
+
+    public long sizeInBytes() {
+        return (long) rowDoc.length * words * Long.BYTES;
+    }
+
+    /**
+     * Hamming 距離最小的 {@code n} 個候選
+     * @param accept 允許的 global doc id，null 表示全部
+     * @return 依距離由近到遠排序；score 為相同 bit 的比例，只用於排序，不可與 float 分數比較
+     */
+    public ScoreDoc[] candidates(float[] query, int n, Bits accept, ForkJoinPool pool) {
+        if (rowDoc.length == 0 || n <= 0) return new ScoreDoc[0];
+        long[] code = new long[words];
+        encode(query, center, code);
+        long[] top = pool.invoke(new ScanTask(code, n, accept, 0, rowDoc.length)).sorted();
+        ScoreDoc[] out = new ScoreDoc[top.length];
+        for (int i = 0; i < top.length; i++) {
+            int distance = (int) (top[i] >>> 32);
+            out[i] = new ScoreDoc(rowDoc[(int) top[i]], 1f - distance / (float) Math.max(1, dims));
+        }
+        return out;
+    }
+
+    /**
+     * 保留距離最小的 n 個 entry 的 max-heap；entry 為 {@code distance << 32 | row}，
+     * 同距離時 row 較小者優先，結果與切分方式無關
+     */
+    private static final class Nearest {
+        private final long[] heap;
+        private int size;
+
+        Nearest(int n) {
+            heap = new long[n];
+        }
+
+        void offer(long entry) {
+            if (size < heap.length) {
+                heap[size] = entry;
+                siftUp(size++);
+            } else if (entry < heap[0]) {
+                heap[0] = entry;
+                siftDown(0);
+            }
+        }
+
+        /** 目前第 n 名的距離，未滿時為 Integer.MAX_VALUE */
+        int bound() {
+            return size < heap.length ? Integer.MAX_VALUE : (int) (heap[0] >>> 32);
+        }
+
+        void addAll(Nearest other) {
+            for (int i = 0; i < other.size; i++) offer(other.heap[i]);
+        }
+
+        long[] sorted() {
+            long[] out = Arrays.copyOf(heap, size);
+            Arrays.sort(out);
+            return out;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] >= heap[i]) return;
+                swap(parent, i);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) return;
+                int largest = left + 1 < size && heap[left + 1] > heap[left] ? left + 1 : left;
+                if (heap[i] >= heap[largest]) return;
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+
+    private final class ScanTask extends RecursiveTask<Nearest> {
+        private final long[] query;
+        private final int n;
+        private final Bits accept;
+        private final int from;
+        private final int to;
+
+        ScanTask(long[] query, int n, Bits accept, int from, int to) {
+            this.query = query;
+            this.n = n;
+            this.accept = accept;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Nearest compute() {
+            if (to - from > LEAF_ROWS) {
+                int mid = (from + to) >>> 1;
+                ScanTask left = new ScanTask(query, n, accept, from, mid);
+                left.fork();
+                Nearest right = new ScanTask(query, n, accept, mid, to).compute();
+                Nearest merged = left.join();
+                merged.addAll(right);
+                return merged;
+            }
+            Nearest nearest = new Nearest(n);
+            for (int r = from; r < to; r++) {
+                if (accept != null && !accept.get(rowDoc[r])) continue;
+                LongBuffer slab = slabs[r / rowsPerSlab];
+                int base = (r % rowsPerSlab) * words;
+                int distance = 0;
+                for (int w = 0; w < words; w++) distance += Long.bitCount(query[w] ^ slab.get(base + w));
+                if (distance <= nearest.bound()) nearest.offer((long) distance << 32 | r);
+            }
+            return nearest;
+        }
+    }
+
+    /**
+     * 刪除底層檔案；已 map 的區段在 GC 前仍可讀，進行中的搜尋不受影響
+     */
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Windows 上仍被 map 的檔案無法刪除，下次重建時覆寫
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.dylincode.mcp.index;
+
+import java.util.List;
+
+/**
+ * 片段寫入（新增或覆寫）使用中的 index 後發布
+ *
+ * @param chunkIds 寫入的片段 id
+ * @param pages    這些片段所屬頁面的標題與 URL，每頁一筆
+ */
+public record ChunksIndexedEvent(List<String> chunkIds, List<VectorIndexService.PageTitle> pages) {
+}
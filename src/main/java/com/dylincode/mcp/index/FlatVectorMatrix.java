@@ -0,0 +1,234 @@
+package com.dylincode.mcp.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FloatVectorValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.VectorUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 某個 reader 版本所有向量的連續矩陣快照，存成 memory-mapped 檔案，供精確（暴力）kNN 搜尋。
+ *
+ * <p>每一列是一個 live doc 的已正規化向量（float32 或 int8），以 fork-join 依列切分到各核心，
+ * 內積使用 {@link VectorUtil}（啟用 {@code jdk.incubator.vector} 時為 SIMD）。
+ * 分數與 Lucene {@code DOT_PRODUCT} 相同：{@code (1 + dot) / 2}，可直接與 HNSW 結果比較。</p>
+ *
+ * <p>doc id 只對建立快照的同一個 commit 有效，使用前以 {@link #version()} 比對 reader 版本。</p>
+ */
+public final class FlatVectorMatrix implements Closeable {
+
+    public enum Encoding { FLOAT32, INT8 }
+
+    private static final int INT8_SCALE = 127;
+    private static final int LEAF_ROWS = 4096;
+
+    private final long version;
+    private final Encoding encoding;
+    private final int dims;
+    private final int[] rowDoc;
+    private final int rowBytes;
+    private final int rowsPerSlab;
+    private final ByteBuffer[] slabs;
+    private final FloatBuffer[] floatSlabs;
+    private final Path file;
+
+    private FlatVectorMatrix(long version, Encoding encoding, int dims, int[] rowDoc, ByteBuffer[] slabs,
+                             int rowsPerSlab, Path file) {
+        this.version = version;
+        this.encoding = encoding;
+        this.dims = dims;
+        this.rowDoc = rowDoc;
+        this.rowBytes = rowBytes(encoding, dims);
+        this.slabs = slabs;
+        this.floatSlabs = Arrays.stream(slabs).map(ByteBuffer::asFloatBuffer).toArray(FloatBuffer[]::new);
+        this.rowsPerSlab = rowsPerSlab;
+        this.file = file;
+    }
+
+    private static int rowBytes(Encoding encoding, int dims) {
+        return encoding == Encoding.FLOAT32 ? dims * Float.BYTES : dims;
+    }
+
+    /**
+     * 將 reader 中所有 live doc 的向量寫入 {@code file} 並 mmap 回來
+     */
+    public static FlatVectorMatrix build(DirectoryReader reader, String field, Path file, Encoding encoding) throws IOException {
+        int dims = 0;
+        List<Integer> docs = new ArrayList<>();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buf = null;
+            for (LeafReaderContext leaf : reader.leaves()) {
+                FloatVectorValues values = leaf.reader().getFloatVectorValues(field);
+                if (values == null) continue;
+                Bits live = leaf.reader().getLiveDocs();
+                if (buf == null) {
+                    dims = values.dimension();
+                    buf = ByteBuffer.allocate(rowBytes(encoding, dims)).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                    if (live != null && !live.get(doc)) continue;
+                    float[] v = values.vectorValue();
+                    buf.clear();
+                    if (encoding == Encoding.FLOAT32) {
+                        for (float f : v) buf.putFloat(f);
+                    } else {
+                        for (float f : v) buf.put(quantize(f));
+                    }
+                    buf.flip();
+                    while (buf.hasRemaining()) ch.write(buf);
+                    docs.add(leaf.docBase + doc);
+                }
+            }
+        }
+
+        int rows = docs.size();
+        int bytes = Math.max(1, rowBytes(encoding, Math.max(dims, 1)));
+        int rowsPerSlab = Math.max(1, Integer.MAX_VALUE / bytes);
+        ByteBuffer[] slabs = new ByteBuffer[(rows + rowsPerSlab - 1) / rowsPerSlab];
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int s = 0; s < slabs.length; s++) {
+                long from = (long) s * rowsPerSlab * bytes;
+                long len = (long) Math.min(rowsPerSlab, rows - s * rowsPerSlab) * bytes;
+                slabs[s] = ch.map(FileChannel.MapMode.READ_ONLY, from, len).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        int[] rowDoc = docs.stream().mapToInt(Integer::intValue).toArray();
+        return new FlatVectorMatrix(reader.getVersion(), encoding, dims, rowDoc, slabs, rowsPerSlab, file);
+    }
+
+    private static byte quantize(float f) {
+        return (byte) Math.max(-INT8_SCALE, Math.min(INT8_SCALE, Math.round(f * INT8_SCALE)));
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    public int size() {
+        return rowDoc.length;
+    }
+
+    public long sizeInBytes() {
+        return (long) rowDoc.length * rowBytes;
+    }
+
+    /**
+     * 精確 top-k
+     * @param accept 允許的 global doc id，null 表示全部
+     * @return 依分數由高到低排序
+     */
+    public ScoreDoc[] search(float[] query, int k, Bits accept, ForkJoinPool pool) {
+        if (rowDoc.length == 0 || k <= 0) return new ScoreDoc[0];
+        PriorityQueue<ScoreDoc> top = pool.invoke(new ScanTask(query, quantizedQuery(query), k, accept, 0, rowDoc.length));
+        ScoreDoc[] out = top.toArray(new ScoreDoc[0]);
+        Arrays.sort(out, BEST_FIRST);
+        return out;
+    }
+
+    private byte[] quantizedQuery(float[] query) {
+        if (encoding != Encoding.INT8) return null;
+        byte[] q = new byte[query.length];
+        for (int i = 0; i < q.length; i++) q[i] = quantize(query[i]);
+        return q;
+    }
+
+    private static final Comparator<ScoreDoc> WORST_FIRST =
+            Comparator.<ScoreDoc>comparingDouble(sd -> sd.score).thenComparing(sd -> -sd.doc);
+    private static final Comparator<ScoreDoc> BEST_FIRST = WORST_FIRST.reversed();
+
+    private final class ScanTask extends RecursiveTask<PriorityQueue<ScoreDoc>> {
+        private final float[] query;
+        private final byte[] query8;
+        private final int k;
+        private final Bits accept;
+        private final int from;
+        private final int to;
+
+        ScanTask(float[] query, byte[] query8, int k, Bits accept, int from, int to) {
+            this.query = query;
+            this.query8 = query8;
+            this.k = k;
+            this.accept = accept;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected PriorityQueue<ScoreDoc> compute() {
+            if (to - from > LEAF_ROWS) {
+                int mid = (from + to) >>> 1;
+                ScanTask left = new ScanTask(query, query8, k, accept, from, mid);
+                left.fork();
+                PriorityQueue<ScoreDoc> right = new ScanTask(query, query8, k, accept, mid, to).compute();
+                PriorityQueue<ScoreDoc> merged = left.join();
+                for (ScoreDoc sd : right) offer(merged, sd);
+                return merged;
+            }
+            PriorityQueue<ScoreDoc> heap = new PriorityQueue<>(k + 1, WORST_FIRST);
+            float[] row = encoding == Encoding.FLOAT32 ? new float[dims] : null;
+            byte[] row8 = encoding == Encoding.INT8 ? new byte[dims] : null;
+            for (int r = from; r < to; r++) {
+                int doc = rowDoc[r];
+                if (accept != null && !accept.get(doc)) continue;
+                int slab = r / rowsPerSlab;
+                int offset = (r % rowsPerSlab) * rowBytes;
+                float dot;
+                if (row != null) {
+                    floatSlabs[slab].get(offset / Float.BYTES, row);
+                    dot = VectorUtil.dotProduct(query, row);
+                } else {
+                    slabs[slab].get(offset, row8);
+                    dot = VectorUtil.dotProduct(query8, row8) / (float) (INT8_SCALE * INT8_SCALE);
+                }
+                offer(heap, new ScoreDoc(doc, Math.max((1 + dot) / 2, 0f)));
+            }
+            return heap;
+        }
+
+        private void offer(PriorityQueue<ScoreDoc> heap, ScoreDoc sd) {
+            if (heap.size() < k) {
+                heap.add(sd);
+            } else if (WORST_FIRST.compare(sd, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(sd);
+            }
+        }
+    }
+
+    /**
+     * 刪除底層檔案；已 map 的區段在 GC 前仍可讀，進行中的搜尋不受影響
+     */
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Windows 上仍被 map 的檔案無法刪除，下次重建時覆寫
+        }
+    }
+}
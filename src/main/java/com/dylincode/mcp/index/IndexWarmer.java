@@ -0,0 +1,91 @@
+package com.dylincode.mcp.index;
+
+import com.dylincode.mcp.config.WarmupConfig;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 保存最近的查詢向量作為預熱樣本，並定期寫到檔案，重啟後可用真實查詢預熱 index
+ */
+@Slf4j
+@Component
+public class IndexWarmer {
+    private final WarmupConfig config;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Deque<Sample> samples = new ArrayDeque<>();
+    private boolean dirty;
+
+    public record Sample(float[] vector, int k) {
+    }
+
+    public IndexWarmer(WarmupConfig config) {
+        this.config = config;
+        load();
+    }
+
+    public void record(float[] vector, int k) {
+        if (!config.isEnabled() || config.getSampleSize() <= 0) return;
+        synchronized (samples) {
+            if (samples.size() >= config.getSampleSize()) samples.removeFirst();
+            samples.addLast(new Sample(vector.clone(), k));
+            dirty = true;
+        }
+    }
+
+    /** 由新到舊 */
+    public List<Sample> samples() {
+        synchronized (samples) {
+            List<Sample> out = new ArrayList<>(samples);
+            Collections.reverse(out);
+            return out;
+        }
+    }
+
+    private void load() {
+        Path file = Path.of(config.getQueriesFile());
+        if (!config.isEnabled() || !Files.exists(file)) return;
+        try {
+            List<Sample> loaded = mapper.readValue(file.toFile(), new TypeReference<List<Sample>>() {
+            });
+            int from = Math.max(0, loaded.size() - config.getSampleSize());
+            samples.addAll(loaded.subList(from, loaded.size()));
+            log.info("loaded {} warm-up queries from {}", samples.size(), file);
+        } catch (IOException e) {
+            log.warn("ignoring unreadable warm-up queries {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelay = 300_000, initialDelay = 300_000)
+    public void persist() {
+        List<Sample> snapshot;
+        synchronized (samples) {
+            if (!dirty) return;
+            snapshot = new ArrayList<>(samples);
+            dirty = false;
+        }
+        Path file = Path.of(config.getQueriesFile());
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            mapper.writeValue(tmp.toFile(), snapshot);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("failed to persist warm-up queries to {}", file, e);
+        }
+    }
+}
@@ -1,19 +1,53 @@
 package com.dylincode.mcp.index;
 
+import com.dylincode.mcp.config.IndexConfig;
+import com.dylincode.mcp.config.ReplicationConfig;
+import com.dylincode.mcp.config.SearchConfig;
+import com.dylincode.mcp.config.WarmupConfig;
+import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.metrics.RequestTrace;
 import com.dylincode.mcp.model.Chunk;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
 import org.apache.lucene.store.*;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.VectorUtil;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Lucene 實作向量儲存與查詢
  */
+@Slf4j
 @Component
 public class LuceneVectorIndexService implements VectorIndexService {
     private static final String F_ID = "id";
@@ -21,45 +55,1051 @@ public class LuceneVectorIndexService implements VectorIndexService {
     private static final String F_URL = "url";
     private static final String F_CONTENT = "content";
     private static final String F_VECTOR = "embedding";
+    private static final String F_SPACE = "space";
+    private static final String F_LABEL = "label";
+    private static final String F_AUTHOR = "author";
+    private static final String F_MODIFIED = "lastModified";
     private static final String F_SUMMARY = "summary"; // TODO 產生摘要
 
-    private final Directory directory;
+    private static final String ACTIVE_POINTER = ".current";
+    private static final String PREVIOUS_POINTER = ".previous";
+    private static final Map<SearchMode, String> STAGE_NAMES = new EnumMap<>(SearchMode.class);
 
-    public LuceneVectorIndexService(String indexDir) throws IOException {
-        this.directory = FSDirectory.open(Path.of(indexDir));
+    static {
+        for (SearchMode m : SearchMode.values()) STAGE_NAMES.put(m, m.name().toLowerCase(Locale.ROOT));
     }
 
-    private IndexWriter writer() throws IOException {
-        IndexWriterConfig cfg = new IndexWriterConfig();
-        cfg.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-        return new IndexWriter(directory, cfg);
+    // commit user data：記錄產生向量的模型與維度，同一個 index 不混用
+    static final String META_MODEL = "embedding.model";
+    static final String META_DIMS = "embedding.dims";
+
+    private final Path root;
+    private final SearchConfig searchConfig;
+    private final IndexConfig indexConfig;
+    private final ReplicationConfig replicationConfig;
+    private final WarmupConfig warmupConfig;
+    private final IndexWarmer warmer;
+    private final ApplicationEventPublisher events;
+    private final String embeddingModel;
+    private final int embeddingDims;
+    private final ForkJoinPool exactPool;
+    /** 查詢內跨 segment 平行搜尋用，停用時為 null */
+    private final ThreadPoolExecutor searchExecutor;
+    private final Object installLock = new Object();
+    /**
+     * 寫入 active / pending handle（addAll、forceMerge）時持有 read lock，可並行；切換 handle（swap、重建切換）時持有 write lock，
+     * 等進行中的寫入完成後才關閉舊 handle，切換後的寫入一定看到新的 active 與 pending。
+     * 需要同時持有 monitor 時一律先取 monitor
+     */
+    private final ReentrantReadWriteLock handleLock = new ReentrantReadWriteLock();
+    private volatile IndexHandle active;
+    private volatile BuildImpl pending;
+    /** 精確搜尋的向量矩陣與量化碼在此執行緒建立，不佔用查詢執行緒 */
+    private final ExecutorService snapshotExecutor =
+            Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("vector-snapshot").factory());
+    private final VectorSnapshotCache<IndexHandle, FlatVectorMatrix> matrices;
+    private final VectorSnapshotCache<IndexHandle, BinaryCodeMatrix> codes;
+
+    public LuceneVectorIndexService(String indexDir, SearchConfig searchConfig, IndexConfig indexConfig,
+                                    EmbeddingService embedding, ReplicationConfig replicationConfig,
+                                    WarmupConfig warmupConfig, IndexWarmer warmer,
+                                    ApplicationEventPublisher events) throws IOException {
+        this.root = Path.of(indexDir).toAbsolutePath();
+        this.searchConfig = searchConfig;
+        this.indexConfig = indexConfig;
+        this.replicationConfig = replicationConfig;
+        this.warmupConfig = warmupConfig;
+        this.warmer = warmer;
+        this.events = events;
+        this.embeddingModel = embedding.model();
+        this.embeddingDims = embedding.dimensions();
+        this.exactPool = new ForkJoinPool(Math.max(1, searchConfig.getExact().getParallelism()));
+        this.searchExecutor = searchConfig.getConcurrency().isEnabled() ? newSearchExecutor(searchConfig.getConcurrency()) : null;
+        this.matrices = new VectorSnapshotCache<>("flat vector matrix", snapshotExecutor, this::buildMatrix,
+                m -> m.encoding() == searchConfig.getExact().getEncoding());
+        this.codes = new VectorSnapshotCache<>("binary codes", snapshotExecutor, this::buildCodes, c -> true);
+        Path current = readPointer(ACTIVE_POINTER).orElse(root);
+        // 啟動時的預熱由 WarmupRunner 執行，不佔用 bean 建立的時間
+        this.active = openHandle(current, false);
+        log.info("active index {} (embedding model {}, dims {}, role {})", active.path, active.model, active.dims,
+                replicationConfig.getRole());
+        if (active.model != null && !active.model.equals(embeddingModel)) {
+            log.error("index {} was built with embedding model {} but app.embedding.model is {}; "
+                    + "searches and writes are refused until the index is rebuilt", active.path, active.model, embeddingModel);
+        }
+        if (active.dims > 0 && embeddingDims > 0 && active.dims != embeddingDims) {
+            log.error("index {} was built with {} dims but app.embedding.dimensions is {}; "
+                    + "searches and writes are refused until the index is rebuilt", active.path, active.dims, embeddingDims);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        exactPool.shutdown();
+        if (searchExecutor != null) searchExecutor.shutdown();
+        snapshotExecutor.shutdown();
+        matrices.close();
+        codes.close();
+        BuildImpl b = pending;
+        if (b != null) b.abort();
+        active.close();
+    }
+
+    /**
+     * 一個 index 目錄與其長駐的 writer / searcher manager；replica 上的 handle 為唯讀，沒有 writer
+     */
+    private static final class IndexHandle implements Closeable {
+        final Path path;
+        final Directory directory;
+        final IndexWriter writer;
+        final SnapshotDeletionPolicy snapshots;
+        final SearcherManager manager;
+        /** 合併統計，replica 上為 null */
+        final TrackingMergeScheduler merges;
+        /** 最後一次 forceMerge 完成的時間 */
+        volatile Long lastForceMerge;
+        /** 建立此 index 的 embedding 模型與維度，尚未寫入任何向量時為 null / 0 */
+        volatile String model;
+        volatile int dims;
+        /** 供 replica 下載中的 commit，依 generation */
+        private final Map<Long, Lease> leases = new HashMap<>();
+
+        private record Lease(IndexCommit commit, long expiresAt) {
+        }
+
+        private IndexHandle(Path path, Directory directory, IndexWriter writer, SnapshotDeletionPolicy snapshots,
+                            SearcherManager manager, TrackingMergeScheduler merges) throws IOException {
+            this.path = path;
+            this.directory = directory;
+            this.writer = writer;
+            this.snapshots = snapshots;
+            this.manager = manager;
+            this.merges = merges;
+            loadMeta();
+        }
+
+        void loadMeta() throws IOException {
+            Map<String, String> meta = commitData();
+            this.model = meta.get(META_MODEL);
+            this.dims = Integer.parseInt(meta.getOrDefault(META_DIMS, "0"));
+        }
+
+        Map<String, String> commitData() throws IOException {
+            if (writer == null) return new HashMap<>(SegmentInfos.readLatestCommit(directory).getUserData());
+            Map<String, String> meta = new HashMap<>();
+            Iterable<Map.Entry<String, String>> data = writer.getLiveCommitData();
+            if (data != null) data.forEach(e -> meta.put(e.getKey(), e.getValue()));
+            return meta;
+        }
+
+        /**
+         * 確認要寫入的向量與此 index 的模型與維度一致；第一次寫入時記錄到 commit user data
+         */
+        synchronized void claim(String embeddingModel, List<Chunk> chunks) throws IOException {
+            if (writer == null) throw new IllegalStateException("Index " + path + " is a read-only replica");
+            checkModel(embeddingModel);
+            int expected = dims;
+            for (Chunk c : chunks) {
+                if (expected == 0) expected = c.embedding().length;
+                if (c.embedding().length != expected) {
+                    throw new IllegalArgumentException("Chunk " + c.id() + " has " + c.embedding().length
+                            + " dims, index " + path + " expects " + expected);
+                }
+            }
+            if (model == null || dims == 0) {
+                if (expected == 0) return;
+                if (model == null && writer.getDocStats().numDocs > 0) {
+                    log.warn("index {} has no recorded embedding model; adopting {}", path, embeddingModel);
+                }
+                Map<String, String> meta = commitData();
+                meta.put(META_MODEL, embeddingModel);
+                meta.put(META_DIMS, Integer.toString(expected));
+                writer.setLiveCommitData(meta.entrySet());
+                model = embeddingModel;
+                dims = expected;
+            }
+        }
+
+        /**
+         * 沿用 {@code from} 的模型與維度，複製文件後即使沒有新的寫入也保留這兩項紀錄
+         */
+        synchronized void adoptMeta(IndexHandle from) throws IOException {
+            if (from.model == null || from.dims == 0) return;
+            Map<String, String> meta = commitData();
+            meta.put(META_MODEL, from.model);
+            meta.put(META_DIMS, Integer.toString(from.dims));
+            writer.setLiveCommitData(meta.entrySet());
+            model = from.model;
+            dims = from.dims;
+        }
+
+        void checkModel(String embeddingModel) {
+            String m = model;
+            if (m != null && !m.equals(embeddingModel)) {
+                throw new IllegalStateException("Index " + path + " was built with embedding model " + m
+                        + " but the configured model is " + embeddingModel + "; rebuild the index before using it");
+            }
+        }
+
+        void checkQuery(String embeddingModel, float[] query) {
+            checkModel(embeddingModel);
+            int d = dims;
+            if (d > 0 && query.length != d) {
+                throw new IllegalArgumentException("Query vector has " + query.length + " dims, index expects " + d);
+            }
+        }
+
+        /**
+         * snapshot 最新 commit 並保留到租約到期；同一個 generation 只持有一份 snapshot
+         */
+        synchronized CommitManifest lease(long ttlMillis) throws IOException {
+            if (snapshots == null) throw new IllegalStateException("Index " + path + " is a read-only replica");
+            releaseExpired();
+            IndexCommit commit = snapshots.snapshot();
+            if (leases.containsKey(commit.getGeneration())) snapshots.release(commit);
+            leases.put(commit.getGeneration(), new Lease(commit, System.currentTimeMillis() + ttlMillis));
+            List<CommitFile> files = new ArrayList<>();
+            for (String name : commit.getFileNames()) {
+                files.add(new CommitFile(name, directory.fileLength(name), checksum(directory, name)));
+            }
+            return new CommitManifest(path.getFileName().toString(), commit.getGeneration(), files);
+        }
+
+        synchronized boolean isLeased(String name) throws IOException {
+            for (Lease l : leases.values()) {
+                if (l.commit.getFileNames().contains(name)) return true;
+            }
+            return false;
+        }
+
+        private void releaseExpired() throws IOException {
+            long now = System.currentTimeMillis();
+            boolean released = false;
+            for (Iterator<Lease> it = leases.values().iterator(); it.hasNext(); ) {
+                Lease l = it.next();
+                if (l.expiresAt > now) continue;
+                snapshots.release(l.commit);
+                it.remove();
+                released = true;
+            }
+            if (released) writer.deleteUnusedFiles();
+        }
+
+        static IndexHandle open(Path path, Directory dir, SearcherFactory factory, MergePolicy mergePolicy) throws IOException {
+            IndexWriterConfig cfg = new IndexWriterConfig();
+            cfg.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            SnapshotDeletionPolicy snapshots = new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+            cfg.setIndexDeletionPolicy(snapshots);
+            cfg.setMergePolicy(mergePolicy);
+            TrackingMergeScheduler merges = new TrackingMergeScheduler();
+            cfg.setMergeScheduler(merges);
+            IndexWriter writer = new IndexWriter(dir, cfg);
+            // 確保一開始就有 commit 可供 searcher 與複寫使用
+            if (!DirectoryReader.indexExists(dir)) writer.commit();
+            return new IndexHandle(path, dir, writer, snapshots, new SearcherManager(writer, factory), merges);
+        }
+
+        /**
+         * replica 使用：不持有 writer，只讀取複寫過來的 commit；目錄是空的時先寫入一個空 commit
+         */
+        static IndexHandle openReadOnly(Path path, Directory dir, SearcherFactory factory) throws IOException {
+            if (!DirectoryReader.indexExists(dir)) {
+                new IndexWriter(dir, new IndexWriterConfig().setOpenMode(IndexWriterConfig.OpenMode.CREATE)).close();
+            }
+            return new IndexHandle(path, dir, null, null, new SearcherManager(dir, factory), null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOUtils.close(manager, writer, directory);
+        }
+    }
+
+    /**
+     * 背景合併執行緒，另外記錄合併次數、文件數與耗時
+     */
+    private static final class TrackingMergeScheduler extends ConcurrentMergeScheduler {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong mergedDocs = new AtomicLong();
+        final AtomicLong mergeMillis = new AtomicLong();
+
+        @Override
+        protected void doMerge(MergeSource mergeSource, MergePolicy.OneMerge merge) throws IOException {
+            long start = System.currentTimeMillis();
+            running.incrementAndGet();
+            try {
+                super.doMerge(mergeSource, merge);
+                completed.incrementAndGet();
+                mergedDocs.addAndGet(merge.totalNumDocs());
+                mergeMillis.addAndGet(System.currentTimeMillis() - start);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    private MergePolicy mergePolicy() {
+        IndexConfig.Merge cfg = indexConfig.getMerge();
+        TieredMergePolicy policy = new TieredMergePolicy();
+        policy.setSegmentsPerTier(cfg.getSegmentsPerTier());
+        policy.setMaxMergeAtOnce(cfg.getMaxMergeAtOnce());
+        policy.setMaxMergedSegmentMB(cfg.getMaxMergedSegmentMb());
+        policy.setFloorSegmentMB(cfg.getFloorSegmentMb());
+        policy.setDeletesPctAllowed(cfg.getDeletesPctAllowed());
+        return policy;
+    }
+
+    /**
+     * @param warmInitial 是否在第一個 searcher 建立時就預熱；切換用的新 index 在成為 active 前預熱完成
+     */
+    private IndexHandle openHandle(Path path, boolean warmInitial) throws IOException {
+        MMapDirectory dir = new MMapDirectory(path);
+        if (warmupConfig.isEnabled() && !warmupConfig.getPreloadExtensions().isEmpty()) {
+            Set<String> preload = Set.copyOf(warmupConfig.getPreloadExtensions());
+            // segments_N 等沒有副檔名的檔案不預載（Set.copyOf 不接受 contains(null)）
+            dir.setPreload((name, context) -> {
+                String ext = IndexFileNames.getExtension(name);
+                return ext != null && preload.contains(ext);
+            });
+        }
+        SearcherFactory factory = new WarmingSearcherFactory(warmInitial);
+        return replicationConfig.isReplica()
+                ? IndexHandle.openReadOnly(path, dir, factory)
+                : IndexHandle.open(path, dir, factory, mergePolicy());
+    }
+
+    private static long checksum(Directory dir, String name) throws IOException {
+        try (IndexInput in = dir.openInput(name, IOContext.READONCE)) {
+            return CodecUtil.retrieveChecksum(in);
+        }
+    }
+
+    /**
+     * 取得目前 active index 的 searcher；index 切換時舊的 manager 已關閉則改用新的
+     */
+    private IndexSearcher acquire(IndexHandle[] owner) throws IOException {
+        while (true) {
+            IndexHandle h = active;
+            try {
+                owner[0] = h;
+                return h.manager.acquire();
+            } catch (AlreadyClosedException e) {
+                if (h == active) throw e;
+            }
+        }
+    }
+
+    private static void release(IndexHandle owner, IndexSearcher searcher) throws IOException {
+        owner.manager.release(searcher);
     }
 
     @Override
     public void addAll(List<Chunk> chunks) throws IOException {
-        try (IndexWriter w = writer()){
-            for (Chunk c : chunks){
-                Document d = new Document();
-                d.add(new StringField(F_ID, c.id(), Field.Store.YES));
-                d.add(new StoredField(F_TITLE, c.title()));
-                d.add(new StoredField(F_URL, c.url()));
-                d.add(new TextField(F_CONTENT, c.content(), Field.Store.YES));
-                d.add(new KnnVectorField(F_VECTOR, c.embedding(), VectorSimilarityFunction.DOT_PRODUCT));
-                w.updateDocument(new Term(F_ID, c.id()), d);
+        handleLock.readLock().lock();
+        try {
+            IndexHandle h = active;
+            h.claim(embeddingModel, chunks);
+            write(h.writer, chunks);
+            h.writer.commit();
+            h.manager.maybeRefresh();
+            // 重建期間的增量寫入同步寫到新 index，切換後不會遺失
+            BuildImpl b = pending;
+            if (b != null) b.addAll(chunks);
+        } finally {
+            handleLock.readLock().unlock();
+        }
+        Map<String, PageTitle> pages = new LinkedHashMap<>();
+        for (Chunk c : chunks) {
+            String pageId = PageTitle.pageIdOf(c.id());
+            pages.putIfAbsent(pageId, new PageTitle(pageId, c.title(), c.url()));
+        }
+        events.publishEvent(new ChunksIndexedEvent(chunks.stream().map(Chunk::id).toList(), List.copyOf(pages.values())));
+    }
+
+    private static void write(IndexWriter w, List<Chunk> chunks) throws IOException {
+        for (Chunk c : chunks){
+            Document d = new Document();
+            d.add(new StringField(F_ID, c.id(), Field.Store.YES));
+            d.add(new StoredField(F_TITLE, c.title()));
+            d.add(new StoredField(F_URL, c.url()));
+            d.add(new TextField(F_CONTENT, c.content(), Field.Store.YES));
+            d.add(new KnnFloatVectorField(F_VECTOR, c.embedding(), VectorSimilarityFunction.DOT_PRODUCT));
+            addMetadata(d, c);
+            w.updateDocument(new Term(F_ID, c.id()), d);
+        }
+    }
+
+    private void requireWritable() {
+        if (replicationConfig.isReplica()) throw new IllegalStateException("This node is a read-only replica");
+    }
+
+    // ---- blue/green rebuild ---------------------------------------------------
+
+    @Override
+    public synchronized Rebuild beginRebuild(Set<String> replaceSpaces) throws IOException {
+        requireWritable();
+        if (pending != null) throw new IllegalStateException("A rebuild is already in progress: " + pending.handle.path);
+        Path dir = root.resolveSibling(root.getFileName() + "-" + System.currentTimeMillis());
+        BuildImpl build = new BuildImpl(openHandle(dir, true));
+        if (replaceSpaces == null) {
+            pending = build;
+            log.info("rebuild started in {}", dir);
+            return build;
+        }
+        // 複製與登記 pending 之間不能有增量寫入：複製前的寫入已在 active 中，之後的寫入會同步到新 index
+        handleLock.writeLock().lock();
+        try {
+            build.seed(active, replaceSpaces);
+            pending = build;
+        } catch (IOException | RuntimeException e) {
+            build.abort();
+            throw e;
+        } finally {
+            handleLock.writeLock().unlock();
+        }
+        log.info("rebuild of spaces {} started in {} with {} docs kept from {}", replaceSpaces, dir, build.ids.size(), active.path);
+        return build;
+    }
+
+    @Override
+    public synchronized boolean rollback() throws IOException {
+        requireWritable();
+        Optional<Path> previous = readPointer(PREVIOUS_POINTER);
+        if (previous.isEmpty() || !Files.isDirectory(previous.get()) || previous.get().equals(active.path)) {
+            return false;
+        }
+        swap(openHandle(previous.get(), true));
+        return true;
+    }
+
+    @Override
+    public int numDocs() throws IOException {
+        IndexHandle[] owner = new IndexHandle[1];
+        IndexSearcher searcher = acquire(owner);
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            release(owner[0], searcher);
+        }
+    }
+
+    @Override
+    public List<PageTitle> pageTitles() throws IOException {
+        IndexHandle[] owner = new IndexHandle[1];
+        IndexSearcher searcher = acquire(owner);
+        try {
+            Set<String> fields = Set.of(F_ID, F_TITLE, F_URL);
+            Map<String, PageTitle> pages = new LinkedHashMap<>();
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                Bits live = leaf.reader().getLiveDocs();
+                StoredFields stored = leaf.reader().storedFields();
+                for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                    if (live != null && !live.get(doc)) continue;
+                    Document d = stored.document(doc, fields);
+                    String pageId = PageTitle.pageIdOf(d.get(F_ID));
+                    if (!pages.containsKey(pageId)) pages.put(pageId, new PageTitle(pageId, d.get(F_TITLE), d.get(F_URL)));
+                }
+            }
+            return new ArrayList<>(pages.values());
+        } finally {
+            release(owner[0], searcher);
+        }
+    }
+
+    // ---- segment maintenance --------------------------------------------------
+
+    @Override
+    public IndexStats indexStats() throws IOException {
+        IndexHandle[] owner = new IndexHandle[1];
+        IndexSearcher searcher = acquire(owner);
+        try {
+            IndexHandle h = owner[0];
+            Set<String> merging = new HashSet<>();
+            if (h.writer != null) h.writer.getMergingSegments().forEach(sci -> merging.add(sci.info.name));
+            IndexReader reader = searcher.getIndexReader();
+            List<SegmentStats> segments = new ArrayList<>();
+            long size = 0, vectorBytes = 0, graphBytes = 0;
+            for (LeafReaderContext ctx : reader.leaves()) {
+                if (!(FilterLeafReader.unwrap(ctx.reader()) instanceof SegmentReader sr)) continue;
+                SegmentCommitInfo info = sr.getSegmentInfo();
+                Map<String, Long> files = segmentFiles(h.directory, info);
+                long vec = sumByExtension(files, "vec");
+                long vex = sumByExtension(files, "vex");
+                FloatVectorValues values = sr.getFloatVectorValues(F_VECTOR);
+                segments.add(new SegmentStats(info.info.name, sr.maxDoc(), sr.numDeletedDocs(),
+                        values == null ? 0 : values.size(), info.sizeInBytes(), vec, vex,
+                        info.info.getUseCompoundFile(), merging.contains(info.info.name)));
+                size += info.sizeInBytes();
+                vectorBytes += vec;
+                graphBytes += vex;
+            }
+            TrackingMergeScheduler m = h.merges;
+            MergeStats merges = m == null
+                    ? new MergeStats(0, 0, 0, 0, null)
+                    : new MergeStats(m.running.get(), m.completed.get(), m.mergedDocs.get(), m.mergeMillis.get(), h.lastForceMerge);
+            int maxDoc = reader.maxDoc();
+            return new IndexStats(h.path.getFileName().toString(), reader.numDocs(), maxDoc,
+                    maxDoc == 0 ? 0 : (double) reader.numDeletedDocs() / maxDoc, size, vectorBytes, graphBytes,
+                    segments, merges);
+        } finally {
+            release(owner[0], searcher);
+        }
+    }
+
+    /**
+     * segment 各檔案大小；compound segment 讀取 .cfs 內的檔案，才能分出向量與 HNSW 圖的大小
+     */
+    private static Map<String, Long> segmentFiles(Directory dir, SegmentCommitInfo info) throws IOException {
+        Map<String, Long> sizes = new HashMap<>();
+        if (info.info.getUseCompoundFile()) {
+            try (Directory cfs = info.info.getCodec().compoundFormat().getCompoundReader(dir, info.info, IOContext.READ)) {
+                for (String name : cfs.listAll()) sizes.put(name, cfs.fileLength(name));
+            }
+        } else {
+            for (String name : info.files()) sizes.put(name, dir.fileLength(name));
+        }
+        return sizes;
+    }
+
+    private static long sumByExtension(Map<String, Long> files, String extension) {
+        long sum = 0;
+        for (Map.Entry<String, Long> e : files.entrySet()) {
+            if (extension.equals(IndexFileNames.getExtension(e.getKey()))) sum += e.getValue();
+        }
+        return sum;
+    }
+
+    @Override
+    public int forceMerge(int maxSegments) throws IOException {
+        requireWritable();
+        // 與 addAll 一樣持有 read lock：合併期間 swap / rollback 等待，不會關閉正在合併的 writer
+        handleLock.readLock().lock();
+        try {
+            IndexHandle h = active;
+            long start = System.currentTimeMillis();
+            int before = segmentCount(h);
+            h.writer.forceMerge(Math.max(1, maxSegments));
+            h.writer.commit();
+            h.manager.maybeRefreshBlocking();
+            h.lastForceMerge = System.currentTimeMillis();
+            int after = segmentCount(h);
+            log.info("force merged {} from {} to {} segments in {} ms", h.path, before, after, h.lastForceMerge - start);
+            return after;
+        } finally {
+            handleLock.readLock().unlock();
+        }
+    }
+
+    private static int segmentCount(IndexHandle h) throws IOException {
+        IndexSearcher searcher = h.manager.acquire();
+        try {
+            return searcher.getIndexReader().leaves().size();
+        } finally {
+            h.manager.release(searcher);
+        }
+    }
+
+    private final class BuildImpl implements Rebuild {
+        private final IndexHandle handle;
+        private final Set<String> ids = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed;
+
+        BuildImpl(IndexHandle handle) {
+            this.handle = handle;
+        }
+
+        /**
+         * 從 {@code from} 複製 {@code replaceSpaces} 以外的所有文件，只重建指定的 space 時其他 space 保持不變
+         */
+        void seed(IndexHandle from, Set<String> replaceSpaces) throws IOException {
+            from.checkModel(embeddingModel);
+            if (from.dims > 0 && embeddingDims > 0 && from.dims != embeddingDims) {
+                throw new IllegalStateException("Index " + from.path + " has " + from.dims + " dims but the configured embedding has "
+                        + embeddingDims + "; rebuild all spaces instead");
+            }
+            from.manager.maybeRefreshBlocking();
+            IndexSearcher searcher = from.manager.acquire();
+            try {
+                Query replaced = new TermInSetQuery(F_SPACE, replaceSpaces.stream().map(BytesRef::new).toList());
+                Bits drop = filterBits(searcher, replaced);
+                List<CodecReader> readers = new ArrayList<>();
+                for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                    Bits live = leaf.reader().getLiveDocs();
+                    StoredFields stored = leaf.reader().storedFields();
+                    for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                        if (live != null && !live.get(doc)) continue;
+                        if (drop.get(leaf.docBase + doc)) continue;
+                        ids.add(stored.document(doc, Set.of(F_ID)).get(F_ID));
+                    }
+                    readers.add(SlowCodecReaderWrapper.wrap(leaf.reader()));
+                }
+                handle.writer.addIndexes(readers.toArray(new CodecReader[0]));
+                handle.writer.deleteDocuments(replaced);
+                handle.adoptMeta(from);
+            } finally {
+                from.manager.release(searcher);
+            }
+        }
+
+        @Override
+        public void addAll(List<Chunk> chunks) throws IOException {
+            if (closed) throw new IllegalStateException("Rebuild already finished");
+            handle.claim(embeddingModel, chunks);
+            write(handle.writer, chunks);
+            chunks.forEach(c -> ids.add(c.id()));
+        }
+
+        @Override
+        public void commitAndSwap(boolean forceMerge) throws IOException {
+            synchronized (LuceneVectorIndexService.this) {
+                if (closed) throw new IllegalStateException("Rebuild already finished");
+                // 從 commit、驗證文件數到切換之間不能有增量寫入，否則寫到新 index 的批次可能未 commit 或不在驗證內
+                handleLock.writeLock().lock();
+                try {
+                    if (ids.isEmpty()) throw new IllegalStateException("Rebuild produced no documents");
+                    if (forceMerge) handle.writer.forceMerge(1);
+                    handle.writer.commit();
+                    int built;
+                    try (DirectoryReader reader = DirectoryReader.open(handle.directory)) {
+                        built = reader.numDocs();
+                    }
+                    if (built != ids.size()) {
+                        throw new IllegalStateException("Rebuild doc count mismatch: index has " + built + ", expected " + ids.size());
+                    }
+                    int live = numDocs();
+                    if (built < live * indexConfig.getRebuild().getMinDocRatio()) {
+                        throw new IllegalStateException("Rebuild has " + built + " docs, live index has " + live
+                                + "; below app.index.rebuild.min-doc-ratio");
+                    }
+                    handle.manager.maybeRefreshBlocking();
+                    pending = null;
+                    swap(handle);
+                    closed = true;
+                } catch (IOException | RuntimeException e) {
+                    abort();
+                    throw e;
+                } finally {
+                    handleLock.writeLock().unlock();
+                }
             }
-            w.commit();
         }
+
+        @Override
+        public void abort() {
+            synchronized (LuceneVectorIndexService.this) {
+                if (pending == this) pending = null;
+                if (closed) return;
+                closed = true;
+            }
+            try {
+                handle.close();
+                IOUtils.rm(handle.path);
+                log.warn("rebuild in {} aborted", handle.path);
+            } catch (IOException e) {
+                log.warn("failed to clean up aborted rebuild {}", handle.path, e);
+            }
+        }
+    }
+
+    /**
+     * 原子切換 active index：先更新指標檔，再替換 searcher；進行中的查詢仍持有舊 reader 直到 release
+     */
+    private synchronized void swap(IndexHandle next) throws IOException {
+        IndexHandle old;
+        handleLock.writeLock().lock();
+        try {
+            old = active;
+            writePointer(PREVIOUS_POINTER, old.path);
+            writePointer(ACTIVE_POINTER, next.path);
+            active = next;
+            resetMatrix();
+            old.close();
+        } finally {
+            handleLock.writeLock().unlock();
+        }
+        log.info("active index switched {} -> {}", old.path, next.path);
+        pruneGenerations(next.path, old.path);
+        events.publishEvent(new ActiveIndexChangedEvent(next.path.getFileName().toString()));
+    }
+
+    // 只保留 active 與 previous，原始的 indexDir 不刪
+    private void pruneGenerations(Path keepActive, Path keepPrevious) {
+        String generation = Pattern.quote(root.getFileName().toString()) + "-\\d+";
+        try (var dirs = Files.list(root.getParent())) {
+            for (Path p : dirs.filter(Files::isDirectory).filter(p -> p.getFileName().toString().matches(generation)).toList()) {
+                if (p.equals(keepActive) || p.equals(keepPrevious)) continue;
+                if (pending != null && p.equals(pending.handle.path)) continue;
+                IOUtils.rm(p);
+                log.info("removed old index generation {}", p);
+            }
+        } catch (IOException e) {
+            log.warn("failed to prune old index generations", e);
+        }
+    }
+
+    // ---- warm-up --------------------------------------------------------------
+
+    /**
+     * 在新的 searcher 發布前預熱：第一次開啟（依 {@code warmInitial}）或 refresh 帶進大量新文件時
+     */
+    private final class WarmingSearcherFactory extends SearcherFactory {
+        private final boolean warmInitial;
+
+        WarmingSearcherFactory(boolean warmInitial) {
+            this.warmInitial = warmInitial;
+        }
+
+        @Override
+        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+            IndexSearcher searcher = searchExecutor == null
+                    ? super.newSearcher(reader, previousReader)
+                    : new SlicedIndexSearcher(reader, searchExecutor, searchConfig.getConcurrency());
+            if (!warmupConfig.isEnabled()) return searcher;
+            if (previousReader == null) {
+                if (warmInitial) warm(searcher, "open");
+            } else {
+                int newDocs = newSegmentDocs(reader, previousReader);
+                if (newDocs >= warmupConfig.getMinNewDocs()) warm(searcher, newDocs + " new docs");
+            }
+            return searcher;
+        }
+    }
+
+    /**
+     * 固定大小、有界佇列；佇列滿時 CallerRunsPolicy 讓查詢執行緒自己搜尋該 segment，高負載時退化為循序搜尋
+     */
+    static ThreadPoolExecutor newSearchExecutor(SearchConfig.Concurrency cfg) {
+        int threads = Math.max(1, cfg.getThreads());
+        AtomicInteger seq = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, cfg.getQueueSize())),
+                r -> Thread.ofPlatform().daemon().name("index-search-" + seq.incrementAndGet()).unstarted(r),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 依設定切分 slice 的 searcher；slices 在第一次搜尋時才計算
+     */
+    static final class SlicedIndexSearcher extends IndexSearcher {
+        private final int maxDocsPerSlice;
+        private final int maxSegmentsPerSlice;
+
+        SlicedIndexSearcher(IndexReader reader, Executor executor, SearchConfig.Concurrency cfg) {
+            super(reader, executor);
+            this.maxDocsPerSlice = Math.max(1, cfg.getMaxDocsPerSlice());
+            this.maxSegmentsPerSlice = Math.max(1, cfg.getMaxSegmentsPerSlice());
+        }
+
+        @Override
+        protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+            return slices(leaves, maxDocsPerSlice, maxSegmentsPerSlice);
+        }
+    }
+
+    private static int newSegmentDocs(IndexReader reader, IndexReader previous) {
+        Set<Object> known = new HashSet<>();
+        for (LeafReaderContext leaf : previous.leaves()) {
+            IndexReader.CacheHelper helper = leaf.reader().getCoreCacheHelper();
+            if (helper != null) known.add(helper.getKey());
+        }
+        int docs = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            IndexReader.CacheHelper helper = leaf.reader().getCoreCacheHelper();
+            if (helper == null || !known.contains(helper.getKey())) docs += leaf.reader().maxDoc();
+        }
+        return docs;
+    }
+
+    /**
+     * 對尚未發布的 searcher 重播查詢樣本：走過 HNSW 圖並讀取命中文件的 stored fields
+     */
+    private void warm(IndexSearcher searcher, String reason) {
+        long start = System.currentTimeMillis();
+        int replayed = 0;
+        try {
+            for (IndexWarmer.Sample q : warmQueries(searcher.getIndexReader())) {
+                if (System.currentTimeMillis() - start > warmupConfig.getMaxMillis()) break;
+                TopDocs top = searcher.search(new KnnFloatVectorQuery(F_VECTOR, q.vector(), q.k()), q.k());
+                StoredFields stored = searcher.storedFields();
+                for (ScoreDoc sd : top.scoreDocs) stored.document(sd.doc);
+                replayed++;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("index warm-up ({}) failed after {} queries", reason, replayed, e);
+            return;
+        }
+        if (replayed > 0) {
+            log.info("warmed searcher ({}) with {} queries in {} ms", reason, replayed, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 近期查詢中維度相符的樣本；還沒有任何樣本時取 index 內平均分布的幾個向量當作查詢
+     */
+    private List<IndexWarmer.Sample> warmQueries(IndexReader reader) throws IOException {
+        int dims = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            FieldInfo info = leaf.reader().getFieldInfos().fieldInfo(F_VECTOR);
+            if (info != null) {
+                dims = info.getVectorDimension();
+                break;
+            }
+        }
+        if (dims == 0) return List.of();
+        int d = dims;
+        List<IndexWarmer.Sample> samples = warmer.samples().stream().filter(s -> s.vector().length == d).toList();
+        if (!samples.isEmpty()) return samples;
+
+        List<IndexWarmer.Sample> fromIndex = new ArrayList<>();
+        int wanted = 10;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            FloatVectorValues values = leaf.reader().getFloatVectorValues(F_VECTOR);
+            if (values == null || values.size() == 0) continue;
+            int step = Math.max(1, leaf.reader().maxDoc() / wanted);
+            for (int target = 0; target < leaf.reader().maxDoc() && fromIndex.size() < wanted; target += step) {
+                int doc = values.docID() >= target ? values.docID() : values.advance(target);
+                if (doc == DocIdSetIterator.NO_MORE_DOCS) break;
+                fromIndex.add(new IndexWarmer.Sample(values.vectorValue().clone(), 10));
+            }
+            if (fromIndex.size() >= wanted) break;
+        }
+        return fromIndex;
+    }
+
+    @Override
+    public int warmUp() throws IOException {
+        if (!warmupConfig.isEnabled()) return 0;
+        long start = System.currentTimeMillis();
+        IndexHandle[] owner = new IndexHandle[1];
+        IndexSearcher searcher = acquire(owner);
+        List<IndexWarmer.Sample> queries;
+        try {
+            queries = warmQueries(searcher.getIndexReader());
+        } finally {
+            release(owner[0], searcher);
+        }
+        int replayed = 0;
+        // 走完整的查詢路徑（包含精確搜尋的向量矩陣），但不把重播記錄成新的樣本
+        for (IndexWarmer.Sample q : queries) {
+            if (System.currentTimeMillis() - start > warmupConfig.getMaxMillis()) break;
+            search(q.vector(), q.k(), SearchOptions.of(null), false);
+            replayed++;
+        }
+        log.info("warmed active index {} with {} queries in {} ms", owner[0].path, replayed, System.currentTimeMillis() - start);
+        return replayed;
+    }
+
+    // ---- replication ----------------------------------------------------------
+
+    @Override
+    public CommitManifest latestCommit() throws IOException {
+        requireWritable();
+        return active.lease(replicationConfig.getLeaseSeconds() * 1000);
+    }
+
+    @Override
+    public InputStream openCommitFile(String indexId, String name) throws IOException {
+        IndexHandle h = active;
+        if (!h.path.getFileName().toString().equals(indexId) || !h.isLeased(name)) {
+            throw new NoSuchFileException(indexId + "/" + name);
+        }
+        return Files.newInputStream(h.path.resolve(name));
+    }
+
+    @Override
+    public InstallResult installCommit(CommitManifest manifest, CommitFileSource source) throws IOException {
+        if (!replicationConfig.isReplica()) throw new IllegalStateException("Only a replica installs replicated commits");
+        synchronized (installLock) {
+            Path dir = replicaPath(manifest.indexId());
+            Files.createDirectories(dir);
+            IndexHandle h = active;
+            boolean sameIndex = h.path.equals(dir);
+
+            // segments_N 最後寫入，之前的檔案都就位後 reader 才看得到這個 commit
+            List<CommitFile> files = new ArrayList<>(manifest.files());
+            files.sort(Comparator.comparing((CommitFile f) -> f.name().startsWith(IndexFileNames.SEGMENTS)));
+            int copiedFiles = 0;
+            long copiedBytes = 0;
+            try (Directory local = FSDirectory.open(dir)) {
+                Set<String> wanted = new HashSet<>();
+                for (CommitFile f : files) {
+                    wanted.add(f.name());
+                    Path target = dir.resolve(f.name());
+                    if (hasFile(local, target, f)) continue;
+                    Path tmp = dir.resolve(f.name() + ".download");
+                    try (InputStream in = source.open(f.name())) {
+                        Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    if (Files.size(tmp) != f.length()) {
+                        Files.deleteIfExists(tmp);
+                        throw new IOException("Short download of " + f.name() + ": " + Files.size(tmp) + " != " + f.length());
+                    }
+                    IOUtils.fsync(tmp, false);
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    copiedFiles++;
+                    copiedBytes += f.length();
+                }
+                IOUtils.fsync(dir, true);
+                // 不屬於此 commit 的舊 segment；開著的 reader 仍持有檔案 handle，不受影響
+                for (String name : local.listAll()) {
+                    if (wanted.contains(name) || name.equals(IndexWriter.WRITE_LOCK_NAME)) continue;
+                    try {
+                        local.deleteFile(name);
+                    } catch (IOException e) {
+                        log.debug("cannot delete replaced replica file {} yet", name, e);
+                    }
+                }
+            }
+
+            if (sameIndex) {
+                if (copiedFiles > 0) {
+                    h.manager.maybeRefreshBlocking();
+                    h.loadMeta();
+                    events.publishEvent(new ActiveIndexChangedEvent(dir.getFileName().toString()));
+                }
+            } else {
+                IndexHandle next = openHandle(dir, true);
+                synchronized (this) {
+                    swap(next);
+                }
+            }
+            return new InstallResult(copiedFiles, copiedBytes);
+        }
+    }
+
+    private static boolean hasFile(Directory local, Path target, CommitFile f) {
+        try {
+            return Files.exists(target) && Files.size(target) == f.length() && checksum(local, f.name()) == f.checksum();
+        } catch (IOException e) {
+            // 檔案不完整或損毀，重新下載
+            return false;
+        }
+    }
+
+    private static final Pattern SAFE_INDEX_ID = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final Pattern GENERATION_SUFFIX = Pattern.compile("-(\\d+)$");
+
+    /**
+     * primary 的 index 目錄對應到本機目錄：{@code <name>-<millis>} 對應 {@code <indexDir>-<millis>}，其他對應 indexDir 本身
+     */
+    private Path replicaPath(String indexId) {
+        if (indexId == null || !SAFE_INDEX_ID.matcher(indexId).matches() || indexId.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid index id: " + indexId);
+        }
+        Matcher m = GENERATION_SUFFIX.matcher(indexId);
+        return m.find() ? root.resolveSibling(root.getFileName() + "-" + m.group(1)) : root;
+    }
+
+    private Optional<Path> readPointer(String suffix) throws IOException {
+        Path pointer = root.resolveSibling(root.getFileName() + suffix);
+        if (!Files.exists(pointer)) return Optional.empty();
+        String name = Files.readString(pointer).trim();
+        return name.isEmpty() ? Optional.empty() : Optional.of(root.resolveSibling(name));
+    }
+
+    private void writePointer(String suffix, Path target) throws IOException {
+        Path pointer = root.resolveSibling(root.getFileName() + suffix);
+        Path tmp = pointer.resolveSibling(pointer.getFileName() + ".tmp");
+        Files.createDirectories(pointer.getParent());
+        Files.writeString(tmp, target.getFileName().toString());
+        Files.move(tmp, pointer, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // metadata 同時建 index（供 filter）與 doc values（供排序 / 聚合）
+    static void addMetadata(Document d, Chunk c){
+        if (c.spaceKey() != null) {
+            d.add(new StringField(F_SPACE, c.spaceKey(), Field.Store.YES));
+            d.add(new SortedDocValuesField(F_SPACE, new BytesRef(c.spaceKey())));
+        }
+        if (c.labels() != null) {
+            for (String label : c.labels()) {
+                d.add(new StringField(F_LABEL, label, Field.Store.YES));
+                d.add(new SortedSetDocValuesField(F_LABEL, new BytesRef(label)));
+            }
+        }
+        if (c.author() != null) {
+            d.add(new StringField(F_AUTHOR, c.author(), Field.Store.YES));
+            d.add(new SortedDocValuesField(F_AUTHOR, new BytesRef(c.author())));
+        }
+        // 修改時間未知時不寫入，修改時間的範圍 filter 不會比對到
+        if (c.lastModified() > 0) {
+            d.add(new LongPoint(F_MODIFIED, c.lastModified()));
+            d.add(new NumericDocValuesField(F_MODIFIED, c.lastModified()));
+            d.add(new StoredField(F_MODIFIED, c.lastModified()));
+        }
+    }
+
+    /**
+     * 將 SearchFilter 轉成 Lucene filter query，交給 KnnFloatVectorQuery 在走訪 HNSW 時套用
+     */
+    static Query toFilterQuery(SearchFilter filter){
+        if (filter == null || filter.isEmpty()) return null;
+        BooleanQuery.Builder b = new BooleanQuery.Builder();
+        if (filter.spaceKeys() != null && !filter.spaceKeys().isEmpty()) {
+            b.add(new TermInSetQuery(F_SPACE, filter.spaceKeys().stream().map(BytesRef::new).toList()), BooleanClause.Occur.FILTER);
+        }
+        if (filter.labels() != null && !filter.labels().isEmpty()) {
+            b.add(new TermInSetQuery(F_LABEL, filter.labels().stream().map(BytesRef::new).toList()), BooleanClause.Occur.FILTER);
+        }
+        if (filter.author() != null && !filter.author().isBlank()) {
+            b.add(new TermQuery(new Term(F_AUTHOR, filter.author())), BooleanClause.Occur.FILTER);
+        }
+        if (filter.modifiedAfter() != null || filter.modifiedBefore() != null) {
+            long from = filter.modifiedAfter() == null ? Long.MIN_VALUE : filter.modifiedAfter();
+            long to = filter.modifiedBefore() == null ? Long.MAX_VALUE : filter.modifiedBefore();
+            b.add(new IndexOrDocValuesQuery(
+                    LongPoint.newRangeQuery(F_MODIFIED, from, to),
+                    NumericDocValuesField.newSlowRangeQuery(F_MODIFIED, from, to)), BooleanClause.Occur.FILTER);
+        }
+        return b.build();
     }
 
     @Override
-    public List<SearchHit> search(float[] queryEmbedding, int k) throws IOException {
-        try (DirectoryReader reader = DirectoryReader.open(directory)){
-            IndexSearcher searcher = new IndexSearcher(reader);
-            Query knn = new KnnVectorQuery(F_VECTOR, queryEmbedding, k);
-            TopDocs top = searcher.search(knn, k);
+    public List<SearchHit> search(float[] queryEmbedding, int k, SearchOptions options) throws IOException {
+        return search(queryEmbedding, k, options, true);
+    }
+
+    private List<SearchHit> search(float[] queryEmbedding, int k, SearchOptions options, boolean sample) throws IOException {
+        IndexHandle[] owner = new IndexHandle[1];
+        IndexSearcher searcher = acquire(owner);
+        try {
+            owner[0].checkQuery(embeddingModel, queryEmbedding);
+            if (sample) warmer.record(queryEmbedding, k);
+            IndexReader reader = searcher.getIndexReader();
+            boolean diversify = options.diversify();
+            int fetchK = diversify ? Math.max(k, options.candidates()) : k;
+            Query filter = toFilterQuery(options.filter());
+            // 階段名稱為實際使用的模式（hnsw / exact / binary），方便分辨 AUTO 選了哪一種
+            SearchMode mode = effectiveMode(options.mode(), reader);
+            long t = RequestTrace.start();
+            ScoreDoc[] scoreDocs = switch (mode) {
+                case EXACT -> exactSearch(owner[0], searcher, queryEmbedding, fetchK, filter);
+                case BINARY -> binarySearch(owner[0], searcher, queryEmbedding, fetchK, filter);
+                default -> null;
+            };
+            // 快照仍在背景建立時改走 HNSW
+            if (scoreDocs == null) {
+                mode = SearchMode.HNSW;
+                scoreDocs = searcher.search(new KnnFloatVectorQuery(F_VECTOR, queryEmbedding, fetchK, filter), fetchK).scoreDocs;
+            }
+            RequestTrace.stage(STAGE_NAMES.get(mode), t);
+            if (diversify && scoreDocs.length > k) {
+                t = RequestTrace.start();
+                float[][] vectors = loadVectors(reader, scoreDocs);
+                int[] order = MmrReranker.select(queryEmbedding, vectors, k, options.mmrLambda());
+                ScoreDoc[] picked = new ScoreDoc[order.length];
+                for (int i = 0; i < order.length; i++) picked[i] = scoreDocs[order[i]];
+                scoreDocs = picked;
+                RequestTrace.stage("mmr", t);
+            }
+            t = RequestTrace.start();
             List<SearchHit> hits = new ArrayList<>();
-            for (ScoreDoc sd : top.scoreDocs){
-                Document d = searcher.doc(sd.doc);
+            StoredFields stored = searcher.storedFields();
+            for (ScoreDoc sd : scoreDocs){
+                Document d = stored.document(sd.doc);
                 hits.add(new SearchHit(
                         d.get(F_ID),
                         d.get(F_TITLE),
@@ -68,14 +1108,143 @@ public class LuceneVectorIndexService implements VectorIndexService {
                         sd.score
                 ));
             }
+            RequestTrace.stage("load", t);
             return hits;
+        } finally {
+            release(owner[0], searcher);
+        }
+    }
+
+    private SearchMode effectiveMode(SearchMode requested, IndexReader reader) {
+        SearchMode mode = requested != null ? requested : searchConfig.getMode();
+        if (mode != SearchMode.AUTO) return mode;
+        return reader.numDocs() <= searchConfig.getExact().getMaxDocs() ? SearchMode.EXACT : SearchMode.HNSW;
+    }
+
+    /**
+     * @return 向量矩陣尚未建好時為 null
+     */
+    private ScoreDoc[] exactSearch(IndexHandle owner, IndexSearcher searcher, float[] query, int k, Query filter) throws IOException {
+        FlatVectorMatrix m = matrices.get(owner, (DirectoryReader) searcher.getIndexReader());
+        if (m == null) return null;
+        Bits accept = filter == null ? null : filterBits(searcher, filter);
+        return m.search(query, k, accept, exactPool);
+    }
+
+    /**
+     * 兩階段搜尋：以量化碼的 Hamming 距離取候選，再讀回候選的 float 向量重新計分
+     *
+     * @return 量化碼尚未建好時為 null
+     */
+    private ScoreDoc[] binarySearch(IndexHandle owner, IndexSearcher searcher, float[] query, int k, Query filter) throws IOException {
+        DirectoryReader reader = (DirectoryReader) searcher.getIndexReader();
+        BinaryCodeMatrix c = codes.get(owner, reader);
+        if (c == null) return null;
+        Bits accept = filter == null ? null : filterBits(searcher, filter);
+        SearchConfig.Binary cfg = searchConfig.getBinary();
+        int n = Math.max(k * Math.max(1, cfg.getOversample()), cfg.getMinCandidates());
+        return rescore(reader, query, c.candidates(query, n, accept, exactPool), k);
+    }
+
+    /**
+     * 以儲存的 float 向量重新計算候選的分數（與 {@code DOT_PRODUCT} 相同），取前 k 個
+     */
+    static ScoreDoc[] rescore(IndexReader reader, float[] query, ScoreDoc[] candidates, int k) throws IOException {
+        float[][] vectors = loadVectors(reader, candidates);
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i].score = Math.max((1 + VectorUtil.dotProduct(query, vectors[i])) / 2, 0f);
+        }
+        Arrays.sort(candidates, Comparator.<ScoreDoc>comparingDouble(sd -> -sd.score).thenComparingInt(sd -> sd.doc));
+        return Arrays.copyOf(candidates, Math.min(k, candidates.length));
+    }
+
+    /**
+     * 建立與 reader 同版本的量化碼（背景執行緒），舊版本由 {@link VectorSnapshotCache} 關閉並刪除檔案
+     */
+    private BinaryCodeMatrix buildCodes(IndexHandle owner, DirectoryReader reader) throws IOException {
+        long start = System.currentTimeMillis();
+        Path file = Path.of(searchConfig.getExact().getDir(),
+                "binary-codes-" + owner.path.getFileName() + "-" + reader.getVersion() + ".bin");
+        BinaryCodeMatrix built = BinaryCodeMatrix.build(reader, F_VECTOR, file);
+        log.info("built binary codes: {} rows, {} bytes in {} ms",
+                built.size(), built.sizeInBytes(), System.currentTimeMillis() - start);
+        return built;
+    }
+
+    /**
+     * 建立與 reader 同版本的向量矩陣（背景執行緒），舊版本由 {@link VectorSnapshotCache} 關閉並刪除檔案
+     */
+    private FlatVectorMatrix buildMatrix(IndexHandle owner, DirectoryReader reader) throws IOException {
+        SearchConfig.Exact cfg = searchConfig.getExact();
+        long start = System.currentTimeMillis();
+        Path file = Path.of(cfg.getDir(), "flat-vectors-" + owner.path.getFileName() + "-" + reader.getVersion() + ".bin");
+        FlatVectorMatrix built = FlatVectorMatrix.build(reader, F_VECTOR, file, cfg.getEncoding());
+        log.info("built {} flat vector matrix: {} rows, {} bytes in {} ms",
+                cfg.getEncoding(), built.size(), built.sizeInBytes(), System.currentTimeMillis() - start);
+        return built;
+    }
+
+    private void resetMatrix() {
+        matrices.reset();
+        codes.reset();
+    }
+
+    private static Bits filterBits(IndexSearcher searcher, Query filter) throws IOException {
+        FixedBitSet bits = new FixedBitSet(Math.max(1, searcher.getIndexReader().maxDoc()));
+        searcher.search(filter, new SimpleCollector() {
+            private int docBase;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) {
+                docBase = context.docBase;
+            }
+
+            @Override
+            public void collect(int doc) {
+                bits.set(docBase + doc);
+            }
+
+            @Override
+            public ScoreMode scoreMode() {
+                return ScoreMode.COMPLETE_NO_SCORES;
+            }
+        });
+        return bits;
+    }
+
+    /**
+     * 讀回候選文件儲存的向量，回傳順序與 {@code scoreDocs} 相同
+     */
+    static float[][] loadVectors(IndexReader reader, ScoreDoc[] scoreDocs) throws IOException {
+        float[][] out = new float[scoreDocs.length][];
+        Integer[] byDoc = new Integer[scoreDocs.length];
+        for (int i = 0; i < byDoc.length; i++) byDoc[i] = i;
+        // FloatVectorValues 只能往前 advance，依 doc id 排序後逐 segment 讀取
+        Arrays.sort(byDoc, Comparator.comparingInt(i -> scoreDocs[i].doc));
+        List<LeafReaderContext> leaves = reader.leaves();
+        int leafIdx = -1;
+        FloatVectorValues values = null;
+        for (int i : byDoc) {
+            int doc = scoreDocs[i].doc;
+            int sub = ReaderUtil.subIndex(doc, leaves);
+            if (sub != leafIdx) {
+                leafIdx = sub;
+                values = leaves.get(sub).reader().getFloatVectorValues(F_VECTOR);
+            }
+            int target = doc - leaves.get(sub).docBase;
+            if (values == null || values.advance(target) != target) {
+                throw new IllegalStateException("Missing vector for doc " + doc);
+            }
+            out[i] = values.vectorValue().clone();
         }
+        return out;
     }
 
     @Override
     public List<Chunk> fetchChunks(List<String> chunkIds) throws IOException{
-        try (DirectoryReader reader = DirectoryReader.open(directory)) {
-            IndexSearcher searcher = new IndexSearcher(reader);
+        IndexHandle[] owner = new IndexHandle[1];
+        IndexSearcher searcher = acquire(owner);
+        try {
 
             BooleanQuery.Builder builder = new BooleanQuery.Builder();
             for (String id : chunkIds) {
@@ -86,20 +1255,28 @@ public class LuceneVectorIndexService implements VectorIndexService {
             TopDocs topDocs = searcher.search(query, chunkIds.size());
 
             List<Chunk> results = new ArrayList<>();
+            StoredFields stored = searcher.storedFields();
             for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
-                Document doc = searcher.doc(scoreDoc.doc);
+                Document doc = stored.document(scoreDoc.doc);
                 // 將 Document 轉換為 Chunk
+                IndexableField modified = doc.getField(F_MODIFIED);
                 Chunk chunk = new Chunk(
                         doc.get(F_ID),
                         doc.get(F_TITLE),
                         doc.get(F_URL),
                         doc.get(F_CONTENT),
-                        null // embedding 在這個場景下可能不需要，設為 null 或根據需要從 document 中取得
+                        null, // embedding 在這個場景下可能不需要，設為 null 或根據需要從 document 中取得
+                        doc.get(F_SPACE),
+                        List.of(doc.getValues(F_LABEL)),
+                        doc.get(F_AUTHOR),
+                        modified == null ? 0L : modified.numericValue().longValue()
                 );
                 results.add(chunk);
             }
 
             return results;
+        } finally {
+            release(owner[0], searcher);
         }
 
     }
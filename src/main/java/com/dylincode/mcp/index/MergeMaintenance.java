@@ -0,0 +1,84 @@
+package com.dylincode.mcp.index;
+
+import com.dylincode.mcp.config.IndexConfig;
+import com.dylincode.mcp.config.ReplicationConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 背景 force merge：寫入停止超過 {@code idle-ms}（例如攝取工作結束）且在離峰時段內，
+ * segment 數超過目標時把 active index 合併到 {@code app.index.merge.maintenance.max-segments} 以下。
+ *
+ * <p>replica 不執行，合併後的 segment 會經由複寫取得。</p>
+ */
+@Slf4j
+@Component
+public class MergeMaintenance {
+    private final VectorIndexService index;
+    private final IndexConfig.Maintenance config;
+    private final ReplicationConfig replication;
+    private final LocalTime quietFrom;
+    private final LocalTime quietTo;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile long lastWrite = System.currentTimeMillis();
+
+    public MergeMaintenance(VectorIndexService index, IndexConfig indexConfig, ReplicationConfig replication) {
+        this.index = index;
+        this.config = indexConfig.getMerge().getMaintenance();
+        this.replication = replication;
+        String window = config.getQuietHours();
+        if (window == null || window.isBlank()) {
+            quietFrom = quietTo = null;
+        } else {
+            String[] parts = window.split("-");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("app.index.merge.maintenance.quiet-hours must look like 01:00-06:00: " + window);
+            }
+            quietFrom = LocalTime.parse(parts[0].trim());
+            quietTo = LocalTime.parse(parts[1].trim());
+        }
+    }
+
+    @EventListener
+    public void onIndexed(ChunksIndexedEvent event) {
+        lastWrite = System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${app.index.merge.maintenance.check-ms:60000}",
+            initialDelayString = "${app.index.merge.maintenance.check-ms:60000}")
+    public void check() {
+        if (!config.isEnabled() || replication.isReplica() || running.get()) return;
+        if (System.currentTimeMillis() - lastWrite < config.getIdleMs() || !inQuietHours(LocalTime.now())) return;
+        int segments;
+        try {
+            segments = index.indexStats().segments().size();
+        } catch (Exception e) {
+            log.warn("failed to read index segments", e);
+            return;
+        }
+        if (segments <= config.getMaxSegments() || !running.compareAndSet(false, true)) return;
+        log.info("index has {} segments, force merging to {}", segments, config.getMaxSegments());
+        // forceMerge 會阻塞到合併完成，不佔用排程執行緒；IndexWriter 內部等待會 pin 住 virtual thread，改用 platform thread
+        Thread.ofPlatform().daemon().name("index-force-merge").start(() -> {
+            try {
+                index.forceMerge(config.getMaxSegments());
+            } catch (Exception e) {
+                log.warn("background force merge failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    boolean inQuietHours(LocalTime now) {
+        if (quietFrom == null) return true;
+        if (!quietFrom.isAfter(quietTo)) return !now.isBefore(quietFrom) && now.isBefore(quietTo);
+        // 跨午夜，例如 22:00-06:00
+        return !now.isBefore(quietFrom) || now.isBefore(quietTo);
+    }
+}
@@ -0,0 +1,65 @@
+package com.dylincode.mcp.index;
+
+import org.apache.lucene.util.VectorUtil;
+
+import java.util.Arrays;
+
+/**
+ * Maximal marginal relevance 重新排序。
+ *
+ * <p>TextChunker 的 overlap 讓同一頁相鄰的 chunk 向量非常接近，直接取 top-k 常被同一頁佔滿。
+ * MMR 每一步挑選 {@code lambda * sim(q, d) - (1 - lambda) * max sim(d, selected)} 最大的候選，
+ * 在相關度與多樣性之間取捨。</p>
+ *
+ * <p>相似度矩陣只計算被選中的列（k * n 次內積，而非 n * n），內積使用 Lucene 的
+ * {@link VectorUtil#dotProduct(float[], float[])}：JVM 以 {@code --add-modules jdk.incubator.vector}
+ * 啟動時走 JDK Vector API（SIMD），否則自動退回純量實作。</p>
+ */
+public final class MmrReranker {
+
+    private MmrReranker() {
+    }
+
+    /**
+     * @param query      已正規化的查詢向量
+     * @param candidates 已正規化的候選向量，依原始相似度排序
+     * @param k          要選出的數量
+     * @param lambda     relevance 權重，介於 0 與 1
+     * @return 選中候選在 {@code candidates} 中的索引，依 MMR 順序
+     */
+    public static int[] select(float[] query, float[][] candidates, int k, float lambda) {
+        int n = candidates.length;
+        k = Math.min(k, n);
+        float[] relevance = new float[n];
+        for (int i = 0; i < n; i++) relevance[i] = VectorUtil.dotProduct(query, candidates[i]);
+
+        float[] maxSim = new float[n];
+        Arrays.fill(maxSim, Float.NEGATIVE_INFINITY);
+        boolean[] taken = new boolean[n];
+        int[] order = new int[k];
+
+        for (int step = 0; step < k; step++) {
+            int best = -1;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) continue;
+                float redundancy = step == 0 ? 0f : maxSim[i];
+                float score = lambda * relevance[i] - (1 - lambda) * redundancy;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            taken[best] = true;
+            order[step] = best;
+            // 只補上新選中這一列的相似度
+            float[] picked = candidates[best];
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) continue;
+                float sim = VectorUtil.dotProduct(picked, candidates[i]);
+                if (sim > maxSim[i]) maxSim[i] = sim;
+            }
+        }
+        return order;
+    }
+}
@@ -2,7 +2,9 @@ package com.dylincode.mcp.index;
 
 import com.dylincode.mcp.model.Chunk;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Defines a service interface for managing and querying a vector-based index for text data.
@@ -11,9 +13,242 @@ import java.util.List;
 public interface VectorIndexService {
     void addAll(List<Chunk> chunks) throws IOException;
 
-    List<SearchHit> search(float[] queryEmbedding, int k) throws IOException;
+    default List<SearchHit> search(float[] queryEmbedding, int k) throws IOException {
+        return search(queryEmbedding, k, SearchOptions.of(null));
+    }
+
+    /**
+     * Similarity search restricted to chunks matching {@code filter}. The filter is applied while
+     * traversing the HNSW graph, so selective filters still return up to {@code k} hits.
+     *
+     * @param filter metadata pre-filter, {@code null} or empty for no restriction
+     */
+    default List<SearchHit> search(float[] queryEmbedding, int k, SearchFilter filter) throws IOException {
+        return search(queryEmbedding, k, SearchOptions.of(filter));
+    }
+
+    List<SearchHit> search(float[] queryEmbedding, int k, SearchOptions options) throws IOException;
 
     record SearchHit(String chunkId, String title, String url, String content, float score) {}
 
+    /**
+     * Metadata pre-filter. Each non-empty criterion must match; within {@code spaceKeys} and
+     * {@code labels} any value matches.
+     *
+     * @param modifiedAfter  inclusive lower bound of the page's last-modified time (epoch millis)
+     * @param modifiedBefore inclusive upper bound of the page's last-modified time (epoch millis)
+     */
+    record SearchFilter(Set<String> spaceKeys, Set<String> labels, String author,
+                        Long modifiedAfter, Long modifiedBefore) {
+        public boolean isEmpty() {
+            return (spaceKeys == null || spaceKeys.isEmpty())
+                    && (labels == null || labels.isEmpty())
+                    && (author == null || author.isBlank())
+                    && modifiedAfter == null && modifiedBefore == null;
+        }
+    }
+
+    /**
+     * Per-call search options.
+     *
+     * @param filter     metadata pre-filter, may be {@code null}
+     * @param mmrLambda  relevance weight for maximal-marginal-relevance re-ranking; {@code null} or
+     *                   {@code >= 1} keeps plain similarity order
+     * @param candidates size of the kNN candidate set MMR picks from, ignored when {@code <= k}
+     * @param mode       how nearest neighbours are found, {@code null} for the configured default
+     */
+    record SearchOptions(SearchFilter filter, Float mmrLambda, int candidates, SearchMode mode) {
+        public static SearchOptions of(SearchFilter filter) {
+            return new SearchOptions(filter, null, 0, null);
+        }
+
+        public SearchOptions withMode(SearchMode mode) {
+            return new SearchOptions(filter, mmrLambda, candidates, mode);
+        }
+
+        public boolean diversify() {
+            return mmrLambda != null && mmrLambda < 1f;
+        }
+    }
+
+    enum SearchMode {
+        /** exact for small indexes, HNSW otherwise */
+        AUTO,
+        /** approximate search over the HNSW graph */
+        HNSW,
+        /** brute-force scan of every vector; also the ground truth for recall measurements */
+        EXACT,
+        /**
+         * Hamming scan over 1-bit sign codes for a candidate set, rescored with the stored float
+         * vectors; needs 1/32 of the memory of {@link #EXACT} for the scanned data
+         */
+        BINARY
+    }
+
     List<Chunk> fetchChunks(List<String> chunkIds) throws IOException;
+
+    /** Number of live chunks in the active index. */
+    int numDocs() throws IOException;
+
+    /**
+     * Title and URL of a page, as stored with each of its chunks.
+     *
+     * @param pageId Confluence page id; chunk ids are {@code <pageId>_<n>}
+     */
+    record PageTitle(String pageId, String title, String url) {
+        public static String pageIdOf(String chunkId) {
+            int sep = chunkId.lastIndexOf('_');
+            return sep > 0 ? chunkId.substring(0, sep) : chunkId;
+        }
+    }
+
+    /**
+     * One entry per page in the active index, read from stored fields. Scans every live chunk, so
+     * callers should keep the result rather than call this per query.
+     */
+    List<PageTitle> pageTitles() throws IOException;
+
+    /**
+     * Starts a rebuild into a fresh side index. Queries keep using the active index until
+     * {@link Rebuild#commitAndSwap(boolean)} switches over atomically; incremental
+     * {@link #addAll(List)} calls made meanwhile are applied to both indexes.
+     *
+     * @param replaceSpaces {@code null} to start from an empty index and rebuild everything; otherwise
+     *                      the side index starts as a copy of the active index without these spaces,
+     *                      so only they are replaced and every other space is carried over unchanged
+     * @throws IllegalStateException if another rebuild is in progress, or if a partial rebuild is
+     *                               requested while the active index uses a different embedding model
+     */
+    Rebuild beginRebuild(Set<String> replaceSpaces) throws IOException;
+
+    /**
+     * Switches back to the index that was active before the last swap.
+     *
+     * @return {@code false} if there is no previous index to go back to
+     */
+    boolean rollback() throws IOException;
+
+    /**
+     * Replays a sample of recent queries against the active index so that the HNSW graph, vectors
+     * and stored fields are in the page cache before traffic arrives.
+     *
+     * @return number of queries replayed
+     */
+    int warmUp() throws IOException;
+
+    // ---- segment maintenance --------------------------------------------------
+
+    /**
+     * One segment of the active index. Every segment carries its own HNSW graph, which kNN queries
+     * search one after another.
+     *
+     * @param vectors     documents with a vector, i.e. nodes of the segment's HNSW graph
+     * @param vectorBytes size of the raw vectors ({@code .vec})
+     * @param graphBytes  size of the HNSW graph ({@code .vex})
+     * @param merging     whether the segment is currently being merged away
+     */
+    record SegmentStats(String name, int maxDoc, int deletedDocs, int vectors, long sizeBytes, long vectorBytes,
+                        long graphBytes, boolean compound, boolean merging) {
+    }
+
+    /**
+     * Merge activity since the active index was opened.
+     *
+     * @param running        merges currently executing
+     * @param completed      merges finished
+     * @param mergedDocs     documents written by finished merges
+     * @param mergeMillis    wall time spent in finished merges
+     * @param lastForceMerge epoch millis of the last completed {@link #forceMerge(int)}, {@code null} if none
+     */
+    record MergeStats(int running, long completed, long mergedDocs, long mergeMillis, Long lastForceMerge) {
+    }
+
+    /**
+     * @param deletedRatio deleted documents over {@code maxDoc}; deleted documents stay in the graphs until merged away
+     */
+    record IndexStats(String indexId, int numDocs, int maxDoc, double deletedRatio, long sizeBytes, long vectorBytes,
+                      long graphBytes, List<SegmentStats> segments, MergeStats merges) {
+    }
+
+    IndexStats indexStats() throws IOException;
+
+    /**
+     * Merges the active index down to at most {@code maxSegments} segments, then commits and refreshes
+     * the searcher. Blocks until the merge is done; searches and writes continue meanwhile, while a
+     * rebuild swap or {@link #rollback()} waits for the merge to finish.
+     *
+     * @return number of segments after the merge
+     * @throws IllegalStateException on a read-only replica
+     */
+    int forceMerge(int maxSegments) throws IOException;
+
+    // ---- replication ----------------------------------------------------------
+
+    /**
+     * A file of an index commit.
+     *
+     * @param checksum Lucene footer checksum, lets a replica skip files it already has
+     */
+    record CommitFile(String name, long length, long checksum) {
+    }
+
+    /**
+     * Files making up one commit of the active index.
+     *
+     * @param indexId    name of the index directory; changes when a rebuild or rollback swaps indexes
+     * @param generation commit generation, increases with every commit of the same index
+     * @param files      every file of the commit, including its {@code segments_N}
+     */
+    record CommitManifest(String indexId, long generation, List<CommitFile> files) {
+    }
+
+    @FunctionalInterface
+    interface CommitFileSource {
+        InputStream open(String name) throws IOException;
+    }
+
+    /**
+     * @param files number of files actually copied
+     * @param bytes bytes actually copied
+     */
+    record InstallResult(int files, long bytes) {
+    }
+
+    /**
+     * Primary side: snapshots the latest commit of the active index and keeps its files from being
+     * deleted for the replication lease, so replicas can download them.
+     *
+     * @throws IllegalStateException on a read-only replica
+     */
+    CommitManifest latestCommit() throws IOException;
+
+    /**
+     * Primary side: opens a file of a commit previously returned by {@link #latestCommit()}.
+     *
+     * @throws java.nio.file.NoSuchFileException if the index was swapped or the file is not part of a leased commit
+     */
+    InputStream openCommitFile(String indexId, String name) throws IOException;
+
+    /**
+     * Replica side: copies the files of {@code manifest} that are missing locally, the
+     * {@code segments_N} file last, then refreshes the searcher. A new {@code indexId} is installed into
+     * its own directory and swapped in atomically.
+     *
+     * @throws IllegalStateException unless this node is a replica
+     */
+    InstallResult installCommit(CommitManifest manifest, CommitFileSource source) throws IOException;
+
+    interface Rebuild {
+        void addAll(List<Chunk> chunks) throws IOException;
+
+        /**
+         * Commits the side index, optionally force-merging it to one segment, verifies its doc
+         * count and makes it the active index. The previous index is kept for {@link #rollback()}.
+         * On failure the side index is discarded and the active index is left untouched.
+         */
+        void commitAndSwap(boolean forceMerge) throws IOException;
+
+        /** Discards the side index. */
+        void abort();
+    }
 }
@@ -0,0 +1,139 @@
+package com.dylincode.mcp.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.index.DirectoryReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+
+/**
+ * 依 reader 版本保留一份由向量建立的快照（例如 {@link FlatVectorMatrix}），在背景執行緒建立。
+ *
+ * <p>查詢執行緒只比對版本、不等待建立：快照不是目前 reader 的版本時回傳 null 並排程重建，呼叫端改走 HNSW。
+ * 同時只建立一份，建立期間以 {@code incRef} 保持 reader 開啟；{@link #reset()}（index 切換）之前開始的建立結果直接丟棄。
+ * 同一版本建立失敗後不再重試，等下一個 commit。</p>
+ *
+ * @param <K> 快照所屬的 index handle，以 identity 比對
+ */
+@Slf4j
+final class VectorSnapshotCache<K, T extends Closeable> implements Closeable {
+
+    interface Builder<K, T> {
+        T build(K owner, DirectoryReader reader) throws IOException;
+    }
+
+    private final String name;
+    private final Executor executor;
+    private final Builder<K, T> builder;
+    /** 快照仍符合目前設定（例如編碼）；不符時視同版本不同 */
+    private final Predicate<T> compatible;
+
+    private T value;
+    private K owner;
+    private long version;
+    private boolean building;
+    private K failedOwner;
+    private long failedVersion;
+    /** 每次 reset 加一，用來丟棄切換前開始的建立 */
+    private long epoch;
+
+    VectorSnapshotCache(String name, Executor executor, Builder<K, T> builder, Predicate<T> compatible) {
+        this.name = name;
+        this.executor = executor;
+        this.builder = builder;
+        this.compatible = compatible;
+    }
+
+    /**
+     * @return 與 reader 同版本的快照；尚未建好時為 null，並在背景開始建立
+     */
+    synchronized T get(K owner, DirectoryReader reader) {
+        long v = reader.getVersion();
+        if (value != null && this.owner == owner && version == v && compatible.test(value)) return value;
+        if (building || (failedOwner == owner && failedVersion == v)) return null;
+        reader.incRef();
+        building = true;
+        long started = epoch;
+        try {
+            executor.execute(() -> build(owner, reader, v, started));
+        } catch (RejectedExecutionException e) {
+            building = false;
+            decRef(reader);
+        }
+        return null;
+    }
+
+    private void build(K owner, DirectoryReader reader, long v, long started) {
+        T built = null;
+        boolean failed = false;
+        try {
+            if (isCurrent(started)) built = builder.build(owner, reader);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            log.warn("failed to build {} for reader version {}", name, v, e);
+        } finally {
+            decRef(reader);
+        }
+        T discard;
+        synchronized (this) {
+            building = false;
+            if (failed) {
+                failedOwner = owner;
+                failedVersion = v;
+            }
+            if (built != null && epoch == started) {
+                discard = value;
+                value = built;
+                this.owner = owner;
+                version = v;
+            } else {
+                discard = built;
+            }
+        }
+        closeQuietly(discard);
+    }
+
+    private synchronized boolean isCurrent(long started) {
+        return epoch == started;
+    }
+
+    /**
+     * 丟棄目前的快照，進行中的建立完成後也不會採用
+     */
+    void reset() {
+        T discard;
+        synchronized (this) {
+            epoch++;
+            discard = value;
+            value = null;
+            owner = null;
+            failedOwner = null;
+        }
+        closeQuietly(discard);
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+
+    private static void decRef(DirectoryReader reader) {
+        try {
+            reader.decRef();
+        } catch (IOException e) {
+            log.debug("failed to release reader", e);
+        }
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (IOException e) {
+            log.debug("failed to close snapshot", e);
+        }
+    }
+}
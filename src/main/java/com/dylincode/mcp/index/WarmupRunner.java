@@ -0,0 +1,37 @@
+package com.dylincode.mcp.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * 啟動時預熱 index；預熱完成前 readiness 為 REFUSING_TRAFFIC（{@code /actuator/health/readiness} 回 503），
+ * load balancer 不會把流量導到冷的 index
+ */
+@Slf4j
+@Component
+public class WarmupRunner implements ApplicationRunner {
+    private final VectorIndexService indexService;
+    private final ApplicationEventPublisher publisher;
+
+    public WarmupRunner(VectorIndexService indexService, ApplicationEventPublisher publisher) {
+        this.indexService = indexService;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.REFUSING_TRAFFIC);
+        try {
+            indexService.warmUp();
+        } catch (Exception e) {
+            // 預熱失敗仍然提供服務，只是前幾個查詢較慢
+            log.warn("index warm-up failed, accepting traffic with a cold index", e);
+        }
+        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+    }
+}
@@ -0,0 +1,214 @@
+package com.dylincode.mcp.ingest;
+
+import com.dylincode.mcp.config.IngestLeaseConfig;
+import com.dylincode.mcp.config.ReplicationConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 以共享目錄實作的攝取租約。
+ *
+ * <ul>
+ *   <li>{@code <dir>/<key>.lease} - 持有者、token 與到期時間（JSON），以暫存檔加 atomic move 寫入</li>
+ *   <li>{@code <dir>/<key>.lock} - 讀取與改寫租約檔期間持有的檔案鎖，避免兩個節點同時取得</li>
+ *   <li>{@code <dir>/nodes/<nodeId>} - 節點心跳（最後一次的 epoch millis），供 {@code /ingest/leases} 列出存活節點</li>
+ * </ul>
+ *
+ * <p>共享檔案系統必須支援 {@link FileChannel#lock()}（例如 NFSv4）。同一個 JVM 內的操作另以 synchronized 序列化，
+ * 因為檔案鎖是以 process 為單位。</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.ingest.lease.backend", havingValue = "file", matchIfMissing = true)
+public class FileIngestLease implements IngestLease {
+    private final Path dir;
+    private final Path nodesDir;
+    private final String nodeId;
+    private final long ttlMs;
+    /** replica 不攝取，不登記為存活節點 */
+    private final boolean ingests;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private record LeaseFile(String owner, long token, long expiresAt) {
+    }
+
+    public FileIngestLease(IngestLeaseConfig config, ReplicationConfig replication,
+                           @Value("${server.port:8080}") int port) throws IOException {
+        this.dir = Path.of(config.getDir()).toAbsolutePath();
+        this.nodesDir = dir.resolve("nodes");
+        this.nodeId = config.getNodeId() == null || config.getNodeId().isBlank()
+                ? InetAddress.getLocalHost().getHostName() + ":" + port
+                : config.getNodeId();
+        this.ttlMs = config.getTtlMs();
+        this.ingests = !replication.isReplica();
+        Files.createDirectories(nodesDir);
+        heartbeat();
+        log.info("ingest leases in {} as node {}", dir, nodeId);
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public synchronized Optional<Lease> tryAcquire(String key) {
+        return locked(key, current -> {
+            long now = System.currentTimeMillis();
+            boolean valid = current != null && current.expiresAt() > now;
+            if (valid && !current.owner().equals(nodeId)) return Optional.empty();
+            // 接回自己仍有效的租約時沿用 token，換手時遞增
+            long token = current == null ? 1 : (valid ? current.token() : current.token() + 1);
+            LeaseFile next = new LeaseFile(nodeId, token, now + ttlMs);
+            write(key, next);
+            if (current != null && !valid && !current.owner().equals(nodeId)) {
+                log.info("took over expired ingest lease {} from {}", key, current.owner());
+            }
+            return Optional.of(toLease(key, next));
+        });
+    }
+
+    @Override
+    public synchronized boolean renew(Lease lease) {
+        return locked(lease.key(), current -> {
+            if (current == null || !current.owner().equals(nodeId) || current.token() != lease.token()) return false;
+            write(lease.key(), new LeaseFile(nodeId, lease.token(), System.currentTimeMillis() + ttlMs));
+            return true;
+        });
+    }
+
+    @Override
+    public synchronized void release(Lease lease) {
+        locked(lease.key(), current -> {
+            if (current != null && current.owner().equals(nodeId) && current.token() == lease.token()) {
+                try {
+                    Files.deleteIfExists(leaseFile(lease.key()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Lease> holder(String key) {
+        LeaseFile current = read(key);
+        if (current == null || current.expiresAt() <= System.currentTimeMillis()) return Optional.empty();
+        return Optional.of(toLease(key, current));
+    }
+
+    @Override
+    public List<String> liveNodes() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        List<String> nodes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(nodesDir)) {
+            for (Path f : files.toList()) {
+                if (f.getFileName().toString().endsWith(".tmp")) continue;
+                try {
+                    if (Long.parseLong(Files.readString(f).trim()) > cutoff) nodes.add(decode(f.getFileName().toString()));
+                } catch (IOException | NumberFormatException e) {
+                    // 寫入中或已被刪除的心跳檔
+                }
+            }
+        } catch (IOException e) {
+            log.warn("failed to list ingest lease nodes in {}", nodesDir, e);
+        }
+        if (ingests && !nodes.contains(nodeId)) nodes.add(nodeId);
+        return nodes;
+    }
+
+    @Scheduled(fixedDelayString = "${app.ingest.lease.heartbeat-ms:15000}")
+    public void heartbeat() throws IOException {
+        if (!ingests) return;
+        Path f = nodesDir.resolve(encode(nodeId));
+        Path tmp = nodesDir.resolve(encode(nodeId) + ".tmp");
+        Files.writeString(tmp, Long.toString(System.currentTimeMillis()));
+        Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    void leave() throws IOException {
+        Files.deleteIfExists(nodesDir.resolve(encode(nodeId)));
+    }
+
+    private <T> T locked(String key, Function<LeaseFile, T> action) {
+        try (FileChannel ch = FileChannel.open(dir.resolve(encode(key) + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = ch.lock()) {
+            return action.apply(read(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private LeaseFile read(String key) {
+        Path f = leaseFile(key);
+        try {
+            return Files.exists(f) ? mapper.readValue(f.toFile(), LeaseFile.class) : null;
+        } catch (IOException e) {
+            log.warn("ignoring unreadable ingest lease {}", f, e);
+            return null;
+        }
+    }
+
+    private void write(String key, LeaseFile lease) {
+        Path f = leaseFile(key);
+        Path tmp = dir.resolve(encode(key) + ".lease.tmp");
+        try {
+            mapper.writeValue(tmp.toFile(), lease);
+            Files.move(tmp, f, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path leaseFile(String key) {
+        return dir.resolve(encode(key) + ".lease");
+    }
+
+    private static Lease toLease(String key, LeaseFile f) {
+        return new Lease(key, f.owner(), f.token(), f.expiresAt());
+    }
+
+    /** key 與節點名稱轉成安全的檔名（例如 host:port 的冒號） */
+    private static String encode(String name) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (Character.isLetterOrDigit(c) || c == '-' || c == '.' || c == '_') sb.append(c);
+            else sb.append('%').append(String.format("%04x", (int) c));
+        }
+        return sb.toString();
+    }
+
+    private static String decode(String file) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < file.length(); i++) {
+            char c = file.charAt(i);
+            if (c == '%' && i + 4 < file.length()) {
+                sb.append((char) Integer.parseInt(file.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.dylincode.mcp.ingest;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * 一個攝取工作的狀態與斷點，以 JSON 檔持久化，重啟後可從最後一個已 commit 的批次繼續。
+ *
+ * <p>進度與狀態由 worker 執行緒更新、由查詢 API 的執行緒讀取（取消旗標則相反），這些欄位皆為 volatile；
+ * 建立後不再改變的欄位在放入 {@code IngestJobService} 的 map 前設定完成。</p>
+ */
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class IngestJob {
+
+    public enum Type {
+        /** 同步整個 space，可斷點續傳 */
+        SPACE,
+        /** 攝取指定頁面 */
+        PAGES,
+        /** blue/green 重建（全部或部分 space），重啟後不續傳 */
+        REBUILD
+    }
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    /** 單頁攝取優先於批次同步 */
+    public static final int PRIORITY_BULK = 0;
+    public static final int PRIORITY_INTERACTIVE = 10;
+
+    String id;
+    Type type;
+    int priority;
+    volatile Status status = Status.QUEUED;
+
+    String spaceKey;
+    List<String> spaceKeys;
+    List<String> pageIds;
+    boolean forceMerge;
+    /** REBUILD 只替換 spaceKeys，其他 space 從目前的 index 沿用 */
+    boolean partial;
+
+    long createdAt;
+    volatile Long startedAt;
+    volatile Long finishedAt;
+    volatile long updatedAt;
+
+    /** 預估總頁數，未知為 -1 */
+    volatile int totalPages = -1;
+    volatile int processedPages;
+    volatile int indexedChunks;
+    /** 本次執行開始時已完成的頁數，用於計算吞吐量 */
+    volatile int runStartPages;
+
+    /** 斷點：下一批在 Confluence 分頁中的起始位置 */
+    volatile Integer nextStart = 0;
+    /** REBUILD 目前處理到第幾個 space */
+    volatile int spaceIndex;
+
+    volatile boolean cancelRequested;
+    volatile String error;
+    /** 等待中的 space 租約目前由哪個節點持有，未等待時為 null */
+    volatile String waitingFor;
+
+    public boolean isActive() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+
+    /** 本次執行的處理速度（頁 / 秒） */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Double getPagesPerSecond() {
+        if (startedAt == null) return null;
+        long end = finishedAt != null ? finishedAt : System.currentTimeMillis();
+        double seconds = (end - startedAt) / 1000.0;
+        int done = processedPages - runStartPages;
+        return seconds <= 0 || done <= 0 ? null : done / seconds;
+    }
+
+    /** 預估剩餘秒數 */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Long getEtaSeconds() {
+        Double rate = getPagesPerSecond();
+        if (status != Status.RUNNING || rate == null || totalPages < 0) return null;
+        return Math.round(Math.max(0, totalPages - processedPages) / rate);
+    }
+}
@@ -0,0 +1,483 @@
+package com.dylincode.mcp.ingest;
+
+import com.dylincode.mcp.config.IngestLeaseConfig;
+import com.dylincode.mcp.config.ReplicationConfig;
+import com.dylincode.mcp.confluence.ConfluenceClient;
+import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.model.Chunk;
+import com.dylincode.mcp.util.TextChunker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持久化的攝取工作佇列。
+ *
+ * <p>每個工作以 JSON 檔保存（{@link IngestJobStore}），space 同步以 Confluence 分頁為單位分批：
+ * 每批 embedding 完成後立即寫入 index 並 commit，再記錄下一批的起始位置作為斷點。
+ * 服務重啟時，未完成的 SPACE / PAGES 工作會從最後一個斷點繼續。</p>
+ *
+ * <p>佇列依優先權排序；批次同步在每批之間會先執行排隊中的高優先權工作（例如單頁 {@code /ingest}），
+ * 讓互動式請求不必等整個 space 同步完成。</p>
+ *
+ * <p>多個節點共用租約目錄時，只有持有 {@link IngestLease#WRITER} 租約的節點（primary）執行攝取，每個 space 只同步一次，
+ * 其他節點的 index 由 replica 複寫取得。非攝取節點拒絕新的攝取請求；它重啟時載入的工作保留斷點等待租約，
+ * 攝取節點停止續約後由它接手。space 同步開始前另外取得該 space 的租約，接手期間同一個 space 不會在新舊節點上同時同步。</p>
+ *
+ * <p>延遲初始化，不在啟動的關鍵路徑上；啟動完成後由 {@code IngestController} 在背景建立以續傳未完成的工作。</p>
+ */
+@Slf4j
+@Lazy
+@Component
+public class IngestJobService {
+    private static final int CHUNK_SIZE = 800;
+    private static final int OVERLAP = 120;
+    private static final int BATCH_PAGES = 50;
+
+    private static final Comparator<IngestJob> ORDER = Comparator
+            .comparingInt(IngestJob::getPriority).reversed()
+            .thenComparingLong(IngestJob::getCreatedAt);
+
+    private final ConfluenceClient confluence;
+    private final EmbeddingService embedding;
+    private final VectorIndexService indexService;
+    private final IngestJobStore store;
+    private final ReplicationConfig replication;
+    private final IngestLease lease;
+    private final long leaseHeartbeatMs;
+    private final int workers;
+    private final int retain;
+
+    private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<IngestJob>> completions = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<IngestJob> queue = new PriorityBlockingQueue<>(16, ORDER);
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = true;
+    /** 本節點持有的攝取節點租約 */
+    private volatile IngestLease.Held writer;
+
+    public IngestJobService(ConfluenceClient confluence, EmbeddingService embedding, VectorIndexService indexService,
+                            IngestJobStore store, ReplicationConfig replication,
+                            IngestLease lease, IngestLeaseConfig leaseConfig,
+                            @Value("${app.ingest.jobs.workers:1}") int workers,
+                            @Value("${app.ingest.jobs.retain:200}") int retain) {
+        this.confluence = confluence;
+        this.embedding = embedding;
+        this.indexService = indexService;
+        this.store = store;
+        this.replication = replication;
+        this.lease = lease;
+        this.leaseHeartbeatMs = leaseConfig.getHeartbeatMs();
+        this.workers = Math.max(1, workers);
+        this.retain = retain;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (replication.isReplica()) {
+            // replica 的 index 由 primary 複寫而來，不執行攝取
+            log.info("read-only replica, ingest workers not started");
+            return;
+        }
+        if (!isWriter()) {
+            log.info("ingest writer is {}, queued jobs wait for the lease", writerHolder());
+        }
+        for (IngestJob job : store.loadAll()) {
+            jobs.put(job.getId(), job);
+            if (!job.isActive()) continue;
+            if (job.getType() == IngestJob.Type.REBUILD && job.getStatus() == IngestJob.Status.RUNNING) {
+                // side index 只存在於上次的 process 中，無法續傳
+                finish(job, IngestJob.Status.FAILED, "interrupted by restart");
+                continue;
+            }
+            job.setStatus(IngestJob.Status.QUEUED);
+            store.save(job);
+            queue.add(job);
+            log.info("resume ingest job {} {} from start={}", job.getId(), job.getType(), job.getNextStart());
+        }
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofVirtual().name("ingest-worker-" + i).start(this::workLoop));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        // 釋放租約，讓其他節點立即接手攝取；在中斷 worker 前釋放，中斷的線程無法存取租約檔
+        synchronized (this) {
+            try {
+                if (writer != null) writer.close();
+            } catch (RuntimeException e) {
+                log.warn("failed to release ingest writer lease, it expires after ttl", e);
+            }
+            writer = null;
+        }
+        threads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 本節點是否為攝取節點；尚未持有（或已失去）時嘗試取得 {@link IngestLease#WRITER} 租約，replica 一律為 false
+     */
+    public synchronized boolean isWriter() {
+        if (replication.isReplica() || !running) return false;
+        IngestLease.Held held = writer;
+        if (held != null && !held.lost()) return true;
+        if (held != null) held.close();
+        writer = lease.tryAcquire(IngestLease.WRITER).map(l -> lease.hold(l, leaseHeartbeatMs)).orElse(null);
+        if (writer != null) log.info("node {} is the ingest writer (token {})", lease.nodeId(), writer.lease().token());
+        return writer != null;
+    }
+
+    private String writerHolder() {
+        return lease.holder(IngestLease.WRITER).map(IngestLease.Lease::owner).orElse("another node");
+    }
+
+    // ---- submit / query -------------------------------------------------------
+
+    /**
+     * 同一個 space 已有進行中的工作時直接回傳該工作
+     */
+    public synchronized IngestJob submitSpace(String spaceKey) throws IOException {
+        Optional<IngestJob> existing = jobs.values().stream()
+                .filter(j -> j.isActive() && j.getType() == IngestJob.Type.SPACE && spaceKey.equals(j.getSpaceKey()))
+                .findFirst();
+        if (existing.isPresent()) return existing.get();
+        IngestJob job = newJob(IngestJob.Type.SPACE, IngestJob.PRIORITY_BULK);
+        job.setSpaceKey(spaceKey);
+        return enqueue(job);
+    }
+
+    /**
+     * 排程同步：只有攝取節點排入所有 space，其他節點不排入任何工作
+     * @return 排入（或已在進行中）的工作；非攝取節點為空
+     */
+    public synchronized List<IngestJob> submitScheduledSync(Collection<String> spaceKeys) throws IOException {
+        if (!isWriter()) {
+            log.info("skip scheduled sync, ingest writer is {}", writerHolder());
+            return List.of();
+        }
+        List<IngestJob> submitted = new ArrayList<>();
+        for (String key : spaceKeys) submitted.add(submitSpace(key));
+        return submitted;
+    }
+
+    public IngestJob submitPages(List<String> pageIds) throws IOException {
+        IngestJob job = newJob(IngestJob.Type.PAGES, IngestJob.PRIORITY_INTERACTIVE);
+        job.setPageIds(List.copyOf(pageIds));
+        job.setTotalPages(pageIds.size());
+        return enqueue(job);
+    }
+
+    /**
+     * @param partial 只替換 spaceKeys，其他 space 保留目前 index 中的內容；false 時新 index 只包含 spaceKeys
+     * @throws IllegalStateException 已有進行中的重建
+     */
+    public synchronized IngestJob submitRebuild(Collection<String> spaceKeys, boolean forceMerge, boolean partial) throws IOException {
+        if (jobs.values().stream().anyMatch(j -> j.isActive() && j.getType() == IngestJob.Type.REBUILD)) {
+            throw new IllegalStateException("A rebuild job is already queued or running");
+        }
+        IngestJob job = newJob(IngestJob.Type.REBUILD, IngestJob.PRIORITY_BULK);
+        job.setSpaceKeys(List.copyOf(spaceKeys));
+        job.setForceMerge(forceMerge);
+        job.setPartial(partial);
+        return enqueue(job);
+    }
+
+    public Optional<IngestJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public List<IngestJob> list() {
+        return jobs.values().stream().sorted(Comparator.comparingLong(IngestJob::getCreatedAt).reversed()).toList();
+    }
+
+    /**
+     * 排隊中的工作立即取消；執行中的工作在目前這一批結束前停止，已 commit 的批次保留
+     */
+    public Optional<IngestJob> cancel(String id) throws IOException {
+        IngestJob job = jobs.get(id);
+        if (job == null) return Optional.empty();
+        if (!job.isActive()) return Optional.of(job);
+        job.setCancelRequested(true);
+        if (queue.remove(job)) {
+            finish(job, IngestJob.Status.CANCELLED, null);
+        } else {
+            store.save(job);
+        }
+        return Optional.of(job);
+    }
+
+    /**
+     * 工作結束（成功、失敗或取消）時完成；不存在或已被清除的工作以 {@link NoSuchElementException} 失敗
+     */
+    public CompletableFuture<IngestJob> completion(String id) {
+        IngestJob job = jobs.get(id);
+        if (job == null) return CompletableFuture.failedFuture(new NoSuchElementException("unknown ingest job " + id));
+        CompletableFuture<IngestJob> f = completions.computeIfAbsent(id, k -> new CompletableFuture<>());
+        if (!job.isActive()) {
+            completions.remove(id, f);
+            f.complete(job);
+        }
+        return f;
+    }
+
+    /**
+     * @throws IllegalStateException 此節點是唯讀 replica，或其他節點是攝取節點
+     */
+    private IngestJob newJob(IngestJob.Type type, int priority) {
+        if (replication.isReplica()) throw new IllegalStateException("This node is a read-only replica; ingest on the primary");
+        if (!isWriter()) throw new IllegalStateException("Node " + writerHolder() + " is the ingest writer; ingest there");
+        IngestJob job = new IngestJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setType(type);
+        job.setPriority(priority);
+        job.setCreatedAt(System.currentTimeMillis());
+        return job;
+    }
+
+    private IngestJob enqueue(IngestJob job) throws IOException {
+        store.save(job);
+        jobs.put(job.getId(), job);
+        queue.add(job);
+        return job;
+    }
+
+    // ---- execution ------------------------------------------------------------
+
+    private void workLoop() {
+        while (running) {
+            try {
+                run(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void run(IngestJob job) {
+        if (job.isCancelRequested()) {
+            finish(job, IngestJob.Status.CANCELLED, null);
+            return;
+        }
+        if (!isWriter()) {
+            if (running) waitForLease(job, new LeaseHeldException(IngestLease.WRITER, writerHolder()));
+            return;
+        }
+        try {
+            job.setStatus(IngestJob.Status.RUNNING);
+            job.setStartedAt(System.currentTimeMillis());
+            job.setRunStartPages(job.getProcessedPages());
+            store.save(job);
+            switch (job.getType()) {
+                case SPACE -> runSpace(job);
+                case PAGES -> runPages(job);
+                case REBUILD -> runRebuild(job);
+            }
+            finish(job, IngestJob.Status.SUCCEEDED, null);
+        } catch (Exception e) {
+            if (!running && !job.isCancelRequested()) {
+                // 關機中斷：保留斷點，下次啟動續傳
+                log.info("ingest job {} interrupted by shutdown at start={}", job.getId(), job.getNextStart());
+                return;
+            }
+            if (e instanceof CancelledException) {
+                finish(job, IngestJob.Status.CANCELLED, null);
+                return;
+            }
+            if (e instanceof LeaseHeldException held) {
+                waitForLease(job, held);
+                return;
+            }
+            log.error("ingest job {} failed", job.getId(), e);
+            finish(job, IngestJob.Status.FAILED, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 先取得 space 的攝取租約；執行期間背景續約，其他節點持有中或失去 space / 攝取節點租約時（在下一批之前）改為等待租約
+     */
+    private void runSpace(IngestJob job) throws Exception {
+        String key = job.getSpaceKey();
+        IngestLease.Lease acquired = lease.tryAcquire(key).orElseThrow(() -> new LeaseHeldException(key,
+                lease.holder(key).map(IngestLease.Lease::owner).orElse("another node")));
+        job.setWaitingFor(null);
+        try (IngestLease.Held held = lease.hold(acquired, leaseHeartbeatMs)) {
+            runSpace(job, key, held);
+        }
+    }
+
+    private void runSpace(IngestJob job, String key, IngestLease.Held held) throws Exception {
+        if (job.getTotalPages() < 0) job.setTotalPages(confluence.countPagesInSpace(key));
+        while (job.getNextStart() != null) {
+            checkCancelled(job);
+            if (held.lost()) {
+                throw new LeaseHeldException(key, lease.holder(key).map(IngestLease.Lease::owner).orElse("another node"));
+            }
+            if (!isWriter()) throw new LeaseHeldException(IngestLease.WRITER, writerHolder());
+            ConfluenceClient.PageBatch batch = confluence.fetchPagesInSpace(key, job.getNextStart(), BATCH_PAGES);
+            List<Chunk> chunks = new ArrayList<>();
+            for (var page : batch.pages()) {
+                checkCancelled(job);
+                chunks.addAll(toChunks(page));
+            }
+            indexService.addAll(chunks);
+            job.setProcessedPages(job.getProcessedPages() + batch.pages().size());
+            job.setIndexedChunks(job.getIndexedChunks() + chunks.size());
+            job.setNextStart(batch.nextStart());
+            store.save(job);
+            log.info("ingest space {} processed {}/{} pages", key, job.getProcessedPages(), job.getTotalPages());
+            runPriorityJobs(job);
+        }
+    }
+
+    private void runPages(IngestJob job) throws Exception {
+        List<String> ids = job.getPageIds();
+        for (int i = job.getProcessedPages(); i < ids.size(); i++) {
+            checkCancelled(job);
+            List<Chunk> chunks = toChunks(confluence.fetchPage(ids.get(i)));
+            indexService.addAll(chunks);
+            job.setProcessedPages(i + 1);
+            job.setIndexedChunks(job.getIndexedChunks() + chunks.size());
+            store.save(job);
+        }
+    }
+
+    private void runRebuild(IngestJob job) throws Exception {
+        int total = 0;
+        for (String key : job.getSpaceKeys()) {
+            int n = confluence.countPagesInSpace(key);
+            if (n < 0) { total = -1; break; }
+            total += n;
+        }
+        job.setTotalPages(total);
+        VectorIndexService.Rebuild rebuild = indexService.beginRebuild(job.isPartial() ? Set.copyOf(job.getSpaceKeys()) : null);
+        try {
+            for (String key : job.getSpaceKeys()) {
+                Integer start = 0;
+                while (start != null) {
+                    checkCancelled(job);
+                    ConfluenceClient.PageBatch batch = confluence.fetchPagesInSpace(key, start, BATCH_PAGES);
+                    List<Chunk> chunks = new ArrayList<>();
+                    for (var page : batch.pages()) {
+                        checkCancelled(job);
+                        chunks.addAll(toChunks(page));
+                    }
+                    rebuild.addAll(chunks);
+                    job.setProcessedPages(job.getProcessedPages() + batch.pages().size());
+                    job.setIndexedChunks(job.getIndexedChunks() + chunks.size());
+                    store.save(job);
+                    start = batch.nextStart();
+                    runPriorityJobs(job);
+                }
+                job.setSpaceIndex(job.getSpaceIndex() + 1);
+            }
+            checkCancelled(job);
+            rebuild.commitAndSwap(job.isForceMerge());
+        } catch (Exception e) {
+            rebuild.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * 在批次之間先執行排隊中優先權較高的工作
+     */
+    private void runPriorityJobs(IngestJob current) {
+        IngestJob head;
+        while ((head = queue.peek()) != null && head.getPriority() > current.getPriority()) {
+            if (queue.remove(head)) run(head);
+        }
+    }
+
+    private List<Chunk> toChunks(ConfluenceClient.Page page) throws Exception {
+        List<Chunk> out = new ArrayList<>();
+        var pieces = TextChunker.split(page.text(), CHUNK_SIZE, OVERLAP);
+        List<float[]> vectors = embedding.embedAll(pieces);
+        for (int i = 0; i < pieces.size(); i++) {
+            String chunkId = page.id() + "_" + i;
+            out.add(new Chunk(chunkId, page.title(), page.url(), pieces.get(i), vectors.get(i),
+                    page.spaceKey(), page.labels(), page.author(), page.lastModified()));
+        }
+        return out;
+    }
+
+    private void checkCancelled(IngestJob job) {
+        if (job.isCancelRequested() || !running) throw new CancelledException();
+    }
+
+    private static final class CancelledException extends RuntimeException {
+        CancelledException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * 租約由其他節點持有：保留斷點回到 QUEUED，等一個心跳間隔後重新排入佇列；等待期間取消由 run 處理
+     */
+    private void waitForLease(IngestJob job, LeaseHeldException held) {
+        log.info("ingest job {} waiting: {}", job.getId(), held.getMessage());
+        job.setStatus(IngestJob.Status.QUEUED);
+        job.setWaitingFor(held.holder);
+        try {
+            store.save(job);
+        } catch (IOException e) {
+            log.warn("failed to save ingest job {}", job.getId(), e);
+        }
+        CompletableFuture.delayedExecutor(leaseHeartbeatMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (running) queue.add(job);
+        });
+    }
+
+    private static final class LeaseHeldException extends RuntimeException {
+        final String holder;
+
+        LeaseHeldException(String key, String holder) {
+            super("ingest lease " + key + " is held by " + holder, null, false, false);
+            this.holder = holder;
+        }
+    }
+
+    private void finish(IngestJob job, IngestJob.Status status, String error) {
+        job.setStatus(status);
+        job.setError(error);
+        job.setFinishedAt(System.currentTimeMillis());
+        try {
+            store.save(job);
+        } catch (IOException e) {
+            log.warn("failed to persist ingest job {}", job.getId(), e);
+        }
+        CompletableFuture<IngestJob> f = completions.remove(job.getId());
+        if (f != null) f.complete(job);
+        pruneFinished();
+    }
+
+    private void pruneFinished() {
+        List<IngestJob> finished = jobs.values().stream()
+                .filter(j -> !j.isActive())
+                .sorted(Comparator.comparing(IngestJob::getFinishedAt, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .toList();
+        for (int i = 0; i < finished.size() - retain; i++) {
+            IngestJob j = finished.get(i);
+            jobs.remove(j.getId());
+            // 已結束的工作，等待者直接拿到最後狀態
+            CompletableFuture<IngestJob> f = completions.remove(j.getId());
+            if (f != null) f.complete(j);
+            try {
+                store.delete(j.getId());
+            } catch (IOException e) {
+                log.warn("failed to delete ingest job file {}", j.getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.dylincode.mcp.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以本機檔案保存 IngestJob，每個工作一個 JSON 檔，寫入時先寫暫存檔再 rename，確保不會讀到寫一半的內容
+ */
+@Slf4j
+@Lazy
+@Component
+public class IngestJobStore {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Path dir;
+
+    public IngestJobStore(@Value("${app.ingest.jobs.dir:data/jobs}") String dir) throws IOException {
+        this.dir = Path.of(dir);
+        Files.createDirectories(this.dir);
+    }
+
+    public synchronized void save(IngestJob job) throws IOException {
+        job.setUpdatedAt(System.currentTimeMillis());
+        Path target = dir.resolve(job.getId() + ".json");
+        Path tmp = dir.resolve(job.getId() + ".json.tmp");
+        mapper.writeValue(tmp.toFile(), job);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public List<IngestJob> loadAll() throws IOException {
+        List<IngestJob> jobs = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            for (Path f : files.filter(f -> f.getFileName().toString().endsWith(".json")).toList()) {
+                try {
+                    jobs.add(mapper.readValue(f.toFile(), IngestJob.class));
+                } catch (IOException e) {
+                    log.warn("skip unreadable job file {}", f, e);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    public synchronized void delete(String id) throws IOException {
+        Files.deleteIfExists(dir.resolve(id + ".json"));
+    }
+}
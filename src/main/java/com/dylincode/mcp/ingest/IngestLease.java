@@ -0,0 +1,104 @@
+package com.dylincode.mcp.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 跨節點的攝取租約。每個 key（攝取節點或 space）同時只有一個節點持有；持有者定期續約，
+ * 停止續約超過 TTL 後其他節點可接手。
+ *
+ * <p>預設實作為共享目錄上的 {@link FileIngestLease}；其他後端（例如資料庫或 etcd）實作此介面並設定
+ * {@code app.ingest.lease.backend}。</p>
+ *
+ * <p>攝取只在持有 {@link #WRITER} 租約的節點（primary）進行，其他節點的 index 由 replica 複寫取得；
+ * 非 replica 節點共用租約目錄時只有一個會成為攝取節點，它停止續約後由其他節點接手。
+ * space 租約另外保證接手過程中同一個 space 不會在新舊攝取節點上同時同步。</p>
+ */
+public interface IngestLease {
+
+    /** 攝取節點的租約 key；以底線開頭，不會與 Confluence space key 衝突 */
+    String WRITER = "_writer";
+
+    /**
+     * @param token     每次換手遞增，可用來辨識過期的持有者
+     * @param expiresAt 持有者時鐘的 epoch millis
+     */
+    record Lease(String key, String owner, long token, long expiresAt) {
+    }
+
+    String nodeId();
+
+    /**
+     * 沒有人持有、已過期或本節點持有時取得（或接回）租約
+     * @return 其他節點持有中時為 empty
+     */
+    Optional<Lease> tryAcquire(String key);
+
+    /**
+     * 延長租約
+     * @return {@code false} 表示租約已過期且被其他節點取得
+     */
+    boolean renew(Lease lease);
+
+    void release(Lease lease);
+
+    /** 目前有效的持有者 */
+    Optional<Lease> holder(String key);
+
+    /** 心跳未過期的節點，包含本節點 */
+    List<String> liveNodes();
+
+    /**
+     * 在背景定期續約，關閉時釋放；續約失敗（被其他節點接手）後 {@link #lost()} 為 true，持有者應停止工作
+     */
+    default Held hold(Lease lease, long heartbeatMs) {
+        return new Held(this, lease, heartbeatMs);
+    }
+
+    @Slf4j
+    final class Held implements AutoCloseable {
+        private final IngestLease owner;
+        private final Lease lease;
+        private final Thread renewer;
+        private volatile boolean lost;
+
+        Held(IngestLease owner, Lease lease, long heartbeatMs) {
+            this.owner = owner;
+            this.lease = lease;
+            this.renewer = Thread.ofVirtual().name("lease-" + lease.key()).start(() -> {
+                while (!lost) {
+                    try {
+                        Thread.sleep(heartbeatMs);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    try {
+                        if (!owner.renew(lease)) {
+                            log.warn("lost ingest lease {} (token {})", lease.key(), lease.token());
+                            lost = true;
+                        }
+                    } catch (RuntimeException e) {
+                        // 暫時無法存取租約儲存：繼續重試，真的過期時下一次續約會回報失去
+                        log.warn("failed to renew ingest lease {}", lease.key(), e);
+                    }
+                }
+            });
+        }
+
+        public Lease lease() {
+            return lease;
+        }
+
+        public boolean lost() {
+            return lost;
+        }
+
+        @Override
+        public void close() {
+            renewer.interrupt();
+            if (!lost) owner.release(lease);
+        }
+    }
+}
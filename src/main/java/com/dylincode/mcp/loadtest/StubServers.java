@@ -0,0 +1,209 @@
+package com.dylincode.mcp.loadtest;
+
+import com.dylincode.mcp.config.LoadTestConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 壓測用的本機替身，在 {@code app.loadtest.stub.port} 上模擬外部服務，離線也能量測容量：
+ *
+ * <ul>
+ *   <li><strong>Ollama</strong> - {@code POST /api/embeddings}</li>
+ *   <li><strong>OpenAI</strong> - {@code POST /v1/embeddings}、{@code POST /v1/chat/completions}</li>
+ *   <li><strong>Confluence</strong> - {@code GET /rest/api/space/{key}/content} 分頁、{@code /rest/api/content/{id}}、
+ *       {@code /rest/api/search} 的頁面總數</li>
+ * </ul>
+ *
+ * <p>向量與頁面內容都是確定性的（見 {@link SyntheticText}），延遲依設定的基準值加上隨機抖動。
+ * 使用獨立的 HTTP server 與虛擬線程，不佔用應用程式的 Tomcat 執行緒。</p>
+ */
+@Slf4j
+@Component
+@Profile("loadtest")
+public class StubServers {
+    private static final Pattern SPACE_CONTENT = Pattern.compile("^/rest/api/space/([^/]+)/content$");
+    private static final Pattern CONTENT = Pattern.compile("^/rest/api/content/([^/]+)-(\\d+)$");
+    private static final Pattern CQL_SPACE = Pattern.compile("space=\"([^\"]+)\"");
+    /** 固定的最後修改時間，讓重複攝取得到相同內容 */
+    private static final String VERSION_WHEN = "2024-01-01T00:00:00.000Z";
+
+    private final LoadTestConfig.Stub config;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private HttpServer server;
+
+    public StubServers(LoadTestConfig config) {
+        this.config = config.getStub();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", config.getPort()), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/embeddings", ex -> handle(ex, this::ollamaEmbedding));
+        server.createContext("/v1/embeddings", ex -> handle(ex, this::openAiEmbedding));
+        server.createContext("/v1/chat/completions", ex -> handle(ex, this::chatCompletion));
+        server.createContext("/rest/api/", ex -> handle(ex, this::confluence));
+        server.start();
+        log.info("load test stubs listening on 127.0.0.1:{} ({} dims, {} pages per space)",
+                config.getPort(), config.getDimensions(), config.getPagesPerSpace());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    private interface Handler {
+        Object respond(HttpExchange ex) throws Exception;
+    }
+
+    private void handle(HttpExchange ex, Handler handler) throws IOException {
+        byte[] bytes;
+        try {
+            Object body = handler.respond(ex);
+            bytes = body == null ? null : mapper.writeValueAsBytes(body);
+        } catch (Exception e) {
+            log.warn("stub {} failed: {}", ex.getRequestURI(), e.toString());
+            ex.sendResponseHeaders(500, -1);
+            ex.close();
+            return;
+        }
+        try (ex) {
+            if (bytes == null) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static void delay(long latencyMs, long jitterMs) throws InterruptedException {
+        long ms = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs) : 0);
+        if (ms > 0) Thread.sleep(ms);
+    }
+
+    private JsonNode readBody(HttpExchange ex) throws IOException {
+        return mapper.readTree(ex.getRequestBody());
+    }
+
+    // ---- Ollama / OpenAI ------------------------------------------------------
+
+    private Object ollamaEmbedding(HttpExchange ex) throws Exception {
+        String prompt = readBody(ex).path("prompt").asText("");
+        delay(config.getEmbedLatencyMs(), config.getEmbedJitterMs());
+        return Map.of("embedding", SyntheticText.embed(prompt, config.getDimensions()));
+    }
+
+    private Object openAiEmbedding(HttpExchange ex) throws Exception {
+        String input = readBody(ex).path("input").asText("");
+        delay(config.getEmbedLatencyMs(), config.getEmbedJitterMs());
+        return Map.of("data", new Object[]{Map.of("index", 0, "embedding", SyntheticText.embed(input, config.getDimensions()))});
+    }
+
+    private Object chatCompletion(HttpExchange ex) throws Exception {
+        int promptChars = 0;
+        for (JsonNode m : readBody(ex).path("messages")) promptChars += m.path("content").asText("").length();
+        delay(config.getChatLatencyMs(), config.getChatJitterMs());
+        String content = "（壓測替身回答）依參考資料整理如下。";
+        return Map.of(
+                "choices", new Object[]{Map.of("index", 0, "message", Map.of("role", "assistant", "content", content))},
+                "usage", Map.of("prompt_tokens", promptChars / 4, "completion_tokens", content.length()));
+    }
+
+    // ---- Confluence -----------------------------------------------------------
+
+    private Object confluence(HttpExchange ex) throws Exception {
+        String path = ex.getRequestURI().getPath();
+        Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+        delay(config.getConfluenceLatencyMs(), config.getConfluenceJitterMs());
+
+        Matcher m = SPACE_CONTENT.matcher(path);
+        if (m.matches()) {
+            String spaceKey = m.group(1);
+            int start = Integer.parseInt(query.getOrDefault("start", "0"));
+            int limit = Integer.parseInt(query.getOrDefault("limit", "25"));
+            int end = Math.min(start + limit, config.getPagesPerSpace());
+            ObjectNode page = mapper.createObjectNode();
+            ArrayNode results = page.putArray("results");
+            for (int i = start; i < end; i++) results.add(page(spaceKey, i));
+            page.put("start", start).put("limit", limit).put("size", results.size());
+            if (end < config.getPagesPerSpace()) {
+                page.putObject("_links").put("next",
+                        "/rest/api/space/" + spaceKey + "/content?type=page&start=" + end + "&limit=" + limit);
+            }
+            ObjectNode root = mapper.createObjectNode();
+            root.set("page", page);
+            return root;
+        }
+        m = CONTENT.matcher(path);
+        if (m.matches()) {
+            int index = Integer.parseInt(m.group(2));
+            return index < config.getPagesPerSpace() ? page(m.group(1), index) : null;
+        }
+        if (path.equals("/rest/api/search")) {
+            Matcher space = CQL_SPACE.matcher(query.getOrDefault("cql", ""));
+            return Map.of("totalSize", space.find() ? config.getPagesPerSpace() : 0);
+        }
+        return null;
+    }
+
+    /**
+     * 頁面 id 為 {@code <spaceKey>-<序號>}，內容由 id 決定
+     */
+    private ObjectNode page(String spaceKey, int index) {
+        String id = spaceKey + "-" + index;
+        Random random = new Random(id.hashCode());
+        StringBuilder html = new StringBuilder();
+        for (int p = 0; p < config.getParagraphsPerPage(); p++) {
+            html.append("<p>").append(SyntheticText.words(random, 60)).append(".</p>");
+        }
+        ObjectNode n = mapper.createObjectNode();
+        n.put("id", id).put("type", "page").put("title", SyntheticText.words(random, 3));
+        n.putObject("space").put("key", spaceKey);
+        n.putObject("body").putObject("storage").put("value", html.toString()).put("representation", "storage");
+        ObjectNode version = n.putObject("version").put("number", 1).put("when", VERSION_WHEN);
+        version.putObject("by").put("publicName", "Load Test");
+        n.putObject("metadata").putObject("labels").putArray("results").addObject().put("name", "loadtest");
+        n.putObject("_links").put("webui", "/spaces/" + spaceKey + "/pages/" + id);
+        return n;
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,67 @@
+package com.dylincode.mcp.loadtest;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * 壓測用的合成文字與向量：Confluence 替身的頁面內容與壓測端的查詢使用同一組詞彙，
+ * embedding 替身以詞的雜湊投影產生向量，內容相近的文字得到相近的向量，搜尋結果有意義。
+ *
+ * <p>只使用 JDK，壓測產生器（src/test 的 {@code LoadGenerator}）不需要 Spring 的 classpath 也能使用。</p>
+ */
+public final class SyntheticText {
+    static final List<String> WORDS = List.of(
+            "payment", "webhook", "refund", "invoice", "settlement", "merchant", "checkout", "subscription",
+            "deploy", "rollback", "pipeline", "release", "canary", "kubernetes", "cluster", "namespace",
+            "database", "replica", "backup", "migration", "schema", "index", "query", "latency",
+            "oauth", "token", "session", "permission", "role", "audit", "password", "certificate",
+            "alert", "incident", "oncall", "runbook", "dashboard", "metric", "logging", "tracing",
+            "kafka", "consumer", "producer", "topic", "partition", "offset", "retry", "timeout",
+            "cache", "redis", "eviction", "ttl", "gateway", "proxy", "loadbalancer", "dns",
+            "onboarding", "leave", "expense", "payroll", "benefit", "interview", "review", "policy",
+            "api", "endpoint", "version", "contract", "sdk", "client", "server", "error",
+            "report", "analytics", "warehouse", "etl", "airflow", "spark", "batch", "stream",
+            "mobile", "android", "ios", "frontend", "react", "build", "test", "coverage",
+            "billing", "currency", "tax", "ledger", "reconciliation", "fraud", "risk", "limit");
+
+    private SyntheticText() {
+    }
+
+    public static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder(count * 8);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS.get(random.nextInt(WORDS.size())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 依詞的雜湊把每個詞投影到固定幾個維度後加總並正規化；空字串也會得到非零向量
+     */
+    public static float[] embed(String text, int dimensions) {
+        float[] v = new float[dimensions];
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                project(text.substring(start, i).toLowerCase(), v);
+                start = -1;
+            }
+        }
+        project("\u0000" + text.length(), v);
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        norm = Math.sqrt(norm);
+        if (norm > 0) for (int i = 0; i < v.length; i++) v[i] /= (float) norm;
+        return v;
+    }
+
+    private static void project(String token, float[] v) {
+        SplittableRandom r = new SplittableRandom(token.hashCode());
+        for (int i = 0; i < 16; i++) v[r.nextInt(v.length)] += r.nextBoolean() ? 1f : -1f;
+    }
+}
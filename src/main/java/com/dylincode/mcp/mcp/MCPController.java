@@ -1,24 +1,45 @@
 package com.dylincode.mcp.mcp;
 
-import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.admission.AdmissionControl;
+import com.dylincode.mcp.admission.AdmissionRejectedException;
+import com.dylincode.mcp.config.SearchConfig;
 import com.dylincode.mcp.exception.ClientVisibleException;
 import com.dylincode.mcp.index.VectorIndexService;
 
 import com.dylincode.mcp.mcp.tools.ToolRegistry;
+import com.dylincode.mcp.metrics.RequestTrace;
+import com.dylincode.mcp.metrics.RequestTracer;
+import com.dylincode.mcp.metrics.StartupMetrics;
+import com.dylincode.mcp.search.SearchService;
+import com.dylincode.mcp.search.TitleSuggester;
 import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.RawValue;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
@@ -29,7 +50,6 @@ import java.util.*;
  * - Implemented methods:
  * "initialize", "tools/list", "tools/call",
  * "resources/list", "resources/read".
- * - Replace InMemoryVectorStore with your Lucene/BGE‑M3 implementation.
  * <p>
  * Usage:
  * POST /mcp with a JSON‑RPC request body.
@@ -39,20 +59,59 @@ import java.util.*;
  * {"jsonrpc":"2.0","id":"2","method":"tools/list"}
  * {"jsonrpc":"2.0","id":"3","method":"tools/call","params":{"name":"search","arguments":{"query":"payment rollback","top_k":3}}}
  * {"jsonrpc":"2.0","id":"4","method":"tools/call","params":{"name":"fetch","arguments":{"ids":["a_3","a_4"]}}}
+ * {"jsonrpc":"2.0","id":"5","method":"tools/call","params":{"name":"suggest","arguments":{"query":"payment ro","limit":5}}}
+ * <p>
+ * 請求直接從 body 串流綁定成 {@link JsonRpcRequest}（params 保持 JsonNode，交給各 method 讀取），
+ * 回應直接寫到 response stream。tools/call 的結果只序列化一次：同一份 JSON 既是 text content，
+ * 也原樣放進 {@code structuredContent}。payload 日誌依 {@code app.mcp.log.sample-rate} 取樣並截斷；
+ * {@code app.mcp.allocation-metrics} 開啟時，每個請求配置的記憶體記錄在 {@code mcp.rpc.allocated}（量測用，預設關閉）。
+ * <p>
+ * tools/call 的各階段耗時（admission 等待、embedding、搜尋、讀取、序列化）由 {@link RequestTracer} 記錄；
+ * {@code app.trace.response-meta} 開啟或請求帶 {@code params._meta.trace=true} 時放進結果的 {@code _meta.timings}。
  */
 @Slf4j
 @RestController
 @RequestMapping(path = {"/mcp", "/"}, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 public class MCPController {
 
+    private static final com.sun.management.ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t
+                    && t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled() ? t : null;
+
     private final ObjectMapper mapper;
+    private final ObjectReader requestReader;
+    private final ObjectWriter responseWriter;
     private final ToolRegistry tools;
-    private final EmbeddingService embedding;
-
-    public MCPController(ObjectMapper mapper, VectorIndexService store, EmbeddingService embedding) {
+    private final StartupMetrics startupMetrics;
+    private final AdmissionControl admission;
+    private final RequestTracer tracer;
+    /** 未開啟 allocation metrics 或 JVM 不支援時為 null */
+    private final DistributionSummary allocated;
+    private final double logSampleRate;
+    private final int logMaxChars;
+
+    public MCPController(ObjectMapper mapper, VectorIndexService store, SearchService search,
+                         SearchConfig searchConfig, TitleSuggester suggester, StartupMetrics startupMetrics,
+                         AdmissionControl admission,
+                         RequestTracer tracer, MeterRegistry registry,
+                         @Value("${app.mcp.log.sample-rate:0.01}") double logSampleRate,
+                         @Value("${app.mcp.log.max-chars:1000}") int logMaxChars,
+                         @Value("${app.mcp.allocation-metrics:false}") boolean allocationMetrics) {
         this.mapper = mapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        this.tools = new ToolRegistry(store, embedding); // swap in your Lucene impl
-        this.embedding = embedding;
+        this.requestReader = this.mapper.readerFor(JsonRpcRequest.class);
+        this.responseWriter = this.mapper.writer();
+        this.tools = new ToolRegistry(store, search, searchConfig, suggester);
+        this.startupMetrics = startupMetrics;
+        this.admission = admission;
+        this.tracer = tracer;
+        this.allocated = allocationMetrics && THREADS != null
+                ? DistributionSummary.builder("mcp.rpc.allocated")
+                        .description("heap bytes allocated per JSON-RPC request")
+                        .baseUnit("bytes")
+                        .register(registry)
+                : null;
+        this.logSampleRate = logSampleRate;
+        this.logMaxChars = logMaxChars;
     }
 
     // ---- JSON‑RPC entrypoint -------------------------------------------------
@@ -63,20 +122,56 @@ public class MCPController {
     }
 
     @PostMapping
-    public Object handle(@RequestBody JsonNode body) {
-        if (body.isArray()) {
-            List<JsonNode> arr = mapper.convertValue(body, new TypeReference<>() {
-            });
+    public void handle(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long allocatedBefore = allocated == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+        Object out;
+        try (JsonParser parser = mapper.createParser(request.getInputStream())) {
+            out = dispatch(parser, response);
+        } catch (JsonProcessingException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            out = JsonRpcResponse.error(null, JsonRpcError.parseError(e));
+        }
+        if (out != null) {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            responseWriter.writeValue(response.getOutputStream(), out);
+        }
+        if (allocatedBefore >= 0) allocated.record(THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore);
+    }
+
+    /**
+     * @return 要寫出的回應，null 表示沒有 body
+     */
+    private Object dispatch(JsonParser parser, HttpServletResponse response) throws IOException {
+        JsonToken first = parser.nextToken();
+        if (first == JsonToken.START_ARRAY) {
             List<JsonRpcResponse> out = new ArrayList<>();
-            for (JsonNode node : arr) out.add(processOne(mapper.convertValue(node, JsonRpcRequest.class)));
+            for (JsonToken t = parser.nextToken(); t != null && t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+                if (t == JsonToken.START_OBJECT) {
+                    out.add(processOne(requestReader.readValue(parser)));
+                } else {
+                    parser.skipChildren();
+                    out.add(JsonRpcResponse.error(null, JsonRpcError.invalidRequest("batch element must be an object")));
+                }
+            }
             return out;
         }
-        JsonRpcRequest req = mapper.convertValue(body, JsonRpcRequest.class);
+        if (first != JsonToken.START_OBJECT) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return JsonRpcResponse.error(null, JsonRpcError.invalidRequest("request must be a JSON object or array"));
+        }
+        JsonRpcRequest req = requestReader.readValue(parser);
         if ("notifications/initialized".equals(req.method)) {
             log.info("Client initialized at {}", Instant.now());
-            return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+            response.setStatus(HttpStatus.ACCEPTED.value());
+            return null;
+        }
+        JsonRpcResponse res = processOne(req);
+        // 單一請求被降載時以 429 回應，讓客戶端依 Retry-After 退避；batch 中的元素各自回 JSON-RPC error
+        if (res.error != null && res.error.code == AdmissionRejectedException.JSON_RPC_CODE) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(((Map<?, ?>) res.error.data).get("retryAfterSeconds")));
         }
-        return processOne(req);
+        return res;
     }
 
     private JsonRpcResponse processOne(JsonRpcRequest req) {
@@ -92,6 +187,8 @@ public class MCPController {
 //                case "resources/read" -> resourcesRead(req);
                 default -> JsonRpcResponse.error(req.id, JsonRpcError.methodNotFound(req.method));
             };
+        } catch (AdmissionRejectedException e) {
+            return JsonRpcResponse.error(req.id, new JsonRpcError(AdmissionRejectedException.JSON_RPC_CODE, e.getMessage(), e.details));
         } catch (ClientVisibleException e) {
             return JsonRpcResponse.error(req.id, new JsonRpcError(-32001, e.getMessage(), e.details));
         } catch (Exception e) {
@@ -102,8 +199,6 @@ public class MCPController {
     // ---- MCP methods ---------------------------------------------------------
 
     private JsonRpcResponse initialize(JsonRpcRequest req) {
-        Map<String, Object> params = req.paramsAs(mapper, new TypeReference<>() {
-        });
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("serverInfo", Map.of(
                 "name", "fcom-mcp-server",
@@ -129,15 +224,44 @@ public class MCPController {
     }
 
     private JsonRpcResponse toolsCall(JsonRpcRequest req) throws Exception {
-        log.info("tool call req: {}", mapper.writeValueAsString(req));
-        Map<String, Object> p = req.paramsAs(mapper, new TypeReference<>() {
-        });
-        String name = (String) p.get("name");
+        JsonNode params = req.params == null ? mapper.missingNode() : req.params;
+        String name = params.path("name").asText(null);
         if (!StringUtils.hasText(name)) throw new ClientVisibleException("Missing tool name");
-        JsonNode args = mapper.valueToTree(p.get("arguments"));
-        Object out = tools.call(name, args, mapper);
-        log.info("tool call res: {}", out);
-        return JsonRpcResponse.ok(req.id, Map.of("content", Collections.singletonList(out)));
+        if (!tools.has(name)) throw new ClientVisibleException("Unknown tool: " + name);
+        JsonNode args = params.path("arguments");
+        long start = System.nanoTime();
+        ToolCallResult result;
+        try (RequestTrace trace = tracer.begin("tools/call:" + name)) {
+            Object out;
+            long t = RequestTrace.start();
+            try (AdmissionControl.Permit permit = admission.acquire(costOf(name))) {
+                RequestTrace.stage("admission", t);
+                out = tools.call(name, args, mapper);
+            }
+            t = RequestTrace.start();
+            result = ToolCallResult.of(out instanceof String text ? text : mapper.writeValueAsString(out));
+            RequestTrace.stage("serialize", t);
+            if (tracer.exposes(trace, params.path("_meta").path("trace").asBoolean(false))) {
+                result = result.withMeta(Map.of("timings", trace.toMeta()));
+            }
+        }
+        if (log.isDebugEnabled() || ThreadLocalRandom.current().nextDouble() < logSampleRate) {
+            log.info("tool call {} id={} in {} ms, args={} -> {} chars: {}", name, req.id,
+                    (System.nanoTime() - start) / 1_000_000, cap(args.toString()), result.size(), cap(result.text()));
+        }
+        startupMetrics.toolCallServed();
+        return JsonRpcResponse.ok(req.id, result);
+    }
+
+    private String cap(String s) {
+        return s.length() <= logMaxChars ? s : s.substring(0, logMaxChars) + "…(" + s.length() + " chars)";
+    }
+
+    /**
+     * fetch 只讀 index、suggest 只查記憶體；其他工具（search）需要 embedding
+     */
+    private static AdmissionControl.Cost costOf(String tool) {
+        return "fetch".equals(tool) || "suggest".equals(tool) ? AdmissionControl.Cost.CHEAP : AdmissionControl.Cost.STANDARD;
     }
 
 //    private JsonRpcResponse resourcesList(JsonRpcRequest req) {
@@ -154,9 +278,6 @@ public class MCPController {
 //        return JsonRpcResponse.ok(req.id, Map.of("contents", List.of(resource)));
 //    }
 
-    // ---- Tool registry & simple vector store --------------------------------
-
-
     // ---- JSON‑RPC plumbing ---------------------------------------------------
 
     static class JsonRpcRequest {
@@ -164,10 +285,31 @@ public class MCPController {
         public String method;
         public JsonNode params; // object or array or null
         public Object id;       // string or number; here we normalize to string/null
+    }
+
+    /**
+     * tools/call 結果：JSON 物件同時放在 text content 與 structuredContent（原樣寫出，不再次編碼）
+     */
+    record ToolCallResult(List<TextContent> content, RawValue structuredContent,
+                          @JsonProperty("_meta") Map<String, Object> meta) {
+        record TextContent(String type, String text) {
+        }
 
-        <T> T paramsAs(ObjectMapper m, TypeReference<T> type) {
-            if (params == null || params.isNull()) return m.convertValue(Map.of(), type);
-            return m.convertValue(params, type);
+        static ToolCallResult of(String json) {
+            boolean object = !json.isEmpty() && json.charAt(0) == '{';
+            return new ToolCallResult(List.of(new TextContent("text", json)), object ? new RawValue(json) : null, null);
+        }
+
+        ToolCallResult withMeta(Map<String, Object> meta) {
+            return new ToolCallResult(content, structuredContent, meta);
+        }
+
+        String text() {
+            return content.get(0).text();
+        }
+
+        int size() {
+            return text().length();
         }
     }
 
@@ -211,6 +353,10 @@ public class MCPController {
             return new JsonRpcError(-32601, "Method not found: " + m, null);
         }
 
+        static JsonRpcError parseError(JsonProcessingException e) {
+            return new JsonRpcError(-32700, "Parse error", Map.of("message", e.getOriginalMessage()));
+        }
+
         static JsonRpcError invalidRequest(String msg) {
             return new JsonRpcError(-32600, msg, null);
         }
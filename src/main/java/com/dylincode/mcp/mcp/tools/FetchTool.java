@@ -1,6 +1,7 @@
 package com.dylincode.mcp.mcp.tools;
 
 import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.metrics.RequestTrace;
 import com.dylincode.mcp.model.Chunk;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -33,13 +34,17 @@ class FetchTool implements Tool {
         List<String> ids = new ArrayList<>();
         ids.add(arguments.get("id").asText());
         Optional.ofNullable(arguments.get("ids")).ifPresent(node -> node.forEach(id -> ids.add(id.asText())));
+        long t = RequestTrace.start();
         List<Chunk> chunks = store.fetchChunks(ids);
-        List<Map<String, String>> items = chunks.stream().map(c -> Map.of(
-                "id", c.id(),
-                "title", c.title(),
-                "url", c.url(),
-                "text", c.content()
-        )).toList();
-        return Map.of("type", "text", "text", mapper.writeValueAsString(Map.of("results",items)));
+        RequestTrace.stage("load", t);
+        RequestTrace.hits(chunks.size());
+        List<Document> items = chunks.stream().map(c -> new Document(c.id(), c.title(), c.url(), c.content())).toList();
+        return new Documents(items);
+    }
+
+    record Document(String id, String title, String url, String text) {
+    }
+
+    record Documents(List<Document> results) {
     }
 }
@@ -1,25 +1,33 @@
 package com.dylincode.mcp.mcp.tools;
 
-import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.config.SearchConfig;
 import com.dylincode.mcp.exception.ClientVisibleException;
 import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.search.SearchService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.util.StringUtils;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 class SearchTool implements Tool {
 
-    private final VectorIndexService store;
-    private final EmbeddingService embedding;
+    private final SearchService search;
+    private final SearchConfig config;
 
-    SearchTool(EmbeddingService embedding, VectorIndexService store) {
-        this.embedding = embedding;
-        this.store = store;
+    SearchTool(SearchService search, SearchConfig config) {
+        this.search = search;
+        this.config = config;
     }
 
     public String name() { return "search"; }
@@ -31,7 +39,25 @@ class SearchTool implements Tool {
                         "type", "object",
                         "properties", Map.of(
                                 "query", Map.of("type", "string"),
-                                "top_k", Map.of("type", "integer", "default", 5)
+                                "top_k", Map.of("type", "integer", "default", config.getDefaultK(), "minimum", 1, "maximum", config.getMaxK()),
+                                "mmr_lambda", Map.of("type", "number", "minimum", 0, "maximum", 1,
+                                        "description", "Relevance vs. diversity trade-off; 1 disables diversification, lower values spread results across pages."),
+                                "filter", Map.of(
+                                        "type", "object",
+                                        "description", "Optional metadata pre-filter applied during the vector search.",
+                                        "properties", Map.of(
+                                                "space_keys", Map.of("type", "array", "items", Map.of("type", "string"),
+                                                        "description", "Only chunks from these Confluence spaces."),
+                                                "labels", Map.of("type", "array", "items", Map.of("type", "string"),
+                                                        "description", "Only chunks whose page has any of these labels."),
+                                                "author", Map.of("type", "string",
+                                                        "description", "Only pages last modified by this author."),
+                                                "modified_after", Map.of("type", "string",
+                                                        "description", "ISO-8601 date or date-time, inclusive."),
+                                                "modified_before", Map.of("type", "string",
+                                                        "description", "ISO-8601 date or date-time, inclusive.")
+                                        )
+                                )
                         ),
                         "required", List.of("query")
                 )
@@ -39,19 +65,56 @@ class SearchTool implements Tool {
     }
     public Object invoke(JsonNode arguments, ObjectMapper mapper) throws Exception {
         String query = Optional.ofNullable(arguments.get("query")).map(JsonNode::asText).orElse("");
-        int topK = Optional.ofNullable(arguments.get("top_k")).map(JsonNode::asInt).orElse(5);
+        int topK = config.topK(Optional.ofNullable(arguments.get("top_k")).filter(JsonNode::isNumber).map(JsonNode::asInt).orElse(null));
         if (!StringUtils.hasText(query)) throw new ClientVisibleException("'query' is required");
-        float[] vec = embedding.embed(query);
-        List<VectorIndexService.SearchHit> hits = store.search(vec, topK);
-        List<Map<String, Object>> items = new ArrayList<>();
+        Float mmrLambda = Optional.ofNullable(arguments.get("mmr_lambda")).filter(JsonNode::isNumber).map(n -> (float) n.asDouble()).orElse(null);
+        VectorIndexService.SearchFilter filter = parseFilter(arguments.get("filter"));
+        List<VectorIndexService.SearchHit> hits = search.search(query, topK, config.options(filter, mmrLambda, topK));
+        List<Result> items = new ArrayList<>(hits.size());
         for (VectorIndexService.SearchHit h : hits) {
-            items.add(Map.of(
-                    "id", h.chunkId(),
-                    "title", h.title(),
-                    "score", h.score(),
-                    "url", h.url()
-            ));
+            items.add(new Result(h.chunkId(), h.title(), h.score(), h.url()));
+        }
+        return new Results(items);
+    }
+
+    record Result(String id, String title, float score, String url) {
+    }
+
+    record Results(List<Result> results) {
+    }
+
+    static VectorIndexService.SearchFilter parseFilter(JsonNode node) {
+        if (node == null || !node.isObject()) return null;
+        return new VectorIndexService.SearchFilter(
+                strings(node.get("space_keys")),
+                strings(node.get("labels")),
+                Optional.ofNullable(node.get("author")).map(JsonNode::asText).orElse(null),
+                parseTime(node.get("modified_after"), false),
+                parseTime(node.get("modified_before"), true)
+        );
+    }
+
+    private static Set<String> strings(JsonNode node) {
+        if (node == null || node.isNull()) return null;
+        Set<String> out = new LinkedHashSet<>();
+        if (node.isArray()) node.forEach(n -> out.add(n.asText()));
+        else out.add(node.asText());
+        return out;
+    }
+
+    // 只給日期時，before 取當天結束，after 取當天開始（UTC）
+    private static Long parseTime(JsonNode node, boolean endOfDay) {
+        if (node == null || node.isNull() || !StringUtils.hasText(node.asText())) return null;
+        String s = node.asText().trim();
+        try {
+            if (s.length() == 10) {
+                LocalDate d = LocalDate.parse(s);
+                Instant i = (endOfDay ? d.plusDays(1) : d).atStartOfDay(ZoneOffset.UTC).toInstant();
+                return endOfDay ? i.toEpochMilli() - 1 : i.toEpochMilli();
+            }
+            return OffsetDateTime.parse(s).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new ClientVisibleException("Invalid date in filter: " + s, Map.of("expected", "ISO-8601 date or date-time"));
         }
-        return Map.of("type", "text", "text", mapper.writeValueAsString(Map.of("results",items)));
     }
 }
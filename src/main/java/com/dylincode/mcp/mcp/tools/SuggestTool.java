@@ -0,0 +1,54 @@
+package com.dylincode.mcp.mcp.tools;
+
+import com.dylincode.mcp.exception.ClientVisibleException;
+import com.dylincode.mcp.search.TitleSuggester;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 依頁面標題的開頭或其中的詞自動完成，只查記憶體內的 FST，不做 embedding
+ */
+class SuggestTool implements Tool {
+
+    private final TitleSuggester suggester;
+
+    SuggestTool(TitleSuggester suggester) {
+        this.suggester = suggester;
+    }
+
+    public String name() { return "suggest"; }
+    public Map<String, Object> schema() {
+        return Map.of(
+                "name", name(),
+                "description", "Fast page-title autocomplete. Use it to find a page by (partial) title instead of search; "
+                        + "fetch '<id>_0' to read the beginning of a suggested page.",
+                "inputSchema", Map.of(
+                        "type", "object",
+                        "properties", Map.of(
+                                "query", Map.of("type", "string",
+                                        "description", "Beginning of the title, or of any word in it."),
+                                "limit", Map.of("type", "integer", "default", 10),
+                                "infix", Map.of("type", "boolean", "default", true,
+                                        "description", "Also match words in the middle of titles; false matches title beginnings only.")
+                        ),
+                        "required", List.of("query")
+                )
+        );
+    }
+    public Object invoke(JsonNode arguments, ObjectMapper mapper) throws IOException {
+        String query = Optional.ofNullable(arguments.get("query")).map(JsonNode::asText).orElse("");
+        if (!StringUtils.hasText(query)) throw new ClientVisibleException("'query' is required");
+        int limit = Optional.ofNullable(arguments.get("limit")).map(JsonNode::asInt).orElse(10);
+        boolean infix = Optional.ofNullable(arguments.get("infix")).map(JsonNode::asBoolean).orElse(true);
+        return new Suggestions(suggester.suggest(query, limit, infix));
+    }
+
+    record Suggestions(List<TitleSuggester.Suggestion> results) {
+    }
+}
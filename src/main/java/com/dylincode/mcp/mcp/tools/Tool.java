@@ -34,5 +34,8 @@ import java.util.Map;
 interface Tool {
     String name();
     Map<String, Object> schema();
+    /**
+     * @return 可序列化成 JSON 物件的結果，由 MCPController 序列化一次後同時作為 text 與 structuredContent 回傳
+     */
     Object invoke(JsonNode arguments, ObjectMapper mapper) throws Exception;
 }
@@ -1,8 +1,10 @@
 package com.dylincode.mcp.mcp.tools;
 
-import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.config.SearchConfig;
 import com.dylincode.mcp.exception.ClientVisibleException;
 import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.search.SearchService;
+import com.dylincode.mcp.search.TitleSuggester;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -14,13 +16,12 @@ import java.util.stream.Collectors;
 public class ToolRegistry {
     private final Map<String, Tool> registry = new LinkedHashMap<>();
     private final VectorIndexService store;
-    private final EmbeddingService embedding;
 
-    public ToolRegistry(VectorIndexService store, EmbeddingService embedding) {
+    public ToolRegistry(VectorIndexService store, SearchService search, SearchConfig searchConfig, TitleSuggester suggester) {
         this.store = store;
-        this.embedding = embedding;
-        register(new SearchTool(embedding,store));
+        register(new SearchTool(search, searchConfig));
         register(new FetchTool(store));
+        register(new SuggestTool(suggester));
     }
 
     void register(Tool tool) { registry.put(tool.name(), tool); }
@@ -29,6 +30,10 @@ public class ToolRegistry {
         return registry.values().stream().map(Tool::schema).collect(Collectors.toList());
     }
 
+    public boolean has(String name) {
+        return registry.containsKey(name);
+    }
+
     public Object call(String name, JsonNode args, ObjectMapper mapper) throws Exception {
         Tool t = registry.get(name);
         if (t == null) throw new ClientVisibleException("Unknown tool: " + name);
@@ -0,0 +1,171 @@
+package com.dylincode.mcp.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 單一請求（MCP {@code tools/call}、{@code /query}、{@code /ask}）各階段的耗時。
+ *
+ * <p>由 {@link RequestTracer#begin(String)} 建立並綁定到目前的執行緒，下層程式以靜態方法記錄，不需要傳遞參數：</p>
+ * <pre>
+ * long t = RequestTrace.start();
+ * ...
+ * RequestTrace.stage("embed", t);
+ * </pre>
+ * <p>未啟用或不在請求內時 {@link #start()} 回傳 0、不讀時鐘，{@link #stage} 直接返回，不配置任何物件。
+ * 工作交給其他執行緒（例如 SingleFlight 的計算）時以 {@link #callAs} 帶過去。
+ * 同名階段重複記錄時累加。</p>
+ */
+public final class RequestTrace implements AutoCloseable {
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    private final String operation;
+    private final RequestTracer tracer;
+    private final RequestTrace previous;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stages = new LinkedHashMap<>();
+    private String queryHash;
+    private int k = -1;
+    private int hits = -1;
+
+    RequestTrace(String operation, RequestTracer tracer) {
+        this.operation = operation;
+        this.tracer = tracer;
+        this.previous = CURRENT.get();
+        CURRENT.set(this);
+    }
+
+    /**
+     * @return 目前執行緒上的 trace，沒有時為 null
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 階段開始時間，沒有 trace 時為 0
+     */
+    public static long start() {
+        return CURRENT.get() == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * 記錄從 {@code startNanos}（{@link #start()} 的結果）到現在的耗時
+     */
+    public static void stage(String name, long startNanos) {
+        if (startNanos == 0) return;
+        RequestTrace t = CURRENT.get();
+        if (t != null) t.add(name, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 記錄查詢內容；只保留正規化後文字的 hash，不記錄原文
+     */
+    public static void query(String text, int k) {
+        RequestTrace t = CURRENT.get();
+        if (t == null) return;
+        synchronized (t) {
+            if (t.queryHash == null) t.queryHash = hash(text);
+            t.k = k;
+        }
+    }
+
+    public static void hits(int count) {
+        RequestTrace t = CURRENT.get();
+        if (t == null) return;
+        synchronized (t) {
+            t.hits = count;
+        }
+    }
+
+    /**
+     * 在目前執行緒上以此 trace 執行 work，結束後還原
+     */
+    public <V> V callAs(Callable<V> work) throws Exception {
+        RequestTrace saved = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.call();
+        } finally {
+            if (saved == null) CURRENT.remove();
+            else CURRENT.set(saved);
+        }
+    }
+
+    synchronized void add(String name, long nanos) {
+        stages.merge(name, nanos, Long::sum);
+    }
+
+    public String operation() {
+        return operation;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public synchronized Map<String, Long> stages() {
+        return new LinkedHashMap<>(stages);
+    }
+
+    public synchronized String queryHash() {
+        return queryHash;
+    }
+
+    public synchronized int k() {
+        return k;
+    }
+
+    public synchronized int hits() {
+        return hits;
+    }
+
+    /**
+     * 各階段與總耗時（毫秒，小數三位），放進回應的 {@code _meta}
+     */
+    public Map<String, Object> toMeta() {
+        Map<String, Object> ms = new LinkedHashMap<>();
+        stages().forEach((name, nanos) -> ms.put(name, millis(nanos)));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("totalMs", millis(elapsedNanos()));
+        out.put("stagesMs", ms);
+        return out;
+    }
+
+    /**
+     * HTTP {@code Server-Timing} header 的值，例如 {@code embed;dur=12.3, hnsw;dur=4.1, total;dur=17.0}
+     */
+    public String toServerTiming() {
+        StringBuilder sb = new StringBuilder();
+        stages().forEach((name, nanos) -> sb.append(name).append(";dur=").append(millis(nanos)).append(", "));
+        return sb.append("total;dur=").append(millis(elapsedNanos())).toString();
+    }
+
+    static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 解除綁定並交給 {@link RequestTracer} 記錄 metrics 與慢查詢
+     */
+    @Override
+    public void close() {
+        if (previous == null) CURRENT.remove();
+        else CURRENT.set(previous);
+        tracer.finished(this);
+    }
+}
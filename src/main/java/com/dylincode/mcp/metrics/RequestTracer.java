@@ -0,0 +1,71 @@
+package com.dylincode.mcp.metrics;
+
+import com.dylincode.mcp.config.TraceConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 建立 {@link RequestTrace}，請求結束時把各階段耗時記錄到 {@code request.stage}（tag {@code operation}、{@code stage}），
+ * 總耗時記錄到 {@code request.total}，並把超過 {@code app.trace.slow-query-ms} 的請求寫入慢查詢日誌。
+ *
+ * <p>慢查詢日誌只記錄正規化查詢的 SHA-256 前綴，不記錄原文；相同問題的 hash 相同，可用來歸併重複的慢查詢。</p>
+ */
+@Slf4j
+@Component
+public class RequestTracer {
+    private final TraceConfig config;
+    private final MeterRegistry registry;
+
+    public RequestTracer(TraceConfig config, MeterRegistry registry) {
+        this.config = config;
+        this.registry = registry;
+    }
+
+    /**
+     * 開始追蹤並綁定到目前的執行緒，以 try-with-resources 結束
+     *
+     * @param operation 例如 {@code tools/call:search}、{@code query}、{@code ask}
+     * @return 未啟用時為 null（try-with-resources 對 null 不呼叫 close）
+     */
+    public RequestTrace begin(String operation) {
+        return config.isEnabled() ? new RequestTrace(operation, this) : null;
+    }
+
+    /**
+     * 是否在回應中附上耗時
+     *
+     * @param requested 客戶端是否要求
+     */
+    public boolean exposes(RequestTrace trace, boolean requested) {
+        return trace != null && (requested || config.isResponseMeta());
+    }
+
+    void finished(RequestTrace trace) {
+        long total = trace.elapsedNanos();
+        Map<String, Long> stages = trace.stages();
+        stages.forEach((stage, nanos) -> Timer.builder("request.stage")
+                .description("time spent in one stage of a traced request")
+                .tag("operation", trace.operation())
+                .tag("stage", stage)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS));
+        Timer.builder("request.total")
+                .description("total time of a traced request")
+                .tag("operation", trace.operation())
+                .register(registry)
+                .record(total, TimeUnit.NANOSECONDS);
+
+        long slowMs = config.getSlowQueryMs();
+        if (slowMs < 0 || total < TimeUnit.MILLISECONDS.toNanos(slowMs)) return;
+        StringJoiner detail = new StringJoiner(" ");
+        stages.forEach((stage, nanos) -> detail.add(stage + "=" + RequestTrace.millis(nanos)));
+        log.warn("slow {} {} ms: queryHash={} k={} hits={} stagesMs[{}]", trace.operation(), RequestTrace.millis(total),
+                trace.queryHash(), trace.k(), trace.hits(), detail);
+    }
+}
@@ -0,0 +1,46 @@
+package com.dylincode.mcp.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 記錄從 JVM 啟動到 context ready、以及到第一個成功的 MCP {@code tools/call} 的時間，
+ * 搭配 {@code scripts/startup-benchmark.sh} 比較一般啟動與 AOT / CDS 啟動
+ */
+@Slf4j
+@Component
+public class StartupMetrics {
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final AtomicBoolean firstToolCall = new AtomicBoolean();
+    private volatile long readyMillis = -1;
+    private volatile long firstToolCallMillis = -1;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyMillis = System.currentTimeMillis() - jvmStartMillis;
+        log.info("startup: application ready {} ms after JVM start", readyMillis);
+    }
+
+    /**
+     * MCP tools/call 成功回應後呼叫，只記錄第一次
+     */
+    public void toolCallServed() {
+        if (firstToolCall.get() || !firstToolCall.compareAndSet(false, true)) return;
+        firstToolCallMillis = System.currentTimeMillis() - jvmStartMillis;
+        log.info("startup: first tools/call served {} ms after JVM start", firstToolCallMillis);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("readyMillis", readyMillis < 0 ? null : readyMillis);
+        m.put("firstToolCallMillis", firstToolCallMillis < 0 ? null : firstToolCallMillis);
+        return m;
+    }
+}
@@ -1,9 +1,21 @@
 package com.dylincode.mcp.model;
 
+import java.util.List;
+
+/**
+ * @param spaceKey     所屬 Confluence space
+ * @param labels       頁面 labels
+ * @param author       最後修改者
+ * @param lastModified 頁面最後修改時間（epoch millis），0 表示未知
+ */
 public record Chunk(
         String id,
         String title,
         String url,
         String content,
-        float[] embedding
+        float[] embedding,
+        String spaceKey,
+        List<String> labels,
+        String author,
+        long lastModified
 ) {}
@@ -0,0 +1,144 @@
+package com.dylincode.mcp.replication;
+
+import com.dylincode.mcp.config.ReplicationConfig;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.index.VectorIndexService.CommitManifest;
+import com.dylincode.mcp.index.VectorIndexService.InstallResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * replica 端：定期向 primary 取得最新 commit 的檔案清單，只下載本機沒有的 segment 檔，完成後刷新 searcher。
+ *
+ * <p>primary 重建或 rollback 後 index id 會改變，此時整份下載到新的本機目錄再原子切換。</p>
+ */
+@Slf4j
+@Component
+public class IndexReplicator {
+    public static final String TOKEN_HEADER = "X-Replication-Token";
+
+    private final VectorIndexService indexService;
+    private final ReplicationConfig config;
+    private final OkHttpClient http;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private volatile String indexId;
+    private volatile long appliedGeneration = -1;
+    private volatile long primaryGeneration = -1;
+    private volatile long lastSyncAt;
+    /** 第一次發現落後 primary（或連不上 primary）的時間，已同步時為 0 */
+    private volatile long behindSince;
+    private volatile String lastError;
+    private long copiedFiles;
+    private long copiedBytes;
+
+    public IndexReplicator(VectorIndexService indexService, ReplicationConfig config) {
+        this.indexService = indexService;
+        this.config = config;
+        this.http = new OkHttpClient.Builder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .readTimeout(Duration.ofMillis(config.getTimeoutMs()))
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${app.replication.poll-ms:5000}")
+    public void poll() {
+        if (!config.isReplica()) return;
+        try {
+            sync();
+        } catch (Exception e) {
+            lastError = e.toString();
+            // 連不上 primary 時無從得知是否落後，保守視為自上次成功同步起就已落後，lag 會持續增加
+            if (behindSince == 0) behindSince = lastSyncAt > 0 ? lastSyncAt : System.currentTimeMillis();
+            log.warn("index replication from {} failed: {}", config.getPrimaryUrl(), e.toString());
+        }
+    }
+
+    synchronized void sync() throws IOException {
+        CommitManifest manifest = fetchManifest();
+        primaryGeneration = manifest.generation();
+        long now = System.currentTimeMillis();
+        if (manifest.indexId().equals(indexId) && manifest.generation() == appliedGeneration) {
+            lastSyncAt = now;
+            behindSince = 0;
+            lastError = null;
+            return;
+        }
+        if (behindSince == 0) behindSince = now;
+
+        InstallResult result = indexService.installCommit(manifest, name -> download(manifest.indexId(), name));
+        if (!manifest.indexId().equals(indexId)) {
+            log.info("replicating index {} (was {})", manifest.indexId(), indexId);
+        }
+        indexId = manifest.indexId();
+        appliedGeneration = manifest.generation();
+        copiedFiles += result.files();
+        copiedBytes += result.bytes();
+        lastSyncAt = System.currentTimeMillis();
+        log.info("replicated {} generation {}: {} files, {} bytes in {} ms", indexId, appliedGeneration,
+                result.files(), result.bytes(), lastSyncAt - now);
+        behindSince = 0;
+        lastError = null;
+    }
+
+    private CommitManifest fetchManifest() throws IOException {
+        Request req = request(url().addPathSegments("replication/commit").build());
+        try (Response resp = http.newCall(req).execute()) {
+            if (!resp.isSuccessful()) throw new IOException("Primary commit request failed: " + resp.code());
+            return mapper.readValue(resp.body().byteStream(), CommitManifest.class);
+        }
+    }
+
+    /**
+     * 回傳的 stream 關閉時一併釋放連線
+     */
+    private InputStream download(String id, String name) throws IOException {
+        Request req = request(url().addPathSegments("replication/file").addPathSegment(id).addPathSegment(name).build());
+        Response resp = http.newCall(req).execute();
+        if (!resp.isSuccessful()) {
+            resp.close();
+            throw new IOException("Download of " + id + "/" + name + " failed: " + resp.code());
+        }
+        return resp.body().byteStream();
+    }
+
+    private HttpUrl.Builder url() {
+        HttpUrl base = HttpUrl.parse(config.getPrimaryUrl() == null ? "" : config.getPrimaryUrl());
+        if (base == null) throw new IllegalStateException("app.replication.primary-url is not a valid URL");
+        return base.newBuilder();
+    }
+
+    private Request request(HttpUrl url) {
+        return new Request.Builder().url(url).header(TOKEN_HEADER, config.getToken() == null ? "" : config.getToken()).build();
+    }
+
+    public Map<String, Object> status() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("role", config.getRole());
+        s.put("primaryUrl", config.getPrimaryUrl());
+        s.put("indexId", indexId);
+        s.put("primaryGeneration", primaryGeneration);
+        s.put("appliedGeneration", appliedGeneration);
+        s.put("inSync", behindSince == 0 && appliedGeneration >= 0);
+        s.put("lagMillis", behindSince == 0 ? 0 : now - behindSince);
+        s.put("lastSyncAt", lastSyncAt == 0 ? null : lastSyncAt);
+        s.put("millisSinceLastSync", lastSyncAt == 0 ? null : now - lastSyncAt);
+        s.put("copiedFiles", copiedFiles);
+        s.put("copiedBytes", copiedBytes);
+        s.put("lastError", lastError);
+        return s;
+    }
+}
@@ -0,0 +1,239 @@
+package com.dylincode.mcp.search;
+
+import com.dylincode.mcp.config.AskConfig;
+import com.dylincode.mcp.index.VectorIndexService.SearchHit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 把搜尋結果組成送給 LLM 的參考資料，控制在 token 預算內。
+ *
+ * <ol>
+ *   <li>同一頁面的相鄰片段（chunk id {@code <pageId>_<n>} 連號）合併成一段，並去掉 TextChunker 產生的重疊文字</li>
+ *   <li>內容幾乎都已包含在排名較高段落中的段落（例如複製的頁面）略過</li>
+ *   <li>依排名放入預算；放不下的段落在句子邊界截斷，剩餘預算太少時停止</li>
+ * </ol>
+ *
+ * <p>token 數為估算：CJK 字元各算 1 個，其他字元約 4 個算 1 個。</p>
+ */
+@Component
+public class ContextPacker {
+    private static final String SEPARATOR = "\n---\n";
+    private static final int SHINGLE = 5;
+
+    /**
+     * @param text            組好的參考資料
+     * @param sources         實際放入的來源，依排名排序
+     * @param estimatedTokens text 的估算 token 數
+     * @param mergedChunks    因相鄰而合併掉的片段數
+     * @param duplicates      因重複而略過的段落數
+     * @param truncated       被截斷或因預算不足略過的段落數
+     */
+    public record PackedContext(String text, List<Source> sources, int estimatedTokens,
+                                int mergedChunks, int duplicates, int truncated) {
+    }
+
+    /**
+     * @param chunkIds 此段落包含的片段
+     */
+    public record Source(String title, String url, List<String> chunkIds) {
+    }
+
+    private final AskConfig.Context config;
+
+    public ContextPacker(AskConfig config) {
+        this.config = config.getContext();
+    }
+
+    public PackedContext pack(List<SearchHit> hits) {
+        List<Segment> segments = merge(hits);
+        int merged = hits.size() - segments.size();
+
+        List<Segment> unique = new ArrayList<>();
+        int duplicates = 0;
+        for (Segment s : segments) {
+            s.shingles = shingles(s.text);
+            if (unique.stream().anyMatch(u -> containment(s.shingles, u.shingles) >= config.getDuplicateThreshold())) {
+                duplicates++;
+            } else {
+                unique.add(s);
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        List<Source> sources = new ArrayList<>();
+        int used = 0;
+        int truncated = 0;
+        for (Segment s : unique) {
+            String header = "Title: " + s.title + "\nURL: " + s.url + "\nExcerpt:\n";
+            int overhead = estimateTokens(header) + estimateTokens(SEPARATOR);
+            int remaining = config.getMaxTokens() - used - overhead;
+            String body = s.text;
+            int tokens = estimateTokens(body);
+            if (tokens > remaining) {
+                truncated++;
+                if (remaining < config.getMinSegmentTokens()) continue;
+                body = cut(body, remaining);
+                tokens = estimateTokens(body);
+            }
+            if (!out.isEmpty()) out.append(SEPARATOR);
+            out.append(header).append(body);
+            used += tokens + overhead;
+            sources.add(new Source(s.title, s.url, List.copyOf(s.chunkIds)));
+        }
+        return new PackedContext(out.toString(), sources, used, merged, duplicates, truncated);
+    }
+
+    // ---- merging --------------------------------------------------------------
+
+    private static final class Segment {
+        final String title;
+        final String url;
+        final List<String> chunkIds = new ArrayList<>();
+        String text;
+        int lastIndex;
+        Set<Long> shingles;
+
+        Segment(SearchHit h, int index) {
+            this.title = h.title();
+            this.url = h.url();
+            this.text = h.content() == null ? "" : h.content();
+            this.lastIndex = index;
+            this.chunkIds.add(h.chunkId());
+        }
+    }
+
+    /**
+     * 依排名產生段落；同頁的片段依序號排列後，連號的合併，段落的排名取其中最高者
+     */
+    private List<Segment> merge(List<SearchHit> hits) {
+        Map<String, List<Integer>> byPage = new LinkedHashMap<>();
+        for (int rank = 0; rank < hits.size(); rank++) {
+            byPage.computeIfAbsent(pageOf(hits.get(rank)), p -> new ArrayList<>()).add(rank);
+        }
+        Map<Integer, Segment> byRank = new TreeMap<>();
+        for (List<Integer> ranks : byPage.values()) {
+            ranks.sort((a, b) -> Integer.compare(indexOf(hits.get(a)), indexOf(hits.get(b))));
+            Segment current = null;
+            int best = Integer.MAX_VALUE;
+            for (int rank : ranks) {
+                SearchHit h = hits.get(rank);
+                int index = indexOf(h);
+                if (current != null && index >= 0 && index == current.lastIndex + 1) {
+                    current.text = joinWithoutOverlap(current.text, h.content() == null ? "" : h.content());
+                    current.lastIndex = index;
+                    current.chunkIds.add(h.chunkId());
+                    best = Math.min(best, rank);
+                } else {
+                    if (current != null) byRank.put(best, current);
+                    current = new Segment(h, index);
+                    best = rank;
+                }
+            }
+            if (current != null) byRank.put(best, current);
+        }
+        return new ArrayList<>(byRank.values());
+    }
+
+    private static String pageOf(SearchHit h) {
+        String id = h.chunkId();
+        int sep = id == null ? -1 : id.lastIndexOf('_');
+        return sep > 0 ? id.substring(0, sep) : String.valueOf(h.url());
+    }
+
+    private static int indexOf(SearchHit h) {
+        String id = h.chunkId();
+        int sep = id == null ? -1 : id.lastIndexOf('_');
+        if (sep < 0) return -1;
+        try {
+            return Integer.parseInt(id.substring(sep + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 找出 a 的結尾與 b 的開頭最長的相同部分，只保留一份
+     */
+    String joinWithoutOverlap(String a, String b) {
+        int max = Math.min(config.getMaxOverlapChars(), Math.min(a.length(), b.length()));
+        for (int len = max; len > 0; len--) {
+            if (a.regionMatches(a.length() - len, b, 0, len)) return a + b.substring(len);
+        }
+        return a + "\n" + b;
+    }
+
+    // ---- near-duplicates -----------------------------------------------------
+
+    private static Set<Long> shingles(String text) {
+        String t = text.replaceAll("\\s+", " ");
+        Set<Long> out = new HashSet<>();
+        for (int i = 0; i + SHINGLE <= t.length(); i++) {
+            long h = 1125899906842597L;
+            for (int j = i; j < i + SHINGLE; j++) h = 31 * h + t.charAt(j);
+            out.add(h);
+        }
+        return out;
+    }
+
+    /**
+     * candidate 的 shingle 有多少比例出現在 kept 中
+     */
+    private static double containment(Set<Long> candidate, Set<Long> kept) {
+        if (candidate.isEmpty()) return 1;
+        int inter = 0;
+        for (Long x : candidate) if (kept.contains(x)) inter++;
+        return (double) inter / candidate.size();
+    }
+
+    // ---- token estimate --------------------------------------------------------
+
+    public static int estimateTokens(String s) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) cjk++;
+            else other++;
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL
+                || (cp >= 0x3000 && cp <= 0x303F) || (cp >= 0xFF00 && cp <= 0xFFEF);
+    }
+
+    /**
+     * 截到 token 預算內，盡量停在句子或換行邊界
+     */
+    private static String cut(String text, int maxTokens) {
+        int lo = 0;
+        int hi = text.length();
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (estimateTokens(text.substring(0, mid)) + 1 <= maxTokens) lo = mid;
+            else hi = mid - 1;
+        }
+        String head = text.substring(0, lo);
+        int boundary = -1;
+        for (int i = head.length() - 1; i >= head.length() * 2 / 3; i--) {
+            char c = head.charAt(i);
+            if (c == '\n' || c == '。' || c == '！' || c == '？' || c == '.' || c == '!' || c == '?') {
+                boundary = i + 1;
+                break;
+            }
+        }
+        return (boundary > 0 ? head.substring(0, boundary) : head) + " …";
+    }
+}
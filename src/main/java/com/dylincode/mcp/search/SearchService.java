@@ -0,0 +1,94 @@
+package com.dylincode.mcp.search;
+
+import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.metrics.RequestTrace;
+import com.dylincode.mcp.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * 文字查詢：embedding 後搜尋 index。
+ *
+ * <p>正規化後相同的查詢、k 與搜尋選項（filter、MMR、模式）在同一時間只執行一次，
+ * 多個 ChatGPT session 同時送出相同問題或客戶端重試時共用結果。</p>
+ *
+ * <p>共用的計算記錄在發起者的 {@link RequestTrace}；跟隨者只記錄等待時間（階段 {@code coalesced}）。</p>
+ */
+@Service
+public class SearchService {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private record Key(String query, int k, VectorIndexService.SearchOptions options) {
+    }
+
+    private final EmbeddingService embedding;
+    private final VectorIndexService index;
+    private final SingleFlight<Key, List<VectorIndexService.SearchHit>> flights;
+
+    public SearchService(EmbeddingService embedding, VectorIndexService index, MeterRegistry registry) {
+        this.embedding = embedding;
+        this.index = index;
+        this.flights = new SingleFlight<>("search", registry);
+    }
+
+    public List<VectorIndexService.SearchHit> search(String query, int k, VectorIndexService.SearchOptions options) throws Exception {
+        String q = normalize(query);
+        return traced(q, k, options, () -> index.search(embedQuery(q), k, options));
+    }
+
+    /**
+     * 呼叫端已先取得查詢向量（例如先查語意快取）時使用，同樣參與請求合併
+     *
+     * @param vector {@link #embed(String)} 的結果
+     */
+    public List<VectorIndexService.SearchHit> search(String query, float[] vector, int k,
+                                                     VectorIndexService.SearchOptions options) throws Exception {
+        return traced(normalize(query), k, options, () -> index.search(vector, k, options));
+    }
+
+    /**
+     * 正規化後的查詢向量
+     */
+    public float[] embed(String query) throws Exception {
+        String q = normalize(query);
+        RequestTrace.query(q, -1);
+        return embedQuery(q);
+    }
+
+    private float[] embedQuery(String normalized) throws Exception {
+        long t = RequestTrace.start();
+        float[] v = embedding.embedQuery(normalized);
+        RequestTrace.stage("embed", t);
+        return v;
+    }
+
+    private List<VectorIndexService.SearchHit> traced(String q, int k, VectorIndexService.SearchOptions options,
+                                                     Callable<List<VectorIndexService.SearchHit>> work) throws Exception {
+        RequestTrace trace = RequestTrace.current();
+        if (trace == null) return flights.execute(new Key(q, k, options), () -> List.copyOf(work.call()));
+        RequestTrace.query(q, k);
+        boolean[] led = new boolean[1];
+        long t = RequestTrace.start();
+        List<VectorIndexService.SearchHit> hits = flights.execute(new Key(q, k, options), () -> {
+            led[0] = true;
+            return List.copyOf(trace.callAs(work));
+        });
+        if (!led[0]) RequestTrace.stage("coalesced", t);
+        RequestTrace.hits(hits.size());
+        return hits;
+    }
+
+    /**
+     * NFKC、合併空白；不轉小寫，避免改變 embedding 的語意
+     */
+    public static String normalize(String query) {
+        if (query == null) return "";
+        return WHITESPACE.matcher(Normalizer.normalize(query, Normalizer.Form.NFKC)).replaceAll(" ").strip();
+    }
+}
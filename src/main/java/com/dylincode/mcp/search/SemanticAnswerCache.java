@@ -0,0 +1,210 @@
+package com.dylincode.mcp.search;
+
+import com.dylincode.mcp.config.AskConfig;
+import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.index.ChunksIndexedEvent;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.model.Chunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * /ask 的語意答案快取，問題向量存在獨立的小型 Lucene 向量 index。
+ *
+ * <p>新問題與快取中的問題 cosine 相似度達 {@code app.ask.cache.similarity-threshold}、搜尋參數相同，
+ * 且答案引用的片段內容未改變時，直接回傳先前的答案。</p>
+ *
+ * <ul>
+ *   <li>命中時以片段內容雜湊比對目前的 index，涵蓋重建切換、rollback 與 replica 同步後的變動</li>
+ *   <li>片段重新攝取時（{@link ChunksIndexedEvent}）立即刪除引用它的答案</li>
+ *   <li>超過 TTL 或筆數上限時由排程淘汰最舊的答案</li>
+ *   <li>{@code ask.cache{result=hit|miss|stale}} 記錄命中率</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+    private static final String F_ID = "id";
+    private static final String F_VECTOR = "vector";
+    private static final String F_PARAMS = "params";
+    private static final String F_QUESTION = "question";
+    private static final String F_ANSWER = "answer";
+    private static final String F_CHUNK = "chunk";
+    private static final String F_HASH = "hash";
+    private static final String F_CREATED = "created";
+
+    public record CachedAnswer(String question, String answer, double similarity) {
+    }
+
+    private final AskConfig.Cache config;
+    private final VectorIndexService index;
+    private final FSDirectory directory;
+    private final IndexWriter writer;
+    private final SearcherManager manager;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+
+    public SemanticAnswerCache(AskConfig askConfig, VectorIndexService index, EmbeddingService embedding,
+                               MeterRegistry registry) throws IOException {
+        this.config = askConfig.getCache();
+        this.index = index;
+        String name = embedding.model() + (embedding.dimensions() > 0 ? "-" + embedding.dimensions() + "d" : "");
+        Path path = Path.of(config.getDir(), name.replaceAll("[^A-Za-z0-9._-]", "_")).toAbsolutePath();
+        this.directory = FSDirectory.open(path);
+        this.writer = new IndexWriter(directory, new IndexWriterConfig().setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.manager = new SearcherManager(writer, null);
+        this.hits = Counter.builder("ask.cache").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("ask.cache").tag("result", "miss").register(registry);
+        this.stale = Counter.builder("ask.cache").tag("result", "stale").register(registry);
+        Gauge.builder("ask.cache.size", writer, w -> w.getDocStats().numDocs).register(registry);
+        log.info("answer cache {} with {} entries", path, writer.getDocStats().numDocs);
+    }
+
+    /**
+     * @param params 影響答案的搜尋參數（k、MMR 等），只有相同參數的答案會命中
+     */
+    public Optional<CachedAnswer> lookup(float[] vector, String params) throws IOException {
+        if (!config.isEnabled()) return Optional.empty();
+        IndexSearcher searcher = manager.acquire();
+        try {
+            Query filter = new TermQuery(new Term(F_PARAMS, params));
+            TopDocs top = searcher.search(new KnnFloatVectorQuery(F_VECTOR, vector, 1, filter), 1);
+            if (top.scoreDocs.length == 0) {
+                misses.increment();
+                return Optional.empty();
+            }
+            // COSINE 的 score 為 (1 + cos) / 2
+            double similarity = 2 * top.scoreDocs[0].score - 1;
+            if (similarity < config.getSimilarityThreshold()) {
+                misses.increment();
+                return Optional.empty();
+            }
+            Document doc = searcher.storedFields().document(top.scoreDocs[0].doc);
+            long created = doc.getField(F_CREATED).numericValue().longValue();
+            if (System.currentTimeMillis() - created > config.getTtlSeconds() * 1000 || !sourcesUnchanged(doc)) {
+                stale.increment();
+                writer.deleteDocuments(new Term(F_ID, doc.get(F_ID)));
+                manager.maybeRefresh();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(new CachedAnswer(doc.get(F_QUESTION), doc.get(F_ANSWER), similarity));
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    /**
+     * @param cited 答案所依據的片段；沒有來源的答案（資料不足）不快取
+     */
+    public void put(String question, String params, float[] vector, String answer,
+                    List<VectorIndexService.SearchHit> cited) throws IOException {
+        if (!config.isEnabled() || cited.isEmpty() || answer == null || answer.isBlank()) return;
+        String id = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        Document d = new Document();
+        d.add(new StringField(F_ID, id, Field.Store.YES));
+        d.add(new KnnFloatVectorField(F_VECTOR, vector, VectorSimilarityFunction.COSINE));
+        d.add(new StringField(F_PARAMS, params, Field.Store.NO));
+        d.add(new StoredField(F_QUESTION, question));
+        d.add(new StoredField(F_ANSWER, answer));
+        for (VectorIndexService.SearchHit h : cited) {
+            d.add(new StringField(F_CHUNK, h.chunkId(), Field.Store.YES));
+            d.add(new StoredField(F_HASH, hash(h.content())));
+        }
+        d.add(new LongPoint(F_CREATED, now));
+        d.add(new StoredField(F_CREATED, now));
+        d.add(new NumericDocValuesField(F_CREATED, now));
+        writer.addDocument(d);
+        manager.maybeRefresh();
+    }
+
+    /**
+     * 片段重新攝取後，刪除引用這些片段的答案
+     */
+    @EventListener
+    public void onChunksIndexed(ChunksIndexedEvent event) throws IOException {
+        if (event.chunkIds().isEmpty()) return;
+        List<BytesRef> terms = event.chunkIds().stream().map(BytesRef::new).toList();
+        long before = writer.getDocStats().numDocs;
+        writer.deleteDocuments(new TermInSetQuery(F_CHUNK, terms));
+        manager.maybeRefresh();
+        long removed = before - writer.getDocStats().numDocs;
+        if (removed > 0) log.info("answer cache invalidated {} answers citing re-ingested chunks", removed);
+    }
+
+    /**
+     * 刪除過期的答案，筆數超過上限時淘汰最舊的，並 commit
+     */
+    @Scheduled(fixedDelayString = "${app.ask.cache.maintenance-ms:600000}")
+    public void maintain() throws IOException {
+        long cutoff = System.currentTimeMillis() - config.getTtlSeconds() * 1000;
+        writer.deleteDocuments(LongPoint.newRangeQuery(F_CREATED, Long.MIN_VALUE, cutoff));
+        manager.maybeRefreshBlocking();
+        IndexSearcher searcher = manager.acquire();
+        try {
+            int excess = searcher.getIndexReader().numDocs() - config.getMaxEntries();
+            if (excess > 0) {
+                TopDocs oldest = searcher.search(new MatchAllDocsQuery(), excess,
+                        new Sort(new SortField(F_CREATED, SortField.Type.LONG)));
+                StoredFields stored = searcher.storedFields();
+                for (ScoreDoc sd : oldest.scoreDocs) {
+                    writer.deleteDocuments(new Term(F_ID, stored.document(sd.doc).get(F_ID)));
+                }
+                log.info("answer cache evicted {} oldest answers", oldest.scoreDocs.length);
+            }
+        } finally {
+            manager.release(searcher);
+        }
+        if (writer.hasUncommittedChanges()) writer.commit();
+        manager.maybeRefresh();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        manager.close();
+        writer.commit();
+        writer.close();
+        directory.close();
+    }
+
+    private boolean sourcesUnchanged(Document doc) throws IOException {
+        String[] ids = doc.getValues(F_CHUNK);
+        IndexableField[] hashes = doc.getFields(F_HASH);
+        List<Chunk> current = index.fetchChunks(Arrays.asList(ids));
+        Map<String, String> byId = new HashMap<>();
+        for (Chunk c : current) byId.put(c.id(), hash(c.content()));
+        for (int i = 0; i < ids.length; i++) {
+            if (!hashes[i].stringValue().equals(byId.get(ids[i]))) return false;
+        }
+        return true;
+    }
+
+    private static String hash(String content) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(String.valueOf(content).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(d).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
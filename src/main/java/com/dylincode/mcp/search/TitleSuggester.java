@@ -0,0 +1,229 @@
+package com.dylincode.mcp.search;
+
+import com.dylincode.mcp.config.SearchConfig;
+import com.dylincode.mcp.index.ActiveIndexChangedEvent;
+import com.dylincode.mcp.index.ChunksIndexedEvent;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.index.VectorIndexService.PageTitle;
+import com.dylincode.mcp.metrics.RequestTrace;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.FSTCompiler;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 頁面標題自動完成：記憶體內的 FST，從標題開頭（prefix）或標題中的詞首（infix）比對，不呼叫 embedding。
+ *
+ * <p>每個標題依正規化（NFKC、合併空白、小寫）後的文字登記多個 key：整個標題，以及每個詞首與每個 CJK 字
+ * 開始的後綴（最多 {@code app.search.suggest.max-infix-starts} 個）。key 結尾附上分隔位元組與頁面序號，
+ * 同名頁面各自成為一條路徑。FST 的輸出是成本：infix 比對排在 prefix 之後，同一類中標題越短越前面。</p>
+ *
+ * <ul>
+ *   <li>啟動與 {@link ActiveIndexChangedEvent}（重建切換、rollback、replica 同步）時從 index 整份載入頁面</li>
+ *   <li>{@link ChunksIndexedEvent} 只更新記憶體中的頁面表，由排程每 {@code refresh-ms} 合併重建一次 FST，
+ *       不重新掃描 index</li>
+ *   <li>FST 建好後整份替換，查詢不加鎖</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class TitleSuggester {
+    /** key 中標題文字與頁面序號之間的分隔；正規化後的標題不含控制字元 */
+    private static final int SEPARATOR = 0;
+    private static final long INFIX_COST = 1L << 32;
+
+    /**
+     * @param id    Confluence page id，頁面第一個片段為 {@code <id>_0}
+     * @param infix 是否從標題中間的詞比對到
+     */
+    public record Suggestion(String id, String title, String url, boolean infix) {
+    }
+
+    private record Snapshot(FST<Long> fst, PageTitle[] pages) {
+        static final Snapshot EMPTY = new Snapshot(null, new PageTitle[0]);
+    }
+
+    private final VectorIndexService index;
+    private final SearchConfig.Suggest config;
+    private final Map<String, PageTitle> pages = new HashMap<>();
+    /** 整份載入期間收到的增量，載入完成後補上 */
+    private List<PageTitle> pendingDuringReload;
+    private boolean reload = true;
+    private boolean dirty;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public TitleSuggester(VectorIndexService index, SearchConfig searchConfig, MeterRegistry registry) {
+        this.index = index;
+        this.config = searchConfig.getSuggest();
+        Gauge.builder("suggest.pages", this, s -> s.snapshot.pages.length)
+                .description("pages in the title suggester").register(registry);
+        Gauge.builder("suggest.fst.bytes", this, s -> s.snapshot.fst == null ? 0 : s.snapshot.fst.ramBytesUsed())
+                .description("heap used by the title suggester FST").baseUnit("bytes").register(registry);
+    }
+
+    /**
+     * @param query 標題的開頭，或標題中某個詞的開頭（{@code infix} 為 true 時）
+     * @param limit 最多回傳幾筆，上限為 {@code max-results}
+     */
+    public List<Suggestion> suggest(String query, int limit, boolean infix) throws IOException {
+        long t = RequestTrace.start();
+        List<Suggestion> out = lookup(query, Math.max(1, Math.min(limit, config.getMaxResults())), infix);
+        RequestTrace.stage("suggest", t);
+        RequestTrace.hits(out.size());
+        return out;
+    }
+
+    private List<Suggestion> lookup(String query, int limit, boolean infix) throws IOException {
+        Snapshot s = snapshot;
+        String key = normalize(query);
+        if (s.fst == null || key.isEmpty()) return List.of();
+
+        FST<Long> fst = s.fst;
+        FST.BytesReader reader = fst.getBytesReader();
+        FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<>());
+        Long output = fst.outputs.getNoOutput();
+        BytesRef prefix = new BytesRef(key);
+        for (int i = 0; i < prefix.length; i++) {
+            if (fst.findTargetArc(prefix.bytes[prefix.offset + i] & 0xff, arc, arc, reader) == null) return List.of();
+            output = fst.outputs.add(output, arc.output());
+        }
+
+        // 同一頁可能從多個詞首比對到，多取一些再去重
+        int topN = limit * 2 + 8;
+        Util.TopNSearcher<Long> searcher = new Util.TopNSearcher<>(fst, topN, topN, Comparator.naturalOrder());
+        searcher.addStartPaths(arc, output, false, new IntsRefBuilder());
+        List<Suggestion> out = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+        for (Util.Result<Long> r : searcher.search()) {
+            boolean matchedInfix = r.output >= INFIX_COST;
+            if (matchedInfix && !infix) break;
+            int ord = ordinal(r.input);
+            if (!seen.add(ord)) continue;
+            PageTitle p = s.pages[ord];
+            out.add(new Suggestion(p.pageId(), p.title(), p.url(), matchedInfix));
+            if (out.size() == limit) break;
+        }
+        return out;
+    }
+
+    /** key 最後四個位元組是頁面序號 */
+    private static int ordinal(IntsRef input) {
+        int end = input.offset + input.length;
+        int ord = 0;
+        for (int i = end - Integer.BYTES; i < end; i++) ord = ord << 8 | input.ints[i];
+        return ord;
+    }
+
+    @EventListener
+    public synchronized void onChunksIndexed(ChunksIndexedEvent event) {
+        for (PageTitle p : event.pages()) {
+            pages.put(p.pageId(), p);
+            if (pendingDuringReload != null) pendingDuringReload.add(p);
+        }
+        dirty = true;
+    }
+
+    @EventListener
+    public synchronized void onActiveIndexChanged(ActiveIndexChangedEvent event) {
+        reload = true;
+    }
+
+    /**
+     * 需要時從 index 整份載入，有變動時重建 FST
+     */
+    @Scheduled(fixedDelayString = "${app.search.suggest.refresh-ms:1000}")
+    public void refresh() throws IOException {
+        boolean reloading;
+        synchronized (this) {
+            if (!reload && !dirty) return;
+            reloading = reload;
+            reload = false;
+            if (reloading) pendingDuringReload = new ArrayList<>();
+        }
+        long start = System.currentTimeMillis();
+        if (reloading) {
+            List<PageTitle> loaded;
+            try {
+                loaded = index.pageTitles();
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    reload = true;
+                    pendingDuringReload = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                pages.clear();
+                for (PageTitle p : loaded) pages.put(p.pageId(), p);
+                for (PageTitle p : pendingDuringReload) pages.put(p.pageId(), p);
+                pendingDuringReload = null;
+            }
+        }
+        List<PageTitle> current;
+        synchronized (this) {
+            dirty = false;
+            current = new ArrayList<>(pages.values());
+        }
+        snapshot = build(current, config.getMaxInfixStarts());
+        if (reloading) log.info("title suggester loaded {} pages in {} ms", current.size(), System.currentTimeMillis() - start);
+        else log.debug("title suggester rebuilt with {} pages in {} ms", current.size(), System.currentTimeMillis() - start);
+    }
+
+    private record Entry(BytesRef key, long cost) {
+    }
+
+    private static Snapshot build(List<PageTitle> pages, int maxInfixStarts) throws IOException {
+        PageTitle[] byOrd = pages.toArray(new PageTitle[0]);
+        List<Entry> entries = new ArrayList<>();
+        for (int ord = 0; ord < byOrd.length; ord++) {
+            String title = normalize(byOrd[ord].title());
+            if (title.isEmpty()) continue;
+            byte[] suffix = {SEPARATOR, (byte) (ord >>> 24), (byte) (ord >>> 16), (byte) (ord >>> 8), (byte) ord};
+            int starts = 0;
+            for (int i = 0; i < title.length(); i = title.offsetByCodePoints(i, 1)) {
+                if (i > 0 && (starts >= maxInfixStarts || !isWordStart(title, i))) continue;
+                byte[] text = title.substring(i).getBytes(StandardCharsets.UTF_8);
+                byte[] key = Arrays.copyOf(text, text.length + suffix.length);
+                System.arraycopy(suffix, 0, key, text.length, suffix.length);
+                entries.add(new Entry(new BytesRef(key), (i == 0 ? 0 : INFIX_COST) + title.length()));
+                if (i > 0) starts++;
+            }
+        }
+        if (entries.isEmpty()) return new Snapshot(null, byOrd);
+        // FST 要求 key 依 unsigned byte 順序加入；序號讓每個 key 都不重複
+        entries.sort(Comparator.comparing(Entry::key));
+        FSTCompiler<Long> compiler = new FSTCompiler<>(FST.INPUT_TYPE.BYTE1, PositiveIntOutputs.getSingleton());
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        for (Entry e : entries) compiler.add(Util.toIntsRef(e.key(), scratch), e.cost());
+        return new Snapshot(compiler.compile(), byOrd);
+    }
+
+    /** 前一個字元不是字母數字，或本身是 CJK 字（中文標題沒有空白分詞） */
+    private static boolean isWordStart(String s, int i) {
+        int cp = s.codePointAt(i);
+        if (Character.isIdeographic(cp)) return true;
+        return Character.isLetterOrDigit(cp) && !Character.isLetterOrDigit(s.codePointBefore(i));
+    }
+
+    static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder();
+        SearchService.normalize(text).toLowerCase(Locale.ROOT).codePoints()
+                .filter(cp -> !Character.isISOControl(cp))
+                .forEach(sb::appendCodePoint);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package com.dylincode.mcp.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 合併相同 key 的並行呼叫：同一時間只有一份計算在執行，其餘呼叫者等待並共用結果。
+ *
+ * <p>計算在獨立的虛擬線程上執行，呼叫者被中斷或逾時只會結束自己的等待，不會取消共用的計算。
+ * 計算完成後立即移除，不做結果快取。合併情況記錄在 {@code singleflight.calls}
+ * （tag {@code name}、{@code role=leader|follower}）。</p>
+ *
+ * @param <K> 必須正確實作 equals/hashCode
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ThreadFactory threads;
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlight(String name, MeterRegistry registry) {
+        this.threads = Thread.ofVirtual().name("singleflight-" + name + "-", 0).factory();
+        this.leaders = Counter.builder("singleflight.calls").tag("name", name).tag("role", "leader").register(registry);
+        this.followers = Counter.builder("singleflight.calls").tag("name", name).tag("role", "follower").register(registry);
+    }
+
+    public V execute(K key, Callable<V> work) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            followers.increment();
+            return await(existing);
+        }
+        leaders.increment();
+        threads.newThread(() -> {
+            try {
+                V v = work.call();
+                inFlight.remove(key, mine);
+                mine.complete(v);
+            } catch (Throwable t) {
+                inFlight.remove(key, mine);
+                mine.completeExceptionally(t);
+            }
+        }).start();
+        return await(mine);
+    }
+
+    /** 目前執行中的計算數 */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            if (cause instanceof Error err) throw err;
+            throw e;
+        }
+    }
+}
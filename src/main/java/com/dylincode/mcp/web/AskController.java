@@ -1,51 +1,128 @@
 package com.dylincode.mcp.web;
 
-import com.dylincode.mcp.embedding.EmbeddingService;
-import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.admission.AdmissionControl;
+import com.dylincode.mcp.admission.AdmissionRejectedException;
+import com.dylincode.mcp.config.SearchConfig;
+import com.dylincode.mcp.metrics.RequestTrace;
+import com.dylincode.mcp.metrics.RequestTracer;
+import com.dylincode.mcp.search.ContextPacker;
+import com.dylincode.mcp.search.SearchService;
+import com.dylincode.mcp.search.SemanticAnswerCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import okhttp3.RequestBody;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.stream.Collectors;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
+@Slf4j
 @RestController
 @RequestMapping("/ask")
 public class AskController {
-    private final EmbeddingService embedding;
-    private final VectorIndexService indexService;
+    private final SearchService search;
+    private final SearchConfig searchConfig;
+    private final AdmissionControl admission;
+    private final ContextPacker packer;
+    private final SemanticAnswerCache answerCache;
+    private final RequestTracer tracer;
+    private final DistributionSummary contextTokens;
+    private final DistributionSummary promptTokens;
     private final OkHttpClient http = new OkHttpClient();
 
     private final String openaiKey;
+    private final String openaiBaseUrl;
     private final String openaiModel;
 
     public AskController(
-            EmbeddingService embedding, VectorIndexService indexService,
+            SearchService search, SearchConfig searchConfig,
+            AdmissionControl admission, ContextPacker packer, SemanticAnswerCache answerCache,
+            RequestTracer tracer, MeterRegistry registry,
             @Value("${app.openai.apiKey:}") String openaiKey,
+            @Value("${app.openai.baseUrl:https://api.openai.com}") String openaiBaseUrl,
             @Value("${app.openai.chatModel:gpt-5}") String openaiModel
     ){
-        this.embedding = embedding;
-        this.indexService = indexService;
+        this.search = search;
+        this.searchConfig = searchConfig;
+        this.admission = admission;
+        this.packer = packer;
+        this.answerCache = answerCache;
+        this.tracer = tracer;
+        this.contextTokens = DistributionSummary.builder("ask.context.tokens")
+                .description("estimated tokens of packed reference context").register(registry);
+        this.promptTokens = DistributionSummary.builder("ask.prompt.tokens")
+                .description("prompt tokens reported by the chat completions API").register(registry);
         this.openaiKey = openaiKey;
+        this.openaiBaseUrl = openaiBaseUrl;
         this.openaiModel = openaiModel;
     }
 
-    public record AskRequest(String q, Integer k) {}
-    public record AskResponse(String answer) {}
-
+    /**
+     * @param mmrLambda 覆寫 MMR lambda，1 表示不做多樣化；超出 [0, 1] 時截到邊界
+     */
+    public record AskRequest(String q, Integer k, Float mmrLambda) {}
+    /**
+     * @param cached 是否為語意快取中相似問題的答案
+     */
+    public record AskResponse(String answer, boolean cached) {}
+
+    /**
+     * @param trace 為 true 時以 {@code Server-Timing} header 回傳各階段耗時
+     */
     @PostMapping
-    public ResponseEntity<?> ask(@org.springframework.web.bind.annotation.RequestBody AskRequest req) throws Exception {
-        int k = (req.k()==null) ? 5 : Math.max(1, req.k());
-        float[] qvec = embedding.embed(req.q());
-        var hits = indexService.search(qvec, k);
-
-        // 組 context（限制長度，避免超過 token）
-        String context = hits.stream()
-                .map(h -> String.format(
-                        "Title: %s\nURL: %s\nExcerpt:\n%s\n---",
-                        h.title(), h.url(), truncate(h.content(), 1200)))
-                .collect(Collectors.joining("\n"));
+    public ResponseEntity<?> ask(@org.springframework.web.bind.annotation.RequestBody AskRequest req,
+                                 @RequestParam(value = "trace", defaultValue = "false") boolean trace) throws Exception {
+        try (RequestTrace t = tracer.begin("ask")) {
+            long start = RequestTrace.start();
+            AskResponse res;
+            try (AdmissionControl.Permit permit = admission.acquire(AdmissionControl.Cost.EXPENSIVE)) {
+                RequestTrace.stage("admission", start);
+                res = answer(req);
+            }
+            ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+            if (tracer.exposes(t, trace)) ok.header("Server-Timing", t.toServerTiming());
+            return ok.body(res);
+        }
+    }
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<?> overloaded(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.retryAfterSeconds))
+                .body(Map.of("error", e.getMessage(), "details", e.details));
+    }
+
+    private AskResponse answer(AskRequest req) throws Exception {
+        int k = searchConfig.topK(req.k());
+        var options = searchConfig.options(null, req.mmrLambda(), k);
+        float[] qvec = search.embed(req.q());
+        String cacheParams = k + "|" + options.mmrLambda() + "|" + options.candidates();
+        long t = RequestTrace.start();
+        Optional<SemanticAnswerCache.CachedAnswer> cached = answerCache.lookup(qvec, cacheParams);
+        RequestTrace.stage("cache", t);
+        if (cached.isPresent()) {
+            log.debug("ask answered from cache (similarity {}) for: {}", cached.get().similarity(), cached.get().question());
+            return new AskResponse(cached.get().answer(), true);
+        }
+        var hits = search.search(req.q(), qvec, k, options);
+
+        // 組 context：合併相鄰片段、去除重複，控制在 token 預算內
+        t = RequestTrace.start();
+        ContextPacker.PackedContext packed = packer.pack(hits);
+        RequestTrace.stage("pack", t);
+        contextTokens.record(packed.estimatedTokens());
+        log.debug("ask context: {} hits -> {} sources, ~{} tokens (merged {}, duplicates {}, truncated {})",
+                hits.size(), packed.sources().size(), packed.estimatedTokens(),
+                packed.mergedChunks(), packed.duplicates(), packed.truncated());
+        String context = packed.text();
 
         String system = """
       你是內部知識助理。僅依據給定「資料片段」回答，
@@ -59,16 +136,17 @@ public class AskController {
       %s
       """.formatted(req.q(), context);
 
+        t = RequestTrace.start();
         String answer = callOpenAI(system, user);
+        RequestTrace.stage("llm", t);
 
+        Set<String> cited = new HashSet<>();
+        packed.sources().forEach(src -> cited.addAll(src.chunkIds()));
+        t = RequestTrace.start();
+        answerCache.put(req.q(), cacheParams, qvec, answer, hits.stream().filter(h -> cited.contains(h.chunkId())).toList());
+        RequestTrace.stage("cache", t);
 
-
-        return ResponseEntity.ok(new AskResponse(answer));
-    }
-
-    private static String truncate(String s, int max){
-        if (s==null) return "";
-        return s.length()<=max ? s : s.substring(0, max) + " …";
+        return new AskResponse(answer, false);
     }
 
     private String callOpenAI(String system, String user) throws Exception {
@@ -80,13 +158,14 @@ public class AskController {
       ]}
       """.formatted(openaiModel, json(system), json(user));
         Request req = new Request.Builder()
-                .url("https://api.openai.com/v1/chat/completions")
+                .url(openaiBaseUrl + "/v1/chat/completions")
                 .header("Authorization","Bearer " + openaiKey)
                 .post(RequestBody.create(body, JSON))
                 .build();
         try (Response resp = http.newCall(req).execute()){
             var root = new com.fasterxml.jackson.databind.ObjectMapper()
                     .readTree(resp.body().byteStream());
+            if (root.path("usage").has("prompt_tokens")) promptTokens.record(root.path("usage").path("prompt_tokens").asInt());
             return root.path("choices").get(0).path("message").path("content").asText();
         }
     }
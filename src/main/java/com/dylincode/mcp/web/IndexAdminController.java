@@ -0,0 +1,52 @@
+package com.dylincode.mcp.web;
+
+import com.dylincode.mcp.config.IndexConfig;
+import com.dylincode.mcp.index.VectorIndexService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * index segment 維運端點。
+ *
+ * <ul>
+ *   <li>{@code GET /index/segments} - segment 數、已刪除文件比例、各 segment 的向量與 HNSW 圖大小、合併統計</li>
+ *   <li>{@code POST /index/force-merge?maxSegments=N} - 立即 force merge 到 N 個 segment 以下，完成後回傳</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/index")
+public class IndexAdminController {
+    private final VectorIndexService indexService;
+    private final IndexConfig indexConfig;
+
+    public IndexAdminController(VectorIndexService indexService, IndexConfig indexConfig) {
+        this.indexService = indexService;
+        this.indexConfig = indexConfig;
+    }
+
+    @GetMapping("/segments")
+    public VectorIndexService.IndexStats segments() throws IOException {
+        return indexService.indexStats();
+    }
+
+    @PostMapping("/force-merge")
+    public ResponseEntity<?> forceMerge(@RequestParam(value = "maxSegments", required = false) Integer maxSegments)
+            throws IOException {
+        int target = maxSegments != null ? Math.max(1, maxSegments) : indexConfig.getMerge().getMaintenance().getMaxSegments();
+        long start = System.currentTimeMillis();
+        int segments = indexService.forceMerge(target);
+        return ResponseEntity.ok(Map.of("segments", segments, "tookMs", System.currentTimeMillis() - start));
+    }
+
+    /**
+     * replica 不能合併
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<?> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+}
@@ -1,24 +1,28 @@
 package com.dylincode.mcp.web;
 
 import com.dylincode.mcp.config.ConfluenceConfig;
-import com.dylincode.mcp.config.WhiteListConfig;
+import com.dylincode.mcp.config.IndexConfig;
+import com.dylincode.mcp.config.ReplicationConfig;
 import com.dylincode.mcp.confluence.ConfluenceClient;
-import com.dylincode.mcp.embedding.EmbeddingService;
 import com.dylincode.mcp.index.VectorIndexService;
-import com.dylincode.mcp.model.Chunk;
-import com.dylincode.mcp.util.TextChunker;
-import jakarta.annotation.PostConstruct;
+import com.dylincode.mcp.ingest.IngestJob;
+import com.dylincode.mcp.ingest.IngestLease;
+import com.dylincode.mcp.ingest.IngestJobService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.math.RoundingMode;
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 數據攝取控制器 - 負責管理外部數據源到向量索引系統的數據攝取流程。
@@ -27,9 +31,12 @@ import java.util.concurrent.ConcurrentHashMap;
  * <ul>
  *   <li><strong>空間級攝取</strong> - 批量攝取指定 Confluence 空間的所有頁面內容</li>
  *   <li><strong>頁面級攝取</strong> - 精確攝取指定頁面 ID 或 URL 的內容</li>
+ *   <li><strong>全量重建</strong> - 在新目錄重建 index 後原子切換，保留前一版供 rollback</li>
  *   <li><strong>智能分塊</strong> - 將長文本分割為適合向量化的小塊</li>
  *   <li><strong>向量化處理</strong> - 為每個文本塊生成語意嵌入向量</li>
  *   <li><strong>索引存儲</strong> - 將處理後的向量數據存入檢索系統</li>
+ *   <li><strong>工作管理</strong> - 透過 {@code /ingest/jobs} 查詢進度、吞吐量、預估剩餘時間與取消工作</li>
+ *   <li><strong>多節點攝取</strong> - 只有持有 {@link IngestLease} 攝取節點租約的節點攝取，{@code /ingest/leases} 查詢攝取節點與各 space 的持有者</li>
  * </ul>
  *
  * <p><strong>核心處理流程：</strong></p>
@@ -38,26 +45,26 @@ import java.util.concurrent.ConcurrentHashMap;
  *   <li>使用 TextChunker 將內容分割為重疊的文本塊</li>
  *   <li>通過 EmbeddingService 為每個塊生成向量表示</li>
  *   <li>將向量化的塊存儲到 VectorIndexService 中</li>
- *   <li>提供進度追蹤和錯誤處理機制</li>
+ *   <li>每批頁面 commit 後記錄斷點，重啟後從斷點續傳</li>
  * </ol>
  *
  * <p><strong>依賴服務說明：</strong></p>
  * <ul>
+ *   <li><strong>IngestJobService</strong> - 持久化的攝取工作佇列，實際執行攝取流程</li>
  *   <li><strong>ConfluenceClient</strong> - 處理與 Confluence API 的交互</li>
- *   <li><strong>EmbeddingService</strong> - 提供文本向量化服務</li>
  *   <li><strong>VectorIndexService</strong> - 管理向量索引的存儲和檢索</li>
  *   <li><strong>ConfluenceConfig</strong> - 配置需要同步的 Confluence 空間</li>
  * </ul>
  *
  * <p><strong>線程安全設計：</strong></p>
  * <ul>
- *   <li>使用虛擬線程處理耗時的攝取操作，避免阻塞主線程</li>
- *   <li>通過 ConcurrentHashMap 實現空間級的攝取鎖定機制</li>
- *   <li>防止同一空間的並發攝取導致數據重複或競爭條件</li>
+ *   <li>攝取工作由 IngestJobService 的虛擬線程 worker 執行，API 立即回傳工作資訊</li>
+ *   <li>同一空間已有進行中的工作時直接回傳該工作，防止重複攝取</li>
+ *   <li>單頁攝取優先權高於空間同步，會在同步批次之間插隊執行</li>
  * </ul>
  *
  * @see ConfluenceClient 用於 Confluence 數據獲取
- * @see EmbeddingService 用於文本向量化
+ * @see IngestJobService 用於執行攝取工作
  * @see VectorIndexService 用於向量索引管理
  */
 
@@ -65,74 +72,86 @@ import java.util.concurrent.ConcurrentHashMap;
 @RestController
 @RequestMapping("/ingest")
 public class IngestController {
-    private final ConfluenceClient confluence;
-    private final EmbeddingService embedding;
+    private final IngestJobService jobs;
     private final VectorIndexService indexService;
     @Autowired
     private ConfluenceConfig spaces;
+    @Autowired
+    private IndexConfig indexConfig;
+    @Autowired
+    private IngestLease lease;
+    @Autowired
+    private ReplicationConfig replication;
 
-    private static final int CHUNK_SIZE = 800;
-    private static final int OVERLAP = 120;
-
-    private final ConcurrentHashMap<String, Boolean> ingestLock = new ConcurrentHashMap<>();
+    private final long pageWaitSeconds;
 
-    public IngestController(ConfluenceClient confluence, EmbeddingService embedding, VectorIndexService indexService) {
-        this.confluence = confluence;
-        this.embedding = embedding;
+    public IngestController(@Lazy IngestJobService jobs, VectorIndexService indexService,
+                            @Value("${app.ingest.page-wait-seconds:600}") long pageWaitSeconds) {
+        this.jobs = jobs;
         this.indexService = indexService;
+        this.pageWaitSeconds = pageWaitSeconds;
     }
 
     public record IngestRequest(List<String> pageIds, List<String> pageUrls, Integer chunkSize, Integer chunkOverlap,
                                 String spaceKey) {
     }
 
-//    @Scheduled(cron = "0 0 8,21 * * ?")
-    public void updateIndexSchedule(){
-        spaces.getKeys().forEach(key -> {
-            IngestRequest req = new IngestRequest(null, null, CHUNK_SIZE, OVERLAP, key);
-            log.info("updateIndexSchedule ingest space {}", key);
-            ingestAllSpace(req);
-            log.info("updateIndexSchedule ingest end space {}", key);
-        });
+    /**
+     * 攝取元件延遲初始化：啟動完成後在背景建立，讓上次未完成的工作繼續執行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initJobsAfterStartup() {
+        Thread.ofVirtual().name("ingest-init").start(() -> log.info("ingest job service ready, {} jobs known", jobs.list().size()));
+    }
+
+    /**
+     * 定期同步所有設定的 space；只有攝取節點排入工作，replica 與其他節點由複寫取得結果。
+     * {@code app.ingest.schedule-cron} 未設定（{@code -}）時停用，例如 {@code 0 0 8,21 * * ?}
+     */
+    @Scheduled(cron = "${app.ingest.schedule-cron:-}")
+    public void updateIndexSchedule() throws IOException {
+        if (replication.isReplica()) return;
+        for (IngestJob job : jobs.submitScheduledSync(spaces.getKeys())) {
+            log.info("updateIndexSchedule ingest space {} job {}", job.getSpaceKey(), job.getId());
+        }
     }
 
     @PostMapping("/space")
-    public ResponseEntity<?> ingestAllSpace(@RequestBody IngestRequest request) {
-        Thread.startVirtualThread(() -> {
-            boolean lock = ingestLock.putIfAbsent(request.spaceKey(), true) == null;
-            if (!lock) {
-                return;
-            }
-            try {
-                var pages = confluence.fetchAllPagesInSpace(request.spaceKey());
-                log.info("ingest space {}, pageSize:{}", request.spaceKey, pages.size());
-                List<Chunk> all = new ArrayList<>();
-                int pi = 0;
-                for (var page : pages) {
-                    var pieces = TextChunker.split(page.text(), CHUNK_SIZE, OVERLAP);
-                    int i = 0;
-                    for (String p : pieces) {
-                        float[] vec = embedding.embed(p);
-                        String chunkId = page.id() + "_" + (i++);
-                        all.add(new Chunk(chunkId, page.title(), page.url(), p, vec));
-                    }
-                    if (pi % 10 == 0) {
-                        BigInteger percentage = BigDecimal.valueOf(pi).divide(BigDecimal.valueOf(pages.size()), 2, RoundingMode.DOWN).multiply(BigDecimal.valueOf(100)).toBigInteger();
-                        log.info("ingest space {} process {}%", request.spaceKey(), percentage);
-                    }
-                    pi++;
-                }
-                indexService.addAll(all);
-                ingestLock.remove(request.spaceKey());
-            } catch (Exception e) {
-                log.error("ingestAllSpace error", e);
-                ingestLock.remove(request.spaceKey());
-            }
+    public ResponseEntity<?> ingestAllSpace(@RequestBody IngestRequest request) throws IOException {
+        if (request.spaceKey() == null || request.spaceKey().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "請提供 spaceKey"));
+        }
+        // 其他節點是攝取節點時回傳 409
+        return ResponseEntity.accepted().body(jobs.submitSpace(request.spaceKey()));
+    }
 
-        });
-        return ResponseEntity.ok().build();
+    /**
+     * 目前的攝取節點與各 space 的租約持有者
+     */
+    @GetMapping("/leases")
+    public Map<String, Object> leases() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (String key : spaces.getKeys()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("spaceKey", key);
+            lease.holder(key).ifPresent(h -> {
+                entry.put("holder", h.owner());
+                entry.put("token", h.token());
+                entry.put("expiresAt", h.expiresAt());
+            });
+            list.add(entry);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("node", lease.nodeId());
+        out.put("writer", lease.holder(IngestLease.WRITER).map(IngestLease.Lease::owner).orElse(null));
+        out.put("liveNodes", lease.liveNodes());
+        out.put("spaces", list);
+        return out;
     }
 
+    /**
+     * 單頁攝取以高優先權排入佇列並等待完成；超過等待時間時回傳 202 與工作資訊
+     */
     @PostMapping
     public ResponseEntity<?> ingest(@RequestBody IngestRequest req) throws Exception {
         List<String> ids = new ArrayList<>();
@@ -145,18 +164,67 @@ public class IngestController {
         }
         if (ids.isEmpty()) return ResponseEntity.badRequest().body(Map.of("error", "請提供 pageIds 或 pageUrls"));
 
-        List<Chunk> all = new ArrayList<>();
-        for (String id : ids) {
-            var page = confluence.fetchPage(id);
-            var pieces = TextChunker.split(page.text(), CHUNK_SIZE, OVERLAP);
-            int i = 0;
-            for (String p : pieces) {
-                float[] vec = embedding.embed(p);
-                String chunkId = page.id() + "_" + (i++);
-                all.add(new Chunk(chunkId, page.title(), page.url(), p, vec));
-            }
+        IngestJob job = jobs.submitPages(ids);
+        try {
+            job = jobs.completion(job.getId()).get(pageWaitSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            return ResponseEntity.accepted().body(job);
+        }
+        if (job.getStatus() != IngestJob.Status.SUCCEEDED) {
+            return ResponseEntity.internalServerError().body(Map.of("error", String.valueOf(job.getError()), "jobId", job.getId()));
         }
-        indexService.addAll(all);
-        return ResponseEntity.ok(Map.of("indexedChunks", all.size()));
+        return ResponseEntity.ok(Map.of("indexedChunks", job.getIndexedChunks(), "jobId", job.getId()));
+    }
+
+    public record RebuildRequest(List<String> spaceKeys, Boolean forceMerge) {
+    }
+
+    /**
+     * 重建：在旁邊的新目錄建立 index，完成並驗證後才原子切換，查詢全程使用舊 index。
+     * 未指定 spaceKeys 時重建所有設定的 space；指定時只替換這些 space，其他 space 從目前的 index 複製過去
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<?> rebuild(@RequestBody(required = false) RebuildRequest req) throws Exception {
+        boolean partial = req != null && req.spaceKeys() != null && !req.spaceKeys().isEmpty();
+        Set<String> keys = partial ? new LinkedHashSet<>(req.spaceKeys()) : spaces.getKeys();
+        boolean forceMerge = (req != null && req.forceMerge() != null) ? req.forceMerge() : indexConfig.getRebuild().isForceMerge();
+        try {
+            return ResponseEntity.accepted().body(jobs.submitRebuild(keys, forceMerge, partial));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/rollback")
+    public ResponseEntity<?> rollback() throws Exception {
+        if (!indexService.rollback()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "沒有可回復的前一版 index"));
+        }
+        return ResponseEntity.ok(Map.of("numDocs", indexService.numDocs()));
+    }
+
+    /**
+     * replica 與非攝取節點拒絕攝取，以及其他與目前狀態衝突的請求
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<?> conflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+
+    // ---- job status -----------------------------------------------------------
+
+    @GetMapping("/jobs")
+    public List<IngestJob> listJobs(@RequestParam(value = "status", required = false) IngestJob.Status status) {
+        return jobs.list().stream().filter(j -> status == null || j.getStatus() == status).toList();
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getJob(@PathVariable("id") String id) {
+        return jobs.get(id).<ResponseEntity<?>>map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/jobs/{id}/cancel")
+    public ResponseEntity<?> cancelJob(@PathVariable("id") String id) throws IOException {
+        return jobs.cancel(id).<ResponseEntity<?>>map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 }
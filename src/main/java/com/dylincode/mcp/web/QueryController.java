@@ -1,7 +1,10 @@
 package com.dylincode.mcp.web;
 
-import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.config.SearchConfig;
 import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.metrics.RequestTrace;
+import com.dylincode.mcp.metrics.RequestTracer;
+import com.dylincode.mcp.search.SearchService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,19 +17,31 @@ import java.util.Map;
 @RestController
 @RequestMapping("/query")
 public class QueryController {
-    private final EmbeddingService embedding;
-    private final VectorIndexService indexService;
+    private final SearchService search;
+    private final RequestTracer tracer;
+    private final SearchConfig config;
 
-    public QueryController(EmbeddingService embedding, VectorIndexService indexService){
-        this.embedding = embedding;
-        this.indexService = indexService;
+    public QueryController(SearchService search, RequestTracer tracer, SearchConfig config){
+        this.search = search;
+        this.tracer = tracer;
+        this.config = config;
     }
 
+    /**
+     * @param mode AUTO / HNSW / EXACT，EXACT 可作為量測 HNSW recall 的基準
+     * @param trace 為 true 時以 {@code Server-Timing} header 回傳各階段耗時
+     */
     @GetMapping
-    public ResponseEntity<?> query(@RequestParam("q") String q, @RequestParam(value = "k", required = false) Integer k) throws Exception {
-        int topK = (k == null) ? 5 : Math.max(1, k);
-        float[] vec = embedding.embed(q);
-        List<VectorIndexService.SearchHit> hits = indexService.search(vec, topK);
-        return ResponseEntity.ok(Map.of("results", hits));
+    public ResponseEntity<?> query(@RequestParam("q") String q, @RequestParam(value = "k", required = false) Integer k,
+                                   @RequestParam(value = "mode", required = false) VectorIndexService.SearchMode mode,
+                                   @RequestParam(value = "trace", defaultValue = "false") boolean trace) throws Exception {
+        int topK = config.topK(k);
+        try (RequestTrace t = tracer.begin("query")) {
+            List<VectorIndexService.SearchHit> hits = search.search(q, topK,
+                    VectorIndexService.SearchOptions.of(null).withMode(mode));
+            ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+            if (tracer.exposes(t, trace)) ok.header("Server-Timing", t.toServerTiming());
+            return ok.body(Map.of("results", hits));
+        }
     }
 }
@@ -0,0 +1,77 @@
+package com.dylincode.mcp.web;
+
+import com.dylincode.mcp.config.ReplicationConfig;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.replication.IndexReplicator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * index 複寫端點。
+ *
+ * <ul>
+ *   <li>{@code GET /replication/commit} - primary 回傳最新 commit 的檔案清單並保留這些檔案一段時間</li>
+ *   <li>{@code GET /replication/file/{indexId}/{name}} - primary 提供單一 segment 檔下載</li>
+ *   <li>{@code GET /replication/status} - 目前角色與 replica 落後程度</li>
+ * </ul>
+ *
+ * <p>commit 與 file 端點不經 OAuth，改以 {@code X-Replication-Token} 共用密鑰驗證。</p>
+ */
+@Slf4j
+@RestController
+@RequestMapping("/replication")
+public class ReplicationController {
+    private final VectorIndexService indexService;
+    private final IndexReplicator replicator;
+    private final ReplicationConfig config;
+
+    public ReplicationController(VectorIndexService indexService, IndexReplicator replicator, ReplicationConfig config) {
+        this.indexService = indexService;
+        this.replicator = replicator;
+        this.config = config;
+    }
+
+    @GetMapping("/commit")
+    public ResponseEntity<?> commit(@RequestHeader(value = IndexReplicator.TOKEN_HEADER, required = false) String token)
+            throws IOException {
+        if (!config.isPrimary()) return ResponseEntity.notFound().build();
+        if (!authorized(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        return ResponseEntity.ok(indexService.latestCommit());
+    }
+
+    @GetMapping("/file/{indexId}/{name}")
+    public ResponseEntity<?> file(@RequestHeader(value = IndexReplicator.TOKEN_HEADER, required = false) String token,
+                                  @PathVariable("indexId") String indexId, @PathVariable("name") String name) throws IOException {
+        if (!config.isPrimary()) return ResponseEntity.notFound().build();
+        if (!authorized(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(new InputStreamResource(indexService.openCommitFile(indexId, name)));
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not part of a leased commit: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/status")
+    public Map<String, Object> status() throws IOException {
+        if (config.isReplica()) return replicator.status();
+        return Map.of("role", config.getRole(), "numDocs", indexService.numDocs());
+    }
+
+    private boolean authorized(String token) {
+        String expected = config.getToken();
+        if (expected == null || expected.isBlank() || token == null) return false;
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,41 @@
+package com.dylincode.mcp.web;
+
+import com.dylincode.mcp.metrics.RequestTrace;
+import com.dylincode.mcp.metrics.RequestTracer;
+import com.dylincode.mcp.search.TitleSuggester;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 頁面標題自動完成，與 MCP 的 suggest 工具相同
+ */
+@RestController
+@RequestMapping("/suggest")
+public class SuggestController {
+    private final TitleSuggester suggester;
+    private final RequestTracer tracer;
+
+    public SuggestController(TitleSuggester suggester, RequestTracer tracer) {
+        this.suggester = suggester;
+        this.tracer = tracer;
+    }
+
+    /**
+     * @param infix false 時只比對標題開頭
+     * @param trace 為 true 時以 {@code Server-Timing} header 回傳耗時
+     */
+    @GetMapping
+    public ResponseEntity<?> suggest(@RequestParam("q") String q,
+                                     @RequestParam(value = "limit", defaultValue = "10") int limit,
+                                     @RequestParam(value = "infix", defaultValue = "true") boolean infix,
+                                     @RequestParam(value = "trace", defaultValue = "false") boolean trace) throws Exception {
+        try (RequestTrace t = tracer.begin("suggest")) {
+            var results = suggester.suggest(q, limit, infix);
+            ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+            if (tracer.exposes(t, trace)) ok.header("Server-Timing", t.toServerTiming());
+            return ok.body(Map.of("results", results));
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.dylincode.mcp.web;
 
+import com.dylincode.mcp.auth.OidcMetadataCache;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestClient;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controller that provides several endpoints under the `.well-known` path to expose
@@ -41,26 +45,42 @@ public class WellKnownController {
         );
     }
 
-    private final RestClient http = RestClient.create();
+    private final OidcMetadataCache metadata;
+
+    public WellKnownController(OidcMetadataCache metadata) {
+        this.metadata = metadata;
+    }
 
     // 讓連接器若打在你這，也能拿到 AS metadata（大多 IdP 用 OIDC 這份）
     @GetMapping(value = "/openid-configuration", produces = "application/json")
     public ResponseEntity<byte[]> oidc(HttpServletRequest request) {
         log.info("call well-known/openid-configuration from {}", getBaseUrl(request));
-        byte[] body = http.get()
-                .uri(issuer + "/.well-known/openid-configuration")
-                .retrieve().body(byte[].class);
-        return ResponseEntity.ok().body(body);
+        return cached(request);
     }
 
     // 有些實作會打這條；Google 沒提供同名路徑，直接回傳等價資訊（轉發 OIDC）
     @GetMapping(value = "/oauth-authorization-server", produces = "application/json")
     public ResponseEntity<byte[]> oas(HttpServletRequest request) {
         log.info("call well-known/oauth-authorization-server from {}", getBaseUrl(request));
-        byte[] body = http.get()
-                .uri( issuer + "/.well-known/openid-configuration")
-                .retrieve().body(byte[].class);
-        return ResponseEntity.ok().body(body);
+        return cached(request);
+    }
+
+    /**
+     * 從快取回傳 metadata，附上 ETag 與剩餘有效期；If-None-Match 相符時回 304，不會碰到授權伺服器
+     */
+    private ResponseEntity<byte[]> cached(HttpServletRequest request) {
+        OidcMetadataCache.Metadata m;
+        try {
+            m = metadata.get();
+        } catch (RuntimeException e) {
+            log.warn("OIDC metadata unavailable: {}", e.toString());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(m.maxAgeSeconds(), TimeUnit.SECONDS).cachePublic();
+        if (OidcMetadataCache.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), m.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(m.etag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(m.etag()).cacheControl(cacheControl).body(m.body());
     }
 
     private String getBaseUrl(HttpServletRequest request) {
@@ -0,0 +1,48 @@
+package com.dylincode.mcp.config;
+
+import com.dylincode.mcp.index.VectorIndexService.SearchOptions;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchConfigTest {
+    private final SearchConfig config = new SearchConfig();
+
+    @Test
+    void mmrIsOffUnlessRequested() {
+        SearchOptions options = config.options(null, null, 5);
+        assertThat(options.mmrLambda()).isNull();
+        assertThat(options.diversify()).isFalse();
+        assertThat(config.options(null, 0.5f, 5).mmrLambda()).isEqualTo(0.5f);
+    }
+
+    @Test
+    void enabledMmrUsesConfiguredLambda() {
+        config.getMmr().setEnabled(true);
+        config.getMmr().setLambda(0.6f);
+        assertThat(config.options(null, null, 5).mmrLambda()).isEqualTo(0.6f);
+        assertThat(config.options(null, Float.NaN, 5).mmrLambda()).isEqualTo(0.6f);
+    }
+
+    @Test
+    void lambdaIsClampedToUnitInterval() {
+        assertThat(config.options(null, 3f, 5).mmrLambda()).isEqualTo(1f);
+        assertThat(config.options(null, -2f, 5).mmrLambda()).isEqualTo(0f);
+    }
+
+    @Test
+    void candidatesScaleWithK() {
+        config.getMmr().setCandidateFactor(4);
+        assertThat(config.options(null, 0.7f, 10).candidates()).isEqualTo(40);
+    }
+
+    @Test
+    void topKIsBounded() {
+        config.setMaxK(50);
+        assertThat(config.topK(null)).isEqualTo(5);
+        assertThat(config.topK(0)).isEqualTo(1);
+        assertThat(config.topK(-3)).isEqualTo(1);
+        assertThat(config.topK(20)).isEqualTo(20);
+        assertThat(config.topK(1_000_000)).isEqualTo(50);
+    }
+}
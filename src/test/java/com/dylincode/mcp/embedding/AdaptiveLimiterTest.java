@@ -0,0 +1,97 @@
+package com.dylincode.mcp.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void rejectsBeyondLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10, 100);
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void growsAdditivelyOnlyWhenSaturated() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10, 100);
+        // 未用滿時成功不增加上限
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, true);
+        }
+        assertThat(limiter.limit()).isEqualTo(2);
+
+        // 用滿時每一輪約加一：上限 2 時兩次成功各加 1/2
+        for (int round = 0; round < 2; round++) {
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            limiter.release(FAST, true);
+            limiter.tryAcquire();
+            limiter.release(FAST, true);
+            limiter.release(FAST, true);
+        }
+        assertThat(limiter.limit()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void halvesOnFailureOrSlowResponseButNotBelowMin() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(8, 2, 10, 100);
+        limiter.tryAcquire();
+        limiter.release(FAST, false);
+        assertThat(limiter.limit()).isEqualTo(4);
+        limiter.tryAcquire();
+        limiter.release(SLOW, true);
+        assertThat(limiter.limit()).isEqualTo(2);
+        limiter.tryAcquire();
+        limiter.release(FAST, false);
+        assertThat(limiter.limit()).isEqualTo(2);
+    }
+
+    @Test
+    void neverExceedsMax() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(3, 1, 3, 100);
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            limiter.release(FAST, true);
+            limiter.release(FAST, true);
+            limiter.release(FAST, true);
+        }
+        assertThat(limiter.limit()).isEqualTo(3);
+    }
+
+    @Test
+    void cancelReturnsPermitWithoutChangingLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 10, 100);
+        assertThat(limiter.tryAcquire()).isTrue();
+        limiter.cancel();
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.limit()).isEqualTo(1);
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void acquireWaitsForReleasedPermit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 100);
+        limiter.tryAcquire();
+        assertThat(limiter.acquire(20)).isFalse();
+        Thread releaser = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            limiter.release(FAST, true);
+        });
+        assertThat(limiter.acquire(5_000)).isTrue();
+        releaser.join();
+    }
+}
@@ -0,0 +1,72 @@
+package com.dylincode.mcp.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60_000);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.allowRequest()).isTrue();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+        assertThat(breaker.isAvailable()).isFalse();
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60_000);
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThroughAndClosesOnSuccess() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.isAvailable()).isTrue();
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        // 試探請求回來前不再放行
+        assertThat(breaker.allowRequest()).isFalse();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedProbeReopens() {
+        // 熔斷時間 0：立刻進入 half-open
+        CircuitBreaker breaker = new CircuitBreaker(5, 0);
+        for (int i = 0; i < 5; i++) breaker.onFailure();
+        assertThat(breaker.allowRequest()).isTrue();
+        // half-open 時一次失敗就再次熔斷，不必累積到門檻
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void abandonedProbeAllowsImmediateRetry() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 60_000);
+        breaker.onFailure();
+        assertThat(breaker.allowRequest()).isFalse();
+        // 未到期時取消不影響熔斷
+        breaker.onAbandoned();
+        assertThat(breaker.allowRequest()).isFalse();
+
+        CircuitBreaker probing = new CircuitBreaker(1, 0);
+        probing.onFailure();
+        assertThat(probing.allowRequest()).isTrue();
+        probing.onAbandoned();
+        assertThat(probing.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(probing.allowRequest()).isTrue();
+    }
+}
@@ -0,0 +1,81 @@
+package com.dylincode.mcp.embedding;
+
+import com.dylincode.mcp.config.EmbeddingConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 以固定的幾段文字比對 ONNX 與 Ollama 的向量。需要模型檔與執行中的 Ollama，只在設定環境變數時執行：
+ *
+ * <pre>
+ * ONNX_MODEL_PATH=models/bge-m3/model.onnx ONNX_TOKENIZER_PATH=models/bge-m3/tokenizer.json \
+ * OLLAMA_BASE_URL=http://localhost:11434 OLLAMA_MODEL=bge-m3:567m ONNX_POOLING=cls \
+ * mvn test -Dtest=OnnxOllamaParityTest
+ * </pre>
+ */
+@EnabledIfEnvironmentVariable(named = "ONNX_MODEL_PATH", matches = ".+")
+@EnabledIfEnvironmentVariable(named = "OLLAMA_BASE_URL", matches = ".+")
+class OnnxOllamaParityTest {
+    private static final double MIN_COSINE = 0.99;
+    private static final List<String> TEXTS = List.of(
+            "How do I roll back a failed deployment?",
+            "付款 webhook 重送的間隔與上限是多少？",
+            "kubectl rollout undo deployment/payment-api -n prod",
+            "Q3 季度報告：營收成長 12%，主要來自新的訂閱方案。");
+
+    @Test
+    void onnxMatchesOllamaWithinTolerance() throws Exception {
+        String model = env("OLLAMA_MODEL", "bge-m3:567m");
+        EmbeddingConfig config = new EmbeddingConfig();
+        config.setModel(model);
+        EmbeddingConfig.Onnx onnx = config.getOnnx();
+        onnx.setEnabled(true);
+        onnx.setModelPath(System.getenv("ONNX_MODEL_PATH"));
+        onnx.setTokenizerPath(env("ONNX_TOKENIZER_PATH", "models/bge-m3/tokenizer.json"));
+        onnx.setPooling(env("ONNX_POOLING", "cls"));
+        onnx.setSessions(1);
+        onnx.setVerifyMinCosine(MIN_COSINE);
+
+        LocalOllamaEmbeddingService ollama = new LocalOllamaEmbeddingService(System.getenv("OLLAMA_BASE_URL"), model, 60_000);
+        @SuppressWarnings("unchecked")
+        ObjectProvider<LocalOllamaEmbeddingService> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(ollama);
+
+        OnnxEmbeddingService service = new OnnxEmbeddingService(config, new SimpleMeterRegistry(), provider, model);
+        try {
+            // 啟動時的語料比對通過才會以原模型名稱參與路由
+            assertThat(service.model()).isEqualTo(model);
+            List<float[]> local = service.embedAll(TEXTS);
+            for (int i = 0; i < TEXTS.size(); i++) {
+                float[] reference = ollama.embed(TEXTS.get(i));
+                assertThat(local.get(i)).hasSameSizeAs(reference);
+                assertThat(cosine(local.get(i), reference)).as(TEXTS.get(i)).isGreaterThanOrEqualTo(MIN_COSINE);
+            }
+        } finally {
+            service.close();
+        }
+    }
+
+    private static String env(String name, String fallback) {
+        return Optional.ofNullable(System.getenv(name)).filter(v -> !v.isBlank()).orElse(fallback);
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, na = 0, nb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return dot / Math.sqrt(na * nb);
+    }
+}
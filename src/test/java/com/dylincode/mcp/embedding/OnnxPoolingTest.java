@@ -0,0 +1,55 @@
+package com.dylincode.mcp.embedding;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class OnnxPoolingTest {
+    private static final OrtEnvironment ENV = OrtEnvironment.getEnvironment();
+
+    /** 兩筆、各三個 token、二維；第二筆最後一個 token 是 padding */
+    private static final float[][][] TOKENS = {
+            {{3, 4}, {1, 0}, {0, 1}},
+            {{0, 2}, {2, 0}, {100, 100}},
+    };
+    private static final long[][] MASK = {{1, 1, 1}, {1, 1, 0}};
+
+    @Test
+    void clsPoolingTakesTheFirstTokenAndNormalizes() throws Exception {
+        try (OnnxTensor output = OnnxTensor.createTensor(ENV, TOKENS)) {
+            List<float[]> vectors = OnnxEmbeddingService.pool(output, MASK, false);
+
+            assertThat(vectors.get(0)).containsExactly(new float[]{0.6f, 0.8f}, within(1e-6f));
+            assertThat(vectors.get(1)).containsExactly(new float[]{0f, 1f}, within(1e-6f));
+        }
+    }
+
+    @Test
+    void meanPoolingAveragesOnlyUnmaskedTokens() throws Exception {
+        try (OnnxTensor output = OnnxTensor.createTensor(ENV, TOKENS)) {
+            List<float[]> vectors = OnnxEmbeddingService.pool(output, MASK, true);
+
+            // (3+1+0, 4+0+1) / 3 -> (4, 5) 正規化
+            float n0 = (float) Math.sqrt(41);
+            assertThat(vectors.get(0)).containsExactly(new float[]{4 / n0, 5 / n0}, within(1e-6f));
+            // padding 的 (100, 100) 不計入：(0+2, 2+0) / 2
+            float n1 = (float) Math.sqrt(2);
+            assertThat(vectors.get(1)).containsExactly(new float[]{1 / n1, 1 / n1}, within(1e-6f));
+        }
+    }
+
+    @Test
+    void pooledOutputIsUsedAsIs() throws Exception {
+        try (OnnxTensor output = OnnxTensor.createTensor(ENV, new float[][]{{0, 3}, {5, 0}})) {
+            List<float[]> vectors = OnnxEmbeddingService.pool(output, new long[][]{{1}, {1}}, true);
+
+            assertThat(vectors.get(0)).containsExactly(new float[]{0f, 1f}, within(1e-6f));
+            assertThat(vectors.get(1)).containsExactly(new float[]{1f, 0f}, within(1e-6f));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.dylincode.mcp.index;
+
+import com.dylincode.mcp.embedding.EmbeddingService;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.VectorUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * 比較不同向量維度（Matryoshka 截斷）下的 index 大小、搜尋延遲與 recall，作為調整 {@code app.embedding.dimensions} 的依據。
+ *
+ * <p>讀取現有 index（以原生維度建立）的所有向量，對每個維度截斷並重新正規化後另建一個暫存 HNSW index，
+ * 以抽樣的文件向量作為查詢（排除自己），和原生維度的精確搜尋結果比較 recall@k。
+ * 同時列出該維度精確搜尋的 recall，區分截斷本身與 HNSW 近似造成的損失。</p>
+ *
+ * <p>另外以同一個暫存 index 量測 {@link VectorIndexService.SearchMode#BINARY}：量化碼大小、
+ * 取 {@code max(k * oversample, min-candidates)} 個候選並讀回 float 向量重新計分後的延遲與 recall，
+ * 可與 HNSW（{@code KnnFloatVectorQuery}）的向量檔大小、延遲與 recall 直接比較。</p>
+ *
+ * <pre>
+ * scripts/dimension-benchmark.sh --index data/index --dims 256,512,1024 --queries 200 --k 10 --oversample 10
+ * </pre>
+ */
+public class DimensionBenchmark {
+    private static final String F_VECTOR = "embedding";
+    private static final String F_ORD = "ord";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        Path index = resolve(Path.of(opts.getOrDefault("index", "data/index")).toAbsolutePath());
+        int queries = Integer.parseInt(opts.getOrDefault("queries", "200"));
+        int k = Integer.parseInt(opts.getOrDefault("k", "10"));
+        int maxDocs = Integer.parseInt(opts.getOrDefault("max-docs", String.valueOf(Integer.MAX_VALUE)));
+        int candidates = Math.max(k * Integer.parseInt(opts.getOrDefault("oversample", "10")),
+                Integer.parseInt(opts.getOrDefault("min-candidates", "100")));
+
+        float[][] vectors = load(index, maxDocs);
+        if (vectors.length <= k) {
+            System.out.println("index " + index + " has only " + vectors.length + " vectors; nothing to compare");
+            return;
+        }
+        int native_ = vectors[0].length;
+        TreeSet<Integer> dims = new TreeSet<>();
+        for (String d : opts.getOrDefault("dims", "256,512,1024").split(",")) {
+            int v = Integer.parseInt(d.trim());
+            if (v > 0 && v <= native_) dims.add(v);
+        }
+        dims.add(native_);
+
+        Random random = new Random(Long.parseLong(opts.getOrDefault("seed", "42")));
+        int[] sample = random.ints(0, vectors.length).distinct().limit(Math.min(queries, vectors.length)).toArray();
+        System.out.printf("index %s: %d vectors x %d dims, %d queries, k=%d, binary candidates=%d%n",
+                index, vectors.length, native_, sample.length, k, candidates);
+        List<Set<Integer>> truth = new ArrayList<>();
+        for (int q : sample) truth.add(exact(vectors, vectors[q], q, k));
+
+        System.out.printf("%6s %12s %12s %9s %9s %9s %12s %12s %10s %9s %9s %12s%n",
+                "dims", "vector MB", "index MB", "build s", "p50 ms", "p99 ms", "recall hnsw", "recall exact",
+                "binary MB", "p50 ms", "p99 ms", "recall bin");
+        for (int d : dims) {
+            float[][] truncated = new float[vectors.length][];
+            for (int i = 0; i < vectors.length; i++) truncated[i] = EmbeddingService.truncate(vectors[i], d);
+            Result r = run(truncated, sample, truth, k, candidates);
+            System.out.printf("%6d %12.1f %12.1f %9.1f %9.2f %9.2f %12.4f %12.4f %10.2f %9.2f %9.2f %12.4f%n",
+                    d, r.vectorBytes / 1e6, r.indexBytes / 1e6, r.buildSeconds, r.p50Ms, r.p99Ms, r.recallHnsw, r.recallExact,
+                    r.binaryBytes / 1e6, r.binaryP50Ms, r.binaryP99Ms, r.recallBinary);
+        }
+    }
+
+    private record Result(long vectorBytes, long indexBytes, double buildSeconds, double p50Ms, double p99Ms,
+                          double recallHnsw, double recallExact,
+                          long binaryBytes, double binaryP50Ms, double binaryP99Ms, double recallBinary) {
+    }
+
+    /**
+     * 與 {@link LuceneVectorIndexService} 相同的 {@code <index>.current} 指標
+     */
+    private static Path resolve(Path root) throws IOException {
+        Path pointer = root.resolveSibling(root.getFileName() + ".current");
+        if (!Files.exists(pointer)) return root;
+        String name = Files.readString(pointer).trim();
+        return name.isEmpty() ? root : root.resolveSibling(name);
+    }
+
+    private static float[][] load(Path path, int maxDocs) throws IOException {
+        List<float[]> out = new ArrayList<>();
+        try (Directory dir = FSDirectory.open(path); DirectoryReader reader = DirectoryReader.open(dir)) {
+            for (LeafReaderContext ctx : reader.leaves()) {
+                FloatVectorValues values = ctx.reader().getFloatVectorValues(F_VECTOR);
+                if (values == null) continue;
+                Bits live = ctx.reader().getLiveDocs();
+                for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS && out.size() < maxDocs; doc = values.nextDoc()) {
+                    if (live == null || live.get(doc)) out.add(values.vectorValue().clone());
+                }
+            }
+        }
+        return out.toArray(new float[0][]);
+    }
+
+    private static Set<Integer> exact(float[][] vectors, float[] query, int self, int k) {
+        PriorityQueue<int[]> top = new PriorityQueue<>(Comparator.comparingDouble(e -> Float.intBitsToFloat(e[1])));
+        for (int i = 0; i < vectors.length; i++) {
+            if (i == self) continue;
+            float score = VectorUtil.dotProduct(vectors[i], query);
+            if (top.size() < k) top.add(new int[]{i, Float.floatToIntBits(score)});
+            else if (score > Float.intBitsToFloat(top.peek()[1])) {
+                top.poll();
+                top.add(new int[]{i, Float.floatToIntBits(score)});
+            }
+        }
+        Set<Integer> ids = new HashSet<>();
+        top.forEach(e -> ids.add(e[0]));
+        return ids;
+    }
+
+    /**
+     * 不使用 compound file，才能分開計算向量檔（.vec/.vex/.vem）的大小
+     */
+    private static IndexWriterConfig benchmarkConfig() {
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setNoCFSRatio(0.0);
+        return new IndexWriterConfig().setRAMBufferSizeMB(256).setUseCompoundFile(false).setMergePolicy(mergePolicy);
+    }
+
+    private static ScoreDoc[] binary(IndexReader reader, BinaryCodeMatrix codes, float[] query, int candidates, int k)
+            throws IOException {
+        return LuceneVectorIndexService.rescore(reader, query,
+                codes.candidates(query, Math.max(candidates, k), null, ForkJoinPool.commonPool()), k);
+    }
+
+    private static double p50(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+
+    private static double p99(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e6;
+    }
+
+    private static Result run(float[][] vectors, int[] sample, List<Set<Integer>> truth, int k, int candidates) throws IOException {
+        Path tmp = Files.createTempDirectory("dimension-benchmark");
+        try {
+            long start = System.nanoTime();
+            try (Directory dir = FSDirectory.open(tmp);
+                 IndexWriter writer = new IndexWriter(dir, benchmarkConfig())) {
+                for (int i = 0; i < vectors.length; i++) {
+                    Document doc = new Document();
+                    doc.add(new KnnFloatVectorField(F_VECTOR, vectors[i], VectorSimilarityFunction.DOT_PRODUCT));
+                    doc.add(new NumericDocValuesField(F_ORD, i));
+                    writer.addDocument(doc);
+                }
+                writer.forceMerge(1);
+                writer.commit();
+            }
+            double buildSeconds = (System.nanoTime() - start) / 1e9;
+
+            long vectorBytes = 0;
+            long indexBytes = 0;
+            try (Stream<Path> files = Files.list(tmp)) {
+                for (Path f : files.toList()) {
+                    long size = Files.size(f);
+                    indexBytes += size;
+                    String name = f.getFileName().toString();
+                    if (name.endsWith(".vec") || name.endsWith(".vex") || name.endsWith(".vem")) vectorBytes += size;
+                }
+            }
+
+            try (Directory dir = FSDirectory.open(tmp); DirectoryReader reader = DirectoryReader.open(dir)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                NumericDocValues ords = MultiDocValues.getNumericValues(reader, F_ORD);
+                long[] ordOf = new long[reader.maxDoc()];
+                for (int doc = ords.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = ords.nextDoc()) {
+                    ordOf[doc] = ords.longValue();
+                }
+                // 預熱一輪，讓 mmap 的頁面與 JIT 穩定
+                for (int q : sample) searcher.search(new KnnFloatVectorQuery(F_VECTOR, vectors[q], k + 1), k + 1);
+
+                long[] latencies = new long[sample.length];
+                double hnswHits = 0;
+                double exactHits = 0;
+                for (int i = 0; i < sample.length; i++) {
+                    int q = sample[i];
+                    long t = System.nanoTime();
+                    ScoreDoc[] hits = searcher.search(new KnnFloatVectorQuery(F_VECTOR, vectors[q], k + 1), k + 1).scoreDocs;
+                    latencies[i] = System.nanoTime() - t;
+                    int taken = 0;
+                    for (ScoreDoc h : hits) {
+                        int ord = (int) ordOf[h.doc];
+                        if (ord == q || taken == k) continue;
+                        taken++;
+                        if (truth.get(i).contains(ord)) hnswHits++;
+                    }
+                    for (int ord : exact(vectors, vectors[q], q, k)) if (truth.get(i).contains(ord)) exactHits++;
+                }
+
+                // 兩階段 binary：與服務相同的量化碼與重新計分，k + 1 排除查詢自己
+                long[] binaryLatencies = new long[sample.length];
+                double binaryHits = 0;
+                try (BinaryCodeMatrix codes = BinaryCodeMatrix.build(reader, F_VECTOR, tmp.resolve("binary-codes.bin"))) {
+                    for (int q : sample) binary(reader, codes, vectors[q], candidates, k + 1);
+                    for (int i = 0; i < sample.length; i++) {
+                        int q = sample[i];
+                        long t = System.nanoTime();
+                        ScoreDoc[] hits = binary(reader, codes, vectors[q], candidates, k + 1);
+                        binaryLatencies[i] = System.nanoTime() - t;
+                        int taken = 0;
+                        for (ScoreDoc h : hits) {
+                            int ord = (int) ordOf[h.doc];
+                            if (ord == q || taken == k) continue;
+                            taken++;
+                            if (truth.get(i).contains(ord)) binaryHits++;
+                        }
+                    }
+                    double total = (double) sample.length * k;
+                    return new Result(vectorBytes, indexBytes, buildSeconds, p50(latencies), p99(latencies),
+                            hnswHits / total, exactHits / total,
+                            codes.sizeInBytes(), p50(binaryLatencies), p99(binaryLatencies), binaryHits / total);
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(tmp)) {
+                IOUtils.rm(files.toArray(Path[]::new));
+            }
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.dylincode.mcp.index;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.VectorUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 比較 metadata filter 在 HNSW 走訪中套用（pre-filter，{@link VectorIndexService#search} 的做法）與
+ * 先多取候選再過濾（post-filter）在不同選擇性下的延遲與 recall。
+ *
+ * <p>filter 依 index 內容產生：不過濾、各 space（由大到小，即由寬到窄），以及只留最近修改的 50% / 10% / 1% 文件的
+ * {@code modifiedAfter}。查詢為抽樣的文件向量，recall@k 以符合 filter 的文件做精確搜尋為基準；
+ * post-filter 取 {@code k * oversample} 個候選，符合的不足 k 筆時 recall 隨之下降。</p>
+ *
+ * <pre>
+ * scripts/filter-benchmark.sh --index data/index --queries 200 --k 10 --oversample 10
+ * </pre>
+ */
+public class FilterBenchmark {
+    private static final String F_VECTOR = "embedding";
+    private static final String F_SPACE = "space";
+    private static final String F_MODIFIED = "lastModified";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        Path index = resolve(Path.of(opts.getOrDefault("index", "data/index")).toAbsolutePath());
+        int queries = Integer.parseInt(opts.getOrDefault("queries", "200"));
+        int k = Integer.parseInt(opts.getOrDefault("k", "10"));
+        int oversample = Integer.parseInt(opts.getOrDefault("oversample", "10"));
+
+        try (Directory dir = FSDirectory.open(index); DirectoryReader reader = DirectoryReader.open(dir)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            float[][] vectors = new float[reader.maxDoc()][];
+            List<Integer> live = new ArrayList<>();
+            Map<String, Integer> spaces = new HashMap<>();
+            List<Long> modified = new ArrayList<>();
+            for (LeafReaderContext leaf : reader.leaves()) {
+                FloatVectorValues values = leaf.reader().getFloatVectorValues(F_VECTOR);
+                if (values == null) continue;
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                SortedDocValues space = leaf.reader().getSortedDocValues(F_SPACE);
+                NumericDocValues time = leaf.reader().getNumericDocValues(F_MODIFIED);
+                for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                    if (liveDocs != null && !liveDocs.get(doc)) continue;
+                    vectors[leaf.docBase + doc] = values.vectorValue().clone();
+                    live.add(leaf.docBase + doc);
+                    if (space != null && space.advanceExact(doc)) spaces.merge(space.lookupOrd(space.ordValue()).utf8ToString(), 1, Integer::sum);
+                    if (time != null && time.advanceExact(doc) && time.longValue() > 0) modified.add(time.longValue());
+                }
+            }
+            if (live.size() <= k) {
+                System.out.println("index " + index + " has only " + live.size() + " vectors; nothing to compare");
+                return;
+            }
+
+            Map<String, VectorIndexService.SearchFilter> filters = new LinkedHashMap<>();
+            filters.put("none", null);
+            spaces.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed()).forEach(e ->
+                    filters.put("space=" + e.getKey(), new VectorIndexService.SearchFilter(Set.of(e.getKey()), null, null, null, null)));
+            Collections.sort(modified);
+            for (double newest : new double[]{0.5, 0.1, 0.01}) {
+                if (modified.isEmpty()) break;
+                long after = modified.get((int) Math.min(modified.size() - 1, Math.floor(modified.size() * (1 - newest))));
+                filters.put("newest " + (int) (newest * 100) + "%", new VectorIndexService.SearchFilter(null, null, null, after, null));
+            }
+
+            Random random = new Random(Long.parseLong(opts.getOrDefault("seed", "42")));
+            int[] sample = random.ints(0, live.size()).distinct().limit(Math.min(queries, live.size()))
+                    .map(live::get).toArray();
+            System.out.printf("index %s: %d docs, %d queries, k=%d, post-filter candidates=%d%n",
+                    index, live.size(), sample.length, k, k * oversample);
+            System.out.printf("%-24s %9s %10s %10s %10s %10s %10s %10s%n", "filter", "match %",
+                    "pre p50", "pre p99", "pre recall", "post p50", "post p99", "post recall");
+            for (Map.Entry<String, VectorIndexService.SearchFilter> e : filters.entrySet()) {
+                Query filter = LuceneVectorIndexService.toFilterQuery(e.getValue());
+                FixedBitSet accept = accepted(searcher, filter, reader.maxDoc());
+                int matching = accept.cardinality();
+                long[] pre = new long[sample.length];
+                long[] post = new long[sample.length];
+                double preRecall = 0, postRecall = 0;
+                // 預熱一輪，讓 mmap 的頁面與 JIT 穩定
+                for (int q : sample) searcher.search(new KnnFloatVectorQuery(F_VECTOR, vectors[q], k, filter), k);
+                for (int i = 0; i < sample.length; i++) {
+                    float[] query = vectors[sample[i]];
+                    Set<Integer> truth = exact(vectors, accept, query, k);
+
+                    long t = System.nanoTime();
+                    ScoreDoc[] hits = searcher.search(new KnnFloatVectorQuery(F_VECTOR, query, k, filter), k).scoreDocs;
+                    pre[i] = System.nanoTime() - t;
+                    preRecall += recall(hits, truth, k);
+
+                    t = System.nanoTime();
+                    int n = k * oversample;
+                    List<ScoreDoc> kept = new ArrayList<>(k);
+                    for (ScoreDoc sd : searcher.search(new KnnFloatVectorQuery(F_VECTOR, query, n), n).scoreDocs) {
+                        if (accept.get(sd.doc) && kept.size() < k) kept.add(sd);
+                    }
+                    post[i] = System.nanoTime() - t;
+                    postRecall += recall(kept.toArray(new ScoreDoc[0]), truth, k);
+                }
+                System.out.printf("%-24s %9.1f %10.2f %10.2f %10.3f %10.2f %10.2f %10.3f%n", e.getKey(),
+                        100.0 * matching / live.size(), percentile(pre, 0.5), percentile(pre, 0.99), preRecall / sample.length,
+                        percentile(post, 0.5), percentile(post, 0.99), postRecall / sample.length);
+            }
+        }
+    }
+
+    /**
+     * 與 {@link LuceneVectorIndexService} 相同的 {@code <index>.current} 指標
+     */
+    private static Path resolve(Path root) throws IOException {
+        Path pointer = root.resolveSibling(root.getFileName() + ".current");
+        if (!Files.exists(pointer)) return root;
+        String name = Files.readString(pointer).trim();
+        return name.isEmpty() ? root : root.resolveSibling(name);
+    }
+
+    private static FixedBitSet accepted(IndexSearcher searcher, Query filter, int maxDoc) throws IOException {
+        FixedBitSet bits = new FixedBitSet(Math.max(1, maxDoc));
+        searcher.search(filter == null ? new MatchAllDocsQuery() : filter, new SimpleCollector() {
+            private int docBase;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) {
+                docBase = context.docBase;
+            }
+
+            @Override
+            public void collect(int doc) {
+                bits.set(docBase + doc);
+            }
+
+            @Override
+            public ScoreMode scoreMode() {
+                return ScoreMode.COMPLETE_NO_SCORES;
+            }
+        });
+        return bits;
+    }
+
+    /** 符合 filter 的文件中，與 query 內積最高的 k 個（含查詢文件本身，與 kNN 結果一致） */
+    private static Set<Integer> exact(float[][] vectors, FixedBitSet accept, float[] query, int k) {
+        PriorityQueue<ScoreDoc> top = new PriorityQueue<>(Comparator.comparingDouble(sd -> sd.score));
+        for (int doc = 0; doc < vectors.length; doc++) {
+            if (vectors[doc] == null || !accept.get(doc)) continue;
+            float score = VectorUtil.dotProduct(query, vectors[doc]);
+            if (top.size() < k) top.add(new ScoreDoc(doc, score));
+            else if (score > top.peek().score) {
+                top.poll();
+                top.add(new ScoreDoc(doc, score));
+            }
+        }
+        Set<Integer> out = new HashSet<>();
+        for (ScoreDoc sd : top) out.add(sd.doc);
+        return out;
+    }
+
+    private static double recall(ScoreDoc[] hits, Set<Integer> truth, int k) {
+        if (truth.isEmpty()) return 1;
+        int found = 0;
+        for (ScoreDoc sd : hits) if (truth.contains(sd.doc)) found++;
+        return found / (double) Math.min(k, truth.size());
+    }
+
+    private static double percentile(long[] nanos, double p) {
+        if (nanos.length == 0) return 0;
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+    }
+}
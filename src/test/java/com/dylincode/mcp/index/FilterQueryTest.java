@@ -0,0 +1,99 @@
+package com.dylincode.mcp.index;
+
+import com.dylincode.mcp.index.VectorIndexService.SearchFilter;
+import com.dylincode.mcp.model.Chunk;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilterQueryTest {
+    private Directory dir;
+    private DirectoryReader reader;
+
+    @BeforeEach
+    void index() throws IOException {
+        dir = new ByteBuffersDirectory();
+        try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig())) {
+            w.addDocument(doc("a", "DE", List.of("runbook"), "alice", 1_000L));
+            w.addDocument(doc("b", "DE", List.of("adr", "runbook"), "bob", 2_000L));
+            w.addDocument(doc("c", "BE", List.of(), "alice", 3_000L));
+            // 修改時間未知
+            w.addDocument(doc("d", "BE", List.of("adr"), "bob", 0L));
+        }
+        reader = DirectoryReader.open(dir);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        reader.close();
+        dir.close();
+    }
+
+    private static Document doc(String id, String space, List<String> labels, String author, long modified) {
+        Document d = new Document();
+        d.add(new StringField("id", id, Field.Store.YES));
+        LuceneVectorIndexService.addMetadata(d, new Chunk(id, id, null, "", null, space, labels, author, modified));
+        return d;
+    }
+
+    private Set<String> matching(SearchFilter filter) throws IOException {
+        Query q = LuceneVectorIndexService.toFilterQuery(filter);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Set<String> ids = new TreeSet<>();
+        for (ScoreDoc sd : searcher.search(q == null ? new MatchAllDocsQuery() : q, 100).scoreDocs) {
+            ids.add(searcher.storedFields().document(sd.doc).get("id"));
+        }
+        return ids;
+    }
+
+    @Test
+    void emptyFilterIsNoQuery() {
+        assertThat(LuceneVectorIndexService.toFilterQuery(null)).isNull();
+        assertThat(LuceneVectorIndexService.toFilterQuery(new SearchFilter(Set.of(), null, " ", null, null))).isNull();
+    }
+
+    @Test
+    void valuesWithinACriterionAreAlternatives() throws IOException {
+        assertThat(matching(new SearchFilter(Set.of("DE", "BE"), null, null, null, null))).containsExactly("a", "b", "c", "d");
+        assertThat(matching(new SearchFilter(null, Set.of("adr"), null, null, null))).containsExactly("b", "d");
+    }
+
+    @Test
+    void criteriaAreCombined() throws IOException {
+        assertThat(matching(new SearchFilter(Set.of("DE"), Set.of("runbook"), "bob", null, null))).containsExactly("b");
+        assertThat(matching(new SearchFilter(Set.of("BE"), null, "alice", null, null))).containsExactly("c");
+    }
+
+    @Test
+    void modifiedRangeIsInclusive() throws IOException {
+        assertThat(matching(new SearchFilter(null, null, null, 2_000L, null))).containsExactly("b", "c");
+        assertThat(matching(new SearchFilter(null, null, null, null, 2_000L))).containsExactly("a", "b");
+        assertThat(matching(new SearchFilter(null, null, null, 1_500L, 2_500L))).containsExactly("b");
+    }
+
+    @Test
+    void unknownModifiedTimeNeverMatchesADateRange() throws IOException {
+        assertThat(matching(new SearchFilter(null, null, null, Long.MIN_VALUE + 1, null))).doesNotContain("d");
+        assertThat(matching(new SearchFilter(null, null, null, null, Long.MAX_VALUE))).doesNotContain("d");
+        assertThat(matching(new SearchFilter(Set.of("BE"), null, null, null, null))).contains("d");
+    }
+}
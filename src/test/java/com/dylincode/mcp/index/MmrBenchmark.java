@@ -0,0 +1,189 @@
+package com.dylincode.mcp.index;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.VectorUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * 量測 MMR 重新排序隨 k 增加的成本：kNN 取 {@code k * candidate-factor} 個候選、讀回候選向量（{@code loadVectors}），
+ * 以及 {@link MmrReranker#select} 本身，對應查詢 trace 中的 {@code hnsw} 與 {@code mmr} 階段。
+ *
+ * <p>指定 {@code --index} 時以 index 內抽樣的文件向量為查詢；否則產生 {@code --docs} 個 {@code --dims} 維的合成正規化向量，
+ * 每 {@code --cluster} 個彼此接近，模擬同一頁相鄰的 chunk，只量測 select（合成模式沒有 kNN 與讀回向量）。
+ * select 的成本約為 {@code k * n} 次內積，n 為候選數。</p>
+ *
+ * <pre>
+ * scripts/mmr-benchmark.sh --index data/index --k 5,10,20,50 --candidate-factor 4
+ * scripts/mmr-benchmark.sh --docs 20000 --dims 1024 --k 5,10,20,50
+ * </pre>
+ */
+public class MmrBenchmark {
+    private static final String F_VECTOR = "embedding";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        int[] ks = Arrays.stream(opts.getOrDefault("k", "5,10,20,50").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        int factor = Math.max(1, Integer.parseInt(opts.getOrDefault("candidate-factor", "4")));
+        float lambda = Float.parseFloat(opts.getOrDefault("lambda", "0.7"));
+        int queries = Integer.parseInt(opts.getOrDefault("queries", "200"));
+        Random random = new Random(Long.parseLong(opts.getOrDefault("seed", "42")));
+
+        if (opts.containsKey("index")) {
+            Path index = resolve(Path.of(opts.get("index")).toAbsolutePath());
+            try (Directory dir = FSDirectory.open(index); DirectoryReader reader = DirectoryReader.open(dir)) {
+                runIndex(index, reader, ks, factor, lambda, queries, random);
+            }
+        } else {
+            int docs = Integer.parseInt(opts.getOrDefault("docs", "20000"));
+            int dims = Integer.parseInt(opts.getOrDefault("dims", "1024"));
+            int cluster = Math.max(1, Integer.parseInt(opts.getOrDefault("cluster", "4")));
+            runSynthetic(docs, dims, cluster, ks, factor, lambda, queries, random);
+        }
+    }
+
+    private static void runIndex(Path index, DirectoryReader reader, int[] ks, int factor, float lambda,
+                                 int queries, Random random) throws IOException {
+        List<float[]> sample = sampleVectors(reader, queries, random);
+        if (sample.isEmpty()) {
+            System.out.println("index " + index + " has no vectors");
+            return;
+        }
+        IndexSearcher searcher = new IndexSearcher(reader);
+        System.out.printf("index %s: %d docs, %d queries, candidates = k * %d, lambda=%.2f%n",
+                index, reader.numDocs(), sample.size(), factor, lambda);
+        System.out.printf("%6s %11s %10s %10s %10s %10s %10s %10s%n", "k", "candidates",
+                "knn p50", "knn p99", "load p50", "load p99", "mmr p50", "mmr p99");
+        for (int k : ks) {
+            int n = k * factor;
+            // 預熱一輪
+            for (float[] q : sample) select(searcher, reader, q, n, k, lambda);
+            long[] knn = new long[sample.size()];
+            long[] load = new long[sample.size()];
+            long[] mmr = new long[sample.size()];
+            int fetched = 0;
+            for (int i = 0; i < sample.size(); i++) {
+                float[] q = sample.get(i);
+                long t = System.nanoTime();
+                ScoreDoc[] hits = searcher.search(new KnnFloatVectorQuery(F_VECTOR, q, n), n).scoreDocs;
+                knn[i] = System.nanoTime() - t;
+                fetched += hits.length;
+                t = System.nanoTime();
+                float[][] vectors = LuceneVectorIndexService.loadVectors(reader, hits);
+                load[i] = System.nanoTime() - t;
+                t = System.nanoTime();
+                MmrReranker.select(q, vectors, k, lambda);
+                mmr[i] = System.nanoTime() - t;
+            }
+            System.out.printf("%6d %11d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f%n", k, fetched / sample.size(),
+                    percentile(knn, 0.5), percentile(knn, 0.99), percentile(load, 0.5), percentile(load, 0.99),
+                    percentile(mmr, 0.5), percentile(mmr, 0.99));
+        }
+    }
+
+    private static void select(IndexSearcher searcher, IndexReader reader, float[] q, int n, int k, float lambda)
+            throws IOException {
+        ScoreDoc[] hits = searcher.search(new KnnFloatVectorQuery(F_VECTOR, q, n), n).scoreDocs;
+        MmrReranker.select(q, LuceneVectorIndexService.loadVectors(reader, hits), k, lambda);
+    }
+
+    private static void runSynthetic(int docs, int dims, int cluster, int[] ks, int factor, float lambda,
+                                     int queries, Random random) {
+        float[][] vectors = new float[docs][];
+        float[] center = null;
+        for (int i = 0; i < docs; i++) {
+            if (i % cluster == 0) center = randomUnit(dims, random);
+            float[] v = center.clone();
+            for (int d = 0; d < dims; d++) v[d] += (float) random.nextGaussian() * 0.3f / (float) Math.sqrt(dims);
+            vectors[i] = normalize(v);
+        }
+        System.out.printf("synthetic: %d docs x %d dims (clusters of %d), %d queries, candidates = k * %d, lambda=%.2f%n",
+                docs, dims, cluster, queries, factor, lambda);
+        System.out.printf("%6s %11s %10s %10s%n", "k", "candidates", "mmr p50", "mmr p99");
+        for (int k : ks) {
+            int n = Math.min(docs, k * factor);
+            float[][] candidates = new float[n][];
+            long[] mmr = new long[queries];
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < queries; i++) {
+                    float[] q = vectors[random.nextInt(docs)];
+                    // 取與查詢最接近的 n 個，和 kNN 的候選一樣依相似度排序
+                    topN(vectors, q, candidates);
+                    long t = System.nanoTime();
+                    MmrReranker.select(q, candidates, k, lambda);
+                    // 第一輪為預熱
+                    if (round == 1) mmr[i] = System.nanoTime() - t;
+                }
+            }
+            System.out.printf("%6d %11d %10.3f %10.3f%n", k, n, percentile(mmr, 0.5), percentile(mmr, 0.99));
+        }
+    }
+
+    private static void topN(float[][] vectors, float[] q, float[][] out) {
+        PriorityQueue<ScoreDoc> top = new PriorityQueue<>(Comparator.comparingDouble(sd -> sd.score));
+        for (int doc = 0; doc < vectors.length; doc++) {
+            float score = VectorUtil.dotProduct(q, vectors[doc]);
+            if (top.size() < out.length) top.add(new ScoreDoc(doc, score));
+            else if (score > top.peek().score) {
+                top.poll();
+                top.add(new ScoreDoc(doc, score));
+            }
+        }
+        for (int i = out.length - 1; i >= 0; i--) out[i] = vectors[top.poll().doc];
+    }
+
+    private static List<float[]> sampleVectors(IndexReader reader, int queries, Random random) throws IOException {
+        List<float[]> all = new ArrayList<>();
+        for (LeafReaderContext leaf : reader.leaves()) {
+            FloatVectorValues values = leaf.reader().getFloatVectorValues(F_VECTOR);
+            if (values == null) continue;
+            Bits liveDocs = leaf.reader().getLiveDocs();
+            for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                if (liveDocs == null || liveDocs.get(doc)) all.add(values.vectorValue().clone());
+            }
+        }
+        Collections.shuffle(all, random);
+        return all.subList(0, Math.min(queries, all.size()));
+    }
+
+    /**
+     * 與 {@link LuceneVectorIndexService} 相同的 {@code <index>.current} 指標
+     */
+    private static Path resolve(Path root) throws IOException {
+        Path pointer = root.resolveSibling(root.getFileName() + ".current");
+        if (!Files.exists(pointer)) return root;
+        String name = Files.readString(pointer).trim();
+        return name.isEmpty() ? root : root.resolveSibling(name);
+    }
+
+    private static float[] randomUnit(int dims, Random random) {
+        float[] v = new float[dims];
+        for (int d = 0; d < dims; d++) v[d] = (float) random.nextGaussian();
+        return normalize(v);
+    }
+
+    private static float[] normalize(float[] v) {
+        float norm = (float) Math.sqrt(VectorUtil.dotProduct(v, v));
+        for (int d = 0; d < v.length; d++) v[d] /= norm;
+        return v;
+    }
+
+    private static double percentile(long[] nanos, double p) {
+        if (nanos.length == 0) return 0;
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,51 @@
+package com.dylincode.mcp.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MmrRerankerTest {
+
+    private static float[] unit(float... v) {
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        float[] out = new float[v.length];
+        for (int i = 0; i < v.length; i++) out[i] = (float) (v[i] / Math.sqrt(norm));
+        return out;
+    }
+
+    private final float[] query = unit(1, 0, 0);
+    // 0 與 1 幾乎相同（同一頁相鄰的 chunk），2 相關度稍低但方向不同
+    private final float[][] candidates = {
+            unit(0.95f, 0.30f, 0f),
+            unit(0.94f, 0.31f, 0.01f),
+            unit(0.85f, 0f, 0.50f),
+    };
+
+    @Test
+    void lambdaOneKeepsSimilarityOrder() {
+        assertThat(MmrReranker.select(query, candidates, 3, 1f)).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void lowerLambdaPromotesDiverseCandidate() {
+        assertThat(MmrReranker.select(query, candidates, 3, 0.5f)).containsExactly(0, 2, 1);
+        assertThat(MmrReranker.select(query, candidates, 2, 0.5f)).containsExactly(0, 2);
+    }
+
+    @Test
+    void firstPickIsAlwaysMostRelevant() {
+        assertThat(MmrReranker.select(query, candidates, 1, 0f)).containsExactly(0);
+    }
+
+    @Test
+    void kLargerThanCandidatesReturnsEveryCandidateOnce() {
+        int[] order = MmrReranker.select(query, candidates, 10, 0.7f);
+        assertThat(order).hasSize(3).containsExactlyInAnyOrder(0, 1, 2);
+    }
+
+    @Test
+    void noCandidates() {
+        assertThat(MmrReranker.select(query, new float[0][], 5, 0.7f)).isEmpty();
+    }
+}
@@ -0,0 +1,250 @@
+package com.dylincode.mcp.index;
+
+import com.dylincode.mcp.config.SearchConfig;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.QueryBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 量測查詢內跨 segment 平行搜尋（{@code app.search.concurrency.*}）的效果，作為設定執行緒數與 slice 的依據。
+ *
+ * <ol>
+ *   <li>單一查詢的延遲：依序送出 kNN 與 BM25 查詢，比較不平行（threads=0）與各執行緒數的 p50/p99</li>
+ *   <li>並發負載下的吞吐量：{@code --clients} 個執行緒同時查詢 {@code --duration} 秒，比較不平行與平行的 qps 與 p99；
+ *       平行搜尋會和其他查詢搶 CPU，負載高時延遲改善可能換來吞吐量下降</li>
+ * </ol>
+ *
+ * <p>查詢取自 index 中抽樣文件的向量與內容前幾個詞。只有一個 segment 時無從平行，
+ * 可用 {@code --split N} 先複製成 N 個 segment 的暫存 index 再量測。</p>
+ *
+ * <pre>
+ * scripts/search-concurrency-benchmark.sh --index data/index --split 16 --threads 2,4,8 --clients 8 --duration 10
+ * </pre>
+ */
+public class SearchConcurrencyBenchmark {
+    private static final String F_VECTOR = "embedding";
+    private static final String F_CONTENT = "content";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        Path index = resolve(Path.of(opts.getOrDefault("index", "data/index")).toAbsolutePath());
+        int split = Integer.parseInt(opts.getOrDefault("split", "0"));
+        int queries = Integer.parseInt(opts.getOrDefault("queries", "200"));
+        int k = Integer.parseInt(opts.getOrDefault("k", "10"));
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threads = new ArrayList<>();
+        for (String t : opts.getOrDefault("threads", "2,4," + cores).split(",")) threads.add(Integer.parseInt(t.trim()));
+        int clients = Integer.parseInt(opts.getOrDefault("clients", String.valueOf(cores)));
+        int duration = Integer.parseInt(opts.getOrDefault("duration", "10"));
+        SearchConfig.Concurrency cfg = new SearchConfig.Concurrency();
+        cfg.setMaxDocsPerSlice(Integer.parseInt(opts.getOrDefault("max-docs-per-slice", String.valueOf(cfg.getMaxDocsPerSlice()))));
+        cfg.setMaxSegmentsPerSlice(Integer.parseInt(opts.getOrDefault("max-segments-per-slice", String.valueOf(cfg.getMaxSegmentsPerSlice()))));
+
+        Path tmp = split > 0 ? Files.createTempDirectory("search-concurrency-benchmark") : null;
+        try {
+            if (tmp != null) split(index, tmp, split);
+            try (Directory dir = FSDirectory.open(tmp != null ? tmp : index); DirectoryReader reader = DirectoryReader.open(dir)) {
+                List<Query> knn = new ArrayList<>();
+                List<Query> bm25 = new ArrayList<>();
+                sampleQueries(reader, queries, k, new Random(Long.parseLong(opts.getOrDefault("seed", "42"))), knn, bm25);
+                if (knn.isEmpty()) {
+                    System.out.println("index " + index + " has no vectors; nothing to measure");
+                    return;
+                }
+                System.out.printf("index %s: %d docs in %d segments, %d cores, %d queries, k=%d, slices of <= %d docs / %d segments%n",
+                        tmp != null ? tmp : index, reader.numDocs(), reader.leaves().size(), cores, knn.size(), k,
+                        cfg.getMaxDocsPerSlice(), cfg.getMaxSegmentsPerSlice());
+
+                System.out.println();
+                System.out.println("single query latency");
+                System.out.printf("%8s %8s %10s %10s %10s %10s%n", "threads", "slices", "knn p50", "knn p99", "bm25 p50", "bm25 p99");
+                List<Integer> configs = new ArrayList<>(List.of(0));
+                configs.addAll(threads);
+                for (int t : configs) {
+                    ThreadPoolExecutor executor = executor(t, cfg);
+                    try {
+                        IndexSearcher searcher = searcher(reader, executor, cfg);
+                        // 預熱一輪，讓 mmap 的頁面與 JIT 穩定
+                        sequential(searcher, knn, k);
+                        sequential(searcher, bm25, k);
+                        long[] knnLatency = sequential(searcher, knn, k);
+                        long[] bm25Latency = sequential(searcher, bm25, k);
+                        // 沒有 executor 時 getSlices() 為 null，所有 segment 在查詢執行緒上循序搜尋
+                        int slices = searcher.getSlices() == null ? 1 : searcher.getSlices().length;
+                        System.out.printf("%8s %8d %10.2f %10.2f %10.2f %10.2f%n", t == 0 ? "off" : t, slices,
+                                percentile(knnLatency, 0.5), percentile(knnLatency, 0.99),
+                                percentile(bm25Latency, 0.5), percentile(bm25Latency, 0.99));
+                    } finally {
+                        if (executor != null) executor.shutdown();
+                    }
+                }
+
+                System.out.println();
+                System.out.printf("throughput with %d concurrent clients, %ds per row%n", clients, duration);
+                System.out.printf("%8s %6s %10s %10s %10s%n", "threads", "query", "qps", "p50 ms", "p99 ms");
+                for (int t : List.of(0, threads.get(threads.size() - 1))) {
+                    ThreadPoolExecutor executor = executor(t, cfg);
+                    try {
+                        IndexSearcher searcher = searcher(reader, executor, cfg);
+                        Map<String, List<Query>> kinds = new LinkedHashMap<>();
+                        kinds.put("knn", knn);
+                        kinds.put("bm25", bm25);
+                        for (Map.Entry<String, List<Query>> e : kinds.entrySet()) {
+                            long[] latency = concurrent(searcher, e.getValue(), k, clients, duration);
+                            System.out.printf("%8s %6s %10.1f %10.2f %10.2f%n", t == 0 ? "off" : t, e.getKey(),
+                                    latency.length / (double) duration, percentile(latency, 0.5), percentile(latency, 0.99));
+                        }
+                    } finally {
+                        if (executor != null) executor.shutdown();
+                    }
+                }
+            }
+        } finally {
+            if (tmp != null) {
+                try (Stream<Path> files = Files.list(tmp)) {
+                    IOUtils.rm(files.toArray(Path[]::new));
+                }
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /**
+     * 與 {@link LuceneVectorIndexService} 相同的 {@code <index>.current} 指標
+     */
+    private static Path resolve(Path root) throws IOException {
+        Path pointer = root.resolveSibling(root.getFileName() + ".current");
+        if (!Files.exists(pointer)) return root;
+        String name = Files.readString(pointer).trim();
+        return name.isEmpty() ? root : root.resolveSibling(name);
+    }
+
+    private static ThreadPoolExecutor executor(int threads, SearchConfig.Concurrency base) {
+        if (threads <= 0) return null;
+        SearchConfig.Concurrency cfg = new SearchConfig.Concurrency();
+        cfg.setThreads(threads);
+        cfg.setQueueSize(base.getQueueSize());
+        return LuceneVectorIndexService.newSearchExecutor(cfg);
+    }
+
+    private static IndexSearcher searcher(IndexReader reader, ThreadPoolExecutor executor, SearchConfig.Concurrency cfg) {
+        return executor == null ? new IndexSearcher(reader) : new LuceneVectorIndexService.SlicedIndexSearcher(reader, executor, cfg);
+    }
+
+    /**
+     * 將 live doc 的向量與內容複製到 {@code segments} 個 segment（不合併）
+     */
+    private static void split(Path source, Path target, int segments) throws IOException {
+        try (Directory src = FSDirectory.open(source); DirectoryReader reader = DirectoryReader.open(src);
+             Directory dst = FSDirectory.open(target);
+             IndexWriter writer = new IndexWriter(dst, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            int perSegment = Math.max(1, (reader.numDocs() + segments - 1) / segments);
+            int written = 0;
+            StoredFields stored = reader.storedFields();
+            for (LeafReaderContext ctx : reader.leaves()) {
+                FloatVectorValues values = ctx.reader().getFloatVectorValues(F_VECTOR);
+                if (values == null) continue;
+                Bits live = ctx.reader().getLiveDocs();
+                for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                    if (live != null && !live.get(doc)) continue;
+                    Document d = new Document();
+                    d.add(new KnnFloatVectorField(F_VECTOR, values.vectorValue().clone(), VectorSimilarityFunction.DOT_PRODUCT));
+                    String content = stored.document(ctx.docBase + doc).get(F_CONTENT);
+                    d.add(new TextField(F_CONTENT, content == null ? "" : content, Field.Store.YES));
+                    writer.addDocument(d);
+                    if (++written % perSegment == 0) writer.commit();
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    private static void sampleQueries(IndexReader reader, int n, int k, Random random, List<Query> knn, List<Query> bm25)
+            throws IOException {
+        List<float[]> vectors = new ArrayList<>();
+        List<Integer> docs = new ArrayList<>();
+        for (LeafReaderContext ctx : reader.leaves()) {
+            FloatVectorValues values = ctx.reader().getFloatVectorValues(F_VECTOR);
+            if (values == null) continue;
+            for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+                vectors.add(values.vectorValue().clone());
+                docs.add(ctx.docBase + doc);
+            }
+        }
+        QueryBuilder builder = new QueryBuilder(new StandardAnalyzer());
+        StoredFields stored = reader.storedFields();
+        for (int i : random.ints(0, vectors.size()).distinct().limit(Math.min(n, vectors.size())).toArray()) {
+            knn.add(new KnnFloatVectorQuery(F_VECTOR, vectors.get(i), k));
+            String content = stored.document(docs.get(i)).get(F_CONTENT);
+            String[] words = content == null ? new String[0] : content.trim().split("\\s+");
+            Query q = builder.createBooleanQuery(F_CONTENT, String.join(" ", Arrays.copyOf(words, Math.min(3, words.length))));
+            if (q != null) bm25.add(q);
+        }
+    }
+
+    private static long[] sequential(IndexSearcher searcher, List<Query> queries, int k) throws IOException {
+        long[] latency = new long[queries.size()];
+        for (int i = 0; i < latency.length; i++) {
+            long t = System.nanoTime();
+            searcher.search(queries.get(i), k);
+            latency[i] = System.nanoTime() - t;
+        }
+        return latency;
+    }
+
+    private static long[] concurrent(IndexSearcher searcher, List<Query> queries, int k, int clients, int seconds)
+            throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<long[]> perClient = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> workers = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int offset = c;
+            workers.add(Thread.ofPlatform().start(() -> {
+                long[] latency = new long[1024];
+                int size = 0;
+                for (int i = offset; System.nanoTime() < end; i++) {
+                    long t = System.nanoTime();
+                    try {
+                        searcher.search(queries.get(i % queries.size()), k);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    if (size == latency.length) latency = Arrays.copyOf(latency, size * 2);
+                    latency[size++] = System.nanoTime() - t;
+                }
+                perClient.add(Arrays.copyOf(latency, size));
+            }));
+        }
+        for (Thread w : workers) w.join();
+        return perClient.stream().flatMapToLong(Arrays::stream).toArray();
+    }
+
+    private static double percentile(long[] nanos, double p) {
+        if (nanos.length == 0) return 0;
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+    }
+}
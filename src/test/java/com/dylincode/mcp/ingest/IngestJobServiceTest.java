@@ -0,0 +1,215 @@
+package com.dylincode.mcp.ingest;
+
+import com.dylincode.mcp.config.IngestLeaseConfig;
+import com.dylincode.mcp.config.ReplicationConfig;
+import com.dylincode.mcp.confluence.ConfluenceClient;
+import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.model.Chunk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IngestJobServiceTest {
+    @TempDir
+    Path dir;
+
+    private final ConfluenceClient confluence = mock(ConfluenceClient.class);
+    private final EmbeddingService embedding = mock(EmbeddingService.class);
+    private final VectorIndexService index = mock(VectorIndexService.class);
+    private final List<String> indexedIds = new ArrayList<>();
+    private final List<IngestJobService> services = new ArrayList<>();
+
+    @BeforeEach
+    void stubs() throws Exception {
+        when(embedding.embedAll(anyList())).thenAnswer(inv -> {
+            List<String> texts = inv.getArgument(0);
+            return texts.stream().map(t -> new float[]{1f, 0f}).toList();
+        });
+        doAnswer(inv -> {
+            List<Chunk> chunks = inv.getArgument(0);
+            synchronized (indexedIds) {
+                chunks.forEach(c -> indexedIds.add(c.id()));
+            }
+            return null;
+        }).when(index).addAll(anyList());
+        when(confluence.countPagesInSpace("DE")).thenReturn(4);
+        when(confluence.fetchPagesInSpace(eq("DE"), eq(0), anyInt()))
+                .thenReturn(new ConfluenceClient.PageBatch(List.of(page("p1"), page("p2")), 2));
+    }
+
+    @AfterEach
+    void stop() {
+        services.forEach(IngestJobService::stop);
+    }
+
+    private static ConfluenceClient.Page page(String id) {
+        return new ConfluenceClient.Page(id, "title " + id, "https://wiki/" + id, "text of " + id, "DE",
+                List.of(), "alice", 1_000L);
+    }
+
+    private IngestJobService service() throws IOException {
+        return service("node-a", index);
+    }
+
+    /** 各節點有自己的 index 與工作目錄，共用租約目錄 */
+    private IngestJobService service(String node, VectorIndexService index) throws IOException {
+        IngestLeaseConfig leaseConfig = new IngestLeaseConfig();
+        leaseConfig.setDir(dir.resolve("leases").toString());
+        leaseConfig.setNodeId(node);
+        leaseConfig.setHeartbeatMs(50);
+        ReplicationConfig replication = new ReplicationConfig();
+        IngestJobService s = new IngestJobService(confluence, embedding, index,
+                new IngestJobStore(dir.resolve("jobs-" + node).toString()), replication,
+                new FileIngestLease(leaseConfig, replication, 0), leaseConfig, 1, 200);
+        services.add(s);
+        return s;
+    }
+
+    @Test
+    void resumesSpaceFromLastCommittedBatchAfterRestart() throws Exception {
+        AtomicBoolean crashed = new AtomicBoolean();
+        CountDownLatch crashing = new CountDownLatch(1);
+        IngestJobService first = service();
+        when(confluence.fetchPagesInSpace(eq("DE"), eq(2), anyInt())).thenAnswer(inv -> {
+            if (crashed.compareAndSet(false, true)) {
+                // 第二批進行中關機：第一批已 commit，斷點停在 start=2
+                first.stop();
+                crashing.countDown();
+                throw new IOException("connection reset");
+            }
+            return new ConfluenceClient.PageBatch(List.of(page("p3"), page("p4")), null);
+        });
+        first.start();
+        IngestJob job = first.submitSpace("DE");
+        assertThat(crashing.await(10, TimeUnit.SECONDS)).isTrue();
+
+        IngestJob saved = awaitSaved(job.getId());
+        assertThat(saved.getStatus()).isEqualTo(IngestJob.Status.RUNNING);
+        assertThat(saved.getNextStart()).isEqualTo(2);
+        assertThat(saved.getProcessedPages()).isEqualTo(2);
+
+        IngestJobService second = service();
+        second.start();
+        IngestJob done = second.completion(job.getId()).get(10, TimeUnit.SECONDS);
+
+        assertThat(done.getStatus()).isEqualTo(IngestJob.Status.SUCCEEDED);
+        assertThat(done.getProcessedPages()).isEqualTo(4);
+        assertThat(done.getNextStart()).isNull();
+        // 第一批不會重新抓取與 embedding
+        verify(confluence, times(1)).fetchPagesInSpace(eq("DE"), eq(0), anyInt());
+        verify(confluence, times(2)).fetchPagesInSpace(eq("DE"), eq(2), anyInt());
+        assertThat(indexedIds).containsExactly("p1_0", "p2_0", "p3_0", "p4_0");
+    }
+
+    /** 關機的 worker 可能還在寫最後一次狀態，等檔案穩定 */
+    private IngestJob awaitSaved(String id) throws Exception {
+        IngestJobStore store = new IngestJobStore(dir.resolve("jobs-node-a").toString());
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            IngestJob j = store.loadAll().stream().filter(x -> x.getId().equals(id)).findFirst().orElseThrow();
+            if (j.getNextStart() != null && j.getNextStart() == 2 || System.currentTimeMillis() > deadline) return j;
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void finishedJobCompletesImmediately() throws Exception {
+        when(confluence.fetchPagesInSpace(eq("DE"), eq(2), anyInt()))
+                .thenReturn(new ConfluenceClient.PageBatch(List.of(page("p3")), null));
+        IngestJobService s = service();
+        s.start();
+        IngestJob job = s.submitSpace("DE");
+        assertThat(s.completion(job.getId()).get(10, TimeUnit.SECONDS).getStatus()).isEqualTo(IngestJob.Status.SUCCEEDED);
+        assertThat(s.completion(job.getId())).isCompletedWithValueMatching(j -> j.getProcessedPages() == 3);
+    }
+
+    @Test
+    void unknownJobCompletionFails() throws Exception {
+        IngestJobService s = service();
+        s.start();
+        assertThatThrownBy(() -> s.completion("missing").get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void cancelledQueuedJobIsNotRun() throws Exception {
+        IngestJobService s = service();
+        IngestJob job = s.submitSpace("DE");
+        s.cancel(job.getId());
+        s.start();
+        assertThat(s.completion(job.getId()).get(1, TimeUnit.SECONDS).getStatus()).isEqualTo(IngestJob.Status.CANCELLED);
+        verify(confluence, never()).fetchPagesInSpace(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void twoNodesSharingLeasesIngestEachSpaceOnce() throws Exception {
+        for (String key : List.of("OPS", "HR")) {
+            when(confluence.countPagesInSpace(key)).thenReturn(1);
+            when(confluence.fetchPagesInSpace(eq(key), eq(0), anyInt()))
+                    .thenReturn(new ConfluenceClient.PageBatch(List.of(page(key.toLowerCase())), null));
+        }
+        when(confluence.fetchPagesInSpace(eq("DE"), eq(2), anyInt()))
+                .thenReturn(new ConfluenceClient.PageBatch(List.of(page("p3"), page("p4")), null));
+        VectorIndexService otherIndex = mock(VectorIndexService.class);
+        IngestJobService a = service("node-a", index);
+        IngestJobService b = service("node-b", otherIndex);
+        a.start();
+        b.start();
+
+        List<String> keys = List.of("DE", "OPS", "HR");
+        List<IngestJob> fromA = a.submitScheduledSync(keys);
+        List<IngestJob> fromB = b.submitScheduledSync(keys);
+
+        assertThat(fromA).extracting(IngestJob::getSpaceKey).containsExactlyElementsOf(keys);
+        assertThat(fromB).isEmpty();
+        for (IngestJob job : fromA) {
+            assertThat(a.completion(job.getId()).get(10, TimeUnit.SECONDS).getStatus()).isEqualTo(IngestJob.Status.SUCCEEDED);
+        }
+        for (String key : keys) {
+            verify(confluence, times(1)).fetchPagesInSpace(eq(key), eq(0), anyInt());
+        }
+        assertThat(indexedIds).containsExactlyInAnyOrder("p1_0", "p2_0", "p3_0", "p4_0", "ops_0", "hr_0");
+        verify(otherIndex, never()).addAll(anyList());
+        // 非攝取節點拒絕手動攝取，並指出攝取節點
+        assertThatThrownBy(() -> b.submitSpace("DE"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("node-a");
+    }
+
+    @Test
+    void anotherNodeTakesOverWhenTheWriterStops() throws Exception {
+        when(confluence.fetchPagesInSpace(eq("DE"), eq(2), anyInt()))
+                .thenReturn(new ConfluenceClient.PageBatch(List.of(page("p3")), null));
+        IngestJobService a = service("node-a", index);
+        IngestJobService b = service("node-b", index);
+        a.start();
+        b.start();
+        assertThat(a.isWriter()).isTrue();
+        assertThat(b.isWriter()).isFalse();
+
+        a.stop();
+        List<IngestJob> jobs = b.submitScheduledSync(List.of("DE"));
+
+        assertThat(jobs).hasSize(1);
+        assertThat(b.completion(jobs.get(0).getId()).get(10, TimeUnit.SECONDS).getStatus()).isEqualTo(IngestJob.Status.SUCCEEDED);
+        assertThat(indexedIds).containsExactly("p1_0", "p2_0", "p3_0");
+    }
+}
@@ -0,0 +1,242 @@
+package com.dylincode.mcp.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 壓測產生器：依目標 RPS 對 {@code /mcp} tools/call、{@code /query}、{@code /ask} 與 {@code /ingest/space} 送出請求，
+ * 結束時回報各情境的吞吐量與 p50/p95/p99 延遲。
+ *
+ * <p>採 open-loop：請求依排定時間送出，不等前一個回應；延遲從排定時間起算，服務變慢時排隊的時間也會算進去，
+ * 不會因為壓測端跟著變慢而低估尾端延遲。位於 src/test，不打包進正式 jar；只使用 JDK 與 {@link SyntheticText}。</p>
+ *
+ * <pre>
+ * java -cp "$(scripts/test-classpath.sh)" com.dylincode.mcp.loadtest.LoadGenerator \
+ *     --url http://127.0.0.1:8080 --duration 60 --warmup 10 \
+ *     --rps mcp-search=50,mcp-fetch=50,query=20,ask=1,ingest=0.02 --spaces LT1,LT2
+ * </pre>
+ *
+ * @see StubServers 離線執行時的外部服務替身
+ */
+public class LoadGenerator {
+    private static final Pattern CHUNK_ID = Pattern.compile("\"id\":\"([^\"\\\\]+_\\d+)\"");
+
+    private final String url;
+    private final Duration timeout;
+    private final List<String> spaces;
+    private final HttpClient http;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    /** 從 search 結果收集的 chunk id，供 fetch 使用 */
+    private final List<String> knownIds = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong requestIds = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    LoadGenerator(String url, Duration timeout, List<String> spaces) {
+        this.url = url;
+        this.timeout = timeout;
+        this.spaces = spaces;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("unexpected argument " + args[i]);
+            opts.put(args[i].substring(2), args[i + 1]);
+        }
+        LoadGenerator generator = new LoadGenerator(
+                opts.getOrDefault("url", "http://127.0.0.1:8080"),
+                Duration.ofSeconds(Long.parseLong(opts.getOrDefault("timeout", "30"))),
+                List.of(opts.getOrDefault("spaces", "LT1").split(",")));
+        Map<Scenario, Double> rps = new LinkedHashMap<>();
+        for (String pair : opts.getOrDefault("rps", "mcp-search=20,query=10").split(",")) {
+            String[] kv = pair.split("=");
+            rps.put(Scenario.of(kv[0].trim()), Double.parseDouble(kv[1].trim()));
+        }
+        generator.run(rps,
+                Duration.ofSeconds(Long.parseLong(opts.getOrDefault("warmup", "10"))),
+                Duration.ofSeconds(Long.parseLong(opts.getOrDefault("duration", "60"))),
+                new Random(Long.parseLong(opts.getOrDefault("seed", "42"))));
+        System.exit(0);
+    }
+
+    enum Scenario {
+        MCP_SEARCH("mcp-search"), MCP_FETCH("mcp-fetch"), QUERY("query"), ASK("ask"), INGEST("ingest");
+
+        final String label;
+
+        Scenario(String label) {
+            this.label = label;
+        }
+
+        static Scenario of(String label) {
+            for (Scenario s : values()) if (s.label.equals(label)) return s;
+            throw new IllegalArgumentException("unknown scenario " + label + ", expected one of "
+                    + Arrays.stream(values()).map(s -> s.label).toList());
+        }
+    }
+
+    void run(Map<Scenario, Double> rps, Duration warmup, Duration duration, Random random) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        Map<Scenario, Stats> stats = new LinkedHashMap<>();
+        List<Thread> schedulers = new ArrayList<>();
+        System.out.printf("target %s, warmup %ds, measure %ds, rps %s%n", url, warmup.toSeconds(), duration.toSeconds(), rps);
+
+        for (Map.Entry<Scenario, Double> e : rps.entrySet()) {
+            if (e.getValue() <= 0) continue;
+            Stats s = new Stats();
+            stats.put(e.getKey(), s);
+            long interval = (long) (1e9 / e.getValue());
+            long seed = random.nextLong();
+            schedulers.add(Thread.ofPlatform().name("load-" + e.getKey().label).start(
+                    () -> schedule(e.getKey(), interval, start, measureFrom, end, s, new Random(seed))));
+        }
+
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(10_000, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+            long done = stats.values().stream().mapToLong(Stats::count).sum();
+            System.out.printf("  %4ds  measured %d  in flight %d%n", elapsed, done, inFlight.get());
+        }
+        for (Thread t : schedulers) t.join();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) Thread.sleep(50);
+
+        double seconds = duration.toNanos() / 1e9;
+        System.out.println();
+        System.out.printf("%-11s %8s %8s %8s %9s %9s %9s %9s %9s  %s%n",
+                "scenario", "sent", "ok", "errors", "ok/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "error detail");
+        for (Map.Entry<Scenario, Stats> e : stats.entrySet()) {
+            Stats s = e.getValue();
+            long[] sorted = s.sortedLatencies();
+            System.out.printf("%-11s %8d %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                    e.getKey().label, sorted.length, s.ok.get(), sorted.length - s.ok.get(), s.ok.get() / seconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99), percentile(sorted, 1.0),
+                    s.errors.isEmpty() ? "" : s.errors);
+        }
+        if (inFlight.get() > 0) System.out.printf("%d requests still in flight after %ds%n", inFlight.get(), timeout.toSeconds());
+    }
+
+    private void schedule(Scenario scenario, long interval, long start, long measureFrom, long end, Stats stats, Random random) {
+        for (long intended = start; intended < end; intended += interval) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            long scheduledAt = intended;
+            boolean measured = intended >= measureFrom;
+            HttpRequest request = request(scenario, random);
+            inFlight.incrementAndGet();
+            executor.execute(() -> {
+                String outcome;
+                try {
+                    HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
+                    outcome = resp.statusCode() / 100 == 2 ? null : "HTTP " + resp.statusCode();
+                    if (outcome == null && scenario == Scenario.MCP_SEARCH) collectIds(resp.body());
+                    if (outcome == null && resp.body().contains("\"error\":{")) outcome = "rpc error";
+                } catch (Exception e) {
+                    outcome = e.getClass().getSimpleName();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                if (measured) stats.record(System.nanoTime() - scheduledAt, outcome);
+            });
+        }
+    }
+
+    private HttpRequest request(Scenario scenario, Random random) {
+        String query = SyntheticText.words(random, 2 + random.nextInt(4));
+        return switch (scenario) {
+            case MCP_SEARCH -> rpc("search", "{\"query\":\"" + query + "\",\"top_k\":5}");
+            case MCP_FETCH -> {
+                String id;
+                synchronized (knownIds) {
+                    id = knownIds.isEmpty() ? "loadtest-missing_0" : knownIds.get(random.nextInt(knownIds.size()));
+                }
+                yield rpc("fetch", "{\"id\":\"" + id + "\"}");
+            }
+            case QUERY -> builder("/query?k=5&q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)).GET().build();
+            case ASK -> post("/ask", "{\"q\":\"" + query + "\",\"k\":5}");
+            case INGEST -> post("/ingest/space", "{\"spaceKey\":\"" + spaces.get(random.nextInt(spaces.size())) + "\"}");
+        };
+    }
+
+    private HttpRequest rpc(String tool, String arguments) {
+        return post("/mcp", "{\"jsonrpc\":\"2.0\",\"id\":" + requestIds.incrementAndGet()
+                + ",\"method\":\"tools/call\",\"params\":{\"name\":\"" + tool + "\",\"arguments\":" + arguments + "}}");
+    }
+
+    private HttpRequest post(String path, String json) {
+        return builder(path).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest.Builder builder(String path) {
+        return HttpRequest.newBuilder(URI.create(url + path)).timeout(timeout);
+    }
+
+    private void collectIds(String body) {
+        Matcher m = CHUNK_ID.matcher(body);
+        synchronized (knownIds) {
+            while (m.find()) {
+                if (knownIds.size() < 10_000) knownIds.add(m.group(1));
+                else knownIds.set(ThreadLocalRandom.current().nextInt(knownIds.size()), m.group(1));
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1e6;
+    }
+
+    private static final class Stats {
+        private long[] latencies = new long[1024];
+        private int size;
+        final AtomicLong ok = new AtomicLong();
+        final Map<String, Integer> errors = new ConcurrentHashMap<>();
+
+        synchronized void record(long nanos, String error) {
+            if (size == latencies.length) latencies = Arrays.copyOf(latencies, size * 2);
+            latencies[size++] = nanos;
+            if (error == null) ok.incrementAndGet();
+            else errors.merge(error, 1, Integer::sum);
+        }
+
+        synchronized long count() {
+            return size;
+        }
+
+        synchronized long[] sortedLatencies() {
+            long[] copy = Arrays.copyOf(latencies, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.dylincode.mcp.mcp;
+
+import com.dylincode.mcp.loadtest.SyntheticText;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 在同一個 JVM 內比較 tools/call 舊的處理路徑（JsonNode 樹、convertValue、工具回傳預先序列化的文字、每次 INFO 日誌）
+ * 與目前 {@link MCPController} 的路徑，每次呼叫配置的記憶體與耗時，作為 {@code mcp.rpc.allocated} 的基準。
+ *
+ * <p>以合成的 fetch 結果（{@code --chunks} 個片段、每段 {@code --chars} 字，{@code --cjk true} 時為中文）量測，
+ * 不經過 HTTP 與 index，回應寫到丟棄的 stream。目前的路徑仍會把結果序列化成一個 String：
+ * MCP 的 text content 必須以 JSON 字串攜帶結果，同一份字串也原樣作為 {@code structuredContent}。</p>
+ *
+ * <pre>
+ * scripts/rpc-allocation-benchmark.sh --chunks 5 --chars 800 --iterations 20000
+ * </pre>
+ */
+public class RpcAllocationBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final String CJK = "搜尋服務在部署新版本前需要先確認索引已經完成重建，並且在預備環境驗證查詢結果與延遲。";
+
+    record Document(String id, String title, String url, String text) {
+    }
+
+    record Documents(List<Document> results) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        int chunks = Integer.parseInt(opts.getOrDefault("chunks", "5"));
+        int chars = Integer.parseInt(opts.getOrDefault("chars", "800"));
+        int iterations = Integer.parseInt(opts.getOrDefault("iterations", "20000"));
+        int warmup = Integer.parseInt(opts.getOrDefault("warmup", "5000"));
+        boolean cjk = Boolean.parseBoolean(opts.getOrDefault("cjk", "false"));
+
+        ObjectMapper mapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        Random random = new Random(42);
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < chars) text.append(cjk ? CJK : SyntheticText.words(random, 20) + " ");
+            docs.add(new Document("1234567_" + i, "Page title " + i, "https://confluence.example.com/pages/1234567",
+                    text.substring(0, chars)));
+        }
+        List<String> ids = docs.stream().map(Document::id).toList();
+        byte[] body = ("{\"jsonrpc\":\"2.0\",\"id\":\"bench\",\"method\":\"tools/call\",\"params\":{\"name\":\"fetch\","
+                + "\"arguments\":{\"id\":\"" + ids.get(0) + "\",\"ids\":" + mapper.writeValueAsString(ids) + "}}}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        Path baseline = new Baseline(mapper, docs);
+        Path current = new Current(mapper, docs);
+        System.out.printf("fetch result: %d chunks x %d chars (%s), %d iterations%n",
+                chunks, chars, cjk ? "CJK" : "ASCII", iterations);
+        System.out.printf("%-10s %16s %12s%n", "path", "bytes / call", "us / call");
+        for (Path p : List.of(baseline, current)) {
+            for (int i = 0; i < warmup; i++) p.call(body);
+            long allocated = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) p.call(body);
+            long nanos = System.nanoTime() - start;
+            allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+            System.out.printf("%-10s %16d %12.1f%n", p.name(), allocated / iterations, nanos / 1_000.0 / iterations);
+        }
+    }
+
+    private interface Path {
+        String name();
+
+        void call(byte[] body) throws Exception;
+    }
+
+    /**
+     * 改版前：整份 body 讀成 JsonNode 再 convertValue，params 轉 Map，工具回傳 {@code {type, text}} 且 text 為預先序列化的 JSON，
+     * 每次呼叫以 INFO 記錄整個請求與結果
+     */
+    private record Baseline(ObjectMapper mapper, List<Document> docs) implements Path {
+        @Override
+        public String name() {
+            return "baseline";
+        }
+
+        @Override
+        public void call(byte[] body) throws Exception {
+            JsonNode tree = mapper.readTree(body);
+            MCPController.JsonRpcRequest req = mapper.convertValue(tree, MCPController.JsonRpcRequest.class);
+            String requestLog = mapper.writeValueAsString(req);
+            Map<String, Object> params = mapper.convertValue(req.params, new TypeReference<>() {
+            });
+            JsonNode args = mapper.valueToTree(params.get("arguments"));
+            Set<String> wanted = new LinkedHashSet<>();
+            wanted.add(args.get("id").asText());
+            args.get("ids").forEach(id -> wanted.add(id.asText()));
+            List<Map<String, String>> items = docs.stream().filter(d -> wanted.contains(d.id()))
+                    .map(d -> Map.of("id", d.id(), "title", d.title(), "url", d.url(), "text", d.text())).toList();
+            Object out = Map.of("type", "text", "text", mapper.writeValueAsString(Map.of("results", items)));
+            String resultLog = String.valueOf(out);
+            MCPController.JsonRpcResponse res = MCPController.JsonRpcResponse.ok(req.id,
+                    Map.of("content", Collections.singletonList(out)));
+            mapper.writeValue(OutputStream.nullOutputStream(), res);
+            if (requestLog.isEmpty() || resultLog.isEmpty()) throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * 目前的路徑：從 stream 直接綁定請求，工具回傳 record，序列化一次後同時作為 text 與 structuredContent
+     */
+    private record Current(ObjectMapper mapper, ObjectReader requestReader, ObjectWriter responseWriter,
+                           List<Document> docs) implements Path {
+        Current(ObjectMapper mapper, List<Document> docs) {
+            this(mapper, mapper.readerFor(MCPController.JsonRpcRequest.class), mapper.writer(), docs);
+        }
+
+        @Override
+        public String name() {
+            return "current";
+        }
+
+        @Override
+        public void call(byte[] body) throws Exception {
+            MCPController.JsonRpcRequest req;
+            try (JsonParser parser = mapper.createParser(body)) {
+                parser.nextToken();
+                req = requestReader.readValue(parser);
+            }
+            JsonNode args = req.params.path("arguments");
+            Set<String> wanted = new LinkedHashSet<>();
+            wanted.add(args.get("id").asText());
+            args.get("ids").forEach(id -> wanted.add(id.asText()));
+            Documents out = new Documents(docs.stream().filter(d -> wanted.contains(d.id())).toList());
+            MCPController.ToolCallResult result = MCPController.ToolCallResult.of(mapper.writeValueAsString(out));
+            responseWriter.writeValue(OutputStream.nullOutputStream(), MCPController.JsonRpcResponse.ok(req.id, result));
+        }
+    }
+}
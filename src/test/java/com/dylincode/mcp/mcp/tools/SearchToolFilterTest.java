@@ -0,0 +1,65 @@
+package com.dylincode.mcp.mcp.tools;
+
+import com.dylincode.mcp.exception.ClientVisibleException;
+import com.dylincode.mcp.index.VectorIndexService.SearchFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchToolFilterTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonNode json(String s) throws Exception {
+        return mapper.readTree(s);
+    }
+
+    @Test
+    void missingOrNonObjectFilterIsNull() throws Exception {
+        assertThat(SearchTool.parseFilter(null)).isNull();
+        assertThat(SearchTool.parseFilter(json("\"DE\""))).isNull();
+    }
+
+    @Test
+    void parsesSpacesLabelsAndAuthor() throws Exception {
+        SearchFilter f = SearchTool.parseFilter(json(
+                "{\"space_keys\": [\"DE\", \"BE\"], \"labels\": \"runbook\", \"author\": \"alice\"}"));
+        assertThat(f.spaceKeys()).containsExactly("DE", "BE");
+        assertThat(f.labels()).isEqualTo(Set.of("runbook"));
+        assertThat(f.author()).isEqualTo("alice");
+        assertThat(f.modifiedAfter()).isNull();
+        assertThat(f.modifiedBefore()).isNull();
+        assertThat(f.isEmpty()).isFalse();
+    }
+
+    @Test
+    void dateOnlyBoundsCoverWholeDaysInUtc() throws Exception {
+        SearchFilter f = SearchTool.parseFilter(json(
+                "{\"modified_after\": \"2024-03-12\", \"modified_before\": \"2024-03-12\"}"));
+        assertThat(f.modifiedAfter()).isEqualTo(Instant.parse("2024-03-12T00:00:00Z").toEpochMilli());
+        assertThat(f.modifiedBefore()).isEqualTo(Instant.parse("2024-03-13T00:00:00Z").toEpochMilli() - 1);
+    }
+
+    @Test
+    void dateTimeKeepsOffset() throws Exception {
+        SearchFilter f = SearchTool.parseFilter(json("{\"modified_after\": \"2024-03-12T16:00:00+08:00\"}"));
+        assertThat(f.modifiedAfter()).isEqualTo(Instant.parse("2024-03-12T08:00:00Z").toEpochMilli());
+    }
+
+    @Test
+    void invalidDateIsRejected() {
+        assertThatThrownBy(() -> SearchTool.parseFilter(json("{\"modified_after\": \"last week\"}")))
+                .isInstanceOf(ClientVisibleException.class)
+                .hasMessageContaining("last week");
+    }
+
+    @Test
+    void emptyObjectIsEmptyFilter() throws Exception {
+        assertThat(SearchTool.parseFilter(json("{}")).isEmpty()).isTrue();
+    }
+}
@@ -0,0 +1,117 @@
+package com.dylincode.mcp.replication;
+
+import com.dylincode.mcp.RagApplication;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.ingest.IngestJob;
+import com.dylincode.mcp.ingest.IngestJobService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 同一個 JVM 內啟動 primary 與 replica 兩個實例（外部服務用 loadtest profile 的替身），
+ * 驗證 primary 攝取後 replica 會複寫到同一個 generation，以及 primary 停掉後 replica 會回報落後。
+ */
+class IndexReplicationIntegrationTest {
+    private static final String TOKEN = "replication-test-token";
+
+    @TempDir
+    Path dir;
+
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void replicaCopiesPrimaryCommitsAndReportsLagWhenPrimaryIsGone() throws Exception {
+        ConfigurableApplicationContext primary = start("primary", "role=primary");
+        int primaryPort = ((ServletWebServerApplicationContext) primary).getWebServer().getPort();
+
+        IngestJobService ingest = primary.getBean(IngestJobService.class);
+        IngestJob job = ingest.completion(ingest.submitSpace("LT1").getId()).get(60, TimeUnit.SECONDS);
+        assertThat(job.getStatus()).isEqualTo(IngestJob.Status.SUCCEEDED);
+        VectorIndexService primaryIndex = primary.getBean(VectorIndexService.class);
+        int docs = primaryIndex.numDocs();
+        assertThat(docs).isPositive();
+        long generation = primaryIndex.latestCommit().generation();
+
+        ConfigurableApplicationContext replica = start("replica", "role=replica",
+                "primary-url=http://127.0.0.1:" + primaryPort);
+        IndexReplicator replicator = replica.getBean(IndexReplicator.class);
+        VectorIndexService replicaIndex = replica.getBean(VectorIndexService.class);
+
+        await(() -> Boolean.TRUE.equals(replicator.status().get("inSync")));
+        Map<String, Object> synced = replicator.status();
+        assertThat(synced.get("appliedGeneration")).isEqualTo(generation);
+        assertThat(synced.get("lagMillis")).isEqualTo(0L);
+        assertThat((long) synced.get("copiedFiles")).isPositive();
+        assertThat(replicaIndex.numDocs()).isEqualTo(docs);
+
+        primary.close();
+        await(() -> Boolean.FALSE.equals(replicator.status().get("inSync")));
+        Thread.sleep(50);
+        Map<String, Object> stale = replicator.status();
+        assertThat(stale.get("lastError")).isNotNull();
+        assertThat((long) stale.get("lagMillis")).isPositive();
+        // primary 已關閉，replica 仍以最後一次複寫的 index 提供查詢
+        assertThat(replicaIndex.numDocs()).isEqualTo(docs);
+    }
+
+    private ConfigurableApplicationContext start(String name, String... replication) throws IOException {
+        Path home = dir.resolve(name);
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=prod,loadtest",
+                "--server.port=0",
+                "--app.loadtest.stub.port=" + freePort(),
+                "--app.loadtest.stub.pages-per-space=3",
+                "--app.loadtest.stub.paragraphs-per-page=2",
+                "--app.loadtest.stub.embed-latency-ms=0",
+                "--app.loadtest.stub.embed-jitter-ms=0",
+                "--app.loadtest.stub.confluence-latency-ms=0",
+                "--app.loadtest.stub.confluence-jitter-ms=0",
+                "--app.indexDir=" + home.resolve("index"),
+                "--app.search.exact.dir=" + home.resolve("flat-vectors"),
+                "--app.ingest.jobs.dir=" + home.resolve("jobs"),
+                "--app.ingest.lease.dir=" + home.resolve("leases"),
+                "--app.ingest.lease.node-id=" + name,
+                "--app.ask.cache.dir=" + home.resolve("answer-cache"),
+                "--app.replication.token=" + TOKEN,
+                "--app.replication.poll-ms=200"));
+        for (String r : replication) args.add("--app.replication." + r);
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(RagApplication.class)
+                .run(args.toArray(String[]::new));
+        contexts.add(ctx);
+        return ctx;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("condition not met within 30s");
+            Thread.sleep(100);
+        }
+    }
+}
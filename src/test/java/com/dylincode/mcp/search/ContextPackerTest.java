@@ -0,0 +1,86 @@
+package com.dylincode.mcp.search;
+
+import com.dylincode.mcp.config.AskConfig;
+import com.dylincode.mcp.index.VectorIndexService.SearchHit;
+import com.dylincode.mcp.search.ContextPacker.PackedContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextPackerTest {
+    private final AskConfig config = new AskConfig();
+
+    private static SearchHit hit(String chunkId, String content) {
+        String page = chunkId.substring(0, chunkId.lastIndexOf('_'));
+        return new SearchHit(chunkId, "Title " + page, "https://wiki/" + page, content, 1f);
+    }
+
+    @Test
+    void adjacentChunksOfAPageMergeWithoutTheOverlapAndKeepTheBestRank() {
+        PackedContext packed = new ContextPacker(config).pack(List.of(
+                hit("p1_3", "Delta epsilon. Zeta eta theta."),
+                hit("p2_0", "Something on another page entirely."),
+                hit("p1_2", "Alpha beta gamma. Delta epsilon.")));
+
+        assertThat(packed.mergedChunks()).isEqualTo(1);
+        assertThat(packed.sources()).extracting(ContextPacker.Source::url)
+                .containsExactly("https://wiki/p1", "https://wiki/p2");
+        assertThat(packed.sources().get(0).chunkIds()).containsExactly("p1_2", "p1_3");
+        assertThat(packed.text()).contains("Alpha beta gamma. Delta epsilon. Zeta eta theta.");
+        assertThat(packed.text().indexOf("Delta epsilon.")).isEqualTo(packed.text().lastIndexOf("Delta epsilon."));
+    }
+
+    @Test
+    void nonAdjacentChunksStaySeparate() {
+        PackedContext packed = new ContextPacker(config).pack(List.of(
+                hit("p1_1", "The first section talks about deployment."),
+                hit("p1_5", "A later section covers monitoring dashboards.")));
+
+        assertThat(packed.mergedChunks()).isZero();
+        assertThat(packed.sources()).hasSize(2);
+    }
+
+    @Test
+    void joinsWithoutOverlapOrWithANewline() {
+        ContextPacker packer = new ContextPacker(config);
+        assertThat(packer.joinWithoutOverlap("abc def", "def ghi")).isEqualTo("abc def ghi");
+        assertThat(packer.joinWithoutOverlap("abc", "xyz")).isEqualTo("abc\nxyz");
+    }
+
+    @Test
+    void nearDuplicateOfAHigherRankedSegmentIsSkipped() {
+        String text = "部署流程：先在測試環境驗證，再由值班人員核准後發佈到正式環境，最後確認監控指標正常。";
+        PackedContext packed = new ContextPacker(config).pack(List.of(
+                hit("p1_0", text),
+                hit("copy_0", text + "（複製）"),
+                hit("p3_0", "Completely unrelated content about the cafeteria menu.")));
+
+        assertThat(packed.duplicates()).isEqualTo(1);
+        assertThat(packed.sources()).extracting(ContextPacker.Source::url)
+                .containsExactly("https://wiki/p1", "https://wiki/p3");
+    }
+
+    @Test
+    void segmentsBeyondTheBudgetAreCutAtASentenceBoundary() {
+        config.getContext().setMaxTokens(120);
+        config.getContext().setMinSegmentTokens(20);
+        String longText = "This sentence fills the budget quickly. ".repeat(40);
+        PackedContext packed = new ContextPacker(config).pack(List.of(
+                hit("p1_0", longText),
+                hit("p2_0", "Nothing is left for this one.")));
+
+        assertThat(packed.truncated()).isEqualTo(2);
+        assertThat(packed.sources()).hasSize(1);
+        assertThat(packed.estimatedTokens()).isLessThanOrEqualTo(120);
+        assertThat(packed.text()).endsWith(". …");
+    }
+
+    @Test
+    void estimatesCjkPerCharacterAndOtherTextPerFourCharacters() {
+        assertThat(ContextPacker.estimateTokens("中文字")).isEqualTo(3);
+        assertThat(ContextPacker.estimateTokens("abcdefgh")).isEqualTo(2);
+        assertThat(ContextPacker.estimateTokens("")).isZero();
+    }
+}
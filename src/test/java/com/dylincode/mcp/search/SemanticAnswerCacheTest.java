@@ -0,0 +1,161 @@
+package com.dylincode.mcp.search;
+
+import com.dylincode.mcp.config.AskConfig;
+import com.dylincode.mcp.embedding.EmbeddingService;
+import com.dylincode.mcp.index.ChunksIndexedEvent;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.index.VectorIndexService.SearchHit;
+import com.dylincode.mcp.model.Chunk;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SemanticAnswerCacheTest {
+    private static final float[] QUESTION = {1f, 0f, 0f, 0f};
+    private static final float[] PARAPHRASE = {1f, 0.05f, 0f, 0f};
+    private static final float[] OTHER = {0f, 1f, 0f, 0f};
+    private static final String PARAMS = "k=5";
+
+    @TempDir
+    Path dir;
+
+    private final AskConfig config = new AskConfig();
+    private final VectorIndexService index = mock(VectorIndexService.class);
+    private final EmbeddingService embedding = mock(EmbeddingService.class);
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    /** 目前 index 中各片段的內容 */
+    private final Map<String, String> contents = new HashMap<>();
+    private SemanticAnswerCache cache;
+
+    @BeforeEach
+    void open() throws IOException {
+        config.getCache().setDir(dir.toString());
+        when(embedding.model()).thenReturn("bge-m3:567m");
+        when(index.fetchChunks(anyList())).thenAnswer(inv -> {
+            List<String> ids = inv.getArgument(0);
+            return ids.stream().filter(contents::containsKey)
+                    .map(id -> new Chunk(id, "t", "u", contents.get(id), null, "DE", List.of(), "alice", 1L))
+                    .toList();
+        });
+        contents.put("p1_0", "部署前先在測試環境驗證。");
+        contents.put("p2_0", "發佈需要值班人員核准。");
+        cache = new SemanticAnswerCache(config, index, embedding, registry);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        cache.close();
+    }
+
+    private void putAnswer() throws IOException {
+        cache.put("如何部署？", PARAMS, QUESTION, "先驗證再核准。",
+                List.of(new SearchHit("p1_0", "t", "u", contents.get("p1_0"), 1f),
+                        new SearchHit("p2_0", "t", "u", contents.get("p2_0"), 0.9f)));
+    }
+
+    private double count(String result) {
+        return registry.get("ask.cache").tag("result", result).counter().count();
+    }
+
+    @Test
+    void similarQuestionWithTheSameParamsHits() throws IOException {
+        putAnswer();
+
+        var hit = cache.lookup(PARAPHRASE, PARAMS);
+        assertThat(hit).isPresent();
+        assertThat(hit.get().answer()).isEqualTo("先驗證再核准。");
+        assertThat(hit.get().question()).isEqualTo("如何部署？");
+        assertThat(hit.get().similarity()).isGreaterThan(0.99);
+        assertThat(count("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void differentQuestionOrParamsMiss() throws IOException {
+        putAnswer();
+
+        assertThat(cache.lookup(OTHER, PARAMS)).isEmpty();
+        assertThat(cache.lookup(QUESTION, "k=10")).isEmpty();
+        assertThat(count("miss")).isEqualTo(2);
+        assertThat(count("hit")).isZero();
+    }
+
+    @Test
+    void changedSourceMakesTheAnswerStaleAndRemovesIt() throws IOException {
+        putAnswer();
+        contents.put("p2_0", "發佈改為自動核准。");
+
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+        assertThat(count("stale")).isEqualTo(1);
+        // 已刪除，之後不會再命中
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+        assertThat(count("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void deletedSourceMakesTheAnswerStale() throws IOException {
+        putAnswer();
+        contents.remove("p1_0");
+
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+        assertThat(count("stale")).isEqualTo(1);
+    }
+
+    @Test
+    void expiredAnswerIsStale() throws Exception {
+        config.getCache().setTtlSeconds(0);
+        putAnswer();
+        Thread.sleep(5);
+
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+        assertThat(count("stale")).isEqualTo(1);
+    }
+
+    @Test
+    void reingestedChunkInvalidatesAnswersCitingIt() throws IOException {
+        putAnswer();
+        cache.onChunksIndexed(new ChunksIndexedEvent(List.of("p2_0"), List.of()));
+
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+        assertThat(count("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void maintenanceEvictsTheOldestBeyondTheLimit() throws Exception {
+        config.getCache().setMaxEntries(1);
+        putAnswer();
+        Thread.sleep(5);
+        cache.put("另一個問題", PARAMS, OTHER, "另一個答案。",
+                List.of(new SearchHit("p1_0", "t", "u", contents.get("p1_0"), 1f)));
+
+        cache.maintain();
+
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+        assertThat(cache.lookup(OTHER, PARAMS)).map(SemanticAnswerCache.CachedAnswer::answer).hasValue("另一個答案。");
+    }
+
+    @Test
+    void answersWithoutSourcesOrWhenDisabledAreNotCached() throws IOException {
+        cache.put("沒有資料的問題", PARAMS, QUESTION, "資料不足。", List.of());
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+
+        config.getCache().setEnabled(false);
+        putAnswer();
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+        config.getCache().setEnabled(true);
+        assertThat(cache.lookup(QUESTION, PARAMS)).isEmpty();
+    }
+}
@@ -0,0 +1,97 @@
+package com.dylincode.mcp.search;
+
+import com.dylincode.mcp.config.SearchConfig;
+import com.dylincode.mcp.index.ActiveIndexChangedEvent;
+import com.dylincode.mcp.index.ChunksIndexedEvent;
+import com.dylincode.mcp.index.VectorIndexService;
+import com.dylincode.mcp.index.VectorIndexService.PageTitle;
+import com.dylincode.mcp.search.TitleSuggester.Suggestion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class TitleSuggesterTest {
+    private final VectorIndexService index = mock(VectorIndexService.class);
+    private final SearchConfig config = new SearchConfig();
+    private TitleSuggester suggester;
+
+    private static PageTitle page(String id, String title) {
+        return new PageTitle(id, title, "https://wiki/" + id);
+    }
+
+    @BeforeEach
+    void load() throws IOException {
+        when(index.pageTitles()).thenReturn(List.of(
+                page("1", "Deploy Guide"),
+                page("2", "Deployment Checklist for Production"),
+                page("3", "How to Deploy the Gateway"),
+                page("4", "部署流程說明"),
+                page("5", "Deploy Guide")));
+        suggester = new TitleSuggester(index, config, new SimpleMeterRegistry());
+        suggester.refresh();
+    }
+
+    private static List<String> ids(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::id).toList();
+    }
+
+    @Test
+    void prefixMatchesRankShorterTitlesFirstAndKeepSameNamedPages() throws IOException {
+        List<Suggestion> out = suggester.suggest("dep", 10, false);
+
+        assertThat(ids(out)).containsExactlyInAnyOrder("1", "5", "2");
+        assertThat(ids(out).get(2)).isEqualTo("2");
+        assertThat(out).noneMatch(Suggestion::infix);
+    }
+
+    @Test
+    void infixMatchesComeAfterPrefixMatches() throws IOException {
+        List<Suggestion> out = suggester.suggest("deploy", 10, true);
+
+        assertThat(ids(out)).containsExactlyInAnyOrder("1", "5", "2", "3");
+        assertThat(out.get(3).id()).isEqualTo("3");
+        assertThat(out.get(3).infix()).isTrue();
+        assertThat(out.subList(0, 3)).noneMatch(Suggestion::infix);
+    }
+
+    @Test
+    void infixMatchesEachWordStartOnceAndCjkCharacters() throws IOException {
+        assertThat(ids(suggester.suggest("gate", 10, true))).containsExactly("3");
+        assertThat(ids(suggester.suggest("ploy", 10, true))).isEmpty();
+        assertThat(ids(suggester.suggest("流程", 10, true))).containsExactly("4");
+        assertThat(ids(suggester.suggest("流程", 10, false))).isEmpty();
+    }
+
+    @Test
+    void queriesAreNormalizedAndLimited() throws IOException {
+        assertThat(ids(suggester.suggest("  DEPLOY   guide", 10, false))).containsExactlyInAnyOrder("1", "5");
+        assertThat(suggester.suggest("deploy", 1, false)).hasSize(1);
+        assertThat(suggester.suggest("", 10, true)).isEmpty();
+        assertThat(suggester.suggest("zzz", 10, true)).isEmpty();
+    }
+
+    @Test
+    void indexedChunksAddPagesWithoutReloadingTheIndex() throws IOException {
+        suggester.onChunksIndexed(new ChunksIndexedEvent(List.of("6_0"), List.of(page("6", "Gateway Runbook"))));
+        suggester.refresh();
+
+        assertThat(ids(suggester.suggest("gateway", 10, false))).containsExactly("6");
+        verify(index, times(1)).pageTitles();
+    }
+
+    @Test
+    void activeIndexChangeReloadsFromTheIndex() throws IOException {
+        when(index.pageTitles()).thenReturn(List.of(page("7", "Rollback Procedure")));
+        suggester.onActiveIndexChanged(new ActiveIndexChangedEvent("index-2"));
+        suggester.refresh();
+
+        assertThat(ids(suggester.suggest("roll", 10, false))).containsExactly("7");
+        assertThat(suggester.suggest("dep", 10, true)).isEmpty();
+    }
+}
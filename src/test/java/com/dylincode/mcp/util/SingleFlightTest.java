@@ -0,0 +1,112 @@
+package com.dylincode.mcp.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("test", registry);
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void shutdown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsForTheSameKeyShareOneComputation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> flight.execute("q", () -> {
+                calls.incrementAndGet();
+                release.await();
+                return "answer";
+            })));
+        }
+        awaitCount("follower", 7);
+        assertThat(flight.inFlight()).isEqualTo(1);
+
+        release.countDown();
+        for (Future<String> f : results) assertThat(f.get(5, TimeUnit.SECONDS)).isEqualTo("answer");
+        assertThat(calls).hasValue(1);
+        assertThat(count("leader")).isEqualTo(1);
+        assertThat(flight.inFlight()).isZero();
+    }
+
+    @Test
+    void differentKeysAndLaterCallsAreNotCoalesced() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        assertThat(flight.execute("a", () -> "a" + calls.incrementAndGet())).isEqualTo("a1");
+        assertThat(flight.execute("b", () -> "b" + calls.incrementAndGet())).isEqualTo("b2");
+        // 完成後不快取結果
+        assertThat(flight.execute("a", () -> "a" + calls.incrementAndGet())).isEqualTo("a3");
+        assertThat(count("follower")).isZero();
+    }
+
+    @Test
+    void failureReachesEveryWaiterAndClearsTheKey() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(callers.submit(() -> flight.execute("q", () -> {
+                release.await();
+                throw new IOException("backend down");
+            })));
+        }
+        awaitCount("follower", 2);
+        release.countDown();
+        for (Future<String> f : results) {
+            assertThatThrownBy(() -> f.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause().isInstanceOf(IOException.class).hasMessage("backend down");
+        }
+        assertThat(flight.inFlight()).isZero();
+        assertThat(flight.execute("q", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void interruptedLeaderDoesNotCancelTheSharedComputation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = callers.submit(() -> flight.execute("q", () -> {
+            release.await();
+            return "answer";
+        }));
+        awaitCount("leader", 1);
+        Future<String> follower = callers.submit(() -> flight.execute("q", () -> "not used"));
+        awaitCount("follower", 1);
+
+        leader.cancel(true);
+        release.countDown();
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("answer");
+    }
+
+    private double count(String role) {
+        return registry.get("singleflight.calls").tag("name", "test").tag("role", role).counter().count();
+    }
+
+    private void awaitCount(String role, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (count(role) < expected) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError(role + " count stayed at " + count(role));
+            Thread.sleep(5);
+        }
+    }
+}